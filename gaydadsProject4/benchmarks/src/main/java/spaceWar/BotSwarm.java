@@ -0,0 +1,867 @@
+package spaceWar;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Headless load generator for a SpaceGameServer. Each bot plays like a
+ * client without a display: it registers over TCP and reads the world
+ * size and obstacles, joins and sends UPDATE_SHIP datagrams every input
+ * tick, fires torpedoes over TCP, and sends EXIT when the swarm stops.
+ * The bots are driven by a few threads, each running one selector over
+ * the channels of its bots, so thousands of bots need only a handful of
+ * threads.
+ *
+ * The number of bots is ramped up in steps. At the end of each step a
+ * line is printed with what the bots saw during it:
+ *
+ *   sent/s       updates sent per second
+ *   acks/s       acknowledgements of those updates per second
+ *   loss%        updates sent that were not acknowledged
+ *   rtt          time from sending an update to its acknowledgement,
+ *                median, 99th percentile and maximum in milliseconds
+ *   fwd/s        updates of other bots forwarded to the bots per second
+ *   delivered%   forwarded updates received out of those the server
+ *                would send for the acknowledged updates, less than 100
+ *                also when moves end in collisions, which are not
+ *                forwarded
+ *   delay        time from the server handling an update to a bot
+ *                receiving it, in milliseconds of the shared clock
+ *   fires/s      torpedoes fired per second
+ *   hits/s       own ships removed per second
+ *   late         input ticks a loop started more than a tick late, a
+ *                sign the generator itself cannot keep up
+ *   register     mean time for the bots added in the step to register,
+ *                in milliseconds
+ *
+ * The bots leave the game when the ramp is done or the swarm is
+ * interrupted.
+ *
+ * Settings are system properties:
+ *
+ *   spaceWar.bots            most bots, 1000 by default
+ *   spaceWar.botStep         bots added each step, 100 by default
+ *   spaceWar.botStepSeconds  length of a step, 5 seconds by default
+ *   spaceWar.botLoops        selector threads, 2 by default
+ *   spaceWar.botInputTick    milliseconds between updates, TORPEDO_STEP_MS
+ *                            by default
+ *   spaceWar.botMovement     still, line, circle or random, the default
+ *   spaceWar.botFirePeriod   milliseconds between torpedoes of a bot, 1000
+ *                            by default, 0 for none
+ *   spaceWar.botServer       host of the server, Constants.SERVER_IP by
+ *                            default, on the port from Constants
+ */
+public class BotSwarm {
+
+	// Ways the bots can move
+	protected static final int STILL = 0;
+	protected static final int LINE = 1;
+	protected static final int CIRCLE = 2;
+	protected static final int RANDOM = 3;
+
+	// Size of a remove message on the TCP connection
+	protected static final int REMOVE_SIZE = 12;
+
+	// Number of sent updates remembered by each bot for round trip times
+	protected static final int SENT_HISTORY = 64;
+
+	// Address of the server for TCP and UDP
+	protected InetSocketAddress server;
+
+	protected int inputTick;
+	protected int firePeriod;
+	protected int movement;
+
+	// Threads driving the bots
+	protected Loop[] loops;
+
+	// Number of bots started so far
+	protected int botCount = 0;
+
+
+	/**
+	 * Creates a swarm without any bots yet.
+	 *
+	 * @param server address of the server
+	 * @param loops number of selector threads
+	 * @param inputTick milliseconds between updates of a bot
+	 * @param firePeriod milliseconds between torpedoes of a bot, 0 for none
+	 * @param movement STILL, LINE, CIRCLE or RANDOM
+	 * @throws IOException if a selector cannot be opened
+	 */
+	public BotSwarm( InetSocketAddress server, int loops, int inputTick, int firePeriod,
+					 int movement ) throws IOException {
+
+		this.server = server;
+		this.inputTick = inputTick;
+		this.firePeriod = firePeriod;
+		this.movement = movement;
+
+		this.loops = new Loop[ loops ];
+
+		for ( int i = 0; i < loops; i++ ) {
+
+			this.loops[i] = new Loop( i );
+			this.loops[i].start();
+		}
+
+	} // end BotSwarm constructor
+
+
+	public static void main( String[] args ) throws Exception {
+
+		int maxBots = Integer.getInteger( "spaceWar.bots", 1000 );
+		int step = Math.max( 1, Integer.getInteger( "spaceWar.botStep", 100 ) );
+		int stepSeconds = Integer.getInteger( "spaceWar.botStepSeconds", 5 );
+		int loops = Math.max( 1, Integer.getInteger( "spaceWar.botLoops", 2 ) );
+		int inputTick = Math.max( 1, Integer.getInteger( "spaceWar.botInputTick", Constants.TORPEDO_STEP_MS ) );
+		int firePeriod = Integer.getInteger( "spaceWar.botFirePeriod", 1000 );
+		String movement = System.getProperty( "spaceWar.botMovement", "random" );
+		String host = System.getProperty( "spaceWar.botServer" );
+
+		InetAddress address = ( host == null ) ? Constants.SERVER_IP : InetAddress.getByName( host );
+
+		BotSwarm swarm = new BotSwarm( new InetSocketAddress( address, Constants.getServerPort() ),
+				loops, inputTick, firePeriod, movementOf( movement ) );
+
+		System.out.printf( "%d bots in steps of %d every %d s on %d loops, %s movement, update every %d ms, "
+				+ "fire every %d ms, server %s%n", maxBots, step, stepSeconds, loops, movement, inputTick,
+				firePeriod, swarm.server );
+		System.out.println( "  bots   sent/s    acks/s  loss%   rtt p50    p99    max     fwd/s  delivered%"
+				+ "  delay  fires/s  hits/s  late  register" );
+
+		final BotSwarm stopping = swarm;
+
+		Runtime.getRuntime().addShutdownHook( new Thread() {
+
+			public void run() {
+
+				stopping.stop();
+
+			} // end run
+		} );
+
+		while ( swarm.botCount < maxBots ) {
+
+			int added = Math.min( maxBots, swarm.botCount + step ) - swarm.botCount;
+			long start = System.nanoTime();
+
+			for ( int i = 0; i < added; i++ ) {
+				swarm.addBot();
+			}
+
+			double register = ( System.nanoTime() - start ) / 1e6 / added;
+
+			// What happened while the bots were added is not counted
+			swarm.collect();
+
+			start = System.nanoTime();
+			Thread.sleep( stepSeconds * 1000L );
+
+			swarm.report( swarm.collect(), ( System.nanoTime() - start ) / 1e9, register );
+		}
+
+	} // end main
+
+
+	/**
+	 * Starts another bot. It registers with the server on this thread and
+	 * is then handed to one of the loops, which joins it to the game.
+	 *
+	 * @throws IOException if the bot cannot register
+	 */
+	public void addBot() throws IOException {
+
+		Bot bot = new Bot( this );
+
+		Loop loop = loops[ botCount % loops.length ];
+		botCount++;
+
+		loop.arriving.add( bot );
+		loop.selector.wakeup();
+
+	} // end addBot
+
+
+	/**
+	 * Takes and resets the counts of every loop.
+	 *
+	 * @return the counts added together
+	 */
+	public Stats collect() {
+
+		Stats total = new Stats();
+
+		for ( Loop loop : loops ) {
+			loop.stats.drainInto( total );
+		}
+
+		return total;
+
+	} // end collect
+
+
+	/**
+	 * Stops the loops, which tell the server their bots are leaving, and
+	 * waits for them to finish.
+	 */
+	public void stop() {
+
+		for ( Loop loop : loops ) {
+
+			loop.running = false;
+			loop.selector.wakeup();
+		}
+
+		try {
+
+			for ( Loop loop : loops ) {
+				loop.join();
+			}
+		} catch ( InterruptedException e ) {
+			System.err.println( "Interrupted while bots were leaving." );
+		}
+
+	} // end stop
+
+
+	/*
+	 * Prints the line for a step.
+	 */
+	protected void report( Stats s, double seconds, double register ) {
+
+		long expected = s.acks * Math.max( 0, botCount - 1 );
+
+		System.out.printf( "%6d %8.0f %9.0f %6.2f %9.2f %6.2f %6.2f %9.0f %10.1f %7.1f %8.0f %7.1f %5d %9.1f%n",
+				botCount, s.sent / seconds, s.acks / seconds,
+				s.sent == 0 ? 0.0 : Math.max( 0, 100.0 * ( s.sent - s.acks ) / s.sent ),
+				s.rtt.percentile( 0.5 ) / 1e3, s.rtt.percentile( 0.99 ) / 1e3, s.rtt.getMax() / 1e3,
+				s.forwarded / seconds, expected == 0 ? 0.0 : Math.min( 100.0, 100.0 * s.forwarded / expected ),
+				s.forwarded == 0 ? 0.0 : (double) s.forwardDelay / s.forwarded,
+				s.fires / seconds, s.hits / seconds, s.late, register );
+
+	} // end report
+
+
+	static int movementOf( String name ) {
+
+		if ( name.equalsIgnoreCase( "still" ) ) {
+			return STILL;
+		}
+		if ( name.equalsIgnoreCase( "line" ) ) {
+			return LINE;
+		}
+		if ( name.equalsIgnoreCase( "circle" ) ) {
+			return CIRCLE;
+		}
+
+		return RANDOM;
+
+	} // end movementOf
+
+
+	/**
+	 * One bot: a ship, its TCP connection and its datagram channel.
+	 */
+	protected static class Bot {
+
+		SocketChannel reliable;
+		DatagramChannel gamePlay;
+
+		// Address and port identifying the ship to the server
+		byte[] address;
+		int port;
+
+		SpaceCraft ship;
+		int sequence = 0;
+
+		// Times updates were sent, by sequence number, 0 once acknowledged
+		long[] sentAt = new long[ SENT_HISTORY ];
+
+		// Ticks until the next turn of a circling bot and time of the next torpedo
+		int ticks = 0;
+		long nextFire;
+
+		// Bytes read from the TCP connection and not handled yet, kept
+		// ready to be read from
+		ByteBuffer received = ByteBuffer.allocate( REMOVE_SIZE * 64 );
+
+
+		/*
+		 * Opens the channels of a bot and registers it with the server,
+		 * reading the world size and obstacles sent back.
+		 */
+		Bot( BotSwarm swarm ) throws IOException {
+
+			reliable = SocketChannel.open( swarm.server );
+			reliable.setOption( StandardSocketOptions.TCP_NODELAY, true );
+
+			InetAddress local = ( (InetSocketAddress) reliable.getLocalAddress() ).getAddress();
+
+			gamePlay = DatagramChannel.open();
+			gamePlay.setOption( StandardSocketOptions.SO_RCVBUF, 1 << 20 );
+			gamePlay.bind( new InetSocketAddress( local, 0 ) );
+			gamePlay.connect( swarm.server );
+
+			address = local.getAddress();
+			port = ( (InetSocketAddress) gamePlay.getLocalAddress() ).getPort();
+
+			ByteBuffer register = ByteBuffer.allocate( 8 );
+			register.put( address ).putInt( port ).flip();
+			write( register );
+
+			received.flip();
+			Constants.setWorldSize( readInt(), readInt() );
+
+			// Obstacles are not needed by a bot, only read past
+			while ( readInt() >= 0 ) {
+				readInt();
+			}
+
+			// Placed at random in the world the server uses
+			ship = new SpaceCraft( new InetSocketAddress( local, port ) );
+
+			reliable.configureBlocking( false );
+			gamePlay.configureBlocking( false );
+
+			nextFire = System.currentTimeMillis() + new Random().nextInt( Math.max( 1, swarm.firePeriod ) );
+
+		} // end Bot constructor
+
+
+		/*
+		 * Reads an int from the TCP connection while it is still blocking.
+		 * What is read after it stays in the buffer.
+		 */
+		int readInt() throws IOException {
+
+			while ( received.remaining() < 4 ) {
+
+				received.compact();
+
+				if ( reliable.read( received ) < 0 ) {
+					throw new IOException( "Server closed the connection" );
+				}
+
+				received.flip();
+			}
+
+			return received.getInt();
+
+		} // end readInt
+
+
+		/*
+		 * Writes a whole message to the TCP connection.
+		 */
+		void write( ByteBuffer message ) throws IOException {
+
+			while ( message.hasRemaining() ) {
+
+				if ( reliable.write( message ) == 0 ) {
+					Thread.yield();
+				}
+			}
+
+		} // end write
+
+
+		/*
+		 * Moves the ship one input tick in the way the bots move.
+		 */
+		void move( int movement, Random rand ) {
+
+			if ( movement == STILL ) {
+				return;
+			}
+
+			if ( movement == CIRCLE && ++ticks % 8 == 0 ) {
+				ship.rightTurn();
+			}
+
+			if ( movement == RANDOM ) {
+
+				int turn = rand.nextInt( 8 );
+
+				if ( turn == 0 ) {
+					ship.leftTurn();
+				}
+				else if ( turn == 1 ) {
+					ship.rightTurn();
+				}
+			}
+
+			// Turn around at the edge of the world
+			if ( !ship.moveAhead( Constants.INCREMENT ) ) {
+
+				for ( int i = 0; i < 4; i++ ) {
+					ship.rightTurn();
+				}
+			}
+
+		} // end move
+
+
+		/*
+		 * Writes an update of the ship into a buffer.
+		 */
+		void putUpdate( ByteBuffer out, int type ) {
+
+			out.clear();
+			out.put( address ).putInt( port ).putInt( type );
+			out.putInt( ship.getXPosition() ).putInt( ship.getYPosition() ).putInt( ship.getHeading() );
+			out.putLong( 0 ).putInt( sequence );
+			out.flip();
+
+		} // end putUpdate
+
+
+		void close() {
+
+			try {
+				reliable.close();
+				gamePlay.close();
+			} catch ( IOException e ) {
+				System.err.println( "Error closing bot channels." );
+			}
+
+		} // end close
+
+	} // end Bot class
+
+
+	/**
+	 * Thread running one selector over the channels of its bots. Every
+	 * input tick it moves its bots and sends their updates and torpedoes.
+	 */
+	protected class Loop extends Thread {
+
+		Selector selector;
+		volatile boolean running = true;
+
+		// Bots registered by the ramp and not yet joined
+		ConcurrentLinkedQueue<Bot> arriving = new ConcurrentLinkedQueue<Bot>();
+
+		ArrayList<Bot> bots = new ArrayList<Bot>();
+		Stats stats = new Stats();
+		Random rand = new Random();
+
+		ByteBuffer in = ByteBuffer.allocateDirect( Constants.PACKET_SIZE );
+		ByteBuffer out = ByteBuffer.allocateDirect( Constants.PACKET_SIZE );
+		ByteBuffer message = ByteBuffer.allocate( 20 );
+
+
+		Loop( int number ) throws IOException {
+
+			super( "bots-" + number );
+			selector = Selector.open();
+			setDaemon( true );
+
+		} // end Loop constructor
+
+
+		public void run() {
+
+			long nextTick = System.nanoTime();
+
+			try {
+
+				while ( running ) {
+
+					long wait = ( nextTick - System.nanoTime() ) / 1000000;
+
+					if ( wait > 0 ) {
+						selector.select( wait );
+					}
+					else {
+						selector.selectNow();
+					}
+
+					for ( SelectionKey key : selector.selectedKeys() ) {
+
+						Bot bot = (Bot) key.attachment();
+
+						if ( key.channel() == bot.gamePlay ) {
+							receiveUpdates( bot );
+						}
+						else {
+							receiveRemoves( bot );
+						}
+					}
+
+					selector.selectedKeys().clear();
+
+					joinArriving();
+
+					long now = System.nanoTime();
+
+					if ( now - nextTick >= 0 ) {
+
+						tick();
+
+						nextTick += inputTick * 1000000L;
+
+						// Ticks are skipped rather than sent in a burst
+						if ( now - nextTick > inputTick * 1000000L ) {
+
+							stats.late();
+							nextTick = now + inputTick * 1000000L;
+						}
+					}
+				}
+			} catch ( IOException e ) {
+				System.err.println( "Bot loop failed: " + e.getMessage() );
+			}
+
+			for ( Bot bot : bots ) {
+				exit( bot );
+			}
+
+		} // end run
+
+
+		/*
+		 * Joins the bots handed over by the ramp to the game.
+		 */
+		void joinArriving() throws IOException {
+
+			Bot bot;
+
+			while ( ( bot = arriving.poll() ) != null ) {
+
+				bot.gamePlay.register( selector, SelectionKey.OP_READ, bot );
+				bot.reliable.register( selector, SelectionKey.OP_READ, bot );
+				bots.add( bot );
+
+				send( bot, Constants.JOIN );
+			}
+
+		} // end joinArriving
+
+
+		/*
+		 * Moves every bot and sends its update, and fires the torpedoes
+		 * that are due.
+		 */
+		void tick() {
+
+			long millis = System.currentTimeMillis();
+
+			for ( Bot bot : bots ) {
+
+				bot.move( movement, rand );
+				send( bot, Constants.UPDATE_SHIP );
+
+				if ( firePeriod > 0 && millis >= bot.nextFire ) {
+
+					bot.nextFire = millis + firePeriod;
+					fire( bot );
+				}
+			}
+
+		} // end tick
+
+
+		void send( Bot bot, int type ) {
+
+			bot.sequence++;
+			bot.putUpdate( out, type );
+
+			try {
+
+				if ( bot.gamePlay.write( out ) > 0 ) {
+
+					bot.sentAt[ bot.sequence & ( SENT_HISTORY - 1 ) ] = System.nanoTime();
+					stats.sent();
+				}
+			} catch ( IOException e ) {
+				// Counted as lost, like a datagram dropped on the way
+			}
+
+		} // end send
+
+
+		void fire( Bot bot ) {
+
+			message.clear();
+			message.putInt( Constants.FIRED_TORPEDO ).putInt( bot.port );
+			message.putInt( bot.ship.getXPosition() ).putInt( bot.ship.getYPosition() ).putInt( bot.ship.getHeading() );
+			message.flip();
+
+			try {
+
+				bot.write( message );
+				stats.fired();
+
+			} catch ( IOException e ) {
+				System.err.println( "Error sending fired torpedo for bot " + bot.port );
+			}
+
+		} // end fire
+
+
+		/*
+		 * Handles every datagram waiting for a bot: acknowledgements of its
+		 * own updates and updates of others forwarded by the server.
+		 */
+		void receiveUpdates( Bot bot ) throws IOException {
+
+			while ( true ) {
+
+				in.clear();
+
+				if ( bot.gamePlay.read( in ) < Constants.PACKET_SIZE ) {
+					return;
+				}
+
+				int type = in.getInt( 8 );
+
+				if ( type == Constants.ACK && in.getInt( 4 ) == bot.port ) {
+
+					int slot = in.getInt( Constants.SEQUENCE_OFFSET ) & ( SENT_HISTORY - 1 );
+
+					if ( bot.sentAt[ slot ] != 0 ) {
+
+						stats.acknowledged( ( System.nanoTime() - bot.sentAt[ slot ] ) / 1000 );
+						bot.sentAt[ slot ] = 0;
+					}
+				}
+				else if ( type == Constants.JOIN || type == Constants.UPDATE_SHIP ) {
+
+					stats.forwarded( System.currentTimeMillis() - in.getLong( Constants.TIMESTAMP_OFFSET ) );
+				}
+			}
+
+		} // end receiveUpdates
+
+
+		/*
+		 * Handles the remove messages waiting on a bot's TCP connection.
+		 */
+		void receiveRemoves( Bot bot ) throws IOException {
+
+			ByteBuffer received = bot.received;
+			received.compact();
+
+			int read = bot.reliable.read( received );
+			received.flip();
+
+			if ( read < 0 ) {
+
+				bot.reliable.keyFor( selector ).cancel();
+				return;
+			}
+
+			while ( received.remaining() >= REMOVE_SIZE ) {
+
+				// Only the port tells the bot's own ship apart
+				received.position( received.position() + 4 );
+				int port = received.getInt();
+				int type = received.getInt();
+
+				if ( type == Constants.REMOVE_SHIP && port == bot.port ) {
+					stats.hit();
+				}
+			}
+
+		} // end receiveRemoves
+
+
+		/*
+		 * Tells the server a bot is leaving and closes its channels.
+		 */
+		void exit( Bot bot ) {
+
+			message.clear();
+			message.putInt( Constants.EXIT ).put( bot.address ).putInt( bot.port ).putInt( Constants.REMOVE_SHIP );
+			message.flip();
+
+			try {
+				bot.write( message );
+			} catch ( IOException e ) {
+				// The server is already gone
+			}
+
+			bot.close();
+
+		} // end exit
+
+	} // end Loop class
+
+
+	/**
+	 * Counts kept by one loop, taken and reset by the ramp at the end of
+	 * each step.
+	 */
+	public static class Stats {
+
+		long sent, acks, forwarded, forwardDelay, fires, hits, late;
+
+		// Round trip times in microseconds
+		Histogram rtt = new Histogram();
+
+		synchronized void sent() {
+
+			sent++;
+
+		} // end sent
+
+
+		synchronized void acknowledged( long micros ) {
+
+			acks++;
+			rtt.record( micros );
+
+		} // end acknowledged
+
+
+		synchronized void forwarded( long delayMillis ) {
+
+			forwarded++;
+			forwardDelay += Math.max( 0, delayMillis );
+
+		} // end forwarded
+
+
+		synchronized void fired() {
+
+			fires++;
+
+		} // end fired
+
+
+		synchronized void hit() {
+
+			hits++;
+
+		} // end hit
+
+
+		synchronized void late() {
+
+			late++;
+
+		} // end late
+
+
+		/*
+		 * Adds the counts to a total and resets them.
+		 */
+		synchronized void drainInto( Stats total ) {
+
+			total.sent += sent;
+			total.acks += acks;
+			total.forwarded += forwarded;
+			total.forwardDelay += forwardDelay;
+			total.fires += fires;
+			total.hits += hits;
+			total.late += late;
+			total.rtt.add( rtt );
+
+			sent = acks = forwarded = forwardDelay = fires = hits = late = 0;
+			rtt.clear();
+
+		} // end drainInto
+
+	} // end Stats class
+
+
+	/**
+	 * Histogram of values with buckets a power of two wide split into eight,
+	 * so a percentile is within an eighth of the true value.
+	 */
+	public static class Histogram {
+
+		protected static final int BUCKETS = StripedHistogram.BUCKETS;
+
+		protected long[] counts = new long[ BUCKETS ];
+		protected long total = 0;
+		protected long max = 0;
+
+
+		public void record( long value ) {
+
+			counts[ bucketOf( Math.max( 0, value ) ) ]++;
+			total++;
+			max = Math.max( max, value );
+
+		} // end record
+
+
+		public void add( Histogram other ) {
+
+			for ( int i = 0; i < BUCKETS; i++ ) {
+				counts[i] += other.counts[i];
+			}
+
+			total += other.total;
+			max = Math.max( max, other.max );
+
+		} // end add
+
+
+		public void clear() {
+
+			Arrays.fill( counts, 0 );
+			total = 0;
+			max = 0;
+
+		} // end clear
+
+
+		/**
+		 * @param fraction fraction of the values, such as 0.99
+		 * @return lower bound of the bucket holding that percentile, 0 if empty
+		 */
+		public long percentile( double fraction ) {
+
+			long rank = (long) Math.ceil( fraction * total );
+			long seen = 0;
+
+			for ( int i = 0; i < BUCKETS; i++ ) {
+
+				seen += counts[i];
+
+				if ( seen >= rank && seen > 0 ) {
+					return lowerBound( i );
+				}
+			}
+
+			return 0;
+
+		} // end percentile
+
+
+		public long getMax() {
+
+			return max;
+
+		} // end getMax
+
+
+		static int bucketOf( long value ) {
+
+			return StripedHistogram.bucketOf( value );
+
+		} // end bucketOf
+
+
+		static long lowerBound( int bucket ) {
+
+			return StripedHistogram.lowerBound( bucket );
+
+		} // end lowerBound
+
+	} // end Histogram class
+
+} // end BotSwarm class
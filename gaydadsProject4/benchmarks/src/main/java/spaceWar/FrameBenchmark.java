@@ -0,0 +1,144 @@
+package spaceWar;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+/**
+ * Renders synthetic sectors into an image without a display and reports
+ * the average time of each phase of a frame, as timed by the renderer's
+ * FrameProfiler, as the number of entities grows.
+ *
+ * Arguments are the ship counts to measure, 100 1000 10000 50000 by
+ * default. Each sector also holds a quarter as many torpedoes and half as
+ * many obstacles. The entities are spread over the whole world, whose
+ * size is taken from the spaceWar.worldSize property.
+ */
+public class FrameBenchmark {
+
+	// Number of frames timed for each entity count. Fits in the window of
+	// the profiler so that every one of them is counted.
+	static final int FRAMES = FrameProfiler.WINDOW;
+
+
+	public static void main( String[] args ) throws Exception {
+
+		System.setProperty( "java.awt.headless", "true" );
+
+		int worldSize = Integer.getInteger( "spaceWar.worldSize", Constants.MAX_SECTOR_X );
+		Constants.setWorldSize( worldSize, worldSize );
+
+		int[] counts = { 100, 1000, 10000, 50000 };
+
+		if ( args.length > 0 ) {
+
+			counts = new int[ args.length ];
+
+			for ( int i = 0; i < args.length; i++ ) {
+				counts[i] = Integer.parseInt( args[i] );
+			}
+		}
+
+		BufferedImage frame = new BufferedImage( Constants.MAX_SECTOR_X,
+				Constants.MAX_SECTOR_Y, BufferedImage.TYPE_INT_RGB );
+
+		System.out.printf( "world %dx%d, frame %dx%d, ms/frame%n", worldSize, worldSize,
+				frame.getWidth(), frame.getHeight() );
+
+		System.out.printf( "%8s", "ships" );
+
+		for ( int phase = 0; phase < FrameProfiler.PHASES; phase++ ) {
+			System.out.printf( " %10s", FrameProfiler.getPhaseName( phase ) );
+		}
+
+		System.out.printf( " %10s %10s%n", "total", "p95" );
+
+		for ( int count : counts ) {
+
+			SectorRenderer renderer = new SectorRenderer( createModel( count ) );
+			FrameProfiler profiler = renderer.getProfiler();
+
+			time( renderer, frame, FRAMES / 4 );
+			profiler.reset();
+			time( renderer, frame, FRAMES );
+
+			System.out.printf( "%8d", count );
+
+			for ( int phase = 0; phase < FrameProfiler.PHASES; phase++ ) {
+				System.out.printf( " %10.3f", profiler.getAverage( phase ) );
+			}
+
+			System.out.printf( " %10.3f %10.3f%n", profiler.getAverageFrame(),
+					profiler.getPercentile( 95 ) );
+		}
+
+	} // end main
+
+
+	/*
+	 * Creates a sector with alien ships, torpedoes and obstacles in random
+	 * positions.
+	 */
+	static SectorModel createModel( int ships ) {
+
+		Random rand = new Random( 1 );
+		SectorModel model = new SectorModel();
+		InetAddress local = InetAddress.getLoopbackAddress();
+		int width = Constants.getWorldWidth();
+		int height = Constants.getWorldHeight();
+
+		// Entities are added to the lists and chunks directly, so
+		// identities do not need to be unique
+		for ( int i = 0; i < ships; i++ ) {
+
+			InetSocketAddress id = new InetSocketAddress( local, i % 60000 + 1 );
+
+			AlienSpaceCraft ship = new AlienSpaceCraft( id, rand.nextInt( width ),
+					rand.nextInt( height ), rand.nextInt( 8 ) + 1 );
+
+			model.inSector.add( ship );
+			model.shipChunks.add( ship, ship.xPosition, ship.yPosition );
+		}
+
+		for ( int i = 0; i < ships / 4; i++ ) {
+
+			InetSocketAddress id = new InetSocketAddress( local, i % 60000 + 1 );
+
+			Torpedo torp = new Torpedo( id, rand.nextInt( width ),
+					rand.nextInt( height ), rand.nextInt( 8 ) + 1 );
+
+			model.torpedoes.add( torp );
+			model.torpedoChunks.add( torp, torp.xPosition, torp.yPosition );
+		}
+
+		for ( int i = 0; i < ships / 2; i++ ) {
+
+			model.addObstacle( rand.nextInt( width ), rand.nextInt( height ) );
+		}
+
+		return model;
+
+	} // end createModel
+
+
+	/*
+	 * Renders a number of frames, timing each one.
+	 */
+	static void time( SectorRenderer renderer, BufferedImage frame, int frames ) {
+
+		FrameProfiler profiler = renderer.getProfiler();
+		Graphics g = frame.getGraphics();
+
+		for ( int i = 0; i < frames; i++ ) {
+
+			profiler.beginFrame();
+			renderer.render( g, frame.getWidth(), frame.getHeight() );
+			profiler.endFrame();
+		}
+
+		g.dispose();
+
+	} // end time
+
+} // end FrameBenchmark class
@@ -0,0 +1,165 @@
+package spaceWar;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Measures how fast events can be appended to an EventJournal and how
+ * long it takes to rebuild a sector from a snapshot and the journal
+ * written after it. The journals are written to a temporary directory
+ * that is deleted afterwards.
+ *
+ * Arguments are the number of events appended, 2000000 by default, the
+ * number of threads appending them, 2 by default, the number of ships in
+ * the recovered sector, 1000 by default, and the number of events
+ * replayed on top of its snapshot, 200000 by default.
+ */
+public class JournalBenchmark {
+
+	public static void main( String[] args ) throws Exception {
+
+		int events = args.length > 0 ? Integer.parseInt( args[0] ) : 2000000;
+		int threads = args.length > 1 ? Integer.parseInt( args[1] ) : 2;
+		int ships = args.length > 2 ? Integer.parseInt( args[2] ) : 1000;
+		int tail = args.length > 3 ? Integer.parseInt( args[3] ) : 200000;
+
+		File directory = Files.createTempDirectory( "journal" ).toFile();
+
+		try {
+
+			appendThroughput( new File( directory, "append" ), events, threads );
+			recoveryTime( new File( directory, "recover" ), ships, tail );
+		}
+		finally {
+			delete( directory );
+		}
+
+	} // end main
+
+
+	/*
+	 * Appends events from a number of threads at once and reports the rate.
+	 */
+	static void appendThroughput( File directory, int events, int threads ) throws Exception {
+
+		final EventJournal journal = new EventJournal( directory );
+		final int each = events / threads;
+
+		// Warm up the append path before timing it
+		for ( int i = 0; i < 100000; i++ ) {
+			journal.append( EventJournal.SHIP, 0x7F000001, i, i, i, 1 );
+		}
+
+		Thread[] appenders = new Thread[ threads ];
+
+		for ( int t = 0; t < threads; t++ ) {
+
+			final int port = 10000 + t;
+
+			appenders[t] = new Thread() {
+
+				public void run() {
+
+					for ( int i = 0; i < each; i++ ) {
+						journal.append( EventJournal.SHIP, 0x7F000001, port, i & 0xFFFF, i >>> 16, ( i & 7 ) + 1 );
+					}
+
+				} // end run
+			};
+		}
+
+		long start = System.nanoTime();
+
+		for ( Thread t : appenders ) {
+			t.start();
+		}
+
+		for ( Thread t : appenders ) {
+			t.join();
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		long closeStart = System.nanoTime();
+		journal.close();
+		long closed = System.nanoTime() - closeStart;
+
+		long appended = (long) each * threads;
+
+		System.out.printf( "append: %d events from %d threads in %.1f ms, %.2f M events/s, %.0f ns/event%n",
+				appended, threads, elapsed / 1e6, appended * 1e3 / elapsed, (double) elapsed / appended );
+		System.out.printf( "force on close: %.1f ms, %d segments%n", closed / 1e6,
+				EventJournal.segmentNumbers( directory ).length );
+
+	} // end appendThroughput
+
+
+	/*
+	 * Writes a snapshot of a sector and a journal tail after it, then
+	 * times rebuilding the sector from them.
+	 */
+	static void recoveryTime( File directory, int ships, int tail ) throws Exception {
+
+		Random rand = new Random( 1 );
+		InetAddress local = InetAddress.getLoopbackAddress();
+		SectorModel model = new SectorModel();
+		EventJournal journal = new EventJournal( directory );
+
+		for ( int i = 0; i < Constants.NUMBER_OF_OBSTACLES; i++ ) {
+			model.addObstacle( rand.nextInt( Constants.getWorldWidth() ), rand.nextInt( Constants.getWorldHeight() ) );
+		}
+
+		for ( int i = 0; i < ships; i++ ) {
+
+			model.updateOrAddSpaceCraft( new InetSocketAddress( local, i + 1 ),
+					rand.nextInt( Constants.getWorldWidth() ), rand.nextInt( Constants.getWorldHeight() ), 1 );
+		}
+
+		SectorSnapshot.write( model, journal.getPosition(), directory );
+
+		// Moves of the ships after the snapshot
+		for ( int i = 0; i < tail; i++ ) {
+
+			journal.append( EventJournal.SHIP, 0x7F000001, i % ships + 1,
+					rand.nextInt( Constants.getWorldWidth() ), rand.nextInt( Constants.getWorldHeight() ), i % 8 + 1 );
+		}
+
+		journal.close();
+
+		long start = System.nanoTime();
+
+		SectorModel recovered = new SectorModel();
+		long replayed = EventJournal.recover( directory, recovered );
+		long end = System.nanoTime();
+
+		System.out.printf( "recover: %d ships and %d obstacles from a snapshot and %d events in %.1f ms%n",
+				recovered.getSpaceCrafts().size(), recovered.getObstacles().size(), replayed,
+				( end - start ) / 1e6 );
+
+	} // end recoveryTime
+
+
+	/*
+	 * Deletes a directory and everything in it.
+	 */
+	static void delete( File file ) throws IOException {
+
+		File[] children = file.listFiles();
+
+		if ( children != null ) {
+
+			for ( File child : children ) {
+				delete( child );
+			}
+		}
+
+		if ( !file.delete() ) {
+			System.err.println( "Could not delete " + file );
+		}
+
+	} // end delete
+
+} // end JournalBenchmark class
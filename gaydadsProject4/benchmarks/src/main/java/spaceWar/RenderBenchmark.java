@@ -0,0 +1,113 @@
+package spaceWar;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+/**
+ * Measures the time to render one frame of a sector into a BufferedImage,
+ * with the stars and obstacles drawn into every frame and with them taken
+ * from the cached background layer. Runs without a display.
+ *
+ * Arguments are the number of obstacles, 100000 by default, and the number
+ * of frames to time, 200 by default.
+ */
+public class RenderBenchmark {
+
+	// Ships and torpedoes drawn in every frame
+	static final int SHIPS = 50;
+	static final int TORPEDOES = 50;
+
+
+	public static void main( String[] args ) throws Exception {
+
+		System.setProperty( "java.awt.headless", "true" );
+
+		int obstacleCount = ( args.length > 0 ) ? Integer.parseInt( args[0] ) : 100000;
+		int frames = ( args.length > 1 ) ? Integer.parseInt( args[1] ) : 200;
+
+		Random rand = new Random( 1 );
+		SectorModel model = new SectorModel();
+
+		for ( int i = 0; i < obstacleCount; i++ ) {
+
+			model.addObstacle( rand.nextInt( Constants.MAX_SECTOR_X ),
+							   rand.nextInt( Constants.MAX_SECTOR_Y ) );
+		}
+
+		InetAddress local = InetAddress.getLoopbackAddress();
+
+		for ( int i = 0; i < SHIPS; i++ ) {
+
+			model.updateOrAddSpaceCraft( new AlienSpaceCraft( new InetSocketAddress( local, i + 1 ),
+					rand.nextInt( Constants.MAX_SECTOR_X ), rand.nextInt( Constants.MAX_SECTOR_Y ),
+					rand.nextInt( 8 ) + 1 ) );
+		}
+
+		for ( int i = 0; i < TORPEDOES; i++ ) {
+
+			model.updateOrAddTorpedo( new InetSocketAddress( local, SHIPS + i + 1 ),
+					rand.nextInt( Constants.MAX_SECTOR_X ), rand.nextInt( Constants.MAX_SECTOR_Y ),
+					rand.nextInt( 8 ) + 1 );
+		}
+
+		BufferedImage frame = new BufferedImage( Constants.MAX_SECTOR_X,
+				Constants.MAX_SECTOR_Y, BufferedImage.TYPE_INT_RGB );
+
+		SectorRenderer renderer = new SectorRenderer( model );
+
+		System.out.println( "Obstacles: " + obstacleCount + "  frame: "
+				+ Constants.MAX_SECTOR_X + "x" + Constants.MAX_SECTOR_Y );
+
+		// Frames are timed after rendering a tenth as many to warm up
+		renderer.setBackgroundCached( false );
+		time( renderer, frame, Math.max( 1, frames / 10 ) );
+		report( "redrawn every frame", time( renderer, frame, frames ) );
+
+		renderer.setBackgroundCached( true );
+
+		long start = System.nanoTime();
+		time( renderer, frame, 1 );
+		System.out.printf( "  building the background layer: %.2f ms%n",
+				( System.nanoTime() - start ) / 1e6 );
+
+		time( renderer, frame, Math.max( 1, frames / 10 ) );
+		report( "cached background", time( renderer, frame, frames ) );
+
+	} // end main
+
+
+	/*
+	 * Renders a number of frames and returns the average time per frame
+	 * in nanoseconds.
+	 */
+	static double time( SectorRenderer renderer, BufferedImage frame, int frames ) {
+
+		Graphics g = frame.getGraphics();
+
+		long start = System.nanoTime();
+
+		for ( int i = 0; i < frames; i++ ) {
+			renderer.render( g, frame.getWidth(), frame.getHeight() );
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		g.dispose();
+
+		return (double) elapsed / frames;
+
+	} // end time
+
+
+	/*
+	 * Prints the time per frame.
+	 */
+	static void report( String name, double perFrame ) {
+
+		System.out.printf( "  %-22s %10.3f ms/frame%n", name + ":", perFrame / 1e6 );
+
+	} // end report
+
+} // end RenderBenchmark class
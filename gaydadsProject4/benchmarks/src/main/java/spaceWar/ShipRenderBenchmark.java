@@ -0,0 +1,117 @@
+package spaceWar;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+/**
+ * Measures the time to render one frame of a sector as the number of
+ * ships grows, with every ship drawn by its own draw method and with it
+ * copied from the sprite atlas. Runs without a display.
+ *
+ * Arguments are the ship counts to measure, 100 1000 10000 50000 by
+ * default. Ships are spread over the whole world, so setting the
+ * spaceWar.worldSize property to more than the frame size shows the cost
+ * of a frame when only some of them are in view.
+ */
+public class ShipRenderBenchmark {
+
+	// Number of frames timed for each ship count
+	static final int FRAMES = 100;
+
+
+	public static void main( String[] args ) throws Exception {
+
+		System.setProperty( "java.awt.headless", "true" );
+
+		int worldSize = Integer.getInteger( "spaceWar.worldSize", Constants.MAX_SECTOR_X );
+		Constants.setWorldSize( worldSize, worldSize );
+
+		int[] counts = { 100, 1000, 10000, 50000 };
+
+		if ( args.length > 0 ) {
+
+			counts = new int[ args.length ];
+
+			for ( int i = 0; i < args.length; i++ ) {
+				counts[i] = Integer.parseInt( args[i] );
+			}
+		}
+
+		BufferedImage frame = new BufferedImage( Constants.MAX_SECTOR_X,
+				Constants.MAX_SECTOR_Y, BufferedImage.TYPE_INT_RGB );
+
+		System.out.printf( "%10s %16s %16s%n", "ships", "draw ms/frame", "sprite ms/frame" );
+
+		for ( int count : counts ) {
+
+			SectorRenderer renderer = new SectorRenderer( createModel( count ) );
+
+			renderer.setSpritesEnabled( false );
+			double drawn = time( renderer, frame );
+
+			renderer.setSpritesEnabled( true );
+			double sprites = time( renderer, frame );
+
+			System.out.printf( "%10d %16.3f %16.3f%n", count, drawn / 1e6, sprites / 1e6 );
+		}
+
+	} // end main
+
+
+	/*
+	 * Creates a sector with alien ships in random positions and headings.
+	 */
+	static SectorModel createModel( int ships ) {
+
+		Random rand = new Random( 1 );
+		SectorModel model = new SectorModel();
+		InetAddress local = InetAddress.getLoopbackAddress();
+
+		for ( int i = 0; i < ships; i++ ) {
+
+			// Ships are added to the list and chunks directly, so
+			// identities do not need to be unique
+			InetSocketAddress id = new InetSocketAddress( local, i % 60000 + 1 );
+
+			AlienSpaceCraft ship = new AlienSpaceCraft( id,
+					rand.nextInt( Constants.getWorldWidth() ), rand.nextInt( Constants.getWorldHeight() ),
+					rand.nextInt( 8 ) + 1 );
+
+			model.inSector.add( ship );
+			model.shipChunks.add( ship, ship.xPosition, ship.yPosition );
+		}
+
+		return model;
+
+	} // end createModel
+
+
+	/*
+	 * Renders FRAMES frames after a warm up and returns the average time
+	 * per frame in nanoseconds.
+	 */
+	static double time( SectorRenderer renderer, BufferedImage frame ) {
+
+		Graphics g = frame.getGraphics();
+
+		for ( int i = 0; i < FRAMES / 10; i++ ) {
+			renderer.render( g, frame.getWidth(), frame.getHeight() );
+		}
+
+		long start = System.nanoTime();
+
+		for ( int i = 0; i < FRAMES; i++ ) {
+			renderer.render( g, frame.getWidth(), frame.getHeight() );
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		g.dispose();
+
+		return (double) elapsed / FRAMES;
+
+	} // end time
+
+} // end ShipRenderBenchmark class
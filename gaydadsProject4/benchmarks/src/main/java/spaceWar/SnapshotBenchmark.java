@@ -0,0 +1,171 @@
+package spaceWar;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Measures writing a SectorSnapshot of a large sector and restoring a
+ * sector from it, as a restarted server does: the obstacles and tick
+ * first, then the ships and torpedoes in the background. While the
+ * snapshot is written and while the ships and torpedoes are restored
+ * another thread keeps taking the lock on the sector, as the game does,
+ * and the longest it had to wait is reported. The snapshot is
+ * written to a temporary directory that is deleted afterwards.
+ *
+ * Arguments are the number of ships, 200000 by default, the number of
+ * torpedoes, 50000 by default, and the number of obstacles, 10000 by
+ * default.
+ */
+public class SnapshotBenchmark {
+
+	public static void main( String[] args ) throws Exception {
+
+		int ships = args.length > 0 ? Integer.parseInt( args[0] ) : 200000;
+		int torpedoes = args.length > 1 ? Integer.parseInt( args[1] ) : 50000;
+		int obstacles = args.length > 2 ? Integer.parseInt( args[2] ) : 10000;
+
+		final SectorModel model = build( ships, torpedoes, obstacles );
+		File directory = Files.createTempDirectory( "snapshot" ).toFile();
+
+		try {
+
+			// Warm up the write and restore paths before timing them
+			for ( int i = 0; i < 3; i++ ) {
+
+				SectorSnapshot.write( model, 0, directory );
+				SectorSnapshot.map( directory ).restore( new SectorModel() );
+			}
+
+			LockProbe game = new LockProbe( model );
+			game.start();
+
+			long start = System.nanoTime();
+			long size = SectorSnapshot.write( model, 0, directory );
+			long written = System.nanoTime() - start;
+
+			System.out.printf( "write: %d ships, %d torpedoes and %d obstacles, %d bytes in %.1f ms, "
+					+ "longest wait for the sector %.2f ms%n", ships, torpedoes, obstacles, size,
+					written / 1e6, game.finish() / 1e6 );
+
+			// A restarted server serves players once the obstacles and tick
+			// are restored
+			start = System.nanoTime();
+			SectorSnapshot snapshot = SectorSnapshot.map( directory );
+			SectorModel restored = new SectorModel();
+			snapshot.restoreObstacles( restored );
+			restored.setTick( snapshot.getTick() );
+			long ready = System.nanoTime() - start;
+
+			game = new LockProbe( restored );
+			game.start();
+
+			start = System.nanoTime();
+			restored.startRestore( snapshot.getShipCount(), snapshot.getTorpedoCount() );
+			snapshot.restoreCrafts( restored );
+			restored.finishRestore();
+			long background = System.nanoTime() - start;
+
+			System.out.printf( "restore: %d obstacles at tick %d ready in %.2f ms, then %d ships and %d torpedoes "
+					+ "in the background in %.1f ms, longest wait for the sector %.2f ms%n",
+					restored.getObstacles().size(), restored.getTick(), ready / 1e6,
+					restored.getSpaceCrafts().size(), restored.getTorpedoes().size(), background / 1e6,
+					game.finish() / 1e6 );
+		}
+		finally {
+			JournalBenchmark.delete( directory );
+		}
+
+	} // end main
+
+
+	/*
+	 * Fills a sector with ships, torpedoes and obstacles at random. Each
+	 * ship and torpedo has its own address and port on the loopback net.
+	 */
+	static SectorModel build( int ships, int torpedoes, int obstacles ) throws Exception {
+
+		Random rand = new Random( 1 );
+		SectorModel model = new SectorModel();
+
+		for ( int i = 0; i < obstacles; i++ ) {
+			model.addObstacle( rand.nextInt( Constants.getWorldWidth() ), rand.nextInt( Constants.getWorldHeight() ) );
+		}
+
+		for ( int i = 0; i < ships; i++ ) {
+
+			model.addSpaceCraft( new SpaceCraft( id( i ),
+					rand.nextInt( Constants.getWorldWidth() ), rand.nextInt( Constants.getWorldHeight() ),
+					rand.nextInt( 8 ) + 1 ) );
+		}
+
+		for ( int i = 0; i < torpedoes; i++ ) {
+
+			model.addTorpedo( new Torpedo( id( i ),
+					rand.nextInt( Constants.getWorldWidth() ), rand.nextInt( Constants.getWorldHeight() ),
+					rand.nextInt( 8 ) + 1 ) );
+		}
+
+		model.setTick( 123456789L );
+
+		return model;
+
+	} // end build
+
+
+	static InetSocketAddress id( int i ) throws Exception {
+
+		return EntityTable.addressOf( EntityTable.keyOf( 0x7F000000 + i / 65535, i % 65535 + 1 ) );
+
+	} // end id
+
+
+
+	/*
+	 * Keeps taking the lock on a sector, as the game does, and remembers
+	 * the longest it had to wait for it.
+	 */
+	static class LockProbe extends Thread {
+
+		SectorModel model;
+		volatile boolean running = true;
+		long longestWait = 0;
+
+		LockProbe( SectorModel model ) {
+
+			this.model = model;
+
+		} // end LockProbe constructor
+
+
+		public void run() {
+
+			while ( running ) {
+
+				long start = System.nanoTime();
+
+				synchronized ( model ) {
+					longestWait = Math.max( longestWait, System.nanoTime() - start );
+				}
+
+				Thread.yield();
+			}
+
+		} // end run
+
+
+		/*
+		 * Stops the probe and returns the longest wait in nanoseconds.
+		 */
+		long finish() throws InterruptedException {
+
+			running = false;
+			join();
+
+			return longestWait;
+
+		} // end finish
+
+	} // end LockProbe class
+
+} // end SnapshotBenchmark class
@@ -0,0 +1,187 @@
+package spaceWar.benchmarks;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceWar.CollisionKernel;
+import spaceWar.Constants;
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+
+/**
+ * Measures checking a ship for collisions with the other ships of a
+ * sector and checking the way ahead of it for obstacles. Each check is
+ * made for the next ship of the sector in turn, by a copy of it, so a
+ * check never finds the ship itself and never changes the sector.
+ *
+ * The scan benchmarks compare the loop collisionCheck used before the
+ * CollisionKernel, which calls the getters of every ship and takes a
+ * square root, with the kernel over the same list of all the ships,
+ * with and without packing the list first. They do not use the chunk
+ * grid, so they measure the inner loop alone. scanVectorPacked runs in a
+ * JVM with the jdk.incubator.vector module, so needs Java 17, and uses
+ * the Vector API kernel.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CollisionBenchmark {
+
+	@Param( { "100", "1000", "10000" } )
+	public int entities;
+
+	@Param( { Layout.SPREAD, Layout.PACKED, Layout.CLUSTERS } )
+	public String layout;
+
+	SectorModel sector;
+	SpaceCraft[] movers;
+	int next = 0;
+
+	// All the ships, and the same ships packed, for the scans
+	ArrayList<SpaceCraft> ships;
+	CollisionKernel kernel = new CollisionKernel();
+	CollisionKernel vectorKernel = CollisionKernel.create();
+
+
+	@Setup( Level.Trial )
+	public void build() {
+
+		Layout.sizeWorld( entities );
+		sector = Layout.sector( layout, entities, 0, entities );
+		movers = Layout.copies( sector );
+		ships = new ArrayList<SpaceCraft>( Arrays.asList( Layout.copies( sector ) ) );
+		kernel.load( ships );
+		vectorKernel.load( ships );
+
+	} // end build
+
+
+	@Benchmark
+	public ArrayList<SpaceCraft> collisionCheck() {
+
+		return sector.collisionCheck( nextMover() );
+
+	} // end collisionCheck
+
+
+	@Benchmark
+	public boolean obstacleClear() {
+
+		return sector.obstacleClear( nextMover(), true );
+
+	} // end obstacleClear
+
+
+	/**
+	 * The loop collisionCheck used before the kernel: the first other
+	 * ship within OBJECT_WIDTH, by its getters and a square root.
+	 */
+	@Benchmark
+	public int scanLoop() {
+
+		SpaceCraft mover = nextMover();
+
+		for ( int i = 0; i < ships.size(); i++ ) {
+
+			SpaceCraft target = ships.get( i );
+
+			double diffX = target.getXPosition() - mover.getXPosition();
+			double diffY = target.getYPosition() - mover.getYPosition();
+
+			if ( !target.equals( mover )
+					&& Math.sqrt( diffX * diffX + diffY * diffY ) <= Constants.OBJECT_WIDTH ) {
+
+				return i;
+			}
+		}
+
+		return -1;
+
+	} // end scanLoop
+
+
+	/**
+	 * The same search with the kernel, packing the ships first as
+	 * collisionCheck does for the ships it is given.
+	 */
+	@Benchmark
+	public int scanKernel() {
+
+		kernel.load( ships );
+
+		return scanPacked( kernel, nextMover() );
+
+	} // end scanKernel
+
+
+	/**
+	 * The same search with the kernel over ships packed once, as
+	 * updateTorpedoes does for all its torpedoes.
+	 */
+	@Benchmark
+	public int scanKernelPacked() {
+
+		return scanPacked( kernel, nextMover() );
+
+	} // end scanKernelPacked
+
+
+	/**
+	 * The same search with the Vector API kernel over ships packed once.
+	 */
+	@Benchmark
+	@Fork( value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector" )
+	public int scanVectorPacked() {
+
+		if ( vectorKernel.getClass() == CollisionKernel.class ) {
+			throw new IllegalStateException( "The Vector API kernel is not available." );
+		}
+
+		return scanPacked( vectorKernel, nextMover() );
+
+	} // end scanVectorPacked
+
+
+	int scanPacked( CollisionKernel kernel, SpaceCraft mover ) {
+
+		int x = mover.getXPosition();
+		int y = mover.getYPosition();
+
+		int index = kernel.nextWithin( x, y, Constants.OBJECT_WIDTH, 0 );
+
+		while ( index >= 0 && ships.get( index ).equals( mover ) ) {
+			index = kernel.nextWithin( x, y, Constants.OBJECT_WIDTH, index + 1 );
+		}
+
+		return index;
+
+	} // end scanPacked
+
+
+	SpaceCraft nextMover() {
+
+		if ( ++next == movers.length ) {
+			next = 0;
+		}
+
+		return movers[ next ];
+
+	} // end nextMover
+
+} // end CollisionBenchmark class
@@ -0,0 +1,229 @@
+package spaceWar.benchmarks;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceWar.ClientPredictor;
+import spaceWar.Constants;
+import spaceWar.EntityInterpolator;
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+import spaceWar.Torpedo;
+import spaceWar.UpdateDecoder;
+
+/**
+ * Measures building and handling the update datagrams of the game:
+ * <ul>
+ * <li>serverHandlePacket: BestEffortServer.handlePacket with a ship
+ * update, which is decoded, checked, applied to the sector, forwarded to
+ * one other client and acknowledged.</li>
+ * <li>serverSendTorpedoUpdate: SpaceGameServer.sendTorpedoUpdate, which
+ * builds a torpedo update and sends it to one client.</li>
+ * <li>clientSendPacket: SpaceGameClient.sendPacket, which builds a ship
+ * update and sends it over loopback. clientSendBaseline sends the same
+ * update already built, so the difference is the cost of building it.</li>
+ * <li>clientHandlePacket: the UpdateDecoder the client hands each update
+ * to, applying updates for each of the ships of a sector in turn.</li>
+ * </ul>
+ * The server sends through a socket that drops what it is given, so its
+ * numbers do not include the network. The server and client cost grows
+ * with the ships in the sector, which is the parameter.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "-DspaceWar.port=0" )
+public class DatagramBenchmark {
+
+	// Offset of the x position in an update
+	static final int X_OFFSET = 12;
+
+	@Param( { "10", "100", "1000" } )
+	public int ships;
+
+	// Server side
+	Object server;
+	Object bestEffort;
+	GameClasses.DiscardSocket socket;
+	SpaceCraft mover;
+	DatagramPacket update;
+	ByteBuffer updateView;
+	Torpedo torpedo;
+	int home;
+	int sequence = 0;
+	boolean away = false;
+
+	// Client side
+	Object client;
+	DatagramChannel channel;
+	DatagramChannel sink;
+	InetSocketAddress sinkAddress;
+	ByteBuffer built;
+	InetAddress serverAddress;
+	UpdateDecoder decoder;
+	ByteBuffer[] received;
+	long serverTime;
+	int next = 0;
+
+
+	@Setup( Level.Trial )
+	public void build() throws IOException {
+
+		Layout.sizeWorld( ships );
+
+		SectorModel sector = Layout.sector( Layout.SPREAD, ships, 0, 0 );
+		socket = new GameClasses.DiscardSocket();
+		server = GameClasses.newServer( sector );
+		bestEffort = GameClasses.newBestEffortServer( server, socket );
+		GameClasses.addClient( server, Layout.id( ships ) );
+
+		// Updates come from the client of the first ship
+		mover = sector.getSpaceCrafts().get( 0 );
+		home = mover.getXPosition();
+		updateView = ByteBuffer.allocate( Constants.PACKET_SIZE );
+		encode( updateView, mover, Constants.UPDATE_SHIP, 0, 0 );
+		update = new DatagramPacket( updateView.array(), Constants.PACKET_SIZE );
+		update.setAddress( mover.ID.getAddress() );
+
+		torpedo = new Torpedo( mover.ID, mover.getXPosition(), mover.getYPosition(), mover.getHeading() );
+
+		// The client sends to a channel that is never read, so the
+		// datagrams are dropped once its buffer is full
+		channel = DatagramChannel.open().bind( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ) );
+		sink = DatagramChannel.open().bind( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ) );
+
+		SectorModel model = new SectorModel( (InetSocketAddress) channel.getLocalAddress() );
+		model.createOwnSpaceCraft();
+		sinkAddress = (InetSocketAddress) sink.getLocalAddress();
+		client = GameClasses.newClient( model, channel, sinkAddress );
+
+		built = ByteBuffer.allocate( Constants.PACKET_SIZE );
+		encode( built, model.ownShip, Constants.UPDATE_SHIP, 0, 0 );
+
+		// Updates for every ship of the sector as the client receives
+		// them, handled once so that the ships are known
+		serverAddress = InetAddress.getLoopbackAddress();
+		decoder = new UpdateDecoder( new SectorModel( model.ownShip.ID ), new EntityInterpolator(),
+				new ClientPredictor(), model.ownShip.ID.getPort() );
+
+		SpaceCraft[] others = Layout.copies( sector );
+		received = new ByteBuffer[ others.length ];
+		serverTime = System.currentTimeMillis();
+
+		for ( int i = 0; i < others.length; i++ ) {
+
+			received[i] = ByteBuffer.allocate( Constants.PACKET_SIZE );
+			encode( received[i], others[i], Constants.UPDATE_SHIP, serverTime, 0 );
+			decoder.handle( received[i], serverAddress );
+		}
+
+	} // end build
+
+
+	@TearDown( Level.Trial )
+	public void close() throws IOException {
+
+		socket.close();
+		channel.close();
+		sink.close();
+
+	} // end close
+
+
+	@Benchmark
+	public void serverHandlePacket() {
+
+		// Each update moves the ship one increment back or forth, which the
+		// server accepts as one input
+		away = !away;
+		updateView.putInt( X_OFFSET, home + ( away ? Constants.INCREMENT : 0 ) );
+		updateView.putInt( Constants.SEQUENCE_OFFSET, ++sequence );
+		update.setLength( Constants.PACKET_SIZE );
+
+		GameClasses.handlePacket( bestEffort, update );
+
+	} // end serverHandlePacket
+
+
+	@Benchmark
+	public void serverSendTorpedoUpdate() {
+
+		GameClasses.sendTorpedoUpdate( server, torpedo, socket );
+
+	} // end serverSendTorpedoUpdate
+
+
+	@Benchmark
+	public void clientSendPacket() {
+
+		GameClasses.sendPacket( client, Constants.UPDATE_SHIP, ++sequence );
+
+	} // end clientSendPacket
+
+
+	@Benchmark
+	public int clientSendBaseline() throws IOException {
+
+		built.rewind();
+
+		return channel.send( built, sinkAddress );
+
+	} // end clientSendBaseline
+
+
+	@Benchmark
+	public void clientHandlePacket() {
+
+		if ( ++next == received.length ) {
+
+			next = 0;
+			serverTime++;
+		}
+
+		ByteBuffer update = received[ next ];
+		update.putLong( Constants.TIMESTAMP_OFFSET, serverTime );
+
+		decoder.handle( update, serverAddress );
+
+	} // end clientHandlePacket
+
+
+	/*
+	 * Writes an update for a ship as the client and server send it.
+	 */
+	static void encode( ByteBuffer buffer, SpaceCraft sc, int type, long time, int sequence ) {
+
+		buffer.clear();
+		buffer.put( sc.ID.getAddress().getAddress() );
+		buffer.putInt( sc.ID.getPort() );
+		buffer.putInt( type );
+		buffer.putInt( sc.getXPosition() );
+		buffer.putInt( sc.getYPosition() );
+		buffer.putInt( sc.getHeading() );
+		buffer.putLong( time );
+		buffer.putInt( sequence );
+		buffer.flip();
+
+	} // end encode
+
+} // end DatagramBenchmark class
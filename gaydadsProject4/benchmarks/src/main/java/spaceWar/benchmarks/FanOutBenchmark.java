@@ -0,0 +1,182 @@
+package spaceWar.benchmarks;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceWar.Constants;
+import spaceWar.SectorModel;
+
+/**
+ * Measures the server forwarding an update to its clients over loopback
+ * as the number of clients grows. Each client is a DatagramChannel of
+ * its own.
+ * <ul>
+ * <li>selectiveForward and allForward: forwards per second, with the
+ * datagrams sent per second reported as sends. Clients do not read
+ * what is sent to them, so the cost is the server's alone.</li>
+ * <li>allForwardDelivered: the time from the start of a forward until
+ * every client has received the update, as a distribution.</li>
+ * </ul>
+ */
+@State( Scope.Thread )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "-DspaceWar.port=0" )
+public class FanOutBenchmark {
+
+	@Param( { "1", "10", "100", "1000" } )
+	public int clients;
+
+	// Time in milliseconds to wait for a client that has not received
+	// an update, which loopback can drop
+	static final int DELIVERY_TIMEOUT = 1000;
+
+	Object server;
+	DatagramSocket socket;
+	DatagramChannel[] receivers;
+	InetSocketAddress sender;
+	Selector selector;
+	DatagramPacket packet;
+	ByteBuffer receiveBuffer = ByteBuffer.allocate( Constants.PACKET_SIZE );
+
+
+	/**
+	 * Datagrams sent, reported per second.
+	 */
+	@State( Scope.Thread )
+	@AuxCounters( AuxCounters.Type.OPERATIONS )
+	public static class Sends {
+
+		public long sends;
+
+		@Setup( Level.Iteration )
+		public void clear() {
+
+			sends = 0;
+
+		} // end clear
+
+	} // end Sends class
+
+
+	@Setup( Level.Trial )
+	public void build() throws IOException {
+
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+
+		server = GameClasses.newServer( new SectorModel() );
+		socket = new DatagramSocket( new InetSocketAddress( loopback, 0 ) );
+		selector = Selector.open();
+		receivers = new DatagramChannel[ clients ];
+
+		for ( int i = 0; i < clients; i++ ) {
+
+			receivers[i] = DatagramChannel.open().bind( new InetSocketAddress( loopback, 0 ) );
+			receivers[i].configureBlocking( false );
+			receivers[i].register( selector, SelectionKey.OP_READ );
+
+			GameClasses.addClient( server, (InetSocketAddress) receivers[i].getLocalAddress() );
+		}
+
+		// The update is from the first client, which selectiveForward skips
+		sender = (InetSocketAddress) receivers[0].getLocalAddress();
+
+		ByteBuffer update = ByteBuffer.allocate( Constants.PACKET_SIZE );
+		update.put( sender.getAddress().getAddress() );
+		update.putInt( sender.getPort() );
+		update.putInt( Constants.UPDATE_SHIP );
+
+		packet = new DatagramPacket( update.array(), Constants.PACKET_SIZE );
+
+	} // end build
+
+
+	@TearDown( Level.Trial )
+	public void close() throws IOException {
+
+		for ( DatagramChannel receiver : receivers ) {
+			receiver.close();
+		}
+
+		selector.close();
+		socket.close();
+
+	} // end close
+
+
+	@Benchmark
+	@BenchmarkMode( Mode.Throughput )
+	@OutputTimeUnit( TimeUnit.SECONDS )
+	public void selectiveForward( Sends sends ) {
+
+		GameClasses.selectiveForward( server, packet, sender, socket );
+		sends.sends += clients - 1;
+
+	} // end selectiveForward
+
+
+	@Benchmark
+	@BenchmarkMode( Mode.Throughput )
+	@OutputTimeUnit( TimeUnit.SECONDS )
+	public void allForward( Sends sends ) {
+
+		GameClasses.allForward( server, packet, socket );
+		sends.sends += clients;
+
+	} // end allForward
+
+
+	@Benchmark
+	@BenchmarkMode( Mode.SampleTime )
+	@OutputTimeUnit( TimeUnit.MICROSECONDS )
+	public int allForwardDelivered() throws IOException {
+
+		GameClasses.allForward( server, packet, socket );
+
+		int delivered = 0;
+
+		while ( delivered < clients && selector.select( DELIVERY_TIMEOUT ) > 0 ) {
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+			while ( keys.hasNext() ) {
+
+				DatagramChannel receiver = (DatagramChannel) keys.next().channel();
+				keys.remove();
+
+				while ( receiver.receive( receiveBuffer ) != null ) {
+
+					receiveBuffer.clear();
+					delivered++;
+				}
+			}
+		}
+
+		return delivered;
+
+	} // end allForwardDelivered
+
+} // end FanOutBenchmark class
@@ -0,0 +1,446 @@
+package spaceWar.benchmarks;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+import spaceWar.Torpedo;
+import spaceWar.ZonedWorld;
+
+/**
+ * Calls into the server and client classes of the game, which are in the
+ * default package and so cannot be named by the benchmarks. Each method
+ * is reached through a method handle that is looked up once, which the
+ * compiler inlines like a direct call.
+ *
+ * Servers and clients are made with the constructors that do not start
+ * them, so nothing runs but the method being measured. The benchmarks
+ * run with spaceWar.port set to 0, so a BestEffortServer binds a free
+ * port rather than the one of a server that may be running.
+ */
+public class GameClasses {
+
+	static final MethodHandle NEW_SERVER
+		= constructor( "SpaceGameServer", SectorModel.class );
+
+	static final MethodHandle NEW_ZONED_SERVER
+		= constructor( "SpaceGameServer", SectorModel.class, ZonedWorld.class, boolean.class );
+
+	static final MethodHandle UPDATE_OR_ADD_SPACECRAFT
+		= method( "SpaceGameServer", "updateOrAddSpaceCraft", SpaceCraft.class );
+
+	static final MethodHandle UPDATE_TORPEDOES
+		= method( "SpaceGameServer", "updateTorpedoes", int.class );
+
+	static final MethodHandle ADD_CLIENT
+		= method( "SpaceGameServer", "addClientDatagramSocketAddresses", InetSocketAddress.class );
+
+	static final MethodHandle SEND_TORPEDO_UPDATE
+		= method( "SpaceGameServer", "sendTorpedoUpdate", Torpedo.class, DatagramSocket.class );
+
+	static final MethodHandle SELECTIVE_FORWARD
+		= method( "SpaceGameServer", "selectiveForward",
+				DatagramPacket.class, InetSocketAddress.class, DatagramSocket.class );
+
+	static final MethodHandle ALL_FORWARD
+		= method( "SpaceGameServer", "allForward", DatagramPacket.class, DatagramSocket.class );
+
+	static final MethodHandle NEW_BEST_EFFORT_SERVER
+		= constructor( "BestEffortServer", type( "SpaceGameServer" ) );
+
+	static final MethodHandle GAME_PLAY_SOCKET
+		= getter( "BestEffortServer", "gamePlaySocket" );
+
+	static final MethodHandle SET_GAME_PLAY_SOCKET
+		= setter( "BestEffortServer", "gamePlaySocket" );
+
+	static final MethodHandle HANDLE_PACKET
+		= method( "BestEffortServer", "handlePacket", DatagramPacket.class );
+
+	static final MethodHandle NEW_CLIENT
+		= constructor( "SpaceGameClient", SectorModel.class, DatagramChannel.class, InetSocketAddress.class );
+
+	static final MethodHandle SEND_PACKET
+		= method( "SpaceGameClient", "sendPacket", int.class, int.class );
+
+
+	/**
+	 * Creates a SpaceGameServer around a sector without starting it.
+	 */
+	public static Object newServer( SectorModel sector ) {
+
+		try {
+			return (Object) NEW_SERVER.invokeExact( sector );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end newServer
+
+
+	/**
+	 * Creates a SpaceGameServer around a sector split into zones without
+	 * starting it. The ships and torpedoes of the sector are handed to
+	 * the zones, and the sector keeps a copy of them if mirrorsZones is
+	 * true, as it does for a display.
+	 */
+	public static Object newServer( SectorModel sector, ZonedWorld zones, boolean mirrorsZones ) {
+
+		try {
+			return (Object) NEW_ZONED_SERVER.invokeExact( sector, zones, mirrorsZones );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end newServer
+
+
+	/**
+	 * Calls SpaceGameServer.updateOrAddSpaceCraft.
+	 */
+	public static void updateOrAddSpaceCraft( Object server, SpaceCraft ship ) {
+
+		try {
+			UPDATE_OR_ADD_SPACECRAFT.invokeExact( server, ship );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end updateOrAddSpaceCraft
+
+
+	/**
+	 * Calls SpaceGameServer.updateTorpedoes.
+	 */
+	public static ArrayList<SpaceCraft> updateTorpedoes( Object server, int steps ) {
+
+		try {
+			return (ArrayList<SpaceCraft>) UPDATE_TORPEDOES.invokeExact( server, steps );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end updateTorpedoes
+
+
+	/**
+	 * Adds the address of a client's DatagramSocket to those a server
+	 * forwards updates to.
+	 */
+	public static void addClient( Object server, InetSocketAddress client ) {
+
+		try {
+			ADD_CLIENT.invokeExact( server, client );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end addClient
+
+
+	/**
+	 * Calls SpaceGameServer.sendTorpedoUpdate.
+	 */
+	public static void sendTorpedoUpdate( Object server, Torpedo torpedo, DatagramSocket socket ) {
+
+		try {
+			SEND_TORPEDO_UPDATE.invokeExact( server, torpedo, socket );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end sendTorpedoUpdate
+
+
+	/**
+	 * Calls SpaceGameServer.selectiveForward.
+	 */
+	public static void selectiveForward( Object server, DatagramPacket packet,
+										 InetSocketAddress notSendTo, DatagramSocket socket ) {
+
+		try {
+			SELECTIVE_FORWARD.invokeExact( server, packet, notSendTo, socket );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end selectiveForward
+
+
+	/**
+	 * Calls SpaceGameServer.allForward.
+	 */
+	public static void allForward( Object server, DatagramPacket packet, DatagramSocket socket ) {
+
+		try {
+			ALL_FORWARD.invokeExact( server, packet, socket );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end allForward
+
+
+	/**
+	 * Creates a BestEffortServer for a server, without starting its
+	 * thread, that sends through a given socket.
+	 */
+	public static Object newBestEffortServer( Object server, DatagramSocket socket ) {
+
+		try {
+			Object bestEffort = (Object) NEW_BEST_EFFORT_SERVER.invokeExact( server );
+
+			// Give back the port the constructor bound
+			DatagramSocket bound = (DatagramSocket) GAME_PLAY_SOCKET.invokeExact( bestEffort );
+
+			if ( bound != null ) {
+				bound.close();
+			}
+
+			SET_GAME_PLAY_SOCKET.invokeExact( bestEffort, socket );
+
+			return bestEffort;
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end newBestEffortServer
+
+
+	/**
+	 * Calls BestEffortServer.handlePacket.
+	 */
+	public static void handlePacket( Object bestEffort, DatagramPacket packet ) {
+
+		try {
+			HANDLE_PACKET.invokeExact( bestEffort, packet );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end handlePacket
+
+
+	/**
+	 * Creates a SpaceGameClient that sends through an open channel to a
+	 * server, without a GUI and without registering.
+	 *
+	 * @param model sector holding own ship
+	 */
+	public static Object newClient( SectorModel model, DatagramChannel channel, InetSocketAddress server ) {
+
+		try {
+			return (Object) NEW_CLIENT.invokeExact( model, channel, server );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end newClient
+
+
+	/**
+	 * Calls SpaceGameClient.sendPacket.
+	 */
+	public static void sendPacket( Object client, int type, int sequence ) {
+
+		try {
+			SEND_PACKET.invokeExact( client, type, sequence );
+		}
+		catch ( Throwable t ) {
+			throw rethrow( t );
+		}
+
+	} // end sendPacket
+
+
+
+	/**
+	 * DatagramSocket that drops what it is asked to send, after counting
+	 * it. Used to measure building and handling messages without the cost
+	 * of sending them.
+	 */
+	public static class DiscardSocket extends DatagramSocket {
+
+		public long sent = 0;
+		public long bytes = 0;
+
+		public DiscardSocket() throws SocketException {
+
+			super( (SocketAddress) null );
+
+		} // end DiscardSocket constructor
+
+
+		@Override
+		public void send( DatagramPacket packet ) throws IOException {
+
+			sent++;
+			bytes += packet.getLength();
+
+		} // end send
+
+	} // end DiscardSocket class
+
+
+
+	/*
+	 * Returns a handle for a constructor with the game classes it takes
+	 * and returns as Objects.
+	 */
+	static MethodHandle constructor( String className, Class<?>... parameters ) {
+
+		try {
+			Constructor<?> c = type( className ).getDeclaredConstructor( parameters );
+
+			return erase( MethodHandles.lookup().unreflectConstructor( accessible( c ) ) );
+		}
+		catch ( ReflectiveOperationException e ) {
+			throw new IllegalStateException( e );
+		}
+
+	} // end constructor
+
+
+	/*
+	 * Returns a handle for an instance method with the object it is
+	 * called on and the game classes it takes as Objects.
+	 */
+	static MethodHandle method( String className, String name, Class<?>... parameters ) {
+
+		try {
+			Method m = type( className ).getDeclaredMethod( name, parameters );
+
+			return erase( MethodHandles.lookup().unreflect( accessible( m ) ) );
+		}
+		catch ( ReflectiveOperationException e ) {
+			throw new IllegalStateException( e );
+		}
+
+	} // end method
+
+
+	/*
+	 * Returns a handle that reads a field of an object passed as an Object.
+	 */
+	static MethodHandle getter( String className, String name ) {
+
+		try {
+			Field f = type( className ).getDeclaredField( name );
+
+			return erase( MethodHandles.lookup().unreflectGetter( accessible( f ) ) );
+		}
+		catch ( ReflectiveOperationException e ) {
+			throw new IllegalStateException( e );
+		}
+
+	} // end getter
+
+
+	/*
+	 * Returns a handle that writes a field of an object passed as an Object.
+	 */
+	static MethodHandle setter( String className, String name ) {
+
+		try {
+			Field f = type( className ).getDeclaredField( name );
+
+			return erase( MethodHandles.lookup().unreflectSetter( accessible( f ) ) );
+		}
+		catch ( ReflectiveOperationException e ) {
+			throw new IllegalStateException( e );
+		}
+
+	} // end setter
+
+
+	static Class<?> type( String className ) {
+
+		try {
+			return Class.forName( className );
+		}
+		catch ( ClassNotFoundException e ) {
+			throw new IllegalStateException( e );
+		}
+
+	} // end type
+
+
+	static <T extends AccessibleObject> T accessible( T member ) {
+
+		member.setAccessible( true );
+
+		return member;
+
+	} // end accessible
+
+
+	/*
+	 * Makes the parameters and result of a handle that are classes in
+	 * the default package Objects.
+	 */
+	static MethodHandle erase( MethodHandle handle ) {
+
+		MethodType type = handle.type();
+
+		for ( int i = 0; i < type.parameterCount(); i++ ) {
+
+			if ( inDefaultPackage( type.parameterType( i ) ) ) {
+				type = type.changeParameterType( i, Object.class );
+			}
+		}
+
+		if ( inDefaultPackage( type.returnType() ) ) {
+			type = type.changeReturnType( Object.class );
+		}
+
+		return handle.asType( type );
+
+	} // end erase
+
+
+	static boolean inDefaultPackage( Class<?> c ) {
+
+		return !c.isPrimitive() && !c.isArray() && c.getName().indexOf( '.' ) < 0;
+
+	} // end inDefaultPackage
+
+
+	static RuntimeException rethrow( Throwable t ) {
+
+		if ( t instanceof RuntimeException ) {
+			return (RuntimeException) t;
+		}
+
+		if ( t instanceof Error ) {
+			throw (Error) t;
+		}
+
+		return new IllegalStateException( t );
+
+	} // end rethrow
+
+} // end GameClasses class
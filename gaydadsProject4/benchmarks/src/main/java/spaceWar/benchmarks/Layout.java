@@ -0,0 +1,207 @@
+package spaceWar.benchmarks;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+import spaceWar.Constants;
+import spaceWar.EntityTable;
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+import spaceWar.Torpedo;
+
+/**
+ * Places the ships, torpedoes and obstacles of a benchmark in the world.
+ * Entities are either spread over the whole world, packed into one dense
+ * block in its centre or packed into a number of blocks around it. Two
+ * positions of a layout are never closer than SPACING, so ships placed
+ * at them do not collide with each other.
+ */
+public class Layout {
+
+	public static final String SPREAD = "spread";
+	public static final String PACKED = "packed";
+	public static final String CLUSTERS = "clusters";
+
+	/** Least distance between two positions of a layout */
+	public static final int SPACING = 2 * Constants.OBJECT_WIDTH + 1;
+
+	/** Blocks of a clustered layout, in a square */
+	public static final int CLUSTERS_PER_SIDE = 4;
+
+	/** Spacings of world per entity along each side of a spread layout */
+	public static final int SPREAD_FACTOR = 8;
+
+
+	/**
+	 * Sizes the world so that a number of entities spread over it are
+	 * about SPREAD_FACTOR spacings apart. The world is never smaller than
+	 * a sector.
+	 *
+	 * @param count number of entities of each kind in the world
+	 */
+	public static void sizeWorld( int count ) {
+
+		int side = Math.max( Constants.MAX_SECTOR_X, perRow( count ) * SPREAD_FACTOR * SPACING );
+
+		Constants.setWorldSize( side, side );
+
+	} // end sizeWorld
+
+
+	/**
+	 * Returns positions for a number of entities as x and y pairs.
+	 *
+	 * @param layout SPREAD, PACKED or CLUSTERS
+	 * @param count number of positions
+	 * @param seed seed of the random offsets of the positions
+	 */
+	public static int[] positions( String layout, int count, long seed ) {
+
+		Random rand = new Random( seed );
+		int width = Constants.getWorldWidth();
+		int height = Constants.getWorldHeight();
+		int[] xy = new int[ count * 2 ];
+
+		if ( SPREAD.equals( layout ) ) {
+
+			int row = perRow( count );
+			int cellWidth = width / row;
+			int cellHeight = height / row;
+
+			for ( int i = 0; i < count; i++ ) {
+
+				xy[ 2 * i ] = i % row * cellWidth + rand.nextInt( Math.max( 1, cellWidth - SPACING ) );
+				xy[ 2 * i + 1 ] = i / row * cellHeight + rand.nextInt( Math.max( 1, cellHeight - SPACING ) );
+			}
+		}
+		else if ( PACKED.equals( layout ) ) {
+
+			block( xy, 0, count, width / 2, height / 2 );
+		}
+		else if ( CLUSTERS.equals( layout ) ) {
+
+			int clusters = CLUSTERS_PER_SIDE * CLUSTERS_PER_SIDE;
+			int cellWidth = width / CLUSTERS_PER_SIDE;
+			int cellHeight = height / CLUSTERS_PER_SIDE;
+			int from = 0;
+
+			for ( int c = 0; c < clusters; c++ ) {
+
+				int size = count / clusters + ( c < count % clusters ? 1 : 0 );
+
+				// Keep each block inside its own cell of the world
+				int extent = perRow( size ) * SPACING;
+				int x = c % CLUSTERS_PER_SIDE * cellWidth + extent / 2
+						+ rand.nextInt( Math.max( 1, cellWidth - extent ) );
+				int y = c / CLUSTERS_PER_SIDE * cellHeight + extent / 2
+						+ rand.nextInt( Math.max( 1, cellHeight - extent ) );
+
+				block( xy, from, size, x, y );
+				from += size;
+			}
+		}
+		else {
+			throw new IllegalArgumentException( "Unknown layout " + layout );
+		}
+
+		return xy;
+
+	} // end positions
+
+
+	/**
+	 * Builds a sector with ships, torpedoes and obstacles laid out the
+	 * same way. Each kind gets its own random offsets. Ships and
+	 * torpedoes have headings in turn.
+	 */
+	public static SectorModel sector( String layout, int ships, int torpedoes, int obstacles ) {
+
+		SectorModel sector = new SectorModel();
+
+		int[] xy = positions( layout, obstacles, 3 );
+
+		for ( int i = 0; i < obstacles; i++ ) {
+			sector.addObstacle( xy[ 2 * i ], xy[ 2 * i + 1 ] );
+		}
+
+		xy = positions( layout, ships, 1 );
+
+		for ( int i = 0; i < ships; i++ ) {
+			sector.addSpaceCraft( new SpaceCraft( id( i ), xy[ 2 * i ], xy[ 2 * i + 1 ], i % 8 + 1 ) );
+		}
+
+		xy = positions( layout, torpedoes, 2 );
+
+		for ( int i = 0; i < torpedoes; i++ ) {
+			sector.addTorpedo( new Torpedo( id( i ), xy[ 2 * i ], xy[ 2 * i + 1 ], i % 8 + 1 ) );
+		}
+
+		return sector;
+
+	} // end sector
+
+
+	/**
+	 * Returns copies of the ships of a sector, with the same IDs,
+	 * positions and headings. A copy passed to the sector updates or
+	 * checks the ship it was copied from.
+	 */
+	public static SpaceCraft[] copies( SectorModel sector ) {
+
+		SpaceCraft[] ships = sector.getSpaceCrafts().toArray( new SpaceCraft[ 0 ] );
+
+		for ( int i = 0; i < ships.length; i++ ) {
+
+			ships[i] = new SpaceCraft( ships[i].ID, ships[i].getXPosition(),
+					ships[i].getYPosition(), ships[i].getHeading() );
+		}
+
+		return ships;
+
+	} // end copies
+
+
+	/**
+	 * Returns the address of the ith entity, a distinct address and port
+	 * on the loopback net.
+	 */
+	public static InetSocketAddress id( int i ) {
+
+		try {
+			return EntityTable.addressOf( EntityTable.keyOf( 0x7F000000 + i / 65535, i % 65535 + 1 ) );
+		}
+		catch ( Exception e ) {
+			throw new IllegalStateException( e );
+		}
+
+	} // end id
+
+
+	/*
+	 * Fills count positions starting at from with a square block centred
+	 * on x and y.
+	 */
+	static void block( int[] xy, int from, int count, int x, int y ) {
+
+		int row = perRow( count );
+		int left = x - row * SPACING / 2;
+		int top = y - row * SPACING / 2;
+
+		for ( int i = 0; i < count; i++ ) {
+
+			xy[ 2 * ( from + i ) ] = left + i % row * SPACING;
+			xy[ 2 * ( from + i ) + 1 ] = top + i / row * SPACING;
+		}
+
+	} // end block
+
+
+	/*
+	 * Returns the number of positions in each row of a square of count.
+	 */
+	static int perRow( int count ) {
+
+		return Math.max( 1, (int) Math.ceil( Math.sqrt( count ) ) );
+
+	} // end perRow
+
+} // end Layout class
@@ -0,0 +1,98 @@
+package spaceWar.benchmarks;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceWar.Constants;
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+
+/**
+ * Measures moving ships ahead. One ship moves in the centre of the
+ * world, turning to the next heading each move, and a whole fleet laid
+ * out in the world moves one increment each, all on the same heading,
+ * which turns each round. Eight rounds bring the fleet back where it
+ * started, so it never piles up at the edges of the world.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MoveBenchmark {
+
+	@Param( { "100", "1000", "10000" } )
+	public int entities;
+
+	@Param( { Layout.SPREAD, Layout.PACKED, Layout.CLUSTERS } )
+	public String layout;
+
+	SpaceCraft ship;
+	SpaceCraft[] fleet;
+	int heading = Constants.NORTH;
+
+
+	@Setup( Level.Trial )
+	public void build() {
+
+		Layout.sizeWorld( entities );
+
+		SectorModel sector = Layout.sector( layout, entities, 0, 0 );
+		fleet = sector.getSpaceCrafts().toArray( new SpaceCraft[ 0 ] );
+		ship = new SpaceCraft( Layout.id( entities ), Constants.getWorldWidth() / 2,
+				Constants.getWorldHeight() / 2, Constants.NORTH );
+
+	} // end build
+
+
+	@Benchmark
+	public boolean moveAhead() {
+
+		ship.setHeading( nextHeading() );
+
+		return ship.moveAhead( Constants.INCREMENT );
+
+	} // end moveAhead
+
+
+	@Benchmark
+	public int moveFleet() {
+
+		int moved = 0;
+		int h = nextHeading();
+
+		for ( SpaceCraft sc : fleet ) {
+
+			sc.setHeading( h );
+
+			if ( sc.moveAhead( Constants.INCREMENT ) ) {
+				moved++;
+			}
+		}
+
+		return moved;
+
+	} // end moveFleet
+
+
+	int nextHeading() {
+
+		heading = heading % 8 + 1;
+
+		return heading;
+
+	} // end nextHeading
+
+} // end MoveBenchmark class
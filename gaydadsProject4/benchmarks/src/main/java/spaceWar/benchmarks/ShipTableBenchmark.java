@@ -0,0 +1,89 @@
+package spaceWar.benchmarks;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceWar.Constants;
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+
+/**
+ * Measures keeping the ships of a sector up to date as the server does
+ * for each update and exit of a client. An update moves the next ship
+ * of the sector in turn back and forth by one increment. A join adds a
+ * ship the sector has not seen and its exit removes it again, so the
+ * sector keeps the same ships.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ShipTableBenchmark {
+
+	@Param( { "100", "1000", "10000" } )
+	public int entities;
+
+	@Param( { Layout.SPREAD, Layout.PACKED, Layout.CLUSTERS } )
+	public String layout;
+
+	SectorModel sector;
+	SpaceCraft[] here;
+	SpaceCraft[] there;
+	SpaceCraft stranger;
+	int next = 0;
+	boolean away = false;
+
+
+	@Setup( Level.Trial )
+	public void build() {
+
+		Layout.sizeWorld( entities );
+		sector = Layout.sector( layout, entities, 0, 0 );
+		here = Layout.copies( sector );
+		there = Layout.copies( sector );
+
+		for ( SpaceCraft sc : there ) {
+			sc.setX( sc.getXPosition() + Constants.INCREMENT );
+		}
+
+		stranger = new SpaceCraft( Layout.id( entities ), 0, 0, Constants.NORTH );
+
+	} // end build
+
+
+	@Benchmark
+	public void updateOrAddSpaceCraft() {
+
+		if ( ++next == here.length ) {
+
+			next = 0;
+			away = !away;
+		}
+
+		sector.updateOrAddSpaceCraft( away ? there[ next ] : here[ next ] );
+
+	} // end updateOrAddSpaceCraft
+
+
+	@Benchmark
+	public void addAndRemoveSpaceCraft() {
+
+		sector.updateOrAddSpaceCraft( stranger );
+		sector.removeSpaceCraft( stranger );
+
+	} // end addAndRemoveSpaceCraft
+
+} // end ShipTableBenchmark class
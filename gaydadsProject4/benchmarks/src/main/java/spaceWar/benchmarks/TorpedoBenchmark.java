@@ -0,0 +1,74 @@
+package spaceWar.benchmarks;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceWar.Constants;
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+
+/**
+ * Measures one update of the torpedoes of a sector as the torpedo
+ * updater makes it, moving each torpedo the steps of an update period
+ * and checking it against the ships and obstacles. Updates remove
+ * torpedoes that hit something or run out of range, so each iteration
+ * starts from a fresh sector and times a batch of updates one after
+ * another. The batch is shorter than the range of a torpedo.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 10, batchSize = TorpedoBenchmark.BATCH )
+@Measurement( iterations = 20, batchSize = TorpedoBenchmark.BATCH )
+@Fork( 1 )
+public class TorpedoBenchmark {
+
+	static final int BATCH = 10;
+
+	static final int STEPS = Constants.TORPEDO_UPDATE_PERIOD / Constants.TORPEDO_STEP_MS;
+
+	@Param( { "100", "1000", "10000" } )
+	public int entities;
+
+	@Param( { Layout.SPREAD, Layout.PACKED, Layout.CLUSTERS } )
+	public String layout;
+
+	SectorModel sector;
+
+
+	@Setup( Level.Trial )
+	public void sizeWorld() {
+
+		Layout.sizeWorld( entities );
+
+	} // end sizeWorld
+
+
+	@Setup( Level.Iteration )
+	public void build() {
+
+		sector = Layout.sector( layout, entities, entities, entities / 10 );
+
+	} // end build
+
+
+	@Benchmark
+	public ArrayList<SpaceCraft> updateTorpedoes() {
+
+		return sector.updateTorpedoes( STEPS );
+
+	} // end updateTorpedoes
+
+} // end TorpedoBenchmark class
@@ -0,0 +1,130 @@
+package spaceWar.benchmarks;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceWar.Constants;
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+import spaceWar.ZonedWorld;
+
+/**
+ * Measures a server whose world is split into zones: one torpedo update
+ * of the whole world, and one ship update as the server makes it for a
+ * client. With one zone the server uses its sector alone. With more, the
+ * zones hold the ships and torpedoes, and the sector either keeps a copy
+ * of them for a display or, as on a headless server, only the obstacles.
+ *
+ * Torpedo updates remove torpedoes, so each iteration starts from a fresh
+ * world and times a batch of updates shorter than the range of a torpedo.
+ * The zones update their torpedoes on a thread each, so the time of an
+ * update can only fall with more zones on a machine with as many cores.
+ */
+@State( Scope.Thread )
+@Fork( 1 )
+public class ZoneBenchmark {
+
+	static final int BATCH = 10;
+
+	static final int STEPS = Constants.TORPEDO_UPDATE_PERIOD / Constants.TORPEDO_STEP_MS;
+
+	// As worked out by the server
+	static final int GHOST_MARGIN = 2 * Constants.OBJECT_WIDTH + Constants.INCREMENT * ( STEPS + 1 );
+
+	@Param( { "10000" } )
+	public int entities;
+
+	@Param( { "1", "2", "4", "8" } )
+	public int zones;
+
+	@Param( { "false", "true" } )
+	public boolean mirror;
+
+	ZonedWorld world;
+	Object server;
+	SpaceCraft[] here;
+	SpaceCraft[] there;
+	int next = 0;
+	boolean away = false;
+
+
+	@Setup( Level.Trial )
+	public void sizeWorld() {
+
+		Layout.sizeWorld( entities );
+
+	} // end sizeWorld
+
+
+	@Setup( Level.Iteration )
+	public void build() {
+
+		SectorModel sector = Layout.sector( Layout.SPREAD, entities, entities, entities / 10 );
+
+		// The ships move one increment back and forth along x
+		here = Layout.copies( sector );
+		there = Layout.copies( sector );
+
+		for ( SpaceCraft sc : there ) {
+			sc.setX( sc.getXPosition() + Constants.INCREMENT );
+		}
+
+		world = ( zones > 1 ) ? new ZonedWorld( zones, GHOST_MARGIN ) : null;
+		server = GameClasses.newServer( sector, world, mirror );
+
+	} // end build
+
+
+	@TearDown( Level.Iteration )
+	public void close() {
+
+		if ( world != null ) {
+			world.close();
+		}
+
+	} // end close
+
+
+	@Benchmark
+	@BenchmarkMode( Mode.SingleShotTime )
+	@OutputTimeUnit( TimeUnit.MICROSECONDS )
+	@Warmup( iterations = 10, batchSize = BATCH )
+	@Measurement( iterations = 20, batchSize = BATCH )
+	public ArrayList<SpaceCraft> updateTorpedoes() {
+
+		return GameClasses.updateTorpedoes( server, STEPS );
+
+	} // end updateTorpedoes
+
+
+	@Benchmark
+	@BenchmarkMode( Mode.AverageTime )
+	@OutputTimeUnit( TimeUnit.NANOSECONDS )
+	@Warmup( iterations = 5, time = 1 )
+	@Measurement( iterations = 5, time = 1 )
+	public void updateOrAddSpaceCraft() {
+
+		if ( ++next == here.length ) {
+
+			next = 0;
+			away = !away;
+		}
+
+		GameClasses.updateOrAddSpaceCraft( server, away ? there[ next ] : here[ next ] );
+
+	} // end updateOrAddSpaceCraft
+
+} // end ZoneBenchmark class
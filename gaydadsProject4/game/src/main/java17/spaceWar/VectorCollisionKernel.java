@@ -0,0 +1,62 @@
+package spaceWar;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * CollisionKernel that tests the packed positions a SIMD register at a
+ * time with the Vector API. Only made by CollisionKernel.create, which
+ * falls back to the scalar kernel when the jdk.incubator.vector module
+ * is not there.
+ *
+ * Lanes are ints. A lane is first tested against the square around the
+ * mover, which cannot overflow, and only lanes in the square are tested
+ * for distance. Within the square the squared distance is at most twice
+ * the squared radius, so it fits in an int for any radius up to
+ * MAX_RADIUS. Larger radii are left to the scalar kernel.
+ */
+public class VectorCollisionKernel extends CollisionKernel {
+
+	static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	// Largest radius whose squared distances fit in an int
+	static final int MAX_RADIUS = 32767;
+
+
+	@Override
+	public int nextWithin( int x, int y, int radius, int from ) {
+
+		if ( radius > MAX_RADIUS || radius < 0 ) {
+			return super.nextWithin( x, y, radius, from );
+		}
+
+		int radiusSquared = radius * radius;
+		int lanes = SPECIES.length();
+		int i = from;
+
+		for ( int end = from + SPECIES.loopBound( size - from ); i < end; i += lanes ) {
+
+			IntVector dx = IntVector.fromArray( SPECIES, xs, i ).sub( x );
+			IntVector dy = IntVector.fromArray( SPECIES, ys, i ).sub( y );
+
+			VectorMask<Integer> near = dx.abs().compare( VectorOperators.LE, radius )
+					.and( dy.abs().compare( VectorOperators.LE, radius ) );
+
+			if ( near.anyTrue() ) {
+
+				VectorMask<Integer> hit = near.and( dx.mul( dx ).add( dy.mul( dy ) )
+						.compare( VectorOperators.LE, radiusSquared ) );
+
+				if ( hit.anyTrue() ) {
+					return i + hit.firstTrue();
+				}
+			}
+		}
+
+		// Scalar test of the elements left over
+		return scan( x, y, (long) radiusSquared, i );
+
+	} // end nextWithin
+
+} // end VectorCollisionKernel class
@@ -0,0 +1,149 @@
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import spaceWar.Constants;
+import spaceWar.SectorModel;
+import spaceWar.SpaceCraft;
+
+/**
+ * Runs a cluster of two servers, each owning half the world, linked over
+ * loopback. The servers are not started, so only the cluster links run.
+ * A ship is moved across the middle of the world on the left server and
+ * must be handed to the right one.
+ */
+public class ClusterNodeTest {
+
+	// How long to wait for a message between the servers
+	static final long WAIT_MS = 5000;
+
+	static final int GHOST_MARGIN = 4 * Constants.OBJECT_WIDTH;
+
+	SpaceGameServer[] servers = new SpaceGameServer[ 2 ];
+	ClusterNode[] cluster = new ClusterNode[ 2 ];
+
+	InetSocketAddress shipID = new InetSocketAddress( InetAddress.getLoopbackAddress(), 5000 );
+
+
+	@Before
+	public void startCluster() throws IOException {
+
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		InetSocketAddress[] nodes = new InetSocketAddress[ 2 ];
+
+		for ( int i = 0; i < nodes.length; i++ ) {
+
+			// A node links on its game port plus one
+			nodes[i] = new InetSocketAddress( loopback, freePort() - 1 );
+		}
+
+		for ( int i = 0; i < nodes.length; i++ ) {
+
+			servers[i] = new SpaceGameServer( new SectorModel() );
+			cluster[i] = new ClusterNode( servers[i], nodes, i, GHOST_MARGIN );
+			servers[i].cluster = cluster[i];
+			cluster[i].start();
+		}
+
+	} // end startCluster
+
+
+	@After
+	public void stopCluster() {
+
+		for ( int i = 0; i < servers.length; i++ ) {
+
+			servers[i].playing = false;
+			cluster[i].close();
+		}
+
+	} // end stopCluster
+
+
+	@Test
+	public void handOffFarFromEdgeRemovesShip() throws Exception {
+
+		int middle = Constants.getWorldWidth() / 2;
+
+		moveOnLeft( middle - Constants.INCREMENT );
+		moveOnLeft( middle + 2 * GHOST_MARGIN );
+
+		assertTrue( "Handed to the right server", waitFor( servers[1], true ) );
+		assertNull( "No ghost left behind", servers[0].sector.getSpaceCraft( shipID ) );
+		assertFalse( cluster[0].isGhost( shipID ) );
+
+	} // end handOffFarFromEdgeRemovesShip
+
+
+	@Test
+	public void handOffNearEdgeKeepsGhost() throws Exception {
+
+		int middle = Constants.getWorldWidth() / 2;
+
+		moveOnLeft( middle - Constants.INCREMENT );
+		moveOnLeft( middle + GHOST_MARGIN / 2 );
+
+		assertTrue( "Handed to the right server", waitFor( servers[1], true ) );
+		assertFalse( cluster[1].isGhost( shipID ) );
+		assertNotNull( "Ghost kept", servers[0].sector.getSpaceCraft( shipID ) );
+		assertTrue( cluster[0].isGhost( shipID ) );
+
+	} // end handOffNearEdgeKeepsGhost
+
+
+	/*
+	 * Moves the ship on the left server as an update from its client does.
+	 */
+	void moveOnLeft( int x ) {
+
+		SpaceCraft ship = new SpaceCraft( shipID, x, Constants.getWorldHeight() / 2, Constants.NORTH );
+
+		servers[0].updateOrAddSpaceCraft( ship );
+		cluster[0].shipMoved( ship );
+
+	} // end moveOnLeft
+
+
+	/*
+	 * Waits until a server does or does not have the ship. Returns false
+	 * if that does not happen in time.
+	 */
+	boolean waitFor( SpaceGameServer server, boolean present ) throws InterruptedException {
+
+		long end = System.currentTimeMillis() + WAIT_MS;
+
+		while ( System.currentTimeMillis() < end ) {
+
+			if ( ( server.sector.getSpaceCraft( shipID ) != null ) == present ) {
+				return true;
+			}
+
+			Thread.sleep( 10 );
+		}
+
+		return false;
+
+	} // end waitFor
+
+
+	static int freePort() throws IOException {
+
+		ServerSocket socket = new ServerSocket( 0 );
+		int port = socket.getLocalPort();
+		socket.close();
+
+		return port;
+
+	} // end freePort
+
+} // end ClusterNodeTest class
@@ -0,0 +1,283 @@
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import spaceWar.Constants;
+import spaceWar.SectorModel;
+import spaceWar.UpdateDecoder;
+
+/**
+ * Checks that the client receive path allocates nothing once every ship
+ * and torpedo has been seen. A server channel sends updates for a number
+ * of ships and torpedoes, and acknowledgements for own ship, over loopback
+ * to the game play channel of a client, which handles them with
+ * receiveUpdates as its network loop does. Remove messages for ships and
+ * torpedoes that have already gone are written to its TCP connection and
+ * handled with receiveRemoves. Only the bytes the client's receive calls
+ * allocate are counted, and over the measured rounds they must be none.
+ * There are 1000 ships, each with a torpedo, and 100 rounds are measured.
+ * The JIT allocates a little when it replaces the code of a path, and on
+ * a busy machine that can land in any round, so the rounds are measured
+ * again a few times and one of the passes must allocate nothing.
+ */
+public class ReceiveAllocationTest {
+
+	static final int SHIPS = 1000;
+	static final int ROUNDS = 100;
+
+	// Passes of the measured rounds, of which one must allocate nothing
+	static final int PASSES = 5;
+
+	// Updates sent before the client receives them, well within what
+	// the receive buffer of its channel holds
+	static final int BATCH = 100;
+
+	// Remove messages written to the TCP connection each round
+	static final int REMOVES = 50;
+
+	// Rounds of removes alone in the warmup, so the remove path runs as
+	// often as the update path before it is measured
+	static final int REMOVE_WARMUP = 400;
+
+	InetAddress loopback = InetAddress.getLoopbackAddress();
+
+	DatagramChannel clientChannel;
+	DatagramChannel serverChannel;
+	SocketChannel clientConnection;
+	SocketChannel serverConnection;
+
+	SpaceGameClient client;
+	SectorModel model;
+	int ownPort;
+
+	com.sun.management.ThreadMXBean threads =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	long thread = Thread.currentThread().getId();
+
+	// Allowance for what reading the counter itself allocates
+	long overhead;
+
+	// Bytes allocated by the client's receive calls so far
+	long allocated;
+
+	ByteBuffer update = ByteBuffer.allocateDirect( Constants.PACKET_SIZE );
+	ByteBuffer removes = ByteBuffer.allocateDirect( REMOVES * SpaceGameClient.REMOVE_SIZE );
+	ByteBuffer unread = ByteBuffer.allocateDirect( SpaceGameClient.REMOVE_SIZE );
+	int batched = 0;
+
+
+	@Before
+	public void connect() throws Exception {
+
+		clientChannel = DatagramChannel.open();
+		clientChannel.setOption( StandardSocketOptions.SO_RCVBUF, 1 << 20 );
+		clientChannel.bind( new InetSocketAddress( loopback, 0 ) );
+		clientChannel.configureBlocking( false );
+		ownPort = clientChannel.socket().getLocalPort();
+
+		serverChannel = DatagramChannel.open();
+		serverChannel.bind( new InetSocketAddress( loopback, 0 ) );
+		serverChannel.connect( clientChannel.getLocalAddress() );
+
+		ServerSocketChannel listener = ServerSocketChannel.open();
+		listener.bind( new InetSocketAddress( loopback, 0 ) );
+		clientConnection = SocketChannel.open( listener.getLocalAddress() );
+		serverConnection = listener.accept();
+		listener.close();
+		clientConnection.configureBlocking( false );
+
+		model = new SectorModel( new InetSocketAddress( loopback, ownPort ) );
+		model.createOwnSpaceCraft();
+
+		client = new SpaceGameClient( model, clientChannel, (InetSocketAddress) serverChannel.getLocalAddress() );
+		client.decoder = new UpdateDecoder( model, client.interpolator, client.predictor, ownPort );
+		client.reliableChannel = clientConnection;
+
+	} // end connect
+
+
+	@After
+	public void close() throws Exception {
+
+		clientChannel.close();
+		serverChannel.close();
+		clientConnection.close();
+		serverConnection.close();
+
+	} // end close
+
+
+	@Test
+	public void steadyStateAllocatesNothing() throws Exception {
+
+		// Every ship and torpedo is seen, and the JIT has settled, before
+		// the measured rounds
+		int warmup = 50;
+		long time = 1;
+
+		for ( int round = 0; round < warmup; round++ ) {
+			time = sendRound( round, time );
+		}
+
+		for ( int round = 0; round < REMOVE_WARMUP; round++ ) {
+			sendRemoves();
+		}
+
+		assertEquals( "Ships added from the updates received", SHIPS, model.getSpaceCraftCount() );
+		assertEquals( "Torpedoes added from the updates received, and own torpedo",
+				SHIPS + 1, model.getTorpedoCount() );
+
+		long before = threads.getThreadAllocatedBytes( thread );
+		overhead = threads.getThreadAllocatedBytes( thread ) - before;
+		allocated = -1;
+
+		for ( int pass = 0; pass < PASSES && allocated != 0; pass++ ) {
+
+			allocated = 0;
+
+			for ( int round = 0; round < ROUNDS; round++ ) {
+				time = sendRound( warmup + pass * ROUNDS + round, time );
+			}
+		}
+
+		long updates = (long) ROUNDS * ( 2 * SHIPS + 2 );
+
+		assertEquals( "Bytes allocated receiving " + updates + " updates", 0, allocated );
+
+		// The removes found nothing to remove, but do remove a ship that
+		// is in the sector
+		removes.clear();
+		removes.putInt( 0x7F000001 ).putInt( 1 ).putInt( Constants.REMOVE_SHIP ).flip();
+		serverConnection.write( removes );
+		client.receiveRemoves( clientConnection );
+
+		assertEquals( SHIPS - 1, model.getSpaceCraftCount() );
+
+	} // end steadyStateAllocatesNothing
+
+
+	/*
+	 * Sends an update for every ship and torpedo, one for own torpedo
+	 * and an acknowledgement for own ship, then removes for ships and
+	 * torpedoes that are not in the sector. Returns the next time stamp.
+	 */
+	long sendRound( int round, long time ) throws Exception {
+
+		time = sendUpdates( round, time );
+		sendRemoves();
+
+		return time;
+
+	} // end sendRound
+
+
+	/*
+	 * Sends an update for every ship and torpedo, one for own torpedo and
+	 * an acknowledgement for own ship. Returns the next time stamp.
+	 */
+	long sendUpdates( int round, long time ) throws Exception {
+
+		for ( int i = 0; i < SHIPS; i++ ) {
+
+			int x = ( i * 37 + round * Constants.INCREMENT ) % Constants.getWorldWidth();
+			int y = ( i * 53 ) % Constants.getWorldHeight();
+
+			send( i + 1, Constants.UPDATE_SHIP, x, y, round % 8 + 1, time++, 0 );
+			send( i + 1, Constants.UPDATE_TORPEDO, y, x, i % 8 + 1, time++, 0 );
+		}
+
+		send( ownPort, Constants.UPDATE_TORPEDO, 100, 100, round % 8 + 1, time++, 0 );
+		send( ownPort, Constants.ACK, 200, 200 + round, Constants.NORTH, 0, round + 1 );
+		receiveUpdates();
+
+		return time;
+
+	} // end sendUpdates
+
+
+	/*
+	 * Writes removes for ships and torpedoes that are not in the sector
+	 * and lets the client handle them.
+	 */
+	void sendRemoves() throws Exception {
+
+		removes.clear();
+
+		for ( int i = 0; i < REMOVES; i++ ) {
+
+			removes.putInt( 0x7F000001 );
+			removes.putInt( 30000 + i );
+			removes.putInt( i % 2 == 0 ? Constants.REMOVE_SHIP : Constants.REMOVE_TORPEDO );
+		}
+
+		removes.flip();
+
+		while ( removes.hasRemaining() ) {
+			serverConnection.write( removes );
+		}
+
+		// Loopback delivers the removes at once, so one read takes them all
+		long before = threads.getThreadAllocatedBytes( thread );
+
+		client.receiveRemoves( clientConnection );
+
+		allocated += threads.getThreadAllocatedBytes( thread ) - before - overhead;
+
+		assertEquals( "Removes left unread", 0, clientConnection.read( unread ) );
+		assertEquals( "Part of a remove left over", 0, client.removeBuffer.position() );
+
+	} // end sendRemoves
+
+
+	/*
+	 * Sends an update in the layout sent by the server. The client
+	 * receives every BATCH updates.
+	 */
+	void send( int port, int type, int x, int y, int heading, long time, int sequence )
+			throws Exception {
+
+		update.clear();
+		update.putInt( 0, 0x7F000001 );
+		update.putInt( 4, port );
+		update.putInt( 8, type );
+		update.putInt( 12, x );
+		update.putInt( 16, y );
+		update.putInt( 20, heading );
+		update.putLong( 24, time );
+		update.putInt( Constants.SEQUENCE_OFFSET, sequence );
+
+		serverChannel.write( update );
+
+		if ( ++batched == BATCH ) {
+			receiveUpdates();
+		}
+
+	} // end send
+
+
+	/*
+	 * Lets the client receive every update waiting on its channel.
+	 */
+	void receiveUpdates() {
+
+		long before = threads.getThreadAllocatedBytes( thread );
+
+		client.receiveUpdates();
+
+		allocated += threads.getThreadAllocatedBytes( thread ) - before - overhead;
+		batched = 0;
+
+	} // end receiveUpdates
+
+} // end ReceiveAllocationTest class
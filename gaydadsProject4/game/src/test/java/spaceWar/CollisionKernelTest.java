@@ -0,0 +1,56 @@
+package spaceWar;
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the kernel made by CollisionKernel.create, the vector
+ * kernel when the build runs on a JVM with the Vector API, finds the
+ * same positions as the scalar kernel. Positions are crowded together so
+ * that many are in range, and every search is started from every index,
+ * so hits in the vector loop and in the scalar tail are both compared.
+ */
+public class CollisionKernelTest {
+
+	@Test
+	public void sameHitsAsScalarKernel() {
+
+		Random random = new Random( 42 );
+		InetAddress address = InetAddress.getLoopbackAddress();
+
+		for ( int count : new int[] { 0, 1, 7, 8, 9, 31, 64, 200 } ) {
+
+			ArrayList<SpaceCraft> crafts = new ArrayList<SpaceCraft>();
+
+			for ( int i = 0; i < count; i++ ) {
+				crafts.add( new SpaceCraft( new InetSocketAddress( address, 1000 + i ),
+						200 + random.nextInt( 60 ), 200 + random.nextInt( 60 ), Constants.NORTH ) );
+			}
+
+			CollisionKernel scalar = new CollisionKernel();
+			CollisionKernel kernel = CollisionKernel.create();
+
+			scalar.load( crafts );
+			kernel.load( crafts );
+
+			for ( int radius : new int[] { 0, 5, Constants.OBJECT_WIDTH, 25, 40000 } ) {
+
+				for ( int from = 0; from <= count; from++ ) {
+
+					int x = 200 + random.nextInt( 60 );
+					int y = 200 + random.nextInt( 60 );
+
+					assertEquals( kernel.getClass().getSimpleName() + " with " + count + " positions",
+							scalar.nextWithin( x, y, radius, from ), kernel.nextWithin( x, y, radius, from ) );
+				}
+			}
+		}
+
+	} // end sameHitsAsScalarKernel
+
+} // end CollisionKernelTest class
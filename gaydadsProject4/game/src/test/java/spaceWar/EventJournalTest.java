@@ -0,0 +1,101 @@
+package spaceWar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Appends the events of a game to a journal with small segments, so it
+ * rolls over many times while the background thread forces it, then
+ * drops the journal without closing it, as when the server dies, and
+ * rebuilds the sector from the directory.
+ */
+public class EventJournalTest {
+
+	static final InetAddress ADDRESS = InetAddress.getLoopbackAddress();
+
+	static final int SHIPS = 200;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void recoverWithoutClose() throws Exception {
+
+		File directory = folder.newFolder( "journal" );
+
+		// Sixteen records a segment, forced every millisecond
+		EventJournal journal = new EventJournal( directory, 16 * EventJournal.RECORD_SIZE, 1 );
+
+		journal.append( EventJournal.OBSTACLE, 0, 0, 40, 50, 0 );
+
+		// Every ship joins and moves, and every third one leaves
+		for ( int i = 0; i < SHIPS; i++ ) {
+			journal.append( EventJournal.SHIP, id( i ), i, 100, Constants.NORTH );
+		}
+
+		for ( int i = 0; i < SHIPS; i++ ) {
+
+			journal.append( EventJournal.SHIP, id( i ), i, 200, Constants.SOUTH );
+
+			if ( i % 3 == 0 ) {
+				journal.append( EventJournal.REMOVE_SHIP, id( i ), i, 200, Constants.SOUTH );
+			}
+		}
+
+		// A torpedo fired before three ticks of the sector
+		journal.append( EventJournal.TORPEDO, new Torpedo( id( SHIPS ), 300, 300, Constants.EAST ) );
+
+		for ( int tick = 1; tick <= 3; tick++ ) {
+			journal.appendTick( tick );
+		}
+
+		// The server dies. The journal is not closed.
+		journal.forcer.interrupt();
+		journal.forcer.join();
+
+		SectorModel model = new SectorModel();
+
+		assertEquals( journal.getAppended(), EventJournal.recover( directory, model ) );
+
+		assertEquals( 1, model.getObstacles().size() );
+		assertEquals( SHIPS - ( SHIPS + 2 ) / 3, model.getSpaceCraftCount() );
+
+		for ( int i = 0; i < SHIPS; i++ ) {
+
+			SpaceCraft ship = model.getSpaceCraft( id( i ) );
+
+			if ( i % 3 == 0 ) {
+				assertNull( ship );
+			}
+			else {
+
+				assertNotNull( ship );
+				assertEquals( i, ship.getXPosition() );
+				assertEquals( 200, ship.getYPosition() );
+				assertEquals( Constants.SOUTH, ship.getHeading() );
+			}
+		}
+
+		assertEquals( 1, model.getTorpedoCount() );
+		assertEquals( 300 + 3 * Constants.INCREMENT, model.getTorpedoes().get( 0 ).getXPosition() );
+		assertEquals( 3, model.getTick() );
+
+	} // end recoverWithoutClose
+
+
+	static InetSocketAddress id( int i ) {
+
+		return new InetSocketAddress( ADDRESS, 1000 + i );
+
+	} // end id
+
+} // end EventJournalTest class
@@ -0,0 +1,225 @@
+package spaceWar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that moving the torpedoes of a sector two increments in one
+ * update destroys the same ships and torpedoes as moving them one
+ * increment at a time, twice, on the same layout.
+ */
+public class SectorModelTest {
+
+	static final InetAddress ADDRESS = InetAddress.getLoopbackAddress();
+
+	static final int WIDTH = Constants.OBJECT_WIDTH;
+
+
+	/*
+	 * The torpedo first in the list reaches the ship in the second
+	 * increment. The one after it reaches the ship in the first, so it
+	 * is the one that destroys it.
+	 */
+	@Test
+	public void shipGoesToTorpedoThatReachesItFirst() {
+
+		SectorModel[] sectors = { new SectorModel(), new SectorModel() };
+
+		for ( SectorModel sector : sectors ) {
+
+			sector.addSpaceCraft( ship( 1, 200, 100 ) );
+			sector.addTorpedo( torpedo( 2, 200 - WIDTH - 7, 100, Constants.EAST, 0 ) );
+			sector.addTorpedo( torpedo( 3, 200 + WIDTH + 3, 100, Constants.WEST, 0 ) );
+		}
+
+		assertSameOutcome( sectors[0], sectors[1] );
+
+		assertNull( sectors[0].getSpaceCraft( id( 1 ) ) );
+		assertEquals( "Only the torpedo that hit is gone", 1, sectors[0].getTorpedoCount() );
+		assertEquals( id( 2 ), sectors[0].getTorpedoes().get( 0 ).ID );
+
+	} // end shipGoesToTorpedoThatReachesItFirst
+
+
+	/*
+	 * A ship has moved next to a torpedo whose life ends in the next 
+	 * increment. The torpedo is gone before it can destroy the ship.
+	 */
+	@Test
+	public void torpedoAtEndOfLifeCannotHit() {
+
+		SectorModel[] sectors = { new SectorModel(), new SectorModel() };
+
+		for ( SectorModel sector : sectors ) {
+
+			sector.addSpaceCraft( ship( 1, 200, 300 ) );
+			sector.addTorpedo( torpedo( 2, 200 - WIDTH + 2, 300, Constants.EAST,
+					Torpedo.MAX_RANGE - Constants.INCREMENT ) );
+		}
+
+		assertSameOutcome( sectors[0], sectors[1] );
+
+		assertNotNull( sectors[0].getSpaceCraft( id( 1 ) ) );
+		assertEquals( 0, sectors[0].getTorpedoCount() );
+
+	} // end torpedoAtEndOfLifeCannotHit
+
+
+	/*
+	 * Crowded layouts of ships, torpedoes and obstacles, with torpedoes
+	 * of every age heading every way.
+	 */
+	@Test
+	public void crowdedLayoutsMatch() {
+
+		for ( int seed = 0; seed < 50; seed++ ) {
+
+			SectorModel[] sectors = { new SectorModel(), new SectorModel() };
+
+			for ( SectorModel sector : sectors ) {
+
+				Random random = new Random( seed );
+				int port = 1;
+
+				for ( int i = 0; i < 20; i++ ) {
+					sector.addSpaceCraft( ship( port++, 100 + random.nextInt( 100 ), 100 + random.nextInt( 100 ) ) );
+				}
+
+				for ( int i = 0; i < 40; i++ ) {
+					sector.addTorpedo( torpedo( port++, 100 + random.nextInt( 100 ), 100 + random.nextInt( 100 ),
+							1 + random.nextInt( 8 ), Constants.INCREMENT * random.nextInt( 25 ) ) );
+				}
+
+				for ( int i = 0; i < 5; i++ ) {
+					sector.addObstacle( new Obstacle( 100 + random.nextInt( 100 ), 100 + random.nextInt( 100 ) ) );
+				}
+			}
+
+			// Several updates, so torpedoes also reach ships further away
+			for ( int update = 0; update < 4; update++ ) {
+				assertSameOutcome( sectors[0], sectors[1] );
+			}
+		}
+
+	} // end crowdedLayoutsMatch
+
+
+	/*
+	 * Moves the torpedoes of the first sector two increments in one update
+	 * and those of the second one increment twice, then compares what was
+	 * destroyed and what is left. A torpedo destroyed in the first 
+	 * increment is left further back in the second sector, so only the 
+	 * IDs of what was destroyed are compared.
+	 */
+	void assertSameOutcome( SectorModel twoSteps, SectorModel oneStep ) {
+
+		ArrayList<String> destroyedTwo = identify( twoSteps.updateTorpedoes( 2 ) );
+		ArrayList<String> destroyedOne = identify( oneStep.updateTorpedoes( 1 ) );
+		destroyedOne.addAll( identify( oneStep.updateTorpedoes( 1 ) ) );
+
+		Collections.sort( destroyedOne );
+
+		assertEquals( "Destroyed", destroyedOne, destroyedTwo );
+		assertEquals( "Ships left", describe( oneStep.getSpaceCrafts() ), describe( twoSteps.getSpaceCrafts() ) );
+		assertEquals( "Torpedoes left", describe( oneStep.getTorpedoes() ), describe( twoSteps.getTorpedoes() ) );
+
+		assertIndexed( twoSteps );
+		assertIndexed( oneStep );
+
+	} // end assertSameOutcome
+
+
+	/*
+	 * Checks that every ship and torpedo left is found at its slot after
+	 * the removals have been compacted.
+	 */
+	static void assertIndexed( SectorModel sector ) {
+
+		assertEquals( sector.inSector.size(), sector.shipSlots.size() );
+		assertEquals( sector.torpedoes.size(), sector.torpedoSlots.size() );
+
+		for ( SpaceCraft sc : sector.inSector ) {
+			assertSame( sc, sector.find( sector.inSector, sector.shipSlots, SectorModel.keyOf( sc.ID ) ) );
+		}
+
+		for ( Torpedo torp : sector.torpedoes ) {
+			assertSame( torp, sector.find( sector.torpedoes, sector.torpedoSlots, SectorModel.keyOf( torp.ID ) ) );
+		}
+
+	} // end assertIndexed
+
+
+	/*
+	 * Sorted descriptions of ships or torpedoes, so two sectors can be
+	 * compared whatever order their lists are in.
+	 */
+	static ArrayList<String> describe( Iterable<? extends SpaceCraft> crafts ) {
+
+		ArrayList<String> descriptions = new ArrayList<String>();
+
+		for ( SpaceCraft sc : crafts ) {
+			descriptions.add( sc.getClass().getSimpleName() + " " + sc.ID.getPort()
+					+ " " + sc.getXPosition() + "," + sc.getYPosition() );
+		}
+
+		Collections.sort( descriptions );
+
+		return descriptions;
+
+	} // end describe
+
+
+	/*
+	 * IDs of destroyed ships and torpedoes, which may be null.
+	 */
+	static ArrayList<String> identify( ArrayList<SpaceCraft> crafts ) {
+
+		ArrayList<String> ids = new ArrayList<String>();
+
+		if ( crafts != null ) {
+
+			for ( SpaceCraft sc : crafts ) {
+				ids.add( sc.getClass().getSimpleName() + " " + sc.ID.getPort() );
+			}
+		}
+
+		Collections.sort( ids );
+
+		return ids;
+
+	} // end identify
+
+
+	static InetSocketAddress id( int port ) {
+
+		return new InetSocketAddress( ADDRESS, port );
+
+	} // end id
+
+
+	static SpaceCraft ship( int port, int x, int y ) {
+
+		return new SpaceCraft( id( port ), x, y, Constants.NORTH );
+
+	} // end ship
+
+
+	static Torpedo torpedo( int port, int x, int y, int heading, int travelled ) {
+
+		Torpedo torp = new Torpedo( id( port ), x, y, heading );
+		torp.lifeCounter = travelled;
+
+		return torp;
+
+	} // end torpedo
+
+} // end SectorModelTest class
@@ -0,0 +1,75 @@
+package spaceWar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Splits the world into two zones and fires a torpedo in the left one at
+ * a ship owned by the right one, close enough to the boundary to be
+ * ghosted into the left zone. The left zone finds the hit on the ghost,
+ * and the ship must then be gone from both zones.
+ */
+public class ZonedWorldTest {
+
+	static final InetAddress ADDRESS = InetAddress.getLoopbackAddress();
+
+	static final int WIDTH = Constants.OBJECT_WIDTH;
+
+	static final int GHOST_MARGIN = 4 * WIDTH;
+
+	ZonedWorld world = new ZonedWorld( 2, GHOST_MARGIN );
+
+
+	@After
+	public void close() {
+
+		world.close();
+
+	} // end close
+
+
+	@Test
+	public void torpedoHitsGhostOfNeighbouringZone() {
+
+		int boundary = world.zones[1].minX;
+
+		InetSocketAddress shipID = id( 1 );
+		world.updateOrAddSpaceCraft( new SpaceCraft( shipID, boundary + Constants.INCREMENT, 300, Constants.NORTH ) );
+
+		// Reaches the ship in its first increment without leaving its zone
+		world.updateOrAddTorpedo( new Torpedo( id( 2 ), boundary - WIDTH + 2, 300, Constants.EAST ) );
+
+		assertNotNull( "Ship owned by the right zone", world.zones[1].sector.getSpaceCraft( shipID ) );
+		assertNotNull( "Ghost in the left zone", world.zones[0].sector.getSpaceCraft( shipID ) );
+		assertEquals( 1, world.zones[0].sector.getTorpedoCount() );
+		assertEquals( 0, world.zones[1].sector.getTorpedoCount() );
+
+		ArrayList<SpaceCraft> destroyed = world.updateTorpedoes( 1 );
+
+		assertNotNull( "Hit found", destroyed );
+		assertEquals( "Ship and torpedo destroyed once each", 2, destroyed.size() );
+
+		for ( ZonedWorld.Zone zone : world.zones ) {
+			assertNull( "Ship left in a zone", zone.sector.getSpaceCraft( shipID ) );
+		}
+
+		assertEquals( 0, world.getSpaceCraftCount() );
+		assertEquals( 0, world.getTorpedoCount() );
+
+	} // end torpedoHitsGhostOfNeighbouringZone
+
+
+	static InetSocketAddress id( int port ) {
+
+		return new InetSocketAddress( ADDRESS, port );
+
+	} // end id
+
+} // end ZonedWorldTest class
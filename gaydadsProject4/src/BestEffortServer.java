@@ -31,7 +31,7 @@ class BestEffortServer extends Thread {
 	SpaceGameServer spaceGameServer;
 
 	//Packet to be used throughout
-	DatagramPacket packet = new DatagramPacket(new byte[24], 24);
+	DatagramPacket packet = new DatagramPacket(new byte[Constants.PACKET_SIZE], Constants.PACKET_SIZE);
 
 	//Streams to read packets
 	ByteArrayInputStream bais;
@@ -50,7 +50,7 @@ class BestEffortServer extends Thread {
 
 		try {
 
-			gamePlaySocket = new DatagramSocket( Constants.SERVER_PORT );
+			gamePlaySocket = new DatagramSocket( Constants.getServerPort() );
 
 		} catch (IOException e) {
 
@@ -73,6 +73,8 @@ class BestEffortServer extends Thread {
 			//TODO
 			//Get new Packet
 			try {
+				// A received packet shortens the length to its own
+				packet.setLength(Constants.PACKET_SIZE);
 				gamePlaySocket.receive(packet);
 				handlePacket(packet);
 			} catch (IOException e) {
@@ -89,6 +91,15 @@ class BestEffortServer extends Thread {
 	 * @param packet
 	 */
 	protected void handlePacket(DatagramPacket packet) {
+		long start = System.nanoTime();
+
+		// The packet is reused, so a short one would be read with what is
+		// left of the one before it
+		if (packet.getLength() < Constants.PACKET_SIZE) {
+			spaceGameServer.metrics.malformedPacket();
+			return;
+		}
+
 		bais = new ByteArrayInputStream(packet.getData());
 		dis = new DataInputStream(bais);
 
@@ -99,6 +110,7 @@ class BestEffortServer extends Thread {
 		int x = 0;
 		int y = 0;
 		int heading = 0;
+		int sequence = 0;
 		
 		//Read in all dg data to be used... Not all of data actually used.
 		try {
@@ -107,6 +119,8 @@ class BestEffortServer extends Thread {
 			x = dis.readInt();
 			y = dis.readInt();
 			heading = dis.readInt();
+			dis.readLong();
+			sequence = dis.readInt();
 		} catch (IOException e1) {
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
@@ -114,35 +128,65 @@ class BestEffortServer extends Thread {
 		
 		InetSocketAddress id = new InetSocketAddress(packet.getAddress(), port);
 
+		// Updates that arrive out of order are dropped. A move the ship 
+		// could not have made is not applied, and the client is told where
+		// its ship is so that it can correct itself.
+		int accepted = 1;
 		if (type == Constants.JOIN || type == Constants.UPDATE_SHIP ) {
+			accepted = spaceGameServer.acceptInput(id, type, sequence, x, y);
+		}
+		else if (type != Constants.UPDATE_TORPEDO) {
+			spaceGameServer.metrics.malformedPacket();
+		}
+		
+		if (accepted != 1) {
+			spaceGameServer.metrics.droppedPacket();
+		}
+		
+		if (accepted == 0) {
+			spaceGameServer.sendAck(id, sequence, gamePlaySocket);
+		}
+
+		if (accepted == 1 && (type == Constants.JOIN || type == Constants.UPDATE_SHIP )) {
 			// Create a temp spacecraft for adding to the sector display
 			// or for updating.
 			SpaceCraft ship = new SpaceCraft(id, x, y, heading );
 			// Update the sector display spaceGameServer.sector.updateOrAddSpaceCraft( ship );
 			// Check to see if any collisions have occurred 
-			ArrayList<SpaceCraft> destroyed = spaceGameServer.sector.collisionCheck( ship );
+			ArrayList<SpaceCraft> destroyed = spaceGameServer.collisionCheck( ship );
 			// Send remove information if something was destroyed in a
 			// collision.
 
+			// Forwarded updates carry the time the server handled them
+			spaceGameServer.stampPacket(packet);
+
 			if (type == Constants.JOIN) {
-				spaceGameServer.sector.updateOrAddSpaceCraft(id, x, y, heading);
+				spaceGameServer.updateOrAddSpaceCraft(ship);
 				spaceGameServer.selectiveForward(packet, id, gamePlaySocket);
 			}
 
 			if (type == Constants.UPDATE_SHIP && destroyed == null) {
-				spaceGameServer.sector.updateOrAddSpaceCraft(id, x, y, heading);
+				spaceGameServer.updateOrAddSpaceCraft(ship);
 				spaceGameServer.selectiveForward(packet, id, gamePlaySocket);
 			}
 
+			// Ghost the ship to a neighbouring server or hand it off
+			if (spaceGameServer.cluster != null && destroyed == null) {
+				spaceGameServer.cluster.shipMoved(ship);
+			}
+
 			if (destroyed != null ) {
 				for ( SpaceCraft sc: destroyed) {
 					spaceGameServer.sendRemoves( sc ); 
 				}
 			}
+			
+			// Confirm the state of the ship to its client
+			spaceGameServer.sendAck(id, sequence, gamePlaySocket);
 		}
 
 		if (type == Constants.UPDATE_TORPEDO) {
-			spaceGameServer.sector.updateTorpedoes();
+			spaceGameServer.updateTorpedoes(1);
 		}
 		
 		//Close Streams
@@ -154,6 +198,7 @@ class BestEffortServer extends Thread {
 			e.printStackTrace();
 		}
 
+		spaceGameServer.metrics.packetIn(type, System.nanoTime() - start);
 
 	}
 
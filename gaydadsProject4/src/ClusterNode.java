@@ -0,0 +1,699 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import spaceWar.Constants;
+import spaceWar.SpaceCraft;
+import spaceWar.Torpedo;
+
+/**
+ * Connects a SpaceGameServer to the other servers of a cluster. Each
+ * server of the cluster owns one vertical strip of the world. Ships near
+ * the edge of a strip are sent to the neighbouring server as ghosts so
+ * that its clients can see them and its torpedoes can hit them. A ship or
+ * torpedo that crosses into another strip is handed to the server that
+ * owns it, and the client flying the ship is redirected there.
+ *
+ * Servers talk to each other over TCP on their game port plus one. The
+ * cluster is configured with two system properties:
+ * spaceWar.cluster, a comma separated list of host:port game addresses
+ * of all servers from left to right, and spaceWar.node, the position of
+ * this server in that list.
+ *
+ * Messages to the other servers are queued and written by a thread of
+ * their own, so the threads handling game play never wait on a link.
+ */
+public class ClusterNode extends Thread {
+
+	// Message codes used between servers
+	static final int GHOST_SHIP = 1;
+	static final int GHOST_REMOVE = 2;
+	static final int HANDOFF_SHIP = 3;
+	static final int HANDOFF_TORPEDO = 4;
+	static final int DESTROYED = 5;
+
+	// Largest message, a code and a torpedo
+	static final int MESSAGE_SIZE = 32;
+
+	// How long the writer waits for another server to accept a link, so
+	// a server that is down does not hold up the links to the others
+	static final int CONNECT_TIMEOUT_MS = 1000;
+
+	// Game addresses of all servers in the cluster, left to right
+	protected InetSocketAddress[] nodes;
+
+	// Position of this server in nodes
+	protected int index;
+
+	// Distance from the edge of a strip within which ships are ghosted
+	protected int ghostMargin;
+
+	// Connections used to send to the other servers. Opened when first
+	// used and only touched by the writer thread.
+	protected DataOutputStream[] links;
+
+	// Messages waiting to be written to the other servers
+	protected LinkedBlockingQueue<Message> outgoing = new LinkedBlockingQueue<Message>();
+
+	// Writes the queued messages to the links
+	protected Thread writer;
+
+	// Ships in the local sector that are owned by another server
+	protected Set<InetSocketAddress> ghosts
+		= ConcurrentHashMap.<InetSocketAddress>newKeySet();
+
+	// Ships owned here that currently have a ghost on another server,
+	// mapped to that server
+	protected ConcurrentHashMap<InetSocketAddress, Integer> ghostedTo
+		= new ConcurrentHashMap<InetSocketAddress, Integer>();
+
+	// Server this node belongs to
+	protected SpaceGameServer spaceGameServer;
+
+	// Socket on which the other servers connect
+	protected ServerSocket linkServerSocket;
+
+	static final boolean DEBUG = false;
+
+
+	/**
+	 * Creates the node and opens the socket the other servers connect to.
+	 *
+	 * @param spaceGameServer server this node belongs to
+	 * @param nodes game addresses of all servers, left to right
+	 * @param index position of this server in nodes
+	 * @param ghostMargin distance from the edge of a strip within which
+	 * ships are ghosted to the neighbouring server
+	 * @throws IOException if the link socket cannot be opened
+	 */
+	public ClusterNode( SpaceGameServer spaceGameServer, InetSocketAddress[] nodes,
+						int index, int ghostMargin ) throws IOException {
+
+		super( "cluster-node-" + index );
+
+		this.spaceGameServer = spaceGameServer;
+		this.nodes = nodes;
+		this.index = index;
+		this.ghostMargin = ghostMargin;
+
+		links = new DataOutputStream[ nodes.length ];
+
+		linkServerSocket = new ServerSocket( nodes[index].getPort() + 1 );
+
+		writer = new Thread( "cluster-link-writer" ) {
+
+			public void run() {
+				writeLinks();
+			}
+		};
+		writer.setDaemon( true );
+
+		setDaemon( true );
+
+	} // end ClusterNode constructor
+
+
+	/**
+	 * Creates a node from the spaceWar.cluster and spaceWar.node system
+	 * properties.
+	 *
+	 * @param spaceGameServer server the node belongs to
+	 * @param ghostMargin distance from the edge of a strip within which
+	 * ships are ghosted
+	 * @return the node, or null if no cluster is configured
+	 */
+	public static ClusterNode fromProperties( SpaceGameServer spaceGameServer, int ghostMargin ) {
+
+		String cluster = System.getProperty( "spaceWar.cluster" );
+
+		if ( cluster == null || cluster.trim().length() == 0 ) {
+			return null;
+		}
+
+		String[] hosts = cluster.split( "," );
+		InetSocketAddress[] nodes = new InetSocketAddress[ hosts.length ];
+
+		for ( int i = 0; i < hosts.length; i++ ) {
+
+			String[] parts = hosts[i].trim().split( ":" );
+			nodes[i] = new InetSocketAddress( parts[0], Integer.parseInt( parts[1] ) );
+		}
+
+		try {
+
+			return new ClusterNode( spaceGameServer, nodes,
+					Integer.getInteger( "spaceWar.node", 0 ), ghostMargin );
+
+		} catch ( IOException e ) {
+
+			System.err.println( "Error opening cluster link socket." );
+			return null;
+		}
+
+	} // end fromProperties
+
+
+	/**
+	 * @return game address of this server
+	 */
+	public InetSocketAddress getAddress() {
+
+		return nodes[index];
+
+	} // end getAddress
+
+
+	/**
+	 * Finds the server that owns an x position.
+	 *
+	 * @param x horizontal position in the world
+	 * @return position of the owning server in the cluster list
+	 */
+	public int ownerOf( int x ) {
+
+		long owner = (long) x * nodes.length / Constants.getWorldWidth();
+
+		return (int) Math.max( 0, Math.min( nodes.length - 1, owner ) );
+
+	} // end ownerOf
+
+
+	/**
+	 * Checks if a ship in the local sector is a ghost of a ship owned by
+	 * another server.
+	 *
+	 * @param id identity of the ship
+	 * @return true if the ship is owned elsewhere
+	 */
+	public boolean isGhost( InetSocketAddress id ) {
+
+		return ghosts.contains( id );
+
+	} // end isGhost
+
+
+	/**
+	 * Called after a client has moved its ship. Hands the ship to another
+	 * server if it has left this strip, otherwise adds, updates or removes
+	 * its ghost on the neighbouring server.
+	 *
+	 * @param ship ship that moved
+	 */
+	public void shipMoved( SpaceCraft ship ) {
+
+		int owner = ownerOf( ship.getXPosition() );
+
+		if ( owner != index ) {
+
+			if ( DEBUG ) System.out.println( "Handing off " + ship );
+
+			// A ghost on a server other than the new owner would not be
+			// updated again
+			Integer ghostedOn = ghostedTo.remove( ship.ID );
+
+			if ( ghostedOn != null && ghostedOn.intValue() != owner ) {
+				send( ghostedOn, GHOST_REMOVE, ship );
+			}
+
+			send( owner, HANDOFF_SHIP, ship );
+			spaceGameServer.redirectClient( ship.ID, nodes[owner] );
+
+			// The ship stays here as a ghost only if the new owner will
+			// keep ghosting it here
+			if ( neighbourNear( ship.getXPosition(), owner ) == index ) {
+				ghosts.add( ship.ID );
+			}
+			else {
+				ghosts.remove( ship.ID );
+				spaceGameServer.removeSpaceCraft( ship );
+				spaceGameServer.sendRemoves( ship );
+			}
+
+			return;
+		}
+
+		int neighbour = neighbourNear( ship.getXPosition(), index );
+		Integer previous = ( neighbour >= 0 ) ? ghostedTo.put( ship.ID, neighbour )
+											  : ghostedTo.remove( ship.ID );
+
+		if ( previous != null && previous.intValue() != neighbour ) {
+			send( previous, GHOST_REMOVE, ship );
+		}
+
+		if ( neighbour >= 0 ) {
+			send( neighbour, GHOST_SHIP, ship );
+		}
+
+	} // end shipMoved
+
+
+	/**
+	 * Called after ships have been destroyed on this server. Owners of
+	 * destroyed ghosts and servers holding ghosts of destroyed ships are
+	 * told about it.
+	 *
+	 * @param destroyed destroyed ships and torpedoes
+	 */
+	public void destroyed( ArrayList<SpaceCraft> destroyed ) {
+
+		for ( SpaceCraft sc : destroyed ) {
+
+			if ( sc instanceof Torpedo ) {
+				continue;
+			}
+
+			if ( ghosts.remove( sc.ID ) ) {
+
+				// Let the owner remove the ship and tell its clients
+				send( ownerOf( sc.getXPosition() ), DESTROYED, sc );
+			}
+			else {
+
+				Integer neighbour = ghostedTo.remove( sc.ID );
+
+				if ( neighbour != null ) {
+					send( neighbour, GHOST_REMOVE, sc );
+				}
+			}
+		}
+
+	} // end destroyed
+
+
+	/**
+	 * Hands torpedoes that have left this strip to the server that owns
+	 * the part of the world they are in.
+	 *
+	 * @param torpedoes torpedoes remaining after an update
+	 * @return torpedoes that were handed off and should be removed here
+	 */
+	public ArrayList<Torpedo> handOffTorpedoes( Iterable<Torpedo> torpedoes ) {
+
+		ArrayList<Torpedo> handedOff = new ArrayList<Torpedo>();
+
+		for ( Torpedo t : torpedoes ) {
+
+			int owner = ownerOf( t.getXPosition() );
+
+			if ( owner != index ) {
+
+				send( owner, HANDOFF_TORPEDO, t );
+				handedOff.add( t );
+			}
+		}
+
+		return handedOff;
+
+	} // end handOffTorpedoes
+
+
+	/**
+	 * Starts the writer, then accepts connections from the other servers
+	 * until the node is closed. Each connection is read on its own thread.
+	 */
+	public void run() {
+
+		writer.start();
+
+		while ( spaceGameServer.playing && !linkServerSocket.isClosed() ) {
+
+			try {
+
+				final Socket peer = linkServerSocket.accept();
+
+				Thread reader = new Thread( "cluster-link-reader" ) {
+
+					public void run() {
+						readLink( peer );
+					}
+				};
+				reader.setDaemon( true );
+				reader.start();
+
+			} catch ( IOException e ) {
+
+				if ( !linkServerSocket.isClosed() ) {
+					System.err.println( "Error accepting cluster link." );
+				}
+			}
+		}
+
+	} // end run
+
+
+	/**
+	 * Stops accepting connections from the other servers and stops the
+	 * writer, which closes the links to them.
+	 */
+	public void close() {
+
+		writer.interrupt();
+
+		try {
+			linkServerSocket.close();
+		} catch ( IOException e ) {
+			System.err.println( "Error closing cluster link socket." );
+		}
+
+	} // end close
+
+
+	/*
+	 * Reads messages from another server until the connection closes.
+	 */
+	protected void readLink( Socket peer ) {
+
+		try {
+
+			DataInputStream dis = new DataInputStream(
+					new BufferedInputStream( peer.getInputStream() ) );
+
+			while ( spaceGameServer.playing ) {
+
+				int code = dis.readInt();
+
+				if ( code == HANDOFF_TORPEDO ) {
+
+					spaceGameServer.updateOrAddTorpedo( Torpedo.readTorpedo( dis ) );
+					continue;
+				}
+
+				SpaceCraft ship = SpaceCraft.readFrom( dis );
+
+				if ( DEBUG ) System.out.println( "Cluster code " + code + " for " + ship );
+
+				switch ( code ) {
+
+				case GHOST_SHIP:
+
+					ghosts.add( ship.ID );
+					spaceGameServer.updateOrAddSpaceCraft( ship );
+					spaceGameServer.sendShipUpdate( ship );
+					break;
+
+				case GHOST_REMOVE:
+
+					if ( ghosts.remove( ship.ID ) ) {
+
+						spaceGameServer.removeSpaceCraft( ship );
+						spaceGameServer.sendRemoves( ship );
+					}
+					break;
+
+				case HANDOFF_SHIP:
+
+					// The ship is owned here now
+					ghosts.remove( ship.ID );
+					spaceGameServer.updateOrAddSpaceCraft( ship );
+					shipMoved( ship );
+					break;
+
+				case DESTROYED:
+
+					spaceGameServer.removeSpaceCraft( ship );
+					spaceGameServer.sendRemoves( ship );
+
+					Integer neighbour = ghostedTo.remove( ship.ID );
+
+					if ( neighbour != null ) {
+						send( neighbour, GHOST_REMOVE, ship );
+					}
+					break;
+
+				default:
+
+					System.err.println( "Unknown cluster message " + code );
+				}
+			}
+
+		} catch ( IOException e ) {
+
+			if ( DEBUG ) System.out.println( "Cluster link closed." );
+		}
+
+		try {
+			peer.close();
+		} catch ( IOException e ) {
+			System.err.println( "Error closing cluster link." );
+		}
+
+	} // end readLink
+
+
+	/*
+	 * Finds the server, other than the owner, whose strip is within
+	 * ghostMargin of an x position owned by a server. That is where the
+	 * owner ghosts a ship at that position. Returns -1 if the position is
+	 * not near an edge.
+	 */
+	protected int neighbourNear( int x, int owner ) {
+
+		int left = ownerOf( x - ghostMargin );
+		int right = ownerOf( x + ghostMargin );
+
+		if ( left != owner ) {
+			return left;
+		}
+		if ( right != owner ) {
+			return right;
+		}
+		return -1;
+
+	} // end neighbourNear
+
+
+	/*
+	 * Queues one message to another server. The craft is written now, so
+	 * the message holds its state at the time of the call.
+	 */
+	protected void send( int node, int code, SpaceCraft sc ) {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream( MESSAGE_SIZE );
+		DataOutputStream dos = new DataOutputStream( bytes );
+
+		try {
+
+			dos.writeInt( code );
+			sc.writeTo( dos );
+
+		} catch ( IOException e ) {
+
+			System.err.println( "Error writing cluster message." );
+			return;
+		}
+
+		outgoing.add( new Message( node, bytes.toByteArray() ) );
+
+	} // end send
+
+
+	/*
+	 * Writes queued messages until the node is closed, connecting to the
+	 * other servers when first needed. Messages queued together are
+	 * flushed together. A failed connection is closed and retried on
+	 * the next message.
+	 */
+	protected void writeLinks() {
+
+		boolean[] unflushed = new boolean[ nodes.length ];
+
+		while ( spaceGameServer.playing ) {
+
+			Message message;
+
+			try {
+				message = outgoing.take();
+			} catch ( InterruptedException e ) {
+				break;
+			}
+
+			int node = message.node;
+
+			try {
+
+				if ( links[node] == null ) {
+					links[node] = connectLink( node );
+				}
+
+				links[node].write( message.bytes );
+				unflushed[node] = true;
+
+			} catch ( IOException e ) {
+
+				System.err.println( "Error sending to cluster node " + nodes[node] );
+				closeLink( node );
+				unflushed[node] = false;
+			}
+
+			if ( outgoing.isEmpty() ) {
+				flushLinks( unflushed );
+			}
+		}
+
+		for ( int i = 0; i < links.length; i++ ) {
+			closeLink( i );
+		}
+
+	} // end writeLinks
+
+
+	/*
+	 * Connects to the link socket of another server, giving up if it does
+	 * not accept in time.
+	 */
+	protected DataOutputStream connectLink( int node ) throws IOException {
+
+		InetSocketAddress game = nodes[node];
+		Socket sock = new Socket();
+
+		try {
+
+			sock.connect( new InetSocketAddress( game.getAddress(), game.getPort() + 1 ), CONNECT_TIMEOUT_MS );
+			sock.setTcpNoDelay( true );
+
+			return new DataOutputStream( new BufferedOutputStream( sock.getOutputStream() ) );
+
+		} catch ( IOException e ) {
+
+			sock.close();
+			throw e;
+		}
+
+	} // end connectLink
+
+
+	/*
+	 * Closes the link to another server, if open, so its socket is not
+	 * left behind when the link is dropped.
+	 */
+	protected void closeLink( int node ) {
+
+		if ( links[node] == null ) {
+			return;
+		}
+
+		try {
+			links[node].close();
+		} catch ( IOException e ) {
+			System.err.println( "Error closing cluster link." );
+		}
+
+		links[node] = null;
+
+	} // end closeLink
+
+
+	/*
+	 * Flushes the links that have been written to since they were last
+	 * flushed.
+	 */
+	protected void flushLinks( boolean[] unflushed ) {
+
+		for ( int i = 0; i < links.length; i++ ) {
+
+			if ( unflushed[i] ) {
+
+				unflushed[i] = false;
+
+				try {
+					links[i].flush();
+				} catch ( IOException e ) {
+					System.err.println( "Error sending to cluster node " + nodes[i] );
+					closeLink( i );
+				}
+			}
+		}
+
+	} // end flushLinks
+
+
+	/**
+	 * Starts one server process per cluster node on this machine. Used to
+	 * run a whole cluster over loopback.
+	 *
+	 * @param args number of servers to start, then optionally the game
+	 * port of the first one
+	 * @throws Exception if a server process cannot be started
+	 */
+	public static void main( String[] args ) throws Exception {
+
+		int count = ( args.length > 0 ) ? Integer.parseInt( args[0] ) : 2;
+		int basePort = ( args.length > 1 ) ? Integer.parseInt( args[1] ) : Constants.SERVER_PORT;
+
+		String host = InetAddress.getLoopbackAddress().getHostAddress();
+
+		// Servers use their game port and the one above it
+		StringBuilder cluster = new StringBuilder();
+
+		for ( int i = 0; i < count; i++ ) {
+
+			if ( i > 0 ) cluster.append( ',' );
+			cluster.append( host ).append( ':' ).append( basePort + 2 * i );
+		}
+
+		ArrayList<Process> servers = new ArrayList<Process>();
+
+		for ( int i = 0; i < count; i++ ) {
+
+			ArrayList<String> command = new ArrayList<String>();
+			command.add( System.getProperty( "java.home" ) + "/bin/java" );
+			command.add( "-cp" );
+			command.add( System.getProperty( "java.class.path" ) );
+			command.add( "-DspaceWar.port=" + ( basePort + 2 * i ) );
+			command.add( "-DspaceWar.cluster=" + cluster );
+			command.add( "-DspaceWar.node=" + i );
+			command.add( "-DspaceWar.seed=" + Long.getLong( "spaceWar.seed", 1L ) );
+
+			// Pass on world size, obstacle count and other game settings
+			for ( String name : System.getProperties().stringPropertyNames() ) {
+
+				if ( name.startsWith( "spaceWar." ) && !name.equals( "spaceWar.port" )
+						&& !name.equals( "spaceWar.cluster" ) && !name.equals( "spaceWar.node" )
+						&& !name.equals( "spaceWar.seed" ) ) {
+
+					command.add( "-D" + name + "=" + System.getProperty( name ) );
+				}
+			}
+
+			command.add( "SpaceGameServer" );
+
+			servers.add( new ProcessBuilder( command ).inheritIO().start() );
+		}
+
+		for ( Process p : servers ) {
+			p.waitFor();
+		}
+
+	} // end main
+
+
+
+	/*
+	 * Message to another server, written out and waiting in the queue.
+	 */
+	protected static class Message {
+
+		final int node;
+		final byte[] bytes;
+
+		Message( int node, byte[] bytes ) {
+
+			this.node = node;
+			this.bytes = bytes;
+
+		} // end Message constructor
+
+	} // end Message class
+
+} // end ClusterNode class
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 
 import spaceWar.Constants;
 import spaceWar.Obstacle;
+import spaceWar.ServerMetrics;
 import spaceWar.SpaceCraft;
 import spaceWar.Torpedo;
 
@@ -68,8 +69,10 @@ public class PersistentConnectionToClient extends Thread {
 
 			}
 			catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				// A redirected client closes its end of the connection
+				if (thisClientIsPlaying) {
+					e.printStackTrace();
+				}
 			}
 
 
@@ -77,6 +80,7 @@ public class PersistentConnectionToClient extends Thread {
 
 			if (code == Constants.FIRED_TORPEDO) {
 				if (DEBUG) System.out.println("Persist client fired Torpedo!!!");
+				spaceGameServer.metrics.tcpMessage(ServerMetrics.TCP_FIRED_TORPEDO);
 
 				int x = 0;
 				int y = 0;
@@ -98,15 +102,24 @@ public class PersistentConnectionToClient extends Thread {
 
 				Torpedo torpedo = new Torpedo(new InetSocketAddress(clientIp, clientPort), x, y ,heading);
 
+				// The client already shows the torpedo. If its ship is no
+				// longer in the game the torpedo is removed from its display.
+				InetSocketAddress shipID = new InetSocketAddress(clientConnection.getInetAddress(), clientPort);
+				if (!spaceGameServer.hasSpaceCraft(shipID)) {
+					sendRemoveToClient(torpedo);
+					continue;
+				}
+
 				//Update Sector with torpedo and send update to clients
-				spaceGameServer.sector.updateOrAddTorpedo(torpedo);
-				spaceGameServer.sector.updateTorpedoes();
+				spaceGameServer.updateOrAddTorpedo(torpedo);
+				spaceGameServer.updateTorpedoes(1);
 
 
 			}
 
 
 			if (code == Constants.EXIT) {
+				spaceGameServer.metrics.tcpMessage(ServerMetrics.TCP_EXIT);
 				byte [] ip = new byte[4];
 				int clientPort = 0;
 				int shipType = 0;
@@ -131,7 +144,7 @@ public class PersistentConnectionToClient extends Thread {
 
 					//Remove all client data and send removes to clients
 					SpaceCraft sc = new SpaceCraft(clientShip, 0, 0, 0);
-					spaceGameServer.sector.removeSpaceCraft(sc);
+					spaceGameServer.removeSpaceCraft(sc);
 					spaceGameServer.removeClientDatagramSocketAddresses(clientShip);
 					spaceGameServer.removePersistentConnection(this);
 					spaceGameServer.sendRemoves(sc);
@@ -147,7 +160,7 @@ public class PersistentConnectionToClient extends Thread {
 
 				if (shipType == Constants.REMOVE_TORPEDO) {
 					if (DEBUG) System.out.println("Persist remove Torpedo");
-					spaceGameServer.sector.removeTorpedo(new Torpedo(clientShip, 0, 0, 0));
+					spaceGameServer.removeTorpedo(new Torpedo(clientShip, 0, 0, 0));
 				}
 			}
 		} // end while
@@ -169,9 +182,18 @@ public class PersistentConnectionToClient extends Thread {
 
 
 	/**
-	 * This method sends the obstacles to the client during initial startup
+	 * This method sends the world dimensions and then the obstacles to the 
+	 * client during initial startup
 	 */
 	protected void sendObstacles() {
+		//Send client the size of the world
+		try {
+			dos.writeInt(Constants.getWorldWidth());
+			dos.writeInt(Constants.getWorldHeight());
+		} catch (IOException e) {
+			System.err.println("Error sending the world size to the client.");
+		}
+		
 		//Send client number of objects to receive coordinates for.
 
 		for (int i = 0; i < spaceGameServer.sector.getObstacles().size(); i++) {
@@ -196,6 +218,7 @@ public class PersistentConnectionToClient extends Thread {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		spaceGameServer.metrics.tcpMessage(ServerMetrics.TCP_WORLD);
 	}
 	
 	/**
@@ -229,6 +252,7 @@ public class PersistentConnectionToClient extends Thread {
 
 		clientISA = new InetSocketAddress(clientIp, clientPort);
 		spaceGameServer.addClientDatagramSocketAddresses(clientISA);
+		spaceGameServer.metrics.tcpMessage(ServerMetrics.TCP_REGISTER);
 
 	}
 
@@ -276,6 +300,7 @@ public class PersistentConnectionToClient extends Thread {
 
 		//If sc is a torpedo, send the torpedo removal code
 		if (sc instanceof Torpedo) {
+			spaceGameServer.metrics.tcpMessage(ServerMetrics.TCP_REMOVE_TORPEDO);
 			try {
 				dos.writeInt(Constants.REMOVE_TORPEDO);
 			} catch (IOException e) {
@@ -285,6 +310,7 @@ public class PersistentConnectionToClient extends Thread {
 		}
 
 		else {
+			spaceGameServer.metrics.tcpMessage(ServerMetrics.TCP_REMOVE_SHIP);
 			try {
 				dos.writeInt(Constants.REMOVE_SHIP);
 			} catch (IOException e) {
@@ -295,6 +321,30 @@ public class PersistentConnectionToClient extends Thread {
 
 
 	} // end sendRemoveToClient
+	
+	
+	/**
+	 * Tells the client to continue the game on another server. The message 
+	 * has the same layout as a remove: the ip and port of the new server 
+	 * followed by the redirect code. The client closes the connection 
+	 * once it has connected to the new server.
+	 * 
+	 * @param newServer game address of the server the client should use
+	 */
+	protected void sendRedirectToClient( InetSocketAddress newServer )
+	{
+		thisClientIsPlaying = false;
+		
+		try {
+			dos.write(newServer.getAddress().getAddress());
+			dos.writeInt(newServer.getPort());
+			dos.writeInt(Constants.REDIRECT);
+		} catch (IOException e) {
+			System.err.println("Error sending redirect to client.");
+		}
+		spaceGameServer.metrics.tcpMessage(ServerMetrics.TCP_REDIRECT);
+		
+	} // end sendRedirectToClient
 
 
 } // end PersistentConnectionToClient class
\ No newline at end of file
@@ -1,17 +1,17 @@
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
+import java.net.SocketAddress;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 
 import javax.swing.JOptionPane;
 
@@ -29,6 +29,9 @@ public class SpaceGameClient implements SpaceGUIInterface
 {
 	// Keeps track of the game state
 	public static Sector sector;
+	
+	// Game state displayed by sector
+	public static SectorModel model;
 
 	// User interface
 	SpaceGameGUI gui;
@@ -37,26 +40,79 @@ public class SpaceGameClient implements SpaceGUIInterface
 	// DatagramSocket being used for game play messages.
 	InetSocketAddress ownShipID;
 
-	// Socket for sending and receiving
+	// Channel for sending and receiving
 	// game play messages.
-	DatagramSocket gamePlaySocket;
+	DatagramChannel gamePlayChannel;
 
-	// Socket used to register and to receive remove information
-	// for ships and 
+	// Connection used to register and to receive remove information
+	// for ships and torpedoes. It blocks while registering and receiving
+	// obstacles and is then read through the selector. Null while moving
+	// to another server.
+	volatile SocketChannel reliableChannel;
 	Socket reliableSocket;
 
+	// Connection to the server moved to, registered with by a redirect
+	// thread and waiting to be taken over by the network loop
+	volatile SocketChannel redirectedChannel;
+
+	// Messages the TCP connection could not take at once, written when the
+	// selector finds it writable. Held with writeLock, which is separate
+	// from the lock of sendPacket, so a slow connection never holds up
+	// ship updates.
+	ByteBuffer pendingWrites = ByteBuffer.allocate(64);
+	final Object writeLock = new Object();
+
+	// Time in milliseconds the exit message is given to be written when
+	// the game stops
+	static final int CLOSE_WAIT_MS = 500;
+
+	// Wakes the network loop when an update or remove arrives, so that 
+	// nothing polls with a timeout
+	Selector selector;
+	
+	// Address and port of the server being played on. Changes when
+	// the server redirects the client to another server of a cluster.
+	InetAddress serverAddress = Constants.SERVER_IP;
+	int serverPort = Constants.getServerPort();
+	InetSocketAddress serverGameAddress = new InetSocketAddress(serverAddress, serverPort);
+
 	// Set to false to stops all receiving loops
-	boolean playing = true;
+	volatile boolean playing = true;
 
 	static final boolean DEBUG = false;
 
 	DataInputStream dis;
 	DataOutputStream dos;
-	ByteArrayOutputStream baos;
 
+	// Size of a remove or redirect message: ip, port and type
+	static final int REMOVE_SIZE = 12;
+
+	// Updates are received into one buffer. Removes are gathered in another
+	// until a whole message has arrived.
+	ByteBuffer receiveBuffer = ByteBuffer.allocate(Constants.PACKET_SIZE);
+	ByteBuffer removeBuffer = ByteBuffer.allocate(REMOVE_SIZE * 64);
+	
+	// Smooths the motion of the ships and torpedoes of others
+	EntityInterpolator interpolator = new EntityInterpolator();
+	
+	// Moves own ship and its torpedo without waiting for the server and
+	// corrects them when the server disagrees
+	ClientPredictor predictor = new ClientPredictor();
+
+	// Applies the updates received from the server
+	UpdateDecoder decoder;
+
+	// Time in milliseconds between the ticks of the input thread. At most
+	// one ship update is sent per tick.
+	static final int INPUT_TICK_MS = Integer.getInteger("spaceWar.inputTick", Constants.TORPEDO_STEP_MS);
+
+	// Inputs made through the GUI, waiting for the input thread
+	InputQueue inputs = new InputQueue();
+	int[] drainedInputs = new int[InputQueue.DEFAULT_CAPACITY];
 
-	ByteArrayInputStream bais;
-	DatagramPacket packet = new DatagramPacket(new byte[24], 24);
+	// Reused to send ship updates and fired torpedo messages
+	ByteBuffer sendBuffer = ByteBuffer.allocate(Constants.PACKET_SIZE);
+	ByteBuffer fireBuffer = ByteBuffer.allocate(20);
 
 	/**
 	 * Creates all components needed to start a space game. Creates Sector 
@@ -70,61 +126,56 @@ public class SpaceGameClient implements SpaceGUIInterface
 		// game play messages.
 		try {
 
-			gamePlaySocket = new DatagramSocket();
-			gamePlaySocket.setSoTimeout(100);
+			gamePlayChannel = DatagramChannel.open();
+			gamePlayChannel.bind(null);
+			selector = Selector.open();
 
-			// Instantiate ownShipID using the DatagramSocket port
+			// Instantiate ownShipID using the channel's port
 			// and the local IP address.
 			ownShipID = new InetSocketAddress( InetAddress.getLocalHost(),
-					gamePlaySocket.getLocalPort());
+					gamePlayChannel.socket().getLocalPort());
 
 			// Create display, ownPort is used to uniquely identify the 
 			// controlled entity.
 			sector = new Sector( ownShipID );
+			model = sector.getModel();
+			sector.setInterpolator( interpolator );
+			sector.setPredictor( predictor );
+			decoder = new UpdateDecoder( model, interpolator, predictor, ownShipID.getPort() );
 
 			//	gui will call SpaceGame methods to handle user events
 			gui = new SpaceGameGUI( this, sector ); 
 
 			// Establish TCP connection with the server and pass the 
-			// IP address and port number of the gamePlaySocket to the 
+			// IP address and port number of the gamePlayChannel to the 
 			// server.
-			establishTCPConnectionWithServer();
+			reliableChannel = establishTCPConnectionWithServer();
 			passClientIPAddressAndPortNumberToServer();
 
 			// Call a method that uses TCP/IP to receive obstacles 
 			// from the server. 
 			receiveObstaclesFromTCPServer();
 
-			// Start thread to listen on the TCP Socket and receive remove messages.
-			new SpaceGameClientThread().start();
+			// Updates and removes are both waited for by the selector
+			gamePlayChannel.configureBlocking(false);
+			gamePlayChannel.register(selector, SelectionKey.OP_READ);
+			registerReliableChannel();
 
+			// Start thread to apply inputs from the GUI and send them to 
+			// the server, so that the GUI never waits on the network.
+			new InputThread().start();
 
-			// Infinite loop or separate thread to receive update 
-			// messages from the server and use the messages to 
-			// update the sector display
-			while(playing) {
-
-				try {
-					gamePlaySocket.receive(packet);
-					handlePacket(packet);
-				} 
-				catch( SocketTimeoutException e) {
-
-				}
-				catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-
-			}
-
-		} catch (SocketException e) {
-			System.err.println("Error creating game play datagram socket.");
-			System.err.println("Server is not opening.");
+			// Receive update and remove messages from the server and use
+			// them to update the sector display
+			networkLoop();
 
 		} catch (UnknownHostException e) {
 			System.err.println("Error creating ownship ID. Exiting.");
 			System.err.println("Server is not opening.");
+
+		} catch (IOException e) {
+			System.err.println("Error creating game play channel.");
+			System.err.println("Server is not opening.");
 		}
 
 		//Print Polite Message to User and Exit
@@ -136,117 +187,331 @@ public class SpaceGameClient implements SpaceGUIInterface
 
 	} // end SpaceGame constructor
 
+	/**
+	 * Creates a client that plays through a channel that is already open,
+	 * without a GUI and without registering with a server. Used by the
+	 * benchmarks of the messages the client sends.
+	 * @param model sector holding own ship
+	 * @param channel channel game play messages are sent through
+	 * @param server game address of the server messages are sent to
+	 */
+	protected SpaceGameClient(SectorModel model, DatagramChannel channel, InetSocketAddress server)
+	{
+		SpaceGameClient.model = model;
+		gamePlayChannel = channel;
+		serverGameAddress = server;
+		ownShipID = model.ownShip.ID;
+
+	} // end SpaceGame constructor
+
 
 	/**
-	 * This method takes in a packet from the UDP loop and handles it based on its type
-	 * @param packet
+	 * Waits on the selector for updates and removes from the server and
+	 * handles them as they arrive. Queued messages are written to the TCP
+	 * connection when it can take them, and a connection to a new server
+	 * is taken over once a redirect thread has registered with it. 
+	 * Returns when playing is set to false, which stop does at once by 
+	 * waking the selector.
 	 */
-	protected void handlePacket(DatagramPacket packet) {
-		//Create Streams
-		bais = new ByteArrayInputStream(packet.getData());
-		dis = new DataInputStream(bais);
+	protected void networkLoop() {
+		while (playing) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				System.err.println("Error waiting for messages from the server.");
+				playing = false;
+				break;
+			}
 
+			SocketChannel redirected = redirectedChannel;
+
+			if (redirected != null) {
+				redirectedChannel = null;
+				takeOverChannel(redirected);
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+
+				if (!key.isValid()) {
+					continue;
+				}
+
+				if (key.channel() == gamePlayChannel) {
+					receiveUpdates();
+					continue;
+				}
+
+				// Once the queue is written there is no need to wait for
+				// the connection to be writable
+				if (key.isWritable() && flushReliable((SocketChannel) key.channel())) {
+					key.interestOps(SelectionKey.OP_READ);
+				}
+
+				if (key.isValid() && key.isReadable()) {
+					receiveRemoves((SocketChannel) key.channel());
+				}
+			}
+		}
+
+		closeReliable();
 
-		int port = 0;
-		int type = 0;
-		int x = 0;
-		int y = 0;
-		int heading = 0;
-
-		/*Read in the data to be used
-		 * Actually no need to read in all the data, but it seemed like
-		 * all the Datagrams should keep a uniform format.
-		 * Kept it just in case we wanted to add functionality later.
-		 */
-		String iNetAddress = disReadInetAddress() ;
 		try {
-			port = dis.readInt();
-			type = dis.readInt();
-			x = dis.readInt();
-			y = dis.readInt();
-			heading = dis.readInt();
+			selector.close();
+			gamePlayChannel.close();
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			// Already closed
 		}
+	}
+
+	/**
+	 * Handles every update waiting on the game play channel. Each one is
+	 * decoded in place, without allocating for ships and torpedoes already
+	 * in the sector.
+	 */
+	protected void receiveUpdates() {
+		try {
+			SocketAddress from;
 
-		InetSocketAddress ip = new InetSocketAddress(packet.getAddress(), port);
-		if (type == Constants.JOIN) {
-			sector.updateOrAddSpaceCraft(new AlienSpaceCraft(ip, x, y, heading));
+			while ((from = gamePlayChannel.receive(receiveBuffer)) != null) {
+				receiveBuffer.flip();
+				decoder.handle(receiveBuffer, ((InetSocketAddress) from).getAddress());
+				receiveBuffer.clear();
+			}
+		} catch (IOException e) {
+			System.err.println("Error receiving update from the server.");
 		}
-		if (type == Constants.UPDATE_SHIP) {
-			sector.updateOrAddSpaceCraft(new AlienSpaceCraft(ip, x, y, heading));
+	}
+
+	/**
+	 * Reads what has arrived on the TCP connection and handles every whole
+	 * remove or redirect message in it. A partial message is kept until the
+	 * rest of it arrives.
+	 * @param channel connection the messages arrived on
+	 */
+	protected void receiveRemoves(SocketChannel channel) {
+		// Left over from a connection closed by a redirect
+		if (channel != reliableChannel) {
+			return;
 		}
-		if (type == Constants.UPDATE_TORPEDO) {
-			sector.updateOrAddTorpedo(ip, x, y, heading);
+
+		try {
+			if (channel.read(removeBuffer) < 0) {
+				if (DEBUG) System.out.println("Server Connection Ended.");
+				playing = false;
+				return;
+			}
+		} catch (IOException e) {
+			if (DEBUG) System.out.println("Server Connection Ended.");
+			playing = false;
+			return;
 		}
 
+		removeBuffer.flip();
+
+		while (removeBuffer.remaining() >= REMOVE_SIZE) {
+			int ip = removeBuffer.getInt();
+			int clientPort = removeBuffer.getInt();
+			int typeToRemove = removeBuffer.getInt();
 
+			// The rest of the messages came from the previous server
+			if (handleRemove(ip, clientPort, typeToRemove)) {
+				removeBuffer.clear();
+				return;
+			}
+		}
+
+		removeBuffer.compact();
 	}
 
 	/**
-	 * This method returns an InetSocketAddress when given an IP String and Port Number.
-	 * Just used to clean up a bit.
-	 * @param ip
-	 * @param port
-	 * @return
+	 * Handles a remove or redirect message from the server. Ships and
+	 * torpedoes are removed by the key made from the address and port,
+	 * so nothing is allocated for them.
+	 * @param ip address in the message as an int, most significant byte first
+	 * @return true if the client moved to another server
 	 */
-	protected InetSocketAddress createInetSocketAddress(String ip, int port) {
-		InetSocketAddress isa = null;
-		try {
-			isa = new InetSocketAddress(InetAddress.getByName(ip), port);
-		} catch (UnknownHostException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	protected boolean handleRemove(int ip, int clientPort, int typeToRemove) {
+		long key = EntityTable.keyOf(ip, clientPort);
+
+		if (DEBUG) System.out.println("IP: " + Integer.toHexString(ip));
+		if (DEBUG) System.out.println("Port: " + clientPort);
+
+		if (typeToRemove == Constants.REMOVE_SHIP) {
+			model.removeSpaceCraft(key);
+			interpolator.remove(key, false);
+			if (DEBUG) {
+				System.out.println("ClientPort for ship to be removed" + clientPort);
+				System.out.println("Removed Ship!!!");
+			}
+		}
+
+		// Own torpedo is removed through the predictor, which
+		// also cancels one that was never accepted
+		if (typeToRemove == Constants.REMOVE_TORPEDO && clientPort == ownShipID.getPort()) {
+			predictor.cancelTorpedo(model);
 		}
+		else if (typeToRemove == Constants.REMOVE_TORPEDO) {
+			model.removeTorpedo(key);
+			interpolator.remove(key, true);
+		}
+
+		// Ip and port are those of the server to move to
+		if (typeToRemove == Constants.REDIRECT) {
+			try {
+				redirectToServer(EntityTable.addressOf(key).getAddress(), clientPort);
+			} catch (UnknownHostException e) {
+				System.err.println("Error reading address of a redirect message.");
+				return false;
+			}
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Makes the TCP connection non-blocking and lets the selector wait on 
+	 * it. Called once registering with the server and receiving obstacles 
+	 * are done.
+	 */
+	protected void registerReliableChannel() throws IOException {
+		removeBuffer.clear();
+		reliableChannel.configureBlocking(false);
+		reliableChannel.register(selector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Writes a whole message to the TCP connection without waiting. What a
+	 * non-blocking write does not take is queued behind any earlier 
+	 * messages, and the selector is asked to say when the connection is
+	 * writable. A message made while moving to another server is dropped,
+	 * as it was meant for the server left.
+	 * @param message buffer holding the message from its position to its limit
+	 */
+	protected void writeReliable(ByteBuffer message) throws IOException {
+		synchronized (writeLock) {
+			SocketChannel channel = reliableChannel;
+
+			if (channel == null) {
+				return;
+			}
+
+			// Written at once unless earlier messages are still queued
+			if (pendingWrites.position() == 0) {
+				channel.write(message);
+			}
+
+			if (!message.hasRemaining()) {
+				return;
+			}
+
+			if (pendingWrites.remaining() < message.remaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(
+						Math.max(2 * pendingWrites.capacity(), pendingWrites.position() + message.remaining()));
+				pendingWrites.flip();
+				larger.put(pendingWrites);
+				pendingWrites = larger;
+			}
+
+			pendingWrites.put(message);
+
+			SelectionKey key = channel.keyFor(selector);
 
-		return isa;
+			if (key != null && key.isValid()) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				selector.wakeup();
+			}
+		}
 	}
 
 	/**
-	 * This is an odd way to transform the byte [] data into a string format,
-	 * but it works so I kept it, even though there are other ways to do this.
-	 * @return
+	 * Writes as much of the queued messages as the TCP connection takes.
+	 * @param channel connection found writable
+	 * @return true if nothing is left queued for the connection
 	 */
-	protected String disReadInetAddress() {
-		String ip = "";
+	protected boolean flushReliable(SocketChannel channel) {
+		synchronized (writeLock) {
+			// Left over from a connection closed by a redirect
+			if (channel != reliableChannel) {
+				return true;
+			}
+
+			pendingWrites.flip();
 
-		for (int i = 0; i < 4; i++) {
 			try {
-				ip += dis.read();
+				channel.write(pendingWrites);
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-			if (i < 3) {
-				ip += ".";
+				System.err.println("Error sending to the server.");
+				pendingWrites.clear();
+				return true;
 			}
+
+			pendingWrites.compact();
+
+			return pendingWrites.position() == 0;
 		}
-		return ip;
 	}
 
 	/**
-	 * This method is just used to clean up code. Just uses the stream to read an int.
-	 * @return
+	 * Gives queued messages, such as the exit message, a moment to be 
+	 * written and closes the TCP connection. Called by the network loop 
+	 * when the game stops.
 	 */
-	protected int disReadInt() {
+	protected void closeReliable() {
+		SocketChannel channel = reliableChannel;
+
+		if (channel == null) {
+			return;
+		}
+
+		long end = System.currentTimeMillis() + CLOSE_WAIT_MS;
+
+		while (!flushReliable(channel) && System.currentTimeMillis() < end) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+
 		try {
-			return dis.readInt();
+			channel.close();
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			System.err.println("Error closing connection to the server.");
 		}
-		return 0;
 	}
 
 	/**
-	 * This method gets the objects from the server at the beginning of the game.
+	 * This method gets the world size and then the objects from the server at 
+	 * the beginning of the game.
 	 */
 	protected void receiveObstaclesFromTCPServer() {
+		receiveObstaclesFromTCPServer(true);
+	}
+
+	/**
+	 * This method gets the world size and then the objects from the server.
+	 * @param addToSector false to read and discard them, as when moving 
+	 * to another server of a cluster that has the same obstacles
+	 */
+	protected void receiveObstaclesFromTCPServer(boolean addToSector) {
 		//X and Y Coordinates to place
 		int x = 0;
 		int y = 0;
 
+		//World dimensions used by the server
+		try {
+			int width = dis.readInt();
+			int height = dis.readInt();
+			Constants.setWorldSize(width, height);
+		} catch (IOException e) {
+			System.err.println("Error receiving the world size from the server.");
+		}
+
 		//If negative number is received, done with coordinates
 		while (x >=0) {
 			//Read X Coordinate
@@ -269,7 +534,9 @@ public class SpaceGameClient implements SpaceGUIInterface
 					// TODO Auto-generated catch block
 					e.printStackTrace();
 				}
-				sector.addObstacle(x, y);
+				if (addToSector) {
+					sector.addObstacle(x, y);
+				}
 			}
 
 		}
@@ -280,7 +547,7 @@ public class SpaceGameClient implements SpaceGUIInterface
 	 */
 	protected void passClientIPAddressAndPortNumberToServer() {
 		/*pass the 
-	IP address and port number of the gamePlaySocket to the 
+	IP address and port number of the gamePlayChannel to the 
 	server.*/
 		createTCPStreams();
 		byte[] ip = null;
@@ -308,19 +575,81 @@ public class SpaceGameClient implements SpaceGUIInterface
 
 	/**
 	 * This is used to loop until the server connects with the client using TCP.
+	 * @return connection to the server. null if the game stopped first.
 	 */
-	protected void establishTCPConnectionWithServer() {
+	protected SocketChannel establishTCPConnectionWithServer() {
 		if (DEBUG) System.out.println("Attempting to find server...");
-		while (reliableSocket == null) {
+		SocketChannel channel = null;
+
+		while (channel == null && playing) {
 
 			try {
-				reliableSocket = new Socket(Constants.SERVER_IP, Constants.SERVER_PORT);
+				channel = SocketChannel.open(new InetSocketAddress(serverAddress, serverPort));
+				reliableSocket = channel.socket();
 			} catch (IOException e) {
 
 			}
 		}
 		if (DEBUG) System.out.println("Connected to Server");
 
+		return channel;
+	}
+
+	/**
+	 * Moves the game to another server of a cluster. The connection to the
+	 * current server is closed and a redirect thread registers with the 
+	 * new server, so updates keep being handled meanwhile. The network 
+	 * loop then takes over the new connection and own ship joins there.
+	 * @param newServer address of the new server
+	 * @param newPort game port of the new server
+	 */
+	protected void redirectToServer(InetAddress newServer, int newPort) {
+		if (DEBUG) System.out.println("Redirected to " + newServer + ":" + newPort);
+
+		// Closing the channel also takes it off the selector. Messages
+		// still queued for it were meant for the server left.
+		synchronized (writeLock) {
+			try {
+				reliableChannel.close();
+			} catch (IOException e) {
+				System.err.println("Error closing connection to previous server.");
+			}
+
+			reliableChannel = null;
+			pendingWrites.clear();
+		}
+
+		serverAddress = newServer;
+		serverPort = newPort;
+		serverGameAddress = new InetSocketAddress(newServer, newPort);
+
+		new RedirectThread().start();
+	}
+
+	/**
+	 * Makes a connection registered with by a redirect thread the one the
+	 * client uses, and lets own ship join the new server. Called by the
+	 * network loop.
+	 * @param channel connection to the new server
+	 */
+	protected void takeOverChannel(SocketChannel channel) {
+		synchronized (writeLock) {
+			reliableChannel = channel;
+		}
+
+		try {
+			registerReliableChannel();
+		} catch (IOException e) {
+			System.err.println("Error listening to the new server.");
+			playing = false;
+			return;
+		}
+
+		if (model.ownShip != null) {
+			synchronized (predictor) {
+				sendPacket(Constants.JOIN, predictor.join());
+			}
+		}
 	}
 
 	/**
@@ -345,198 +674,220 @@ public class SpaceGameClient implements SpaceGUIInterface
 
 
 	/**
-	 * Causes sector.ownShip to turn and sends an update message for the heading 
-	 * change.
+	 * Queues a right turn of model.ownShip. It is applied and sent to the 
+	 * server by the input thread.
 	 */
 	public void turnRight()
 	{
-		if (sector.ownShip != null) {
+		if (model.ownShip != null) {
 			if ( DEBUG ) System.out.println( " Right Turn " );
-			// Update the display			
-			sector.ownShip.rightTurn();
-
-			// Send update message to server with new heading.
-			sendPacket(Constants.UPDATE_SHIP);
-
+			inputs.offer(ClientPredictor.TURN_RIGHT);
 		} 
 
 	} // end turnRight
 
 
 	/**
-	 * Causes sector.ownShip to turn and sends an update message for the heading 
-	 * change.
+	 * Queues a left turn of model.ownShip. It is applied and sent to the 
+	 * server by the input thread.
 	 */
 	public void turnLeft()
 	{
 		// See if the player has a ship in play
-		if (sector.ownShip != null) {		
+		if (model.ownShip != null) {		
 
 			if ( DEBUG ) System.out.println( " Left Turn " );
-
-			// Update the display
-			sector.ownShip.leftTurn();
-
-			// Send update message to other server with new heading.
-			// TODO
-			sendPacket(Constants.UPDATE_SHIP);
+			inputs.offer(ClientPredictor.TURN_LEFT);
 		}		
 
 	} // end turnLeft
 
 
 	/**
-	 * Causes sector.ownShip to turn and sends an update message for the heading 
-	 * change.
+	 * Queues a torpedo to be fired by model.ownShip. The server is told by
+	 * the input thread.
 	 */
 	public void fireTorpedo()
 	{
 		// See if the player has a ship in play
-		if (sector.ownShip != null) {		
+		if (model.ownShip != null) {		
 
 			if ( DEBUG ) System.out.println( "Informing server of new torpedo" );
-
-			// Send code to let server know a torpedo is being fired.
-			createTCPStreams();
-
-			try {
-				dos.writeInt(Constants.FIRED_TORPEDO);
-
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-
-			// Send Position and heading
-			try {
-				dos.writeInt(sector.ownShip.ID.getPort());
-				dos.writeInt(sector.ownShip.getXPosition());
-				dos.writeInt(sector.ownShip.getYPosition());
-				dos.writeInt(sector.ownShip.getHeading());
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-
+			inputs.offer(InputQueue.FIRE);
 		}		
 
-	} // end turnLeft
+	} // end fireTorpedo
 
 
 	/**
-	 * Causes sector.ownShip to move forward and sends an update message for the 
-	 * position change. If there is an obstacle in front of
-	 * the ship it will not move forward and a message is not sent. 
+	 * Queues a move forward of model.ownShip. If there is an obstacle in 
+	 * front of the ship when the move is applied it will not move forward 
+	 * and a message is not sent. 
 	 */
 	public void moveFoward()
 	{
-		// Check if the player has and unblocked ship in the game
-		if ( sector.ownShip != null && sector.clearInfront() ) {
+		// Check if the player has a ship in the game. The predictor
+		// checks for obstacles.
+		if ( model.ownShip != null ) {
 
 			if ( DEBUG ) System.out.println( " Move Forward" );
-
-			//Update the displayed position of the ship
-			sector.ownShip.moveForward();
-
-			// Send a message with the updated position to server
-			// TODO	
-			sendPacket(Constants.UPDATE_SHIP);
+			inputs.offer(ClientPredictor.FORWARD);
 		}
 
 	} // end moveFoward
 
 
 	/**
-	 * Causes sector.ownShip to move forward and sends an update message for the 
-	 * position change. If there is an obstacle in front of
-	 * the ship it will not move forward and a message is not sent. 
+	 * Queues a move backward of model.ownShip. If there is an obstacle 
+	 * behind the ship when the move is applied it will not move backward 
+	 * and a message is not sent. 
 	 */
 	public void moveBackward()
 	{
-		// Check if the player has and unblocked ship in the game
-		if ( sector.ownShip != null && sector.clearBehind() ) {
+		// Check if the player has a ship in the game. The predictor
+		// checks for obstacles.
+		if ( model.ownShip != null ) {
 
 			if ( DEBUG ) System.out.println( " Move Backward" );
-
-			//Update the displayed position of the ship
-			sector.ownShip.moveBackward();
-
-			// Send a message with the updated position to server
-			// TODO	
-			sendPacket(Constants.UPDATE_SHIP);
+			inputs.offer(ClientPredictor.BACKWARD);
 		}
 
-	} // end moveFoward
+	} // end moveBackward
 
 
 	/**
-	 * Creates a new sector.ownShip if one does not exist. Sends a join message 
-	 * for the new ship.
+	 * Queues the creation of a new model.ownShip if one does not exist. The
+	 * input thread creates it and sends a join message for it.
 	 *
 	 */
 	public void join()
 	{
-		if (sector.ownShip == null ) {
+		if (model.ownShip == null ) {
 
 			if ( DEBUG ) System.out.println( " Join " );
+			inputs.offer(InputQueue.JOIN);
+		}
 
-			// Add a new ownShip to the sector display
-			sector.createOwnSpaceCraft();
+	} // end join
 
-			// Send message to server let them know you have joined the game using the 
-			// send object
-			// TODO
+	/**
+	 * Handles the inputs queued since the last tick. Each input is applied
+	 * to own ship through the predictor, in the order it was made. At most 
+	 * one ship update is sent, carrying the state after the last input and 
+	 * its sequence number. The server allows a move as large as the gap in 
+	 * sequence numbers, so coalesced inputs are accepted. Since a ship has 
+	 * one torpedo at a time, of several fire inputs only the last is sent.
+	 */
+	protected void handleInputs() {
+		int count = inputs.drain(drainedInputs);
 
-			sendPacket(Constants.JOIN);
+		if (count == 0) {
+			return;
 		}
 
-	} // end join
+		boolean fired = false;
+		int fireX = 0;
+		int fireY = 0;
+		int fireHeading = 0;
+
+		// Held while sending so the state sent matches the sequence number
+		synchronized (predictor) {
+			int sequence = -1;
+
+			for (int i = 0; i < count; i++) {
+				int input = drainedInputs[i];
+
+				if (input == InputQueue.JOIN) {
+					if (model.ownShip == null) {
+						// Add a new ownShip to the sector display and let
+						// the server know it has joined the game
+						sector.createOwnSpaceCraft();
+						sendPacket(Constants.JOIN, predictor.join());
+						sequence = -1;
+					}
+				}
+				else if (input == InputQueue.FIRE) {
+					if (model.ownShip != null) {
+						// Show the torpedo now. It is identified the same 
+						// way as in the server's updates for it.
+						predictor.fire(model, new InetSocketAddress(serverAddress, ownShipID.getPort()));
+						fired = true;
+						fireX = model.ownShip.getXPosition();
+						fireY = model.ownShip.getYPosition();
+						fireHeading = model.ownShip.getHeading();
+					}
+				}
+				else {
+					int applied = predictor.apply(model, input);
+
+					if (applied >= 0) {
+						sequence = applied;
+					}
+				}
+			}
 
-	protected void sendPacket(int type) {
-		//Create Packet and Streams
-		DatagramPacket packet;
-		baos = new ByteArrayOutputStream();
-		dos = new DataOutputStream(baos);
+			if (sequence >= 0 && model.ownShip != null) {
+				sendPacket(Constants.UPDATE_SHIP, sequence);
+			}
+		}
 
-		try {
-			dos.write(sector.ownShip.ID.getAddress().getAddress());
-		} catch (IOException e1) {
-			// TODO Auto-generated catch block
-			e1.printStackTrace();
+		if (fired) {
+			sendFire(fireX, fireY, fireHeading);
 		}
 
-		dosWriteInt(sector.ownShip.ID.getPort());
-		dosWriteInt(type);
-		dosWriteInt(sector.ownShip.getXPosition());
-		dosWriteInt(sector.ownShip.getYPosition());
-		dosWriteInt(sector.ownShip.getHeading());
+	} // end handleInputs
+
+	/**
+	 * Lets the server know a torpedo has been fired from the given position
+	 * and heading. The message is written to the TCP connection in one piece.
+	 */
+	protected void sendFire(int x, int y, int heading) {
+		fireBuffer.clear();
+		fireBuffer.putInt(Constants.FIRED_TORPEDO);
+		fireBuffer.putInt(ownShipID.getPort());
+		fireBuffer.putInt(x);
+		fireBuffer.putInt(y);
+		fireBuffer.putInt(heading);
+		fireBuffer.flip();
 
-		packet = new DatagramPacket(baos.toByteArray(), baos.size());
-		packet.setAddress(Constants.SERVER_IP);
-		packet.setPort(Constants.SERVER_PORT);
 		try {
-			gamePlaySocket.send(packet);
+			writeReliable(fireBuffer);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			System.err.println("Error sending fired torpedo to server.");
 		}
+
+	} // end sendFire
+
+	/**
+	 * Sends a datagram with the state of own ship to the server. The 
+	 * buffer is reused, so this is synchronized for the input thread and a
+	 * redirect to another server. A datagram the channel cannot take at 
+	 * once is dropped, as it could be on the way.
+	 */
+	protected synchronized void sendPacket(int type, int sequence) {
+		sendBuffer.clear();
+		sendBuffer.put(model.ownShip.ID.getAddress().getAddress());
+		sendBuffer.putInt(model.ownShip.ID.getPort());
+		sendBuffer.putInt(type);
+		sendBuffer.putInt(model.ownShip.getXPosition());
+		sendBuffer.putInt(model.ownShip.getYPosition());
+		sendBuffer.putInt(model.ownShip.getHeading());
+
+		// Time stamp is filled in by the server
+		sendBuffer.putLong(0);
+
+		// Echoed by the server in its acknowledgement
+		sendBuffer.putInt(sequence);
+
+		sendBuffer.flip();
 		try {
-			baos.close();
-			dos.close();
+			gamePlayChannel.send(sendBuffer, serverGameAddress);
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
-	}
 
-	protected void dosWriteInt(int var) {
-		try {
-			dos.writeInt(var);
-		} catch (IOException e1) {
-			// TODO Auto-generated catch block
-			e1.printStackTrace();
-		}
-	}
+	} // end sendPacket
 
 	/**
 	 *  Perform clean-up for application shut down
@@ -549,14 +900,14 @@ public class SpaceGameClient implements SpaceGUIInterface
 		playing = false;
 
 		// Send exit code to the server
-		// TODO
-
-		createTCPStreams();
+		ByteBuffer exit = ByteBuffer.allocate(16);
 		try {
-			dos.writeInt(Constants.EXIT);
-			dos.write(InetAddress.getLocalHost().getAddress());
-			dos.writeInt(gamePlaySocket.getLocalPort());
-			dos.writeInt(Constants.REMOVE_SHIP);
+			exit.putInt(Constants.EXIT);
+			exit.put(InetAddress.getLocalHost().getAddress());
+			exit.putInt(ownShipID.getPort());
+			exit.putInt(Constants.REMOVE_SHIP);
+			exit.flip();
+			writeReliable(exit);
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			//e.printStackTrace();
@@ -567,106 +918,87 @@ public class SpaceGameClient implements SpaceGUIInterface
 			// TODO Auto-generated catch block
 			//e.printStackTrace();
 		}
-		if (DEBUG) System.out.println("Port Sending... " + gamePlaySocket.getLocalPort());
+		if (DEBUG) System.out.println("Port Sending... " + ownShipID.getPort());
 
-		try {
-			dos.close();
-			dis.close();
-			reliableSocket.close();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		// The network loop sees playing is false as soon as it wakes, and
+		// closes the connection once the exit message is written
+		selector.wakeup();
 
 	} // end stop
 
 
-	/*
-	 * Starts the space game. Driver for the application.
+	/**
+	 * Handles the inputs queued by the GUI once every INPUT_TICK_MS.
 	 */
-
-
-	class SpaceGameClientThread extends Thread {
+	class InputThread extends Thread {
 
 		public void run() {
-			// Start thread to listen on the TCP Socket and receive remove messages.
+			long next = System.currentTimeMillis();
+
 			while (playing) {
-				DataInputStream dis1 = null;
-				try {
-					dis1 = new DataInputStream(reliableSocket.getInputStream());
-				} catch (IOException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
+				next += INPUT_TICK_MS;
+				long wait = next - System.currentTimeMillis();
+
+				// Ticks missed while behind are not made up
+				if (wait > 0) {
+					try {
+						Thread.sleep(wait);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				else {
+					next = System.currentTimeMillis();
 				}
 
-				try {
-
-					byte [] ip = new byte[4];
-					int clientPort = 0;
+				handleInputs();
+			}
 
-					dis1.read(ip);
-					clientPort = dis1.readInt();
+		} // end run
 
-					InetAddress clientIp = null;
-					clientIp = InetAddress.getByAddress(ip);
+	} // end InputThread class
 
-					if (DEBUG) System.out.println("IP: " + clientIp);
-					if (DEBUG) System.out.println("Port: " + clientPort);
 
-					int typeToRemove = 0;
+	/**
+	 * Connects and registers with the server a redirect moves to, and
+	 * receives its obstacles, without holding up the network loop. The
+	 * connection is then handed to the network loop.
+	 */
+	class RedirectThread extends Thread {
 
-					typeToRemove = dis1.readInt();
+		public void run() {
+			SocketChannel channel = establishTCPConnectionWithServer();
 
+			if (channel == null) {
+				return;
+			}
 
-					if (typeToRemove == Constants.REMOVE_SHIP) {
-						sector.removeSpaceCraft(new InetSocketAddress(clientIp, clientPort), 0, 0, 0);
-						if (DEBUG) {
-							System.out.println("ClientPort for ship to be removed" + clientPort);
-							System.out.println("Removed Ship!!!");
-						}
-					}
+			passClientIPAddressAndPortNumberToServer();
 
-					if (typeToRemove == Constants.REMOVE_TORPEDO) {
-						sector.removeTorpedo(new InetSocketAddress(clientIp, clientPort), 0, 0, 0);
-					}
+			// Obstacles are the same on every server of a cluster
+			receiveObstaclesFromTCPServer(false);
 
+			// The network loop has stopped and will not take it over
+			if (!playing) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					System.err.println("Error closing connection to the server.");
 				}
-				catch (IOException e) {
-					// TODO Auto-generated catch block
-					//e.printStackTrace();
-					if (DEBUG) System.out.println("Server Connection Ended.");
-					playing = false;
-				}
-			}
-			try {
-				dis.close();
-				dos.close();
-				reliableSocket.close();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				return;
 			}
-		}
 
-		protected void createTCPStreams() {
-			try {
-				dis = new DataInputStream(reliableSocket.getInputStream());
-			} catch (IOException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			}
+			redirectedChannel = channel;
+			selector.wakeup();
 
-			try {
-				dos = new DataOutputStream(reliableSocket.getOutputStream());
-			} catch (IOException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			}
-		}
+		} // end run
 
+	} // end RedirectThread class
 
-	}
 
+	/*
+	 * Starts the space game. Driver for the application.
+	 */
 	public static void main(String[] args) 
 	{	
 		new SpaceGameClient();
@@ -1,8 +1,8 @@
-import java.awt.Point;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
@@ -11,6 +11,7 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Random;
 import java.util.Timer;
@@ -51,11 +52,22 @@ public class SpaceGameServer
 	private ArrayList<PersistentConnectionToClient> playerTCPConnections 
 		= new ArrayList<PersistentConnectionToClient>();
 	
-	// Simple gui to display what the server is tracking
-	protected ServerGUI display;
+	// Simple gui to display what the server is tracking. null when the
+	// server runs headless.
+	protected ServerGUI display = null;
 	
 	// Sector containing all information about the game state
-	protected Sector sector;
+	protected SectorModel sector;
+	
+	// World split into zones that are simulated on separate threads. Only
+	// used when the spaceWar.zones system property is more than one. The
+	// zones then hold the ships and torpedoes and sector only holds the 
+	// obstacles, unless it mirrors the zones for the display.
+	protected ZonedWorld zonedWorld = null;
+	
+	// True when sector keeps a copy of the ships and torpedoes of the 
+	// zones for the display. A headless server keeps no copy.
+	protected boolean mirrorsZones = false;
 	
 	// True till GUI is closed. Setting to false cases all message forwarding
 	// and game state updating to end.
@@ -70,6 +82,45 @@ public class SpaceGameServer
 	// Socket with which clients make contact when first starting up.
 	ServerSocket gameServerSocket = null;
 	
+	// Link to the other servers when this server is part of a cluster.
+	// null when it runs on its own.
+	protected ClusterNode cluster = null;
+	
+	// Socket used to send ship updates that do not come from a client,
+	// such as ghosts of ships owned by another server
+	protected DatagramSocket updateSocket = null;
+	
+	// Last update accepted from each client's ship and where the server 
+	// has the ship, keyed by the EntityTable key of the ship's ID. Only 
+	// used while holding the lock on the server.
+	protected EntityTable<LastInput> lastInputs = new EntityTable<LastInput>();
+	
+	// Acknowledgement written into the same buffer and packet each time.
+	// Only used while holding the lock on ackPacket.
+	protected final ByteBuffer ackBuffer = ByteBuffer.allocate( Constants.PACKET_SIZE );
+	protected final DatagramPacket ackPacket 
+		= new DatagramPacket( ackBuffer.array(), Constants.PACKET_SIZE );
+	
+	// Journal of every event that changes the sector, kept with the
+	// snapshots in a directory given by the spaceWar.journal system
+	// property. null when the property is not set.
+	protected EventJournal journal = null;
+	
+	// Directory snapshots of the sector are written to, given by the
+	// spaceWar.journal or spaceWar.snapshot system property, or null
+	protected File snapshotDirectory = null;
+	
+	// Timer for writing snapshots, kept apart from the torpedo updates
+	protected Timer snapshotTimer;
+	
+	// Held while a snapshot is written, so the last one written when the
+	// server is closed does not run into one from the timer
+	protected final Object snapshotLock = new Object();
+	
+	// Counts and times the messages, ticks and collisions of the server.
+	// Read over JMX.
+	protected ServerMetrics metrics;
+	
 	/**
 	 * Server constructor. Create data members to use for
 	 * tracking and updating game information. Create obstacles.
@@ -77,19 +128,81 @@ public class SpaceGameServer
 	 */
 	public SpaceGameServer() 
 	{
+		// Obstacles must be the same on every server of a cluster, so
+		// a seed can be given
+		if ( Long.getLong( "spaceWar.seed" ) != null ) {
+			rand.setSeed( Long.getLong( "spaceWar.seed" ) );
+		}
+		
 		// Create sector to hold all game information
-		sector = new Sector();
+		sector = new SectorModel();
+		
+		// Metrics of this server are told apart from those of others in
+		// the same JVM by its port
+		metrics = new ServerMetrics( sector );
+		metrics.register( String.valueOf( Constants.getServerPort() ) );
+		
+		// Split the world into zones if more than one is requested
+		int zoneCount = Integer.getInteger( "spaceWar.zones", 1 );
 		
-		// Create and position the obstacles
-		createObstacles();
+		// Ghosts must cover the distance a torpedo moves in one update
+		// plus the width of the objects it can hit
+		int ghostMargin = 2 * Constants.OBJECT_WIDTH + Constants.INCREMENT 
+			* ( Constants.TORPEDO_UPDATE_PERIOD / Constants.TORPEDO_STEP_MS + 1 );
+		
+		if ( zoneCount > 1 ) {
+			
+			zonedWorld = new ZonedWorld( zoneCount, ghostMargin );
+			mirrorsZones = !Boolean.getBoolean( "spaceWar.headless" );
+			metrics.setZones( zonedWorld );
+		}
+		
+		// Join the other servers if this one is part of a cluster
+		cluster = ClusterNode.fromProperties( this, ghostMargin );
+		
+		if ( cluster != null ) {
+			
+			try {
+				updateSocket = new DatagramSocket();
+			} catch (SocketException e) {
+				System.err.println("Could not create Datagram Socket for cluster updates.");
+			}
+			
+			cluster.start();
+		}
+		
+		// Rebuild the sector from the journal or the last snapshot if there
+		// is one. Otherwise create and position the obstacles.
+		if ( !openJournal() && !loadSnapshot() ) {
+			createObstacles();
+		}
+		
+		// Snapshots are written in the background and let the journal be
+		// cut short
+		if ( snapshotDirectory != null ) {
+			
+			snapshotTimer = new Timer( "snapshot", true );
+			int period = Integer.getInteger( "spaceWar.snapshotPeriod", 10000 );
+			
+			snapshotTimer.schedule( new TimerTask() {
+				
+				public void run() {
+					
+					snapshot();
+				}
+			}, period, period );
+		}
 
-		// Create the GUI that will display the sector
-		display = new ServerGUI( sector );
+		// Create the GUI that will display the sector unless the server
+		// runs without a display
+		if ( !Boolean.getBoolean( "spaceWar.headless" ) ) {
+			createDisplay();
+		}
 		
 		// Start the task to update the torpedoes
 		torpedoTimer = new Timer();
 		torpUpdater = new TorpdedoUpdater(this);
-		torpedoTimer.scheduleAtFixedRate( torpUpdater, 0, 50);
+		torpedoTimer.scheduleAtFixedRate( torpUpdater, 0, Constants.TORPEDO_UPDATE_PERIOD );
 		
 		// Start the UDP server
 		new BestEffortServer(this).start();
@@ -100,6 +213,54 @@ public class SpaceGameServer
 	} // end SpaceGameServer constructor
 	
 	
+	/**
+	 * Creates a server around a sector without starting it. No display,
+	 * sockets, threads or timers are created, so the server only handles
+	 * the messages it is handed. Used by the benchmarks of its message
+	 * handling.
+	 * 
+	 * @param sector sector containing all information about the game state
+	 */
+	protected SpaceGameServer( SectorModel sector ) 
+	{
+		this( sector, null, false );
+		
+	} // end SpaceGameServer constructor
+	
+	
+	/**
+	 * Creates a server around a sector split into zones without starting
+	 * it, as the benchmarks of the zones do. The ships and torpedoes of
+	 * the sector are handed to the zones.
+	 * 
+	 * @param sector sector containing all information about the game state
+	 * @param zonedWorld zones to simulate the sector in, or null
+	 * @param mirrorsZones true if the sector keeps a copy of the ships and
+	 * torpedoes of the zones, as it does for a display
+	 */
+	protected SpaceGameServer( SectorModel sector, ZonedWorld zonedWorld, boolean mirrorsZones ) 
+	{
+		this.sector = sector;
+		this.zonedWorld = zonedWorld;
+		this.mirrorsZones = mirrorsZones;
+		metrics = new ServerMetrics( sector );
+		metrics.setZones( zonedWorld );
+		fillZones();
+		
+	} // end SpaceGameServer constructor
+	
+	
+	/**
+	 * Creates the GUI that displays the sector. Kept out of the constructor
+	 * so that no AWT classes are loaded when the server runs headless.
+	 */
+	protected void createDisplay()
+	{
+		display = new ServerGUI( new Sector( sector ) );
+		
+	} // end createDisplay
+	
+	
 	/**
 	 * Synchronized method to create thread safe access to the playerTCPConnections data member.
 	 * 
@@ -140,6 +301,7 @@ public class SpaceGameServer
 	protected synchronized void removeClientDatagramSocketAddresses(InetSocketAddress ISA)
 	{
 		clientDatagramSocketAddresses.remove(ISA);
+		metrics.forgetClient(ISA);
 		
 	} // end removeClientDatagramSocketAddresses
 	
@@ -152,7 +314,7 @@ public class SpaceGameServer
 	protected void createPersistentClientConnections() {
 		
 		try {
-			gameServerSocket = new ServerSocket(Constants.SERVER_PORT);
+			gameServerSocket = new ServerSocket(Constants.getServerPort());
 
 			while( playing ) {
 				
@@ -180,20 +342,347 @@ public class SpaceGameServer
 	
 	/**
 	 * Create a number of obstacles as determined by a value held in 
-	 * Constants.NUMBER_OF_OBSTACLES. Obstacles are in random positions
-	 * and are shared by all clients.
+	 * Constants.NUMBER_OF_OBSTACLES, or by the spaceWar.obstacles system
+	 * property when it is set. Obstacles are in random positions
+	 * anywhere in the world and are shared by all clients.
 	 */
 	protected void createObstacles() 
 	{
-		for(int i = 0 ; i < Constants.NUMBER_OF_OBSTACLES ; i++){
+		int count = Integer.getInteger( "spaceWar.obstacles", Constants.NUMBER_OF_OBSTACLES );
+		
+		for(int i = 0 ; i < count ; i++){
+			
+			Obstacle obs = new Obstacle( rand.nextInt(Constants.getWorldWidth()), 
+										 rand.nextInt(Constants.getWorldHeight()) );
 			
-			sector.addObstacle( new Obstacle( rand.nextInt(Constants.MAX_SECTOR_X), 
-											  rand.nextInt(Constants.MAX_SECTOR_Y) ) );
+			sector.addObstacle( obs );
+			
+			if ( zonedWorld != null ) {
+				zonedWorld.addObstacle( obs );
+			}
+			
+			if ( journal != null ) {
+				journal.append( EventJournal.OBSTACLE, 0, 0, obs.getXPosition(), obs.getYPosition(), 0 );
+			}
 		}
 
 	} // end createObstacles
 	
 	
+	/**
+	 * Opens the journal in the directory given by the spaceWar.journal 
+	 * system property. The state of the sector is first rebuilt from the 
+	 * last snapshot in the directory and the events journaled after it.
+	 * 
+	 * @return true if the sector was rebuilt with its obstacles
+	 */
+	protected boolean openJournal()
+	{
+		String directory = System.getProperty( "spaceWar.journal" );
+		
+		if ( directory == null ) {
+			return false;
+		}
+		
+		snapshotDirectory = new File( directory );
+		
+		try {
+			
+			long start = System.nanoTime();
+			long replayed = EventJournal.recover( snapshotDirectory, sector );
+			
+			if ( sector.getVersion() > 0 ) {
+				
+				System.out.printf( "Recovered %d ships, %d torpedoes and %d obstacles in %.1f ms (%d events replayed)%n",
+						sector.getSpaceCrafts().size(), sector.getTorpedoes().size(),
+						sector.getObstacles().size(), ( System.nanoTime() - start ) / 1e6, replayed );
+			}
+			
+			fillZones();
+			journal = new EventJournal( snapshotDirectory );
+			
+		} catch ( IOException e ) {
+			
+			System.err.println( "Could not open journal in " + directory + ". Running without one." );
+			journal = null;
+		}
+		
+		return !sector.getObstacles().isEmpty();
+		
+	} // end openJournal
+	
+	
+	/**
+	 * Restores the sector from the snapshot in the directory given by the
+	 * spaceWar.snapshot system property, if there is one. Snapshots are
+	 * then written to that directory. Only the obstacles and tick are 
+	 * restored before the server starts. Ships and torpedoes follow in the 
+	 * background, unless the world is split into zones.
+	 * 
+	 * @return true if the sector was restored with its obstacles
+	 */
+	protected boolean loadSnapshot()
+	{
+		String directory = System.getProperty( "spaceWar.snapshot" );
+		
+		if ( directory == null ) {
+			return false;
+		}
+		
+		snapshotDirectory = new File( directory );
+		
+		if ( !snapshotDirectory.isDirectory() && !snapshotDirectory.mkdirs() ) {
+			
+			System.err.println( "Could not create snapshot directory " + directory + "." );
+			snapshotDirectory = null;
+			return false;
+		}
+		
+		try {
+			
+			long start = System.nanoTime();
+			SectorSnapshot snapshot = SectorSnapshot.map( snapshotDirectory );
+			
+			if ( snapshot == null ) {
+				return false;
+			}
+			
+			snapshot.restoreObstacles( sector );
+			sector.setTick( snapshot.getTick() );
+			
+			System.out.printf( "Restored %d obstacles at tick %d in %.1f ms%n", sector.getObstacles().size(), 
+					sector.getTick(), ( System.nanoTime() - start ) / 1e6 );
+			
+			// Zones are only filled once the sector is whole
+			if ( zonedWorld != null ) {
+				
+				snapshot.restoreCrafts( sector );
+				fillZones();
+			}
+			else {
+				restoreInBackground( snapshot );
+			}
+			
+		} catch ( IOException e ) {
+			System.err.println( "Could not load snapshot in " + directory + ". Starting a new sector." );
+		}
+		
+		return !sector.getObstacles().isEmpty();
+		
+	} // end loadSnapshot
+	
+	
+	/**
+	 * Restores the ships and torpedoes of a snapshot on a thread of their
+	 * own while the server runs. Ships and torpedoes players change in the
+	 * meantime are not overwritten, and no snapshot is written until the
+	 * restore is done.
+	 * 
+	 * @param snapshot snapshot whose obstacles have been restored
+	 */
+	protected void restoreInBackground( final SectorSnapshot snapshot )
+	{
+		sector.startRestore( snapshot.getShipCount(), snapshot.getTorpedoCount() );
+		
+		Thread restorer = new Thread( "restore" ) {
+			
+			public void run() {
+				
+				synchronized ( snapshotLock ) {
+					
+					long start = System.nanoTime();
+					
+					try {
+						
+						int added = snapshot.restoreCrafts( sector );
+						
+						System.out.printf( "Restored %d ships and torpedoes in the background in %.1f ms%n", 
+								added, ( System.nanoTime() - start ) / 1e6 );
+						
+					} catch ( IOException e ) {
+						System.err.println( "Could not restore ships and torpedoes from snapshot." );
+					}
+					finally {
+						sector.finishRestore();
+					}
+				}
+				
+			} // end run
+		};
+		
+		restorer.setDaemon( true );
+		restorer.start();
+		
+	} // end restoreInBackground
+	
+	
+	/**
+	 * Fills the zones, if the world is split into them, from a sector 
+	 * that has been rebuilt or restored. Unless the sector mirrors the 
+	 * zones, its ships and torpedoes are then dropped from it.
+	 */
+	protected void fillZones()
+	{
+		if ( zonedWorld == null ) {
+			return;
+		}
+		
+		zonedWorld.fillFrom( sector );
+		
+		if ( !mirrorsZones ) {
+			sector.clearCrafts();
+		}
+		
+	} // end fillZones
+	
+	
+	/**
+	 * Writes a snapshot of the sector and deletes the journal segments it
+	 * makes unnecessary. Called periodically on the snapshot timer and 
+	 * when the server is closed.
+	 */
+	protected void snapshot()
+	{
+		synchronized ( snapshotLock ) {
+			
+			// The position is taken first, so every event before it is in the snapshot
+			long position = ( journal == null ) ? 0 : journal.getPosition();
+			
+			try {
+				
+				SectorSnapshot.write( snapshotState(), position, snapshotDirectory );
+				
+				if ( journal != null ) {
+					journal.truncate( position );
+				}
+				
+			} catch ( IOException e ) {
+				System.err.println( "Could not write snapshot." );
+			}
+		}
+		
+	} // end snapshot
+	
+	
+	/**
+	 * Returns the sector to write a snapshot of. When the world is split
+	 * into zones the zones are copied into a sector of their own, since 
+	 * the sector of the server holds no ships or torpedoes of its own.
+	 * 
+	 * @return sector holding the whole state of the game
+	 */
+	protected SectorModel snapshotState()
+	{
+		if ( zonedWorld == null ) {
+			return sector;
+		}
+		
+		SectorModel state = new SectorModel();
+		
+		for ( Obstacle obs : sector.getObstacles() ) {
+			state.addObstacle( obs );
+		}
+		
+		// Copied at one tick, since torpedo updates wait for the zones
+		synchronized ( zonedWorld ) {
+			zonedWorld.copyInto( state );
+		}
+		
+		return state;
+		
+	} // end snapshotState
+	
+	
+	/**
+	 * Appends an event about a ship or torpedo to the journal if there is one.
+	 * 
+	 * @param kind kind of the event
+	 * @param sc ship or torpedo the event is about
+	 */
+	protected void journal( int kind, SpaceCraft sc )
+	{
+		if ( journal == null ) {
+			return;
+		}
+		
+		if ( sc instanceof Torpedo ) {
+			journal.append( kind, (Torpedo) sc );
+		}
+		else {
+			journal.append( kind, sc.ID, sc.getXPosition(), sc.getYPosition(), sc.getHeading() );
+		}
+		
+	} // end journal
+	
+	
+	/**
+	 * Appends the tick of the game to the journal if there is one, after 
+	 * the torpedoes have been moved.
+	 */
+	protected void journalTick()
+	{
+		if ( journal != null ) {
+			journal.appendTick( zonedWorld == null ? sector.getTick() : zonedWorld.getTick() );
+		}
+		
+	} // end journalTick
+	
+	
+	/**
+	 * Returns the lock held while torpedoes are changed and the change is
+	 * journaled, so the journal has torpedo events and ticks in the order
+	 * they happened. That is the sector, whose torpedo methods already 
+	 * hold it, or the zones when the world is split into zones.
+	 * 
+	 * @return lock for torpedo changes
+	 */
+	protected Object torpedoLock()
+	{
+		return ( zonedWorld == null ) ? sector : zonedWorld;
+		
+	} // end torpedoLock
+	
+	
+	/**
+	 * Appends removes for destroyed ships and torpedoes to the journal.
+	 * 
+	 * @param destroyed ships and torpedoes destroyed, or null
+	 */
+	protected void journalDestroyed( ArrayList<SpaceCraft> destroyed )
+	{
+		if ( journal == null || destroyed == null ) {
+			return;
+		}
+		
+		for ( SpaceCraft sc : destroyed ) {
+			journal( sc instanceof Torpedo ? EventJournal.REMOVE_TORPEDO : EventJournal.REMOVE_SHIP, sc );
+		}
+		
+	} // end journalDestroyed
+	
+	
+	/**
+	 * Forgets the updates of destroyed ships, so that their clients are 
+	 * no longer acknowledged and their next join starts afresh.
+	 * 
+	 * @param destroyed ships and torpedoes destroyed, or null
+	 */
+	protected synchronized void forgetInputs( ArrayList<SpaceCraft> destroyed )
+	{
+		if ( destroyed == null ) {
+			return;
+		}
+		
+		for ( SpaceCraft sc : destroyed ) {
+			
+			if ( !( sc instanceof Torpedo ) ) {
+				lastInputs.remove( EntityTable.keyOf( sc.ID.getAddress(), sc.ID.getPort() ) );
+			}
+		}
+		
+	} // end forgetInputs
+	
+	
 	/**
 	 * Causes all threads and timer tasks to cease execution and closes all
 	 * sockets. Called when the GUI is closed.
@@ -201,10 +690,404 @@ public class SpaceGameServer
 	public void close ()
 	{		
 		playing = false;
+		
+		if ( zonedWorld != null ) {
+			zonedWorld.close();
+		}
+		
+		// The last state is kept for a fast restart
+		if ( snapshotDirectory != null ) {
+			snapshot();
+		}
+		
+		if ( journal != null ) {
+			journal.close();
+		}
+		
+		metrics.unregister();
 
 	} // end close 
 	
 		
+	/**
+	 * Checks for a collision between a ship and all other ships in the game.
+	 * Destroyed ships are removed from the game.
+	 * 
+	 * @param ship ship to check against all other ships
+	 * @return ships destroyed if a collision occurred. null otherwise.
+	 */
+	protected ArrayList<SpaceCraft> collisionCheck( SpaceCraft ship ) {
+		
+		ArrayList<SpaceCraft> destroyed;
+		
+		if ( zonedWorld == null ) {
+			
+			destroyed = sector.collisionCheck( ship );
+		}
+		else {
+		
+			destroyed = zonedWorld.collisionCheck( ship );
+			
+			if ( mirrorsZones && destroyed != null ) {
+				
+				for ( SpaceCraft sc : destroyed ) {
+					sector.removeSpaceCraft( sc );
+				}
+			}
+		}
+		
+		journalDestroyed( destroyed );
+		forgetInputs( destroyed );
+		
+		// A head-on collision destroys both ships but is one collision
+		if ( destroyed != null ) {
+			metrics.collisions( 1 );
+		}
+		
+		// Let the rest of the cluster know about destroyed ships
+		if ( cluster != null && destroyed != null ) {
+			cluster.destroyed( destroyed );
+		}
+		
+		return destroyed;
+		
+	} // end collisionCheck
+	
+	
+	/**
+	 * Adds a ship to the game or updates its position and heading.
+	 * 
+	 * @param ship ship to be added or updated
+	 */
+	protected void updateOrAddSpaceCraft( SpaceCraft ship ) {
+		
+		if ( zonedWorld == null || mirrorsZones ) {
+			sector.updateOrAddSpaceCraft( ship.ID, ship.getXPosition(), 
+					ship.getYPosition(), ship.getHeading() );
+		}
+		
+		if ( zonedWorld != null ) {
+			zonedWorld.updateOrAddSpaceCraft( ship );
+		}
+		
+		// Remember where a client's ship is for checking and 
+		// acknowledging its next update
+		synchronized ( this ) {
+			
+			LastInput input = lastInputs.get( EntityTable.keyOf( ship.ID.getAddress(), ship.ID.getPort() ) );
+			
+			if ( input != null ) {
+				
+				input.inGame = true;
+				input.x = ship.getXPosition();
+				input.y = ship.getYPosition();
+				input.heading = ship.getHeading();
+			}
+		}
+		
+		journal( EventJournal.SHIP, ship );
+		
+	} // end updateOrAddSpaceCraft
+	
+	
+	/**
+	 * Decides whether to accept a ship update from a client. A join is
+	 * always accepted. An update older than the last one accepted is 
+	 * not, nor is one that moves the ship further than it could have 
+	 * moved with the inputs numbered since the last accepted update.
+	 * Inputs lost on the way are allowed for by the gap in the numbers.
+	 * 
+	 * @param id identity of the ship
+	 * @param type JOIN or UPDATE_SHIP
+	 * @param sequence sequence number of the update
+	 * @param x x position in the update
+	 * @param y y position in the update
+	 * @return 1 if accepted, 0 if rejected and -1 if out of date
+	 */
+	protected synchronized int acceptInput( InetSocketAddress id, int type, int sequence, int x, int y ) {
+		
+		long key = EntityTable.keyOf( id.getAddress(), id.getPort() );
+		LastInput last = lastInputs.get( key );
+		
+		if ( type != Constants.JOIN && last != null ) {
+			
+			// Differences are used so that sequence numbers can wrap around
+			int gap = sequence - last.sequence;
+			
+			if ( gap <= 0 ) {
+				return -1;
+			}
+			
+			if ( last.inGame && ( (long) Constants.INCREMENT * gap 
+					< Math.max( Math.abs( x - last.x ), Math.abs( y - last.y ) ) ) ) {
+				return 0;
+			}
+		}
+		
+		if ( last == null ) {
+			
+			last = new LastInput();
+			lastInputs.put( key, last );
+		}
+		
+		last.sequence = sequence;
+		
+		return 1;
+		
+	} // end acceptInput
+	
+	
+	/**
+	 * Tells a client where the server has its ship after handling one of
+	 * its updates. Nothing is sent if the ship is no longer in the game,
+	 * since the client is told that by a remove.
+	 * 
+	 * @param id identity of the ship, which is also the address of the
+	 * client's DatagramSocket
+	 * @param sequence sequence number of the update handled
+	 * @param dgSock socket to use to send the message
+	 */
+	protected void sendAck( InetSocketAddress id, int sequence, DatagramSocket dgSock ) {
+		
+		long key = EntityTable.keyOf( id.getAddress(), id.getPort() );
+		
+		synchronized ( ackPacket ) {
+			
+			synchronized ( this ) {
+				
+				LastInput input = lastInputs.get( key );
+				
+				if ( input == null || !input.inGame ) {
+					return;
+				}
+				
+				// Fields of the message, big-endian like a DataOutputStream.
+				// The address is the top half of the key.
+				ackBuffer.clear();
+				ackBuffer.putInt( (int) ( key >>> 32 ) );
+				ackBuffer.putInt( id.getPort() );
+				ackBuffer.putInt( Constants.ACK );
+				ackBuffer.putInt( input.x );
+				ackBuffer.putInt( input.y );
+				ackBuffer.putInt( input.heading );
+			}
+			
+			ackBuffer.putLong( System.currentTimeMillis() );
+			ackBuffer.putInt( sequence );
+			
+			ackPacket.setSocketAddress( id );
+
+			try {
+				long start = System.nanoTime();
+				dgSock.send( ackPacket );
+				metrics.packetOut( Constants.ACK, id, System.nanoTime() - start );
+				
+			} catch (IOException e) {
+				metrics.sendFailed();
+				System.err.println("Error sending acknowledgement.");
+			}
+		}
+
+	} // end sendAck
+	
+	
+	/**
+	 * Checks if a ship is in the game.
+	 * 
+	 * @param id identity of the ship
+	 * @return true if the ship is in the game
+	 */
+	protected synchronized boolean hasSpaceCraft( InetSocketAddress id ) {
+		
+		LastInput input = lastInputs.get( EntityTable.keyOf( id.getAddress(), id.getPort() ) );
+		
+		return input != null && input.inGame;
+		
+	} // end hasSpaceCraft
+	
+	
+	/**
+	 * Removes a ship from the game.
+	 * 
+	 * @param ship ship to be removed
+	 */
+	protected void removeSpaceCraft( SpaceCraft ship ) {
+		
+		synchronized ( this ) {
+			lastInputs.remove( EntityTable.keyOf( ship.ID.getAddress(), ship.ID.getPort() ) );
+		}
+		
+		if ( zonedWorld == null || mirrorsZones ) {
+			sector.removeSpaceCraft( ship );
+		}
+		
+		if ( zonedWorld != null ) {
+			zonedWorld.removeSpaceCraft( ship );
+		}
+		
+		journal( EventJournal.REMOVE_SHIP, ship );
+		
+	} // end removeSpaceCraft
+	
+	
+	/**
+	 * Adds a torpedo to the game or updates it if it is already there.
+	 * 
+	 * @param torp torpedo to be added or updated
+	 */
+	protected void updateOrAddTorpedo( Torpedo torp ) {
+		
+		synchronized ( torpedoLock() ) {
+			
+			if ( zonedWorld == null ) {
+				sector.updateOrAddTorpedo( torp );
+			}
+			else {
+				zonedWorld.updateOrAddTorpedo( torp );
+			}
+			
+			journal( EventJournal.TORPEDO, torp );
+		}
+		
+	} // end updateOrAddTorpedo
+	
+	
+	/**
+	 * Removes a torpedo from the game.
+	 * 
+	 * @param torp torpedo to be removed
+	 */
+	protected void removeTorpedo( Torpedo torp ) {
+		
+		synchronized ( torpedoLock() ) {
+			
+			if ( zonedWorld == null || mirrorsZones ) {
+				sector.removeTorpedo( torp );
+			}
+			
+			if ( zonedWorld != null ) {
+				zonedWorld.removeTorpedo( torp );
+			}
+			
+			journal( EventJournal.REMOVE_TORPEDO, torp );
+		}
+		
+	} // end removeTorpedo
+	
+	
+	/**
+	 * Moves all torpedoes in the game and determines what they hit.
+	 * When the sector mirrors the zones for the display it is brought 
+	 * up to date with the result, one torpedo at a time by its ID.
+	 * 
+	 * @param steps number of increments each torpedo moves
+	 * @return destroyed ships and torpedoes. null otherwise.
+	 */
+	protected ArrayList<SpaceCraft> updateTorpedoes( int steps ) {
+		
+		ArrayList<SpaceCraft> destroyed;
+		
+		synchronized ( torpedoLock() ) {
+			
+			if ( zonedWorld == null ) {
+				destroyed = sector.updateTorpedoes( steps );
+			}
+			else {
+				destroyed = zonedWorld.updateTorpedoes( steps );
+			}
+			
+			journalTick();
+			journalDestroyed( destroyed );
+		}
+		
+		if ( zonedWorld != null && mirrorsZones ) {
+			mirrorZones( destroyed );
+		}
+		
+		forgetInputs( destroyed );
+		
+		// Each ship destroyed was hit by a torpedo
+		if ( destroyed != null ) {
+			
+			int hits = 0;
+			
+			for ( SpaceCraft sc : destroyed ) {
+				
+				if ( !( sc instanceof Torpedo ) ) {
+					hits++;
+				}
+			}
+			
+			metrics.collisions( hits );
+		}
+		
+		if ( cluster != null ) {
+			
+			if ( destroyed != null ) {
+				cluster.destroyed( destroyed );
+			}
+			
+			// Torpedoes that left this server's part of the world are
+			// removed here and reported as such to the local clients
+			for ( Torpedo t : cluster.handOffTorpedoes( getTorpedoes() ) ) {
+				
+				removeTorpedo( t );
+				
+				if ( destroyed == null ) {
+					destroyed = new ArrayList<SpaceCraft>();
+				}
+				destroyed.add( t );
+			}
+		}
+		
+		return destroyed;
+		
+	} // end updateTorpedoes
+	
+	
+	/**
+	 * Brings the copy of the zones in the sector up to date after the 
+	 * torpedoes of the zones have been updated.
+	 * 
+	 * @param destroyed ships and torpedoes destroyed in the update, or null
+	 */
+	protected void mirrorZones( ArrayList<SpaceCraft> destroyed ) {
+		
+		if ( destroyed != null ) {
+			
+			for ( SpaceCraft sc : destroyed ) {
+				
+				if ( sc instanceof Torpedo ) {
+					sector.removeTorpedo( (Torpedo) sc );
+				}
+				else {
+					sector.removeSpaceCraft( sc );
+				}
+			}
+		}
+		
+		for ( Torpedo t : zonedWorld.getTorpedoes() ) {
+			
+			sector.updateOrAddTorpedo( t.ID, t.getXPosition(), t.getYPosition(), t.getHeading() );
+		}
+		
+	} // end mirrorZones
+	
+	
+	/**
+	 * @return all torpedoes currently in the game
+	 */
+	protected Vector<Torpedo> getTorpedoes() {
+		
+		if ( zonedWorld == null ) {
+			return sector.getTorpedoes();
+		}
+		
+		return zonedWorld.getTorpedoes();
+		
+	} // end getTorpedoes
+	
+	
 	/**
 	 * Sends remove information for a particular SpaceCraft or Torpedo to all clients.
 	 *
@@ -227,6 +1110,66 @@ public class SpaceGameServer
 	} // end sendRemove
 	
 	
+	/**
+	 * Tells the client flying a ship to move to another server. The 
+	 * client is then dropped from this server.
+	 * 
+	 * @param shipID identity of the ship, which is also the address of 
+	 * the client's DatagramSocket
+	 * @param newServer game address of the server the client should use
+	 */
+	synchronized protected void redirectClient( InetSocketAddress shipID, InetSocketAddress newServer ) {
+		
+		for(int i = 0; i < playerTCPConnections.size(); i++ ) {
+
+			PersistentConnectionToClient pesistConnect = playerTCPConnections.get(i);
+
+			if ( shipID.equals( pesistConnect.clientISA ) ) {
+				
+				pesistConnect.sendRedirectToClient( newServer );
+				
+				playerTCPConnections.remove( i );
+				clientDatagramSocketAddresses.remove( shipID );
+				metrics.forgetClient( shipID );
+				return;
+			}
+		}
+		
+	} // end redirectClient
+	
+	
+	/**
+	 * Creates a update message for a ship that is not controlled by one
+	 * of this server's clients and sends it to all clients.
+	 * 
+	 * @param sc ship being updated
+	 */
+	protected void sendShipUpdate( SpaceCraft sc ) {
+		
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream( baos );
+
+		try {
+			// Write fields of the message
+			dos.write( sc.ID.getAddress().getAddress());
+			dos.writeInt( sc.ID.getPort());
+			dos.writeInt( Constants.UPDATE_SHIP );
+			dos.writeInt( sc.getXPosition() );
+			dos.writeInt( sc.getYPosition() );
+			dos.writeInt( sc.getHeading() );
+			dos.writeLong( System.currentTimeMillis() );
+			dos.writeInt( 0 );
+			
+		} catch (IOException e) {
+			System.err.println("Error sending ship update.");
+		}
+
+		// Send the packet to every client
+		allForward( new DatagramPacket(baos.toByteArray(), baos.size() ), updateSocket );
+
+	} // end sendShipUpdate
+	
+	
 	/**
 	 * Creates a update message for a torpedo and sends it to all
 	 * clients.
@@ -247,6 +1190,8 @@ public class SpaceGameServer
 			dos.writeInt( sc.getXPosition() );
 			dos.writeInt( sc.getYPosition() );
 			dos.writeInt( sc.getHeading() );
+			dos.writeLong( System.currentTimeMillis() );
+			dos.writeInt( 0 );
 			
 		} catch (IOException e) {
 			System.err.println("Error sending torpedo update.");
@@ -268,6 +1213,27 @@ public class SpaceGameServer
 	} // end sendTorpedoUpdate
 	
 	
+	/**
+	 * Writes the current time into the time stamp field of a packet 
+	 * received from a client, so that it can be forwarded to other clients.
+	 * 
+	 * @param pack packet to be stamped
+	 */
+	protected void stampPacket( DatagramPacket pack )
+	{
+		byte[] data = pack.getData();
+		long now = System.currentTimeMillis();
+		
+		// Big-endian, as written by DataOutputStream.writeLong
+		for ( int i = 0; i < 8; i++ ) {
+			data[ pack.getOffset() + Constants.TIMESTAMP_OFFSET + i ] = (byte) ( now >>> ( 56 - 8 * i ) );
+		}
+		
+		pack.setLength( Constants.PACKET_SIZE );
+		
+	} // end stampPacket
+	
+	
 	/**
 	 * Sends a datagram packet to all clients except one as 
 	 * specified by an input argument.
@@ -278,19 +1244,28 @@ public class SpaceGameServer
 	 */
 	synchronized protected void selectiveForward(DatagramPacket fwdPack, InetSocketAddress notSendTo, DatagramSocket dgSock )
 	{
+		int type = ServerMetrics.typeOf( fwdPack );
+		long fanOutStart = System.nanoTime();
+		
 		for(InetSocketAddress isa : clientDatagramSocketAddresses ) {
 						
 			if( !isa.equals(notSendTo)) {
 				
 				fwdPack.setSocketAddress( isa );
 				try {
+					long start = System.nanoTime();
 					dgSock.send( fwdPack );
+					metrics.packetOut( type, isa, System.nanoTime() - start );
 
 				} catch (IOException e) {
+					metrics.sendFailed();
 					System.err.println("Error performing selective forward.");
 				}
 			}
 		}
+		
+		metrics.fanOut( System.nanoTime() - fanOutStart );
+		
 	} // end selectiveForward
 	
 	
@@ -302,20 +1277,46 @@ public class SpaceGameServer
 	 */
 	synchronized protected void allForward(DatagramPacket fwdPack, DatagramSocket dgSock  )
 	{
+		int type = ServerMetrics.typeOf( fwdPack );
+		long fanOutStart = System.nanoTime();
+		
 		for(InetSocketAddress isa : clientDatagramSocketAddresses ) {
 				
 			fwdPack.setSocketAddress( isa );
 			
 			try {
+				long start = System.nanoTime();
 				dgSock.send( fwdPack );
+				metrics.packetOut( type, isa, System.nanoTime() - start );
 			} catch (IOException e) {
+				metrics.sendFailed();
 				System.err.println("Error forward message to all clients.");
 			}
 		}
 		
+		metrics.fanOut( System.nanoTime() - fanOutStart );
+		
 	} // end allForward
 
 
+	/**
+	 * Last update accepted from a client's ship, and where the server has
+	 * the ship once the update has been applied.
+	 */
+	protected static class LastInput {
+		
+		// Sequence number of the update
+		int sequence;
+		
+		// True once the ship is in the game
+		boolean inGame = false;
+		
+		// Position and heading of the ship in the game
+		int x, y, heading;
+		
+	} // end LastInput class
+	
+	
 	/**
 	 * Driver for starting the server.
 	 * 
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.TimerTask;
 import java.util.Vector;
 
+import spaceWar.Constants;
 import spaceWar.SpaceCraft;
 import spaceWar.Torpedo;
 
@@ -26,6 +27,12 @@ class TorpdedoUpdater extends TimerTask
 	 */
 	SpaceGameServer spaceGameServer;
 	
+	/**
+	 * Number of increments torpedoes move during each update
+	 */
+	static final int STEPS_PER_UPDATE 
+		= Math.max( 1, Constants.TORPEDO_UPDATE_PERIOD / Constants.TORPEDO_STEP_MS );
+	
 	/**
 	 * Creates a DatagramSocket that is used to send update mesages.
 	 */
@@ -52,9 +59,11 @@ class TorpdedoUpdater extends TimerTask
 	 * are hit by torpedoes. 
 	 */
 	public void run() {
+		
+		long start = System.nanoTime();
 			
 		// Move all torpedoes and determine if they hit anything 
-		ArrayList<SpaceCraft> destroyed = spaceGameServer.sector.updateTorpedoes();
+		ArrayList<SpaceCraft> destroyed = spaceGameServer.updateTorpedoes( STEPS_PER_UPDATE );
 		
 		// Send remove messages for any ships of torpedoes 
 		// that are no longer in the game.
@@ -68,7 +77,7 @@ class TorpdedoUpdater extends TimerTask
 		}
 		
 		// Access the torpedoes that are still in the sector
-		Vector<Torpedo> remainingTorpedoes = spaceGameServer.sector.getTorpedoes();
+		Vector<Torpedo> remainingTorpedoes = spaceGameServer.getTorpedoes();
 		
 		// Send update messages for torpedoes that are still
 		// in the game
@@ -77,6 +86,11 @@ class TorpdedoUpdater extends TimerTask
 			spaceGameServer.sendTorpedoUpdate( t, dgsock );
 		}
 		
+		// A tick overruns when it finishes after the next one was due
+		boolean overran = System.currentTimeMillis() - scheduledExecutionTime() 
+			> Constants.TORPEDO_UPDATE_PERIOD;
+		spaceGameServer.metrics.tick( System.nanoTime() - start, overran );
+		
 		// Check to see if the game has ended
 		if (spaceGameServer.playing == false ){
 			this.cancel();
@@ -0,0 +1,207 @@
+package spaceWar;
+
+/**
+ * The part of the world shown in a view. The camera has a center in world
+ * coordinates and a zoom factor, which together with the size of the view
+ * in pixels give the rectangle of the world that is visible. The view is
+ * kept inside the world when the world is larger than the view.
+ */
+public class Camera {
+
+	/**
+	 * Smallest and largest zoom factors.
+	 */
+	public static final double MIN_ZOOM = 0.125;
+	public static final double MAX_ZOOM = 4.0;
+
+	// Factor applied by each step of zoomIn and zoomOut
+	protected static final double ZOOM_STEP = 1.25;
+
+	// Center of the view in world coordinates
+	protected int centerX, centerY;
+
+	// Screen pixels per world pixel
+	protected double zoom = 1.0;
+
+	// Size of the view in screen pixels
+	protected int viewWidth = Constants.MAX_SECTOR_X;
+	protected int viewHeight = Constants.MAX_SECTOR_Y;
+
+	// Top left corner of the visible part of the world. Updated whenever
+	// the center, zoom or view size change.
+	protected int left, top;
+
+	// Incremented whenever the visible part of the world changes
+	protected volatile long version = 0;
+
+
+	/**
+	 * Creates a camera at zoom 1 looking at the top left corner of the world.
+	 */
+	public Camera() {
+
+		centerOn( viewWidth / 2, viewHeight / 2 );
+
+	} // end Camera constructor
+
+
+	/**
+	 * Moves the center of the view.
+	 *
+	 * @param x x position in the world
+	 * @param y y position in the world
+	 */
+	public synchronized void centerOn( int x, int y ) {
+
+		if ( x != centerX || y != centerY ) {
+
+			centerX = x;
+			centerY = y;
+			recompute();
+		}
+
+	} // end centerOn
+
+
+	/**
+	 * Sets the size of the view in screen pixels.
+	 *
+	 * @param width width of the view
+	 * @param height height of the view
+	 */
+	public synchronized void setViewSize( int width, int height ) {
+
+		if ( width != viewWidth || height != viewHeight ) {
+
+			viewWidth = width;
+			viewHeight = height;
+			recompute();
+		}
+
+	} // end setViewSize
+
+
+	/**
+	 * Sets the zoom factor, limited to MIN_ZOOM through MAX_ZOOM.
+	 *
+	 * @param zoom screen pixels per world pixel
+	 */
+	public synchronized void setZoom( double zoom ) {
+
+		this.zoom = Math.max( MIN_ZOOM, Math.min( MAX_ZOOM, zoom ) );
+		recompute();
+
+	} // end setZoom
+
+
+	/**
+	 * Shows a smaller part of the world, larger.
+	 */
+	public void zoomIn() {
+
+		setZoom( getZoom() * ZOOM_STEP );
+
+	} // end zoomIn
+
+
+	/**
+	 * Shows a larger part of the world, smaller.
+	 */
+	public void zoomOut() {
+
+		setZoom( getZoom() / ZOOM_STEP );
+
+	} // end zoomOut
+
+
+	/**
+	 * @return screen pixels per world pixel
+	 */
+	public synchronized double getZoom() {
+
+		return zoom;
+
+	} // end getZoom
+
+
+	/**
+	 * @return world x position at the left edge of the view
+	 */
+	public synchronized int getLeft() {
+
+		return left;
+
+	} // end getLeft
+
+
+	/**
+	 * @return world y position at the top edge of the view
+	 */
+	public synchronized int getTop() {
+
+		return top;
+
+	} // end getTop
+
+
+	/**
+	 * @return width of the visible part of the world
+	 */
+	public synchronized int getVisibleWidth() {
+
+		return (int) Math.ceil( viewWidth / zoom );
+
+	} // end getVisibleWidth
+
+
+	/**
+	 * @return height of the visible part of the world
+	 */
+	public synchronized int getVisibleHeight() {
+
+		return (int) Math.ceil( viewHeight / zoom );
+
+	} // end getVisibleHeight
+
+
+	/**
+	 * @return number of times the visible part of the world has changed
+	 */
+	public long getVersion() {
+
+		return version;
+
+	} // end getVersion
+
+
+	/*
+	 * Works out the top left corner from the center, keeping the view in
+	 * the world along each axis where the world is large enough.
+	 */
+	protected void recompute() {
+
+		int newLeft = clamp( centerX, getVisibleWidth(), Constants.getWorldWidth() );
+		int newTop = clamp( centerY, getVisibleHeight(), Constants.getWorldHeight() );
+
+		left = newLeft;
+		top = newTop;
+		version++;
+
+	} // end recompute
+
+
+	/*
+	 * Start of a visible span of the given length centered on a position.
+	 * A world smaller than the span is centered in the view.
+	 */
+	protected static int clamp( int center, int span, int worldSize ) {
+
+		if ( worldSize <= span ) {
+			return ( worldSize - span ) / 2;
+		}
+
+		return Math.max( 0, Math.min( worldSize - span, center - span / 2 ) );
+
+	} // end clamp
+
+} // end Camera class
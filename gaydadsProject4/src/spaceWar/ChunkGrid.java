@@ -0,0 +1,370 @@
+package spaceWar;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Sparse spatial index for objects in the world. The world is divided into
+ * square chunks, but a chunk is only allocated while something is in it, so
+ * memory use depends on how many objects there are and not on the size of
+ * the world. Objects are looked up by the area they are in. Chunks are
+ * keyed by primitive longs, so moving an object and looking up an area do
+ * not create key objects.
+ *
+ * A DensityGrid can be attached to keep a coarse count of the objects,
+ * which is told whenever an object enters or leaves a chunk.
+ *
+ * @param <T> type of object held in the grid
+ */
+public class ChunkGrid<T> {
+
+	/**
+	 * Width and height of a chunk in pixels as a power of two.
+	 */
+	public static final int CHUNK_SHIFT = 8;
+
+	/**
+	 * Width and height of a chunk in pixels.
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	// Allocated chunks, keyed by chunk coordinates
+	private EntityTable<ArrayList<T>> chunks = new EntityTable<ArrayList<T>>();
+
+	// Chunk each object was filed under, changed in place as it moves
+	private IdentityHashMap<T, Location> locations = new IdentityHashMap<T, Location>();
+
+	// Counts of objects by area, kept up to date by the grid. null if none.
+	private DensityGrid density = null;
+
+
+	/**
+	 * Attaches a density grid, which is given a count of the objects
+	 * already in this grid and then kept up to date as they move.
+	 *
+	 * @param density density grid to keep up to date, or null for none
+	 */
+	public void setDensity( DensityGrid density ) {
+
+		this.density = density;
+
+		if ( density != null ) {
+
+			density.clear();
+
+			for ( Location location : locations.values() ) {
+				density.enter( chunkX( location.key ), chunkY( location.key ) );
+			}
+		}
+
+	} // end setDensity
+
+
+	/**
+	 * Adds an object at a position. If the object is already in the grid
+	 * it is moved instead.
+	 *
+	 * @param element object to add
+	 * @param x x position of the object
+	 * @param y y position of the object
+	 */
+	public void add( T element, int x, int y ) {
+
+		if ( locations.containsKey( element ) ) {
+
+			move( element, x, y );
+			return;
+		}
+
+		long key = keyFor( x, y );
+
+		chunkAt( key ).add( element );
+		locations.put( element, new Location( key ) );
+
+		if ( density != null ) {
+			density.enter( chunkX( key ), chunkY( key ) );
+		}
+
+	} // end add
+
+
+	/**
+	 * Moves an object to a new position. Nothing is done if the object stays
+	 * in the same chunk.
+	 *
+	 * @param element object to move
+	 * @param x new x position of the object
+	 * @param y new y position of the object
+	 */
+	public void move( T element, int x, int y ) {
+
+		Location location = locations.get( element );
+		long newKey = keyFor( x, y );
+
+		if ( location == null ) {
+
+			add( element, x, y );
+		}
+		else if ( location.key != newKey ) {
+
+			long oldKey = location.key;
+
+			removeFromChunk( element, oldKey );
+
+			chunkAt( newKey ).add( element );
+			location.key = newKey;
+
+			if ( density != null ) {
+				density.move( chunkX( oldKey ), chunkY( oldKey ), chunkX( newKey ), chunkY( newKey ) );
+			}
+		}
+
+	} // end move
+
+
+	/**
+	 * Removes an object from the grid. A chunk that becomes empty is
+	 * released.
+	 *
+	 * @param element object to remove
+	 * @return true if the object was in the grid
+	 */
+	public boolean remove( T element ) {
+
+		Location location = locations.remove( element );
+
+		if ( location == null ) {
+			return false;
+		}
+
+		long key = location.key;
+
+		if ( density != null ) {
+			density.leave( chunkX( key ), chunkY( key ) );
+		}
+
+		removeFromChunk( element, key );
+
+		return true;
+
+	} // end remove
+
+
+	/**
+	 * Collects every object filed in a chunk that overlaps a rectangle.
+	 * Objects near the rectangle but outside of it may also be returned,
+	 * so callers still need to do their own exact test.
+	 *
+	 * @param minX left edge of the rectangle
+	 * @param minY top edge of the rectangle
+	 * @param maxX right edge of the rectangle
+	 * @param maxY bottom edge of the rectangle
+	 * @param out list the objects are added to
+	 */
+	public void query( int minX, int minY, int maxX, int maxY, ArrayList<? super T> out ) {
+
+		int minChunkX = minX >> CHUNK_SHIFT;
+		int minChunkY = minY >> CHUNK_SHIFT;
+		int maxChunkX = maxX >> CHUNK_SHIFT;
+		int maxChunkY = maxY >> CHUNK_SHIFT;
+
+		long area = ( (long) maxChunkX - minChunkX + 1 ) * ( (long) maxChunkY - minChunkY + 1 );
+
+		if ( area > chunks.size() ) {
+
+			// Fewer chunks are allocated than the rectangle covers, so
+			// check the allocated ones instead of every position
+			for ( int slot = 0; slot < chunks.getCapacity(); slot++ ) {
+
+				ArrayList<T> chunk = chunks.valueAt( slot );
+
+				if ( chunk == null ) {
+					continue;
+				}
+
+				long key = chunks.keyAt( slot );
+				int chunkX = chunkX( key );
+				int chunkY = chunkY( key );
+
+				if ( chunkX >= minChunkX && chunkX <= maxChunkX
+						&& chunkY >= minChunkY && chunkY <= maxChunkY ) {
+
+					out.addAll( chunk );
+				}
+			}
+		}
+		else {
+
+			for ( int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++ ) {
+
+				for ( int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++ ) {
+
+					ArrayList<T> chunk = chunks.get( key( chunkX, chunkY ) );
+
+					if ( chunk != null ) {
+						out.addAll( chunk );
+					}
+				}
+			}
+		}
+
+	} // end query
+
+
+	/**
+	 * Makes room for a number of objects in all, so that adding that many
+	 * does not grow the grid's tables step by step.
+	 *
+	 * @param expected number of objects the grid will hold
+	 */
+	public void ensureCapacity( int expected ) {
+
+		if ( expected > locations.size() ) {
+
+			IdentityHashMap<T, Location> larger = new IdentityHashMap<T, Location>( expected );
+			larger.putAll( locations );
+			locations = larger;
+		}
+
+	} // end ensureCapacity
+
+
+	/**
+	 * @return number of objects in the grid
+	 */
+	public int size() {
+
+		return locations.size();
+
+	} // end size
+
+
+	/**
+	 * @return number of chunks currently allocated
+	 */
+	public int chunkCount() {
+
+		return chunks.size();
+
+	} // end chunkCount
+
+
+	/**
+	 * Removes all objects and releases all chunks.
+	 */
+	public void clear() {
+
+		chunks.clear();
+		locations.clear();
+
+		if ( density != null ) {
+			density.clear();
+		}
+
+	} // end clear
+
+
+	/*
+	 * Returns the chunk for a key, allocating it if needed.
+	 */
+	private ArrayList<T> chunkAt( long key ) {
+
+		ArrayList<T> chunk = chunks.get( key );
+
+		if ( chunk == null ) {
+
+			chunk = new ArrayList<T>( 4 );
+			chunks.put( key, chunk );
+		}
+
+		return chunk;
+
+	} // end chunkAt
+
+
+	/*
+	 * Removes an object from a chunk and releases the chunk if it is empty.
+	 */
+	private void removeFromChunk( T element, long key ) {
+
+		ArrayList<T> chunk = chunks.get( key );
+
+		if ( chunk == null ) {
+			return;
+		}
+
+		for ( int i = 0; i < chunk.size(); i++ ) {
+
+			if ( chunk.get( i ) == element ) {
+
+				// Order within a chunk does not matter, so fill the gap
+				// with the last element
+				int last = chunk.size() - 1;
+				chunk.set( i, chunk.get( last ) );
+				chunk.remove( last );
+				break;
+			}
+		}
+
+		if ( chunk.isEmpty() ) {
+			chunks.remove( key );
+		}
+
+	} // end removeFromChunk
+
+
+	/*
+	 * Key of the chunk containing a position.
+	 */
+	private static long keyFor( int x, int y ) {
+
+		return key( x >> CHUNK_SHIFT, y >> CHUNK_SHIFT );
+
+	} // end keyFor
+
+
+	/*
+	 * Combines chunk coordinates into a single key.
+	 */
+	private static long key( int chunkX, int chunkY ) {
+
+		return ( (long) chunkX << 32 ) | ( chunkY & 0xFFFFFFFFL );
+
+	} // end key
+
+
+	/*
+	 * Chunk x coordinate of a key.
+	 */
+	private static int chunkX( long key ) {
+
+		return (int) ( key >> 32 );
+
+	} // end chunkX
+
+
+	/*
+	 * Chunk y coordinate of a key.
+	 */
+	private static int chunkY( long key ) {
+
+		return (int) key;
+
+	} // end chunkY
+
+
+	/*
+	 * Key of the chunk an object is filed under.
+	 */
+	protected static class Location {
+
+		long key;
+
+		Location( long key ) {
+
+			this.key = key;
+
+		} // end Location constructor
+
+	} // end Location class
+
+} // end ChunkGrid class
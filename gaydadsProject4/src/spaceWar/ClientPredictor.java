@@ -0,0 +1,370 @@
+package spaceWar;
+import java.net.InetSocketAddress;
+
+/**
+ * Predicts the motion of own ship and its torpedo on the client so that
+ * they respond at once instead of after a round trip to the server.
+ *
+ * Each input is applied to own ship straight away and given a sequence
+ * number, which is sent with the ship update. The inputs are kept until the
+ * server acknowledges an update with the position and heading it has for
+ * the ship. Own ship is then reset to that state and the inputs the server
+ * has not seen yet are applied again on top of it, so a move the server
+ * did not accept is undone without losing the ones made since.
+ *
+ * A torpedo is shown as soon as it is fired and moved locally the same way
+ * the server moves it. An update for it from the server confirms it. It is
+ * cancelled if the server removes it or does not confirm it in time.
+ *
+ * Inputs are applied from the GUI and acknowledgements from the receiving
+ * thread, so every method is synchronized. A caller that sends the update
+ * for an input should hold the lock on the predictor while doing so, so
+ * that the state sent matches the sequence number.
+ */
+public class ClientPredictor {
+
+	/**
+	 * Inputs that can be applied to own ship.
+	 */
+	public static final int TURN_RIGHT = 1;
+	public static final int TURN_LEFT = 2;
+	public static final int FORWARD = 3;
+	public static final int BACKWARD = 4;
+
+	/**
+	 * Time in milliseconds a fired torpedo is shown without being
+	 * confirmed by the server.
+	 */
+	public static final int CONFIRM_TIMEOUT = 1000;
+
+	// Most inputs kept waiting for acknowledgement. Older ones are dropped.
+	protected static final int MAX_PENDING = 256;
+
+	// Sequence number of the next input
+	protected int nextSequence = 1;
+
+	// Highest sequence number acknowledged by the server
+	protected int lastAcknowledged = 0;
+
+	// Inputs not yet acknowledged, oldest first, in a ring
+	protected int[] pendingSequences = new int[ MAX_PENDING ];
+	protected int[] pendingInputs = new int[ MAX_PENDING ];
+	protected int pendingStart = 0;
+	protected int pendingCount = 0;
+
+	// Number of acknowledgements that moved own ship
+	protected long corrections = 0;
+
+	// Torpedo fired by own ship and moved locally. null if none.
+	protected Torpedo torpedo = null;
+
+	// Time the torpedo was fired or last re-based on a server update, and
+	// number of increments it has been moved since then
+	protected long torpedoStart;
+	protected int torpedoSteps;
+
+	// True once the server has sent an update for the torpedo
+	protected boolean torpedoConfirmed;
+
+	// Time the last torpedo reached the end of its life locally
+	protected long torpedoEnded = 0;
+
+
+	/**
+	 * Applies an input to own ship. A move blocked by an obstacle is not
+	 * applied.
+	 *
+	 * @param model sector holding own ship
+	 * @param input TURN_RIGHT, TURN_LEFT, FORWARD or BACKWARD
+	 * @return sequence number to send with the ship update, or -1 if
+	 * nothing changed and no update should be sent
+	 */
+	public synchronized int apply( SectorModel model, int input ) {
+
+		OwnSpaceCraft own = model.ownShip;
+
+		if ( own == null || !perform( model, own, input ) ) {
+			return -1;
+		}
+
+		// Drop the oldest input if too many are waiting. It can then no
+		// longer be applied again after a correction.
+		if ( pendingCount == MAX_PENDING ) {
+
+			pendingStart = ( pendingStart + 1 ) % MAX_PENDING;
+			pendingCount--;
+		}
+
+		int slot = ( pendingStart + pendingCount ) % MAX_PENDING;
+
+		pendingSequences[ slot ] = nextSequence;
+		pendingInputs[ slot ] = input;
+		pendingCount++;
+
+		return nextSequence++;
+
+	} // end apply
+
+
+	/**
+	 * Starts a new ship. Inputs for a previous ship are forgotten.
+	 *
+	 * @return sequence number to send with the join
+	 */
+	public synchronized int join() {
+
+		pendingCount = 0;
+		lastAcknowledged = nextSequence;
+
+		return nextSequence++;
+
+	} // end join
+
+
+	/**
+	 * Handles an acknowledgement from the server. Own ship is reset to the
+	 * state the server has for it and every input made after the one
+	 * acknowledged is applied again. Acknowledgements older than one
+	 * already handled are ignored.
+	 *
+	 * @param model sector holding own ship
+	 * @param sequence sequence number of the update acknowledged
+	 * @param x x position the server has for own ship
+	 * @param y y position the server has for own ship
+	 * @param heading heading the server has for own ship
+	 * @return true if own ship ended up somewhere other than predicted
+	 */
+	public synchronized boolean acknowledge( SectorModel model, int sequence, int x, int y, int heading ) {
+
+		// Differences are used so that sequence numbers can wrap around
+		if ( sequence - lastAcknowledged <= 0 || sequence - nextSequence >= 0 ) {
+			return false;
+		}
+
+		lastAcknowledged = sequence;
+
+		while ( pendingCount > 0 && pendingSequences[ pendingStart ] - sequence <= 0 ) {
+
+			pendingStart = ( pendingStart + 1 ) % MAX_PENDING;
+			pendingCount--;
+		}
+
+		OwnSpaceCraft own = model.ownShip;
+
+		if ( own == null ) {
+			return false;
+		}
+
+		int predictedX = own.getXPosition();
+		int predictedY = own.getYPosition();
+		int predictedHeading = own.getHeading();
+
+		own.setX( x );
+		own.setY( y );
+		own.setHeading( heading );
+
+		for ( int i = 0; i < pendingCount; i++ ) {
+
+			perform( model, own, pendingInputs[ ( pendingStart + i ) % MAX_PENDING ] );
+		}
+
+		boolean corrected = own.getXPosition() != predictedX
+			|| own.getYPosition() != predictedY || own.getHeading() != predictedHeading;
+
+		if ( corrected ) {
+			corrections++;
+		}
+
+		return corrected;
+
+	} // end acknowledge
+
+
+	/**
+	 * Shows a torpedo fired by own ship straight away.
+	 *
+	 * @param model sector to show the torpedo in
+	 * @param id identity of the torpedo as used by the server
+	 */
+	public synchronized void fire( SectorModel model, InetSocketAddress id ) {
+
+		OwnSpaceCraft own = model.ownShip;
+
+		if ( own == null ) {
+			return;
+		}
+
+		// A ship has one torpedo at a time, so a new one replaces the last
+		torpedo = new Torpedo( id, own.getXPosition(), own.getYPosition(), own.getHeading() );
+		torpedoStart = System.currentTimeMillis();
+		torpedoSteps = 0;
+		torpedoConfirmed = false;
+
+		model.updateOrAddTorpedo( id, torpedo.getXPosition(), torpedo.getYPosition(), torpedo.getHeading() );
+
+	} // end fire
+
+
+	/**
+	 * Handles an update from the server for the torpedo of own ship. A
+	 * torpedo that has not been predicted, as when the prediction was
+	 * cancelled by a remove meant for an earlier one, is shown from the
+	 * update. The position is only taken from the server if the heading
+	 * differs, since the prediction is ahead of the server's updates.
+	 *
+	 * @param model sector showing the torpedo
+	 * @param id identity of the torpedo
+	 * @param x x position sent by the server
+	 * @param y y position sent by the server
+	 * @param heading heading sent by the server
+	 */
+	public synchronized void confirmTorpedo( SectorModel model, InetSocketAddress id, int x, int y, int heading ) {
+
+		long now = System.currentTimeMillis();
+
+		if ( torpedo == null ) {
+
+			// Updates sent before the server ended the torpedo keep
+			// arriving for a while after it ended here
+			if ( now - torpedoEnded < CONFIRM_TIMEOUT ) {
+				return;
+			}
+
+			torpedo = new Torpedo( id, x, y, heading );
+			torpedoStart = now;
+			torpedoSteps = 0;
+
+			model.updateOrAddTorpedo( id, x, y, heading );
+		}
+		else if ( torpedo.getHeading() != heading ) {
+
+			torpedo.setX( x );
+			torpedo.setY( y );
+			torpedo.setHeading( heading );
+			torpedoStart = now;
+			torpedoSteps = 0;
+
+			model.moveTorpedo( torpedo.ID, x, y, heading );
+		}
+
+		torpedoConfirmed = true;
+
+	} // end confirmTorpedo
+
+
+	/**
+	 * Removes the torpedo of own ship, as when the server removes it.
+	 *
+	 * @param model sector showing the torpedo
+	 */
+	public synchronized void cancelTorpedo( SectorModel model ) {
+
+		if ( torpedo != null ) {
+
+			model.removeTorpedo( torpedo );
+			torpedo = null;
+		}
+
+	} // end cancelTorpedo
+
+
+	/**
+	 * Moves the torpedo of own ship to where it should be now. Removes it
+	 * when it reaches the end of its life or is not confirmed in time.
+	 * Called before each frame.
+	 *
+	 * @param model sector showing the torpedo
+	 */
+	public synchronized void update( SectorModel model ) {
+
+		if ( torpedo == null ) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+
+		if ( !torpedoConfirmed && now - torpedoStart > CONFIRM_TIMEOUT ) {
+
+			cancelTorpedo( model );
+			return;
+		}
+
+		int due = (int) ( ( now - torpedoStart ) / Constants.TORPEDO_STEP_MS );
+
+		if ( due > torpedoSteps ) {
+
+			boolean alive = torpedo.update( due - torpedoSteps );
+			torpedoSteps = due;
+
+			if ( !alive ) {
+
+				cancelTorpedo( model );
+				torpedoEnded = now;
+				return;
+			}
+
+			model.moveTorpedo( torpedo.ID, torpedo.getXPosition(), torpedo.getYPosition(),
+					torpedo.getHeading() );
+		}
+
+	} // end update
+
+
+	/**
+	 * @return number of acknowledgements that moved own ship away from
+	 * where it was predicted to be
+	 */
+	public synchronized long getCorrections() {
+
+		return corrections;
+
+	} // end getCorrections
+
+
+	/**
+	 * @return number of inputs waiting for acknowledgement
+	 */
+	public synchronized int getPendingCount() {
+
+		return pendingCount;
+
+	} // end getPendingCount
+
+
+	/*
+	 * Applies one input to own ship the same way the client always has.
+	 * Returns false if a move is blocked by an obstacle.
+	 */
+	protected static boolean perform( SectorModel model, OwnSpaceCraft own, int input ) {
+
+		switch ( input ) {
+
+		case TURN_RIGHT:
+			own.rightTurn();
+			return true;
+
+		case TURN_LEFT:
+			own.leftTurn();
+			return true;
+
+		case FORWARD:
+			if ( !model.obstacleClear( own, true ) ) {
+				return false;
+			}
+			own.moveForward();
+			return true;
+
+		case BACKWARD:
+			if ( !model.obstacleClear( own, false ) ) {
+				return false;
+			}
+			own.moveBackward();
+			return true;
+
+		default:
+			return false;
+		}
+
+	} // end perform
+
+} // end ClientPredictor class
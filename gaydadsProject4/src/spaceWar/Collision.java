@@ -0,0 +1,142 @@
+package spaceWar;
+
+/**
+ * Swept collision tests for objects that move along a straight line
+ * segment during a single update. Testing the whole path instead of
+ * only the end position keeps fast moving objects from passing through
+ * ships and obstacles when updates are far apart.
+ */
+public final class Collision {
+
+	/**
+	 * Value returned by the sweep methods when no contact occurs.
+	 */
+	public static final double NO_HIT = -1.0;
+
+	// Not meant to be instantiated
+	private Collision() { }
+
+
+	/**
+	 * Finds the first point along the segment from (x0, y0) to (x1, y1)
+	 * that is within radius of the center (cx, cy).
+	 *
+	 * @param x0 start x position of the mover
+	 * @param y0 start y position of the mover
+	 * @param x1 end x position of the mover
+	 * @param y1 end y position of the mover
+	 * @param cx x position of the target
+	 * @param cy y position of the target
+	 * @param radius contact distance
+	 * @return fraction of the segment, 0 to 1, at which contact first
+	 * occurs. NO_HIT if there is no contact.
+	 */
+	public static double sweepCircle( int x0, int y0, int x1, int y1,
+									  int cx, int cy, int radius ) {
+
+		double dx = x1 - x0;
+		double dy = y1 - y0;
+		double fx = x0 - cx;
+		double fy = y0 - cy;
+
+		double c = fx * fx + fy * fy - (double) radius * radius;
+
+		// Already in contact at the start of the segment
+		if ( c <= 0 ) {
+			return 0.0;
+		}
+
+		double a = dx * dx + dy * dy;
+
+		// Mover did not move and is not in contact
+		if ( a == 0 ) {
+			return NO_HIT;
+		}
+
+		double b = fx * dx + fy * dy;
+
+		// Moving away from the target
+		if ( b >= 0 ) {
+			return NO_HIT;
+		}
+
+		double discriminant = b * b - a * c;
+
+		if ( discriminant < 0 ) {
+			return NO_HIT;
+		}
+
+		double t = ( -b - Math.sqrt( discriminant ) ) / a;
+
+		return ( t <= 1.0 ) ? t : NO_HIT;
+
+	} // end sweepCircle
+
+
+	/**
+	 * Finds the first point along the segment from (x0, y0) to (x1, y1)
+	 * that is strictly inside the square of the given half width centered
+	 * on (cx, cy).
+	 *
+	 * @param x0 start x position of the mover
+	 * @param y0 start y position of the mover
+	 * @param x1 end x position of the mover
+	 * @param y1 end y position of the mover
+	 * @param cx x position of the center of the square
+	 * @param cy y position of the center of the square
+	 * @param halfWidth half the width of the square
+	 * @return fraction of the segment, 0 to 1, at which the square is
+	 * first entered. NO_HIT if the segment misses the square.
+	 */
+	public static double sweepBox( int x0, int y0, int x1, int y1,
+								   int cx, int cy, int halfWidth ) {
+
+		// The inside of the box is open, so touching an edge is not a hit
+		if ( Math.abs( x0 - cx ) < halfWidth && Math.abs( y0 - cy ) < halfWidth ) {
+			return 0.0;
+		}
+
+		double enter = 0.0;
+		double exit = 1.0;
+
+		// Clip the segment against the x slab
+		int dx = x1 - x0;
+
+		if ( dx == 0 ) {
+
+			if ( Math.abs( x0 - cx ) >= halfWidth ) {
+				return NO_HIT;
+			}
+		}
+		else {
+
+			double t1 = ( cx - halfWidth - x0 ) / (double) dx;
+			double t2 = ( cx + halfWidth - x0 ) / (double) dx;
+
+			enter = Math.max( enter, Math.min( t1, t2 ) );
+			exit = Math.min( exit, Math.max( t1, t2 ) );
+		}
+
+		// Clip the segment against the y slab
+		int dy = y1 - y0;
+
+		if ( dy == 0 ) {
+
+			if ( Math.abs( y0 - cy ) >= halfWidth ) {
+				return NO_HIT;
+			}
+		}
+		else {
+
+			double t1 = ( cy - halfWidth - y0 ) / (double) dy;
+			double t2 = ( cy + halfWidth - y0 ) / (double) dy;
+
+			enter = Math.max( enter, Math.min( t1, t2 ) );
+			exit = Math.min( exit, Math.max( t1, t2 ) );
+		}
+
+		return ( enter < exit ) ? enter : NO_HIT;
+
+	} // end sweepBox
+
+} // end Collision class
@@ -0,0 +1,204 @@
+package spaceWar;
+import java.util.List;
+
+/**
+ * Batch proximity test of one moving object against many others. The
+ * positions of the others are packed into two contiguous int arrays so
+ * the test is a straight pass over primitive memory instead of a walk
+ * through object references and getter calls. Distances are compared
+ * squared, so no square root is taken.
+ *
+ * The positions are scanned in fixed size blocks. Each block is reduced
+ * to a bit mask without branching, which lets the JIT unroll and
+ * vectorize the inner loop, and only blocks with a hit are looked at
+ * element by element.
+ *
+ * On Java 16 and later, with the jdk.incubator.vector module added to
+ * the JVM by --add-modules jdk.incubator.vector, create returns a
+ * VectorCollisionKernel that tests a whole SIMD register of positions
+ * at a time with the Vector API. This class is the fallback everywhere
+ * else. The vector kernel is built by the vector profile of the game
+ * module, which is active when Maven runs on Java 16 or later.
+ */
+public class CollisionKernel {
+
+	// Kernel using the Vector API, loaded by name since it is only built
+	// and can only be loaded on newer JVMs
+	static final String VECTOR_KERNEL = "spaceWar.VectorCollisionKernel";
+
+	// Number of positions tested together
+	static final int BLOCK = 8;
+
+	// Packed x and y positions
+	int[] xs = new int[ 64 ];
+	int[] ys = new int[ 64 ];
+
+	// Number of packed positions
+	int size = 0;
+
+
+	/**
+	 * Creates the fastest kernel the JVM can run: a VectorCollisionKernel
+	 * if the Vector API is there, otherwise a CollisionKernel.
+	 *
+	 * @return a new, empty kernel
+	 */
+	public static CollisionKernel create() {
+
+		try {
+			return (CollisionKernel) Class.forName( VECTOR_KERNEL ).newInstance();
+		}
+		catch ( Throwable t ) {
+
+			// Not built, built for a newer JVM or without the module
+			return new CollisionKernel();
+		}
+
+	} // end create
+
+
+	/**
+	 * Packs the positions of a list of spacecraft. The index of each
+	 * position is the index of the craft in the list.
+	 *
+	 * @param crafts spacecraft to be packed
+	 */
+	public void load( List<? extends SpaceCraft> crafts ) {
+
+		int n = crafts.size();
+		ensureCapacity( n );
+
+		for ( int i = 0; i < n; i++ ) {
+
+			SpaceCraft sc = crafts.get( i );
+			xs[i] = sc.xPosition;
+			ys[i] = sc.yPosition;
+		}
+
+		size = n;
+
+	} // end load
+
+
+	/**
+	 * Packs the positions of a list of obstacles. The index of each
+	 * position is the index of the obstacle in the list.
+	 *
+	 * @param obstacles obstacles to be packed
+	 */
+	public void loadObstacles( List<Obstacle> obstacles ) {
+
+		int n = obstacles.size();
+		ensureCapacity( n );
+
+		for ( int i = 0; i < n; i++ ) {
+
+			Obstacle obs = obstacles.get( i );
+			xs[i] = obs.xPosition;
+			ys[i] = obs.yPosition;
+		}
+
+		size = n;
+
+	} // end loadObstacles
+
+
+	/**
+	 * @return number of packed positions
+	 */
+	public int size() {
+
+		return size;
+
+	} // end size
+
+
+	/**
+	 * Finds the next packed position, starting at index from, that is
+	 * within radius of (x, y).
+	 *
+	 * @param x x position of the mover
+	 * @param y y position of the mover
+	 * @param radius contact distance, inclusive
+	 * @param from index to start searching at
+	 * @return index of the first position in range, -1 if there is none
+	 */
+	public int nextWithin( int x, int y, int radius, int from ) {
+
+		long radiusSquared = (long) radius * radius;
+
+		int i = from;
+
+		// Test whole blocks. Any block with a hit is searched element
+		// by element to find the first one.
+		for ( ; i + BLOCK <= size; i += BLOCK ) {
+
+			int mask = blockMask( x, y, radiusSquared, i );
+
+			if ( mask != 0 ) {
+
+				return i + Integer.numberOfTrailingZeros( mask );
+			}
+		}
+
+		return scan( x, y, radiusSquared, i );
+
+	} // end nextWithin
+
+
+	/*
+	 * Tests the positions from an index to the end one at a time.
+	 */
+	protected int scan( int x, int y, long radiusSquared, int from ) {
+
+		for ( int i = from; i < size; i++ ) {
+
+			long dx = (long) xs[i] - x;
+			long dy = (long) ys[i] - y;
+
+			if ( dx * dx + dy * dy <= radiusSquared ) {
+				return i;
+			}
+		}
+
+		return -1;
+
+	} // end scan
+
+
+	/*
+	 * Tests one block of positions and returns a bit mask with a bit set
+	 * for each position in range.
+	 */
+	private int blockMask( int x, int y, long radiusSquared, int start ) {
+
+		int mask = 0;
+
+		for ( int j = 0; j < BLOCK; j++ ) {
+
+			long dx = (long) xs[start + j] - x;
+			long dy = (long) ys[start + j] - y;
+
+			mask |= ( ( dx * dx + dy * dy <= radiusSquared ) ? 1 : 0 ) << j;
+		}
+
+		return mask;
+
+	} // end blockMask
+
+
+	/*
+	 * Makes sure the packed arrays can hold n positions.
+	 */
+	private void ensureCapacity( int n ) {
+
+		if ( n > xs.length ) {
+
+			int capacity = Math.max( n, xs.length * 2 );
+			xs = new int[ capacity ];
+			ys = new int[ capacity ];
+		}
+
+	} // end ensureCapacity
+
+} // end CollisionKernel class
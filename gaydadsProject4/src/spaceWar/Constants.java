@@ -36,6 +36,10 @@ public class Constants
 	 */
 	public static final int SERVER_PORT = 32100;
 	
+	// Port actually used to reach the server. Taken from the spaceWar.port
+	// system property so several servers can run on one machine.
+	private static final int serverPort = Integer.getInteger( "spaceWar.port", SERVER_PORT );
+	
 	/**
 	 *  Default width of the objects
 	 */
@@ -46,6 +50,18 @@ public class Constants
 	 */
 	public static final int INCREMENT = OBJECT_WIDTH / 2;
 	
+	/**
+	 * Time in milliseconds a torpedo takes to move one increment.
+	 */
+	public static final int TORPEDO_STEP_MS = 50;
+	
+	/**
+	 * Time in milliseconds between torpedo updates on the server. Torpedoes
+	 * move TORPEDO_UPDATE_PERIOD / TORPEDO_STEP_MS increments per update 
+	 * and their whole path is checked for hits.
+	 */
+	public static final int TORPEDO_UPDATE_PERIOD = 100;
+	
 	/**
 	 *  Available headings for the space ships in the game
 	 */
@@ -59,19 +75,32 @@ public class Constants
 	public static final int NORTH_WEST = 8;
 
 	/**
-	 * Maximum horizontal dimension to be used in the game. X value of
+	 * Horizontal dimension of the sector display. X value of
 	 * 0 is at the left side of the sector display. MAX_SECTOR_X is the
-	 * far right.
+	 * far right. Also the default width of the world.
 	 */
 	public static final int MAX_SECTOR_X = 50 * OBJECT_WIDTH; 
 	
 	/**
-	 * Maximum vertical dimension to be used in the game. Y value of
+	 * Vertical dimension of the sector display. Y value of
 	 * 0 is at the top of the sector display. MAX_SECTOR_Y is the
-	 * bottom.
+	 * bottom. Also the default height of the world.
 	 */
 	public static final int MAX_SECTOR_Y = 50 * OBJECT_WIDTH;
 	
+	/**
+	 * Largest width or height the world can be given.
+	 */
+	public static final int MAX_WORLD_DIMENSION = 1 << 30;
+	
+	// Width and height of the world. Set from the spaceWar.worldWidth and
+	// spaceWar.worldHeight system properties when present. Clients are sent
+	// the dimensions used by the server when they register.
+	private static volatile int worldWidth 
+		= Integer.getInteger( "spaceWar.worldWidth", MAX_SECTOR_X );
+	private static volatile int worldHeight 
+		= Integer.getInteger( "spaceWar.worldHeight", MAX_SECTOR_Y );
+	
 	/**
 	 *  Total number of obstacles to be displayed in a sector.
 	 */
@@ -125,4 +154,99 @@ public class Constants
 	 */
 	public static final int EXIT = 5;
 	
+	/**
+	 * Code sent to a client over TCP when its ship has moved into a part
+	 * of the world handled by another server. The message carries the
+	 * IP address and port of the server the client should move to.
+	 */
+	public static final int REDIRECT = 6;
+	
+	/**
+	 * Code sent by the server in a datagram to the client whose ship update
+	 * it has handled. Carries the position and heading the server has for
+	 * the ship and the sequence number of the update.
+	 */
+	public static final int ACK = 7;
+	
+	/**
+	 * Size in bytes of a game play datagram: ip(4), port(4), type(4), 
+	 * x(4), y(4), heading(4), a time stamp(8) and a sequence number(4).
+	 */
+	public static final int PACKET_SIZE = 36;
+	
+	/**
+	 * Offset of the time stamp in a game play datagram. The time stamp is
+	 * the server's System.currentTimeMillis() when it sent the update.
+	 * Clients leave it zero.
+	 */
+	public static final int TIMESTAMP_OFFSET = 24;
+	
+	
+	/**
+	 * Offset of the sequence number in a game play datagram. Clients number
+	 * their ship updates in the order they are made and the server echoes 
+	 * the number in its ACK. Zero in updates sent by the server.
+	 */
+	public static final int SEQUENCE_OFFSET = 32;
+	
+	
+	/**
+	 * Accessor method for the port used by the server for both TCP and
+	 * UDP communication. SERVER_PORT unless the spaceWar.port system
+	 * property is set.
+	 * 
+	 * @return port of the server
+	 */
+	public static int getServerPort() {
+		
+		return serverPort;
+		
+	} // end getServerPort
+	
+	
+	/**
+	 * Accessor method for the width of the world. X values run from 0 to
+	 * the world width.
+	 * 
+	 * @return width of the world
+	 */
+	public static int getWorldWidth() {
+		
+		return worldWidth;
+		
+	} // end getWorldWidth
+	
+	
+	/**
+	 * Accessor method for the height of the world. Y values run from 0 to
+	 * the world height.
+	 * 
+	 * @return height of the world
+	 */
+	public static int getWorldHeight() {
+		
+		return worldHeight;
+		
+	} // end getWorldHeight
+	
+	
+	/**
+	 * Mutator method for the dimensions of the world. Should be called 
+	 * before any objects are created. Dimensions outside of 1 to 
+	 * MAX_WORLD_DIMENSION leave the world size unchanged.
+	 * 
+	 * @param width new width of the world
+	 * @param height new height of the world
+	 */
+	public static void setWorldSize( int width, int height ) {
+		
+		if ( width > 0 && width <= MAX_WORLD_DIMENSION 
+				&& height > 0 && height <= MAX_WORLD_DIMENSION ) {
+			
+			worldWidth = width;
+			worldHeight = height;
+		}
+		
+	} // end setWorldSize
+	
 } // end Constants Class
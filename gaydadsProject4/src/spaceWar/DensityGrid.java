@@ -0,0 +1,206 @@
+package spaceWar;
+import java.util.Arrays;
+
+/**
+ * Coarse count of how many objects are in each part of the world, used to
+ * draw a minimap. The world is divided into at most MAX_CELLS by MAX_CELLS
+ * cells, each covering a whole number of ChunkGrid chunks. A ChunkGrid the
+ * density grid is attached to reports objects entering and leaving its
+ * chunks, so the counts are kept up to date as objects move without ever
+ * looking at the objects themselves.
+ */
+public class DensityGrid {
+
+	/**
+	 * Largest number of cells across and down.
+	 */
+	public static final int MAX_CELLS = 64;
+
+	// Chunk coordinates are shifted right by this to give cell coordinates
+	protected int shift;
+
+	// Number of cells across and down
+	protected int columns, rows;
+
+	// Number of objects in each cell, row by row
+	protected int[] counts;
+
+	// Total number of objects counted
+	protected int total = 0;
+
+
+	/**
+	 * Creates a density grid covering the world.
+	 */
+	public DensityGrid() {
+
+		this( Constants.getWorldWidth(), Constants.getWorldHeight() );
+
+	} // end DensityGrid constructor
+
+
+	/**
+	 * Creates a density grid covering an area starting at 0, 0.
+	 *
+	 * @param width width of the area
+	 * @param height height of the area
+	 */
+	public DensityGrid( int width, int height ) {
+
+		int chunksAcross = ( width + ChunkGrid.CHUNK_SIZE - 1 ) >> ChunkGrid.CHUNK_SHIFT;
+		int chunksDown = ( height + ChunkGrid.CHUNK_SIZE - 1 ) >> ChunkGrid.CHUNK_SHIFT;
+
+		shift = 0;
+
+		while ( ( chunksAcross >> shift ) > MAX_CELLS || ( chunksDown >> shift ) > MAX_CELLS ) {
+			shift++;
+		}
+
+		columns = Math.max( 1, ( chunksAcross + ( 1 << shift ) - 1 ) >> shift );
+		rows = Math.max( 1, ( chunksDown + ( 1 << shift ) - 1 ) >> shift );
+		counts = new int[ columns * rows ];
+
+	} // end DensityGrid constructor
+
+
+	/**
+	 * Counts an object that has entered a chunk.
+	 *
+	 * @param chunkX x coordinate of the chunk
+	 * @param chunkY y coordinate of the chunk
+	 */
+	public void enter( int chunkX, int chunkY ) {
+
+		counts[ cellOf( chunkX, chunkY ) ]++;
+		total++;
+
+	} // end enter
+
+
+	/**
+	 * Stops counting an object that has left a chunk.
+	 *
+	 * @param chunkX x coordinate of the chunk
+	 * @param chunkY y coordinate of the chunk
+	 */
+	public void leave( int chunkX, int chunkY ) {
+
+		counts[ cellOf( chunkX, chunkY ) ]--;
+		total--;
+
+	} // end leave
+
+
+	/**
+	 * Moves an object from one chunk to another. Nothing changes if both
+	 * chunks are in the same cell.
+	 *
+	 * @param oldChunkX x coordinate of the chunk left
+	 * @param oldChunkY y coordinate of the chunk left
+	 * @param newChunkX x coordinate of the chunk entered
+	 * @param newChunkY y coordinate of the chunk entered
+	 */
+	public void move( int oldChunkX, int oldChunkY, int newChunkX, int newChunkY ) {
+
+		int oldCell = cellOf( oldChunkX, oldChunkY );
+		int newCell = cellOf( newChunkX, newChunkY );
+
+		if ( oldCell != newCell ) {
+
+			counts[ oldCell ]--;
+			counts[ newCell ]++;
+		}
+
+	} // end move
+
+
+	/**
+	 * Sets every count to zero.
+	 */
+	public void clear() {
+
+		Arrays.fill( counts, 0 );
+		total = 0;
+
+	} // end clear
+
+
+	/**
+	 * @return number of cells across
+	 */
+	public int getColumns() {
+
+		return columns;
+
+	} // end getColumns
+
+
+	/**
+	 * @return number of cells down
+	 */
+	public int getRows() {
+
+		return rows;
+
+	} // end getRows
+
+
+	/**
+	 * @return width and height of a cell in pixels
+	 */
+	public int getCellSize() {
+
+		return ChunkGrid.CHUNK_SIZE << shift;
+
+	} // end getCellSize
+
+
+	/**
+	 * @param column cell column
+	 * @param row cell row
+	 * @return number of objects in the cell
+	 */
+	public int getCount( int column, int row ) {
+
+		return counts[ row * columns + column ];
+
+	} // end getCount
+
+
+	/**
+	 * @return total number of objects counted
+	 */
+	public int getTotal() {
+
+		return total;
+
+	} // end getTotal
+
+
+	/**
+	 * Copies the counts, row by row, into an array of at least
+	 * getColumns() * getRows() elements.
+	 *
+	 * @param out array to copy into
+	 */
+	public void copyCounts( int[] out ) {
+
+		System.arraycopy( counts, 0, out, 0, counts.length );
+
+	} // end copyCounts
+
+
+	/*
+	 * Index of the cell holding a chunk. Chunks outside the world are
+	 * counted in the nearest cell.
+	 */
+	protected int cellOf( int chunkX, int chunkY ) {
+
+		int column = Math.max( 0, Math.min( columns - 1, chunkX >> shift ) );
+		int row = Math.max( 0, Math.min( rows - 1, chunkY >> shift ) );
+
+		return row * columns + column;
+
+	} // end cellOf
+
+} // end DensityGrid class
@@ -0,0 +1,335 @@
+package spaceWar;
+import java.net.InetSocketAddress;
+
+/**
+ * Smooths the motion of ships and torpedoes controlled by others. The
+ * updates received for each of them are kept with the server time stamp
+ * they carry, and the sector is shown as it was a short delay in the past.
+ * Positions in between two updates are interpolated, so motion stays
+ * smooth when updates arrive less often or some are lost.
+ *
+ * Torpedoes always fly straight, so when no update is available yet for
+ * the time being shown their position is extrapolated from their heading.
+ * Ships are held at their last known position.
+ *
+ * Histories are kept by a primitive key made with EntityTable.keyOf, so an
+ * update for a ship or torpedo already known is recorded with update
+ * without allocating.
+ */
+public class EntityInterpolator {
+
+	/**
+	 * Default time in milliseconds the display is behind the server.
+	 */
+	public static final int DEFAULT_DELAY = 2 * Constants.TORPEDO_UPDATE_PERIOD;
+
+	// Longest time in milliseconds a torpedo is extrapolated past its
+	// last update
+	protected static final int MAX_EXTRAPOLATION = 1000;
+
+	// Number of updates kept for each ship or torpedo
+	protected static final int HISTORY = 4;
+
+	// Time in milliseconds over which the smallest clock difference is
+	// taken. The offset follows the last one or two of these windows.
+	protected static final int OFFSET_WINDOW = 2000;
+
+	// Time in milliseconds the display is behind the server
+	protected int delay;
+
+	// Update history of each ship and torpedo
+	protected EntityTable<History> ships = new EntityTable<History>();
+	protected EntityTable<History> torpedoes = new EntityTable<History>();
+
+	// Smallest difference seen lately between the local clock and a server
+	// time stamp. Taken as the difference between the clocks, since that
+	// update was delayed least on the way. Only recent windows count, so
+	// it rises again when the clocks drift apart or the route gets slower.
+	protected long clockOffset = Long.MAX_VALUE;
+
+	// Smallest difference in the current window and in the one before it,
+	// and the local time the current window started
+	protected long windowOffset = Long.MAX_VALUE;
+	protected long previousOffset = Long.MAX_VALUE;
+	protected long windowStart = 0;
+
+
+	/**
+	 * Creates an interpolator with a delay set by the
+	 * spaceWar.interpolationDelay system property, or DEFAULT_DELAY.
+	 */
+	public EntityInterpolator() {
+
+		this( Integer.getInteger( "spaceWar.interpolationDelay", DEFAULT_DELAY ) );
+
+	} // end EntityInterpolator constructor
+
+
+	/**
+	 * Creates an interpolator.
+	 *
+	 * @param delay time in milliseconds the display is behind the server
+	 */
+	public EntityInterpolator( int delay ) {
+
+		this.delay = delay;
+
+	} // end EntityInterpolator constructor
+
+
+	/**
+	 * Records an update received for a ship or torpedo. Updates older than
+	 * the newest one already recorded are ignored.
+	 *
+	 * @param id Socket address of the ship or torpedo
+	 * @param torpedo true if the update is for a torpedo
+	 * @param serverTime time stamp of the update
+	 * @param x x position
+	 * @param y y position
+	 * @param heading heading
+	 * @return true if this is the first update for the ship or torpedo,
+	 * which should then be added to the sector
+	 */
+	public synchronized boolean record( InetSocketAddress id, boolean torpedo,
+										long serverTime, int x, int y, int heading ) {
+
+		long key = EntityTable.keyOf( id.getAddress(), id.getPort() );
+
+		if ( update( key, torpedo, serverTime, x, y, heading ) ) {
+			return false;
+		}
+
+		History history = new History( id );
+		history.add( serverTime, x, y, heading );
+		( torpedo ? torpedoes : ships ).put( key, history );
+
+		return true;
+
+	} // end record
+
+
+	/**
+	 * Records an update for a ship or torpedo already known. Nothing is
+	 * allocated. An update for one not yet known is not recorded and
+	 * should be passed to record instead.
+	 *
+	 * @param key key of the ship or torpedo made with EntityTable.keyOf
+	 * @param torpedo true if the update is for a torpedo
+	 * @param serverTime time stamp of the update
+	 * @param x x position
+	 * @param y y position
+	 * @param heading heading
+	 * @return false if the ship or torpedo is not known
+	 */
+	public synchronized boolean update( long key, boolean torpedo,
+										long serverTime, int x, int y, int heading ) {
+
+		History history = ( torpedo ? torpedoes : ships ).get( key );
+
+		if ( history == null ) {
+			return false;
+		}
+
+		long now = System.currentTimeMillis();
+
+		sampleOffset( now - serverTime, now );
+		history.add( serverTime, x, y, heading );
+
+		return true;
+
+	} // end update
+
+
+	/*
+	 * Takes the difference between the clocks seen in an update into the
+	 * current window, starting a new one when it has run its time, and
+	 * sets the offset to the smallest of this window and the last.
+	 */
+	protected void sampleOffset( long offset, long now ) {
+
+		if ( now - windowStart >= OFFSET_WINDOW ) {
+
+			// After a gap of more than a window the last one is stale
+			previousOffset = ( now - windowStart < 2 * OFFSET_WINDOW ) ? windowOffset : Long.MAX_VALUE;
+			windowOffset = Long.MAX_VALUE;
+			windowStart = now;
+		}
+
+		windowOffset = Math.min( windowOffset, offset );
+		clockOffset = Math.min( windowOffset, previousOffset );
+
+	} // end sampleOffset
+
+
+	/**
+	 * Forgets a ship or torpedo that has been removed from the sector.
+	 *
+	 * @param id Socket address of the ship or torpedo
+	 * @param torpedo true if it is a torpedo
+	 */
+	public synchronized void remove( InetSocketAddress id, boolean torpedo ) {
+
+		remove( EntityTable.keyOf( id.getAddress(), id.getPort() ), torpedo );
+
+	} // end remove
+
+
+	/**
+	 * Forgets a ship or torpedo that has been removed from the sector.
+	 * Nothing is allocated.
+	 *
+	 * @param key key of the ship or torpedo made with EntityTable.keyOf
+	 * @param torpedo true if it is a torpedo
+	 */
+	public synchronized void remove( long key, boolean torpedo ) {
+
+		( torpedo ? torpedoes : ships ).remove( key );
+
+	} // end remove
+
+
+	/**
+	 * Moves every recorded ship and torpedo in the sector to where it was
+	 * at the server time being shown. Called before each frame.
+	 *
+	 * @param model sector to be updated
+	 */
+	public synchronized void apply( SectorModel model ) {
+
+		if ( clockOffset == Long.MAX_VALUE ) {
+			return;
+		}
+
+		long renderTime = System.currentTimeMillis() - clockOffset - delay;
+
+		for ( int slot = 0; slot < ships.getCapacity(); slot++ ) {
+
+			History h = ships.valueAt( slot );
+
+			if ( h != null ) {
+
+				h.sample( renderTime, false );
+				model.moveSpaceCraft( h.id, h.sampleX, h.sampleY, h.sampleHeading );
+			}
+		}
+
+		for ( int slot = 0; slot < torpedoes.getCapacity(); slot++ ) {
+
+			History h = torpedoes.valueAt( slot );
+
+			if ( h != null ) {
+
+				h.sample( renderTime, true );
+				model.moveTorpedo( h.id, h.sampleX, h.sampleY, h.sampleHeading );
+			}
+		}
+
+	} // end apply
+
+
+	/**
+	 * The most recent updates of one ship or torpedo, oldest first.
+	 */
+	protected static class History {
+
+		// Socket address of the ship or torpedo
+		final InetSocketAddress id;
+
+		// Time stamps, positions and headings of the updates
+		long[] times = new long[ HISTORY ];
+		int[] xs = new int[ HISTORY ];
+		int[] ys = new int[ HISTORY ];
+		int[] headings = new int[ HISTORY ];
+
+		// Number of updates held
+		int count = 0;
+
+		// Result of the last call to sample
+		int sampleX, sampleY, sampleHeading;
+
+		History( InetSocketAddress id ) {
+
+			this.id = id;
+
+		} // end History constructor
+
+		/*
+		 * Adds an update, dropping the oldest if the history is full.
+		 */
+		void add( long time, int x, int y, int heading ) {
+
+			if ( count > 0 && time <= times[ count - 1 ] ) {
+				return;
+			}
+
+			if ( count == HISTORY ) {
+
+				System.arraycopy( times, 1, times, 0, HISTORY - 1 );
+				System.arraycopy( xs, 1, xs, 0, HISTORY - 1 );
+				System.arraycopy( ys, 1, ys, 0, HISTORY - 1 );
+				System.arraycopy( headings, 1, headings, 0, HISTORY - 1 );
+				count--;
+			}
+
+			times[ count ] = time;
+			xs[ count ] = x;
+			ys[ count ] = y;
+			headings[ count ] = heading;
+			count++;
+
+		} // end add
+
+		/*
+		 * Finds the position at a server time and leaves it in sampleX,
+		 * sampleY and sampleHeading.
+		 */
+		void sample( long time, boolean extrapolate ) {
+
+			int last = count - 1;
+
+			if ( time >= times[ last ] ) {
+
+				sampleX = xs[ last ];
+				sampleY = ys[ last ];
+				sampleHeading = headings[ last ];
+
+				if ( extrapolate ) {
+
+					// Torpedoes move one increment per step along their heading
+					long ahead = Math.min( time - times[ last ], MAX_EXTRAPOLATION );
+					int distance = (int) ( ahead * Constants.INCREMENT / Constants.TORPEDO_STEP_MS );
+
+					sampleX += SpaceCraft.headingDX( sampleHeading ) * distance;
+					sampleY += SpaceCraft.headingDY( sampleHeading ) * distance;
+				}
+				return;
+			}
+
+			if ( time <= times[ 0 ] ) {
+
+				sampleX = xs[ 0 ];
+				sampleY = ys[ 0 ];
+				sampleHeading = headings[ 0 ];
+				return;
+			}
+
+			// Find the two updates around the time
+			int next = 1;
+
+			while ( times[ next ] <= time ) {
+				next++;
+			}
+
+			int previous = next - 1;
+			double fraction = (double) ( time - times[ previous ] )
+								/ ( times[ next ] - times[ previous ] );
+
+			sampleX = xs[ previous ] + (int) Math.round( ( xs[ next ] - xs[ previous ] ) * fraction );
+			sampleY = ys[ previous ] + (int) Math.round( ( ys[ next ] - ys[ previous ] ) * fraction );
+			sampleHeading = headings[ next ];
+
+		} // end sample
+
+	} // end History inner class
+
+} // end EntityInterpolator class
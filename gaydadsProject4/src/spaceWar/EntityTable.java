@@ -0,0 +1,356 @@
+package spaceWar;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+/**
+ * Table of values keyed by a primitive long, such as an entity identity
+ * made by keyOf from an address and port. Looking up, adding to and
+ * updating a table of this kind does not create key objects, so updates
+ * for entities already known can be handled without allocating. Storage
+ * only grows when a new key is added.
+ *
+ * Values are held in open addressing with linear probing and can be
+ * visited by slot with getCapacity and valueAt.
+ */
+public class EntityTable<V> {
+
+	// Slots, an empty slot has a null value
+	private long[] keys;
+	private Object[] values;
+
+	// Number of values held
+	private int size = 0;
+
+	// True if the hash code of an IPv4 address is the address, which can
+	// then be read without getAddress making a copy of it
+	private static final boolean HASH_IS_ADDRESS = hashIsAddress();
+
+
+	/**
+	 * Creates an empty table.
+	 */
+	public EntityTable() {
+
+		keys = new long[ 16 ];
+		values = new Object[ 16 ];
+
+	} // end EntityTable constructor
+
+
+	/**
+	 * Makes the key of an entity identified by an IPv4 address and port.
+	 *
+	 * @param address address as an int, most significant byte first
+	 * @param port port of the entity
+	 * @return key of the entity
+	 */
+	public static long keyOf( int address, int port ) {
+
+		return ( (long) address << 32 ) | ( port & 0xFFFFFFFFL );
+
+	} // end keyOf
+
+
+	/**
+	 * Makes the key of an entity identified by an address and port.
+	 *
+	 * @param address address of the entity
+	 * @param port port of the entity
+	 * @return key of the entity
+	 */
+	public static long keyOf( InetAddress address, int port ) {
+
+		return keyOf( addressBits( address ), port );
+
+	} // end keyOf
+
+
+	/**
+	 * @param address IPv4 address
+	 * @return the address as an int, most significant byte first
+	 */
+	public static int addressBits( InetAddress address ) {
+
+		if ( HASH_IS_ADDRESS && address instanceof Inet4Address ) {
+			return address.hashCode();
+		}
+
+		byte[] b = address.getAddress();
+		int bits = 0;
+
+		// Only the last four bytes are used for longer addresses
+		for ( int i = Math.max( 0, b.length - 4 ); i < b.length; i++ ) {
+			bits = ( bits << 8 ) | ( b[i] & 0xFF );
+		}
+
+		return bits;
+
+	} // end addressBits
+
+
+	/*
+	 * Checks that the hash code of an IPv4 address is the address.
+	 */
+	private static boolean hashIsAddress() {
+
+		try {
+			return InetAddress.getByAddress( new byte[] { 10, (byte) 200, 3, (byte) 140 } ).hashCode() == 0x0AC8038C;
+		}
+		catch ( UnknownHostException e ) {
+			return false;
+		}
+
+	} // end hashIsAddress
+
+
+	/**
+	 * Makes the address and port of an entity back from its key.
+	 *
+	 * @param key key made by keyOf
+	 * @return address and port of the entity
+	 * @throws UnknownHostException never, the address is always four bytes
+	 */
+	public static InetSocketAddress addressOf( long key ) throws UnknownHostException {
+
+		int bits = (int) ( key >>> 32 );
+		byte[] address = { (byte) ( bits >>> 24 ), (byte) ( bits >>> 16 ), (byte) ( bits >>> 8 ), (byte) bits };
+
+		return new InetSocketAddress( InetAddress.getByAddress( address ), (int) key );
+
+	} // end addressOf
+
+
+	/**
+	 * @param key key of a value
+	 * @return value held for the key, or null if none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get( long key ) {
+
+		int slot = find( key );
+
+		return slot < 0 ? null : (V) values[ slot ];
+
+	} // end get
+
+
+	/**
+	 * Adds or replaces the value held for a key.
+	 *
+	 * @param key key of the value
+	 * @param value value to hold, not null
+	 */
+	public void put( long key, V value ) {
+
+		int slot = find( key );
+
+		if ( slot >= 0 ) {
+
+			values[ slot ] = value;
+			return;
+		}
+
+		// Kept at most half full so probes stay short
+		if ( ( size + 1 ) * 2 > keys.length ) {
+			resize( keys.length * 2 );
+		}
+
+		slot = home( key, keys.length );
+
+		while ( values[ slot ] != null ) {
+			slot = ( slot + 1 ) & ( keys.length - 1 );
+		}
+
+		keys[ slot ] = key;
+		values[ slot ] = value;
+		size++;
+
+	} // end put
+
+
+	/**
+	 * Removes the value held for a key.
+	 *
+	 * @param key key of the value
+	 * @return the value removed, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove( long key ) {
+
+		int slot = find( key );
+
+		if ( slot < 0 ) {
+			return null;
+		}
+
+		V removed = (V) values[ slot ];
+		int mask = keys.length - 1;
+
+		// Move later values of the same run back so none is left behind
+		// the emptied slot where a probe would not find it
+		int hole = slot;
+		int next = ( hole + 1 ) & mask;
+
+		while ( values[ next ] != null ) {
+
+			int wanted = home( keys[ next ], keys.length );
+
+			if ( ( ( next - wanted ) & mask ) >= ( ( next - hole ) & mask ) ) {
+
+				keys[ hole ] = keys[ next ];
+				values[ hole ] = values[ next ];
+				hole = next;
+			}
+
+			next = ( next + 1 ) & mask;
+		}
+
+		values[ hole ] = null;
+		size--;
+
+		return removed;
+
+	} // end remove
+
+
+	/**
+	 * Makes room for a number of values, so adding that many does not 
+	 * have to grow the table.
+	 *
+	 * @param expected number of values the table will hold
+	 */
+	public void ensureCapacity( int expected ) {
+
+		int capacity = keys.length;
+
+		while ( expected * 2 > capacity ) {
+			capacity *= 2;
+		}
+
+		if ( capacity > keys.length ) {
+			resize( capacity );
+		}
+
+	} // end ensureCapacity
+
+
+	/**
+	 * Removes every value.
+	 */
+	public void clear() {
+
+		Arrays.fill( values, null );
+		size = 0;
+
+	} // end clear
+
+
+	/**
+	 * @return number of values held
+	 */
+	public int size() {
+
+		return size;
+
+	} // end size
+
+
+	/**
+	 * @return number of slots, to visit the values with valueAt
+	 */
+	public int getCapacity() {
+
+		return keys.length;
+
+	} // end getCapacity
+
+
+	/**
+	 * @param slot slot from 0 to getCapacity() - 1
+	 * @return value in the slot, or null if it is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt( int slot ) {
+
+		return (V) values[ slot ];
+
+	} // end valueAt
+
+
+	/**
+	 * @param slot slot from 0 to getCapacity() - 1 holding a value
+	 * @return key of the value in the slot
+	 */
+	public long keyAt( int slot ) {
+
+		return keys[ slot ];
+
+	} // end keyAt
+
+
+	/*
+	 * Returns the slot holding a key, or -1.
+	 */
+	private int find( long key ) {
+
+		int mask = keys.length - 1;
+		int slot = home( key, keys.length );
+
+		while ( values[ slot ] != null ) {
+
+			if ( keys[ slot ] == key ) {
+				return slot;
+			}
+
+			slot = ( slot + 1 ) & mask;
+		}
+
+		return -1;
+
+	} // end find
+
+
+	/*
+	 * Returns the slot a key is placed in when there is no collision.
+	 */
+	private static int home( long key, int capacity ) {
+
+		long h = key * 0x9E3779B97F4A7C15L;
+
+		return (int) ( h >>> 32 ) & ( capacity - 1 );
+
+	} // end home
+
+
+	/*
+	 * Moves every value into a table with more slots.
+	 */
+	private void resize( int capacity ) {
+
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		keys = new long[ capacity ];
+		values = new Object[ capacity ];
+
+		for ( int i = 0; i < oldKeys.length; i++ ) {
+
+			if ( oldValues[i] != null ) {
+
+				int slot = home( oldKeys[i], capacity );
+
+				while ( values[ slot ] != null ) {
+					slot = ( slot + 1 ) & ( capacity - 1 );
+				}
+
+				keys[ slot ] = oldKeys[i];
+				values[ slot ] = oldValues[i];
+			}
+		}
+
+	} // end resize
+
+} // end EntityTable class
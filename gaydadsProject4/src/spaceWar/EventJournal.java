@@ -0,0 +1,699 @@
+package spaceWar;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-ahead journal of the events that change the state of a server's
+ * sector, so the state can be rebuilt after the server dies. Events are
+ * appended as fixed size records to segment files mapped into memory.
+ * When a segment is full the journal rolls over to the next one.
+ *
+ * Appending does not lock. Each append reserves its slot in the current
+ * segment with an atomic add and writes the record straight into the
+ * mapping, so it costs about as much as writing to an array. The kind of
+ * the record is written last, so a record the server died while writing
+ * reads as empty. Records are forced to disk by a background thread every
+ * force period, and a spare segment is prepared there so that rolling over
+ * does not have to create a file.
+ *
+ * A SectorSnapshot of the sector records the position of the journal
+ * when it was taken. Recovery loads the last snapshot and replays the
+ * records from that position on. Replaying an event twice has no further
+ * effect, so records appended while the snapshot was copied can safely
+ * be replayed on top of it. Torpedo moves are journaled as the tick of
+ * the sector after each update, not torpedo by torpedo, and a torpedo is
+ * moved on by the ticks after its last state, so a tick the snapshot
+ * already has does not move it again.
+ */
+public class EventJournal {
+
+	/**
+	 * Kinds of events. A ship or torpedo record adds it or updates its
+	 * position and heading. Joins and updates are SHIP records, a fired
+	 * torpedo is a TORPEDO record and an exit is a REMOVE_SHIP record. A
+	 * torpedo record keeps how far the torpedo has travelled above the 8
+	 * bits of its heading. A TICK record is appended after the torpedoes
+	 * are moved and holds the tick of the sector in its x and y.
+	 */
+	public static final int SHIP = 1;
+	public static final int TORPEDO = 2;
+	public static final int REMOVE_SHIP = 3;
+	public static final int REMOVE_TORPEDO = 4;
+	public static final int OBSTACLE = 5;
+	public static final int TICK = 6;
+
+	/**
+	 * Size in bytes of a record: kind, address, port, x, y, heading and a
+	 * check of the other fields.
+	 */
+	public static final int RECORD_SIZE = 28;
+
+	/**
+	 * Default size in bytes of a segment, a whole number of records.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = RECORD_SIZE * ( 1 << 19 );
+
+	/**
+	 * Default time in milliseconds between forcing records to disk.
+	 */
+	public static final int DEFAULT_FORCE_PERIOD = 100;
+
+	// Directory holding the segments
+	protected File directory;
+
+	// Size in bytes of each segment
+	protected int segmentSize;
+
+	// Time in milliseconds between forces
+	protected int forcePeriod;
+
+	// Segment appended to, and the one prepared to follow it
+	protected volatile Segment current;
+	protected volatile Segment spare = null;
+
+	// Segments rolled over from and not forced since. A queue, so that a
+	// roll while a force is running, or several rolls between forces,
+	// cannot leave a segment unforced.
+	protected ConcurrentLinkedQueue<Segment> rolledOver = new ConcurrentLinkedQueue<Segment>();
+
+	// Forces the segments and prepares spares. Waits on the lock between
+	// forces, so that closing can wake it without interrupting a file
+	// operation, which would close the file.
+	protected Thread forcer;
+	protected final Object forcerLock = new Object();
+	protected volatile boolean open = true;
+
+	// Number of records appended
+	protected AtomicLong appended = new AtomicLong();
+
+
+	/**
+	 * Opens a journal in a directory with the default segment size and
+	 * force period. Appending starts in a new segment after any already in
+	 * the directory, which are left for recovery.
+	 *
+	 * @param directory directory holding the segments, created if needed
+	 * @throws IOException if the first segment cannot be created
+	 */
+	public EventJournal( File directory ) throws IOException {
+
+		this( directory, DEFAULT_SEGMENT_SIZE, DEFAULT_FORCE_PERIOD );
+
+	} // end EventJournal constructor
+
+
+	/**
+	 * Opens a journal in a directory. Appending starts in a new segment
+	 * after any already in the directory, which are left for recovery.
+	 *
+	 * @param directory directory holding the segments, created if needed
+	 * @param segmentSize size in bytes of each segment, rounded down to a
+	 * whole number of records
+	 * @param forcePeriod time in milliseconds between forcing records to disk
+	 * @throws IOException if the first segment cannot be created
+	 */
+	public EventJournal( File directory, int segmentSize, int forcePeriod ) throws IOException {
+
+		this.directory = directory;
+		this.segmentSize = Math.max( 1, segmentSize / RECORD_SIZE ) * RECORD_SIZE;
+		this.forcePeriod = Math.max( 1, forcePeriod );
+
+		directory.mkdirs();
+
+		long[] existing = segmentNumbers( directory );
+		long first = existing.length == 0 ? 0 : existing[ existing.length - 1 ] + 1;
+
+		current = new Segment( directory, first, this.segmentSize );
+
+		forcer = new Thread( "journal forcer" ) {
+
+			public void run() {
+
+				forceLoop();
+
+			} // end run
+		};
+		forcer.setDaemon( true );
+		forcer.start();
+
+	} // end EventJournal constructor
+
+
+	/**
+	 * Appends an event about a ship or torpedo. Does not lock or block
+	 * unless the segment is full and no spare has been prepared.
+	 *
+	 * @param kind kind of the event
+	 * @param id identity of the ship or torpedo
+	 * @param x x position
+	 * @param y y position
+	 * @param heading heading
+	 */
+	public void append( int kind, InetSocketAddress id, int x, int y, int heading ) {
+
+		append( kind, EntityTable.addressBits( id.getAddress() ), id.getPort(), x, y, heading );
+
+	} // end append
+
+
+	/**
+	 * Appends an event about a torpedo, with how far it has travelled.
+	 *
+	 * @param kind TORPEDO or REMOVE_TORPEDO
+	 * @param torp torpedo the event is about
+	 */
+	public void append( int kind, Torpedo torp ) {
+
+		append( kind, torp.ID, torp.getXPosition(), torp.getYPosition(),
+				torp.getHeading() | torp.lifeCounter << 8 );
+
+	} // end append
+
+
+	/**
+	 * Appends the tick of the sector after its torpedoes have been moved.
+	 * Must be appended in the same order as the torpedo events around it
+	 * happened.
+	 *
+	 * @param tick tick of the sector
+	 */
+	public void appendTick( long tick ) {
+
+		append( TICK, 0, 0, (int) ( tick >>> 32 ), (int) tick, 0 );
+
+	} // end appendTick
+
+
+	/**
+	 * Appends an event. Does not lock or block unless the segment is full
+	 * and no spare has been prepared.
+	 *
+	 * @param kind kind of the event
+	 * @param address address of the ship or torpedo as an int
+	 * @param port port of the ship or torpedo
+	 * @param x x position
+	 * @param y y position
+	 * @param heading heading
+	 */
+	public void append( int kind, int address, int port, int x, int y, int heading ) {
+
+		while ( open ) {
+
+			Segment segment = current;
+			long slot = segment.reserved.getAndAdd( RECORD_SIZE );
+
+			if ( slot + RECORD_SIZE <= segmentSize ) {
+
+				segment.write( (int) slot, kind, address, port, x, y, heading );
+				appended.incrementAndGet();
+				return;
+			}
+
+			// The append that first went past the end rolls the journal
+			// over. Any others wait for it and try again.
+			if ( slot == segmentSize ) {
+				roll( segment );
+			}
+			else {
+
+				while ( current == segment && open ) {
+					Thread.yield();
+				}
+			}
+		}
+
+	} // end append
+
+
+	/**
+	 * @return position of the journal, to be stored with a snapshot.
+	 * Every record appended before this was called comes before it.
+	 */
+	public long getPosition() {
+
+		Segment segment = current;
+
+		return position( segment.number, (int) Math.min( segment.reserved.get(), segmentSize ) );
+
+	} // end getPosition
+
+
+	/**
+	 * @return number of records appended
+	 */
+	public long getAppended() {
+
+		return appended.get();
+
+	} // end getAppended
+
+
+	/**
+	 * Deletes the segments that hold only records from before a position,
+	 * as when a snapshot taken at the position has been written.
+	 *
+	 * @param position position stored with the snapshot
+	 */
+	public void truncate( long position ) {
+
+		long keep = segmentOf( position );
+
+		for ( long number : segmentNumbers( directory ) ) {
+
+			if ( number < keep && !segmentFile( directory, number ).delete() ) {
+				System.err.println( "Could not delete journal segment " + number );
+			}
+		}
+
+	} // end truncate
+
+
+	/**
+	 * Forces every record to disk and stops the background thread.
+	 */
+	public void close() {
+
+		open = false;
+
+		synchronized ( forcerLock ) {
+			forcerLock.notifyAll();
+		}
+
+		try {
+			forcer.join();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+
+		force();
+
+	} // end close
+
+
+	/**
+	 * Rebuilds a sector from the last snapshot in a directory and the
+	 * records journaled after it. Empty and damaged records are skipped.
+	 * Each event about a ship or torpedo sets or removes the whole of its
+	 * state, so the snapshot and the records are first folded down to
+	 * the last state of each, which is then added to the sector. Torpedoes
+	 * are moved on by the ticks journaled after their last state, as the
+	 * server moved them. Their hits and ends were journaled as removes.
+	 * This gives the same sector as applying every event in turn without
+	 * searching the sector for each one.
+	 *
+	 * @param directory directory holding the snapshot and the segments
+	 * @param model empty sector to rebuild
+	 * @return number of records replayed on top of the snapshot
+	 * @throws IOException if the snapshot or a segment cannot be read
+	 */
+	public static long recover( File directory, SectorModel model ) throws IOException {
+
+		// Last state of each ship and torpedo: kind, x, y, heading, the
+		// distance a torpedo has travelled and the tick of the state
+		EntityTable<int[]> ships = new EntityTable<int[]>();
+		EntityTable<int[]> torpedoes = new EntityTable<int[]>();
+
+		// Ticks are kept less the tick of the snapshot
+		long base = 0;
+		int tick = 0;
+
+		long position = 0;
+		SectorSnapshot snapshot = SectorSnapshot.map( directory );
+
+		if ( snapshot != null ) {
+
+			position = snapshot.getPosition();
+			base = snapshot.getTick();
+			snapshot.restoreObstacles( model );
+			snapshot.fold( ships, torpedoes );
+		}
+
+		long count = 0;
+		long from = segmentOf( position );
+
+		for ( long number : segmentNumbers( directory ) ) {
+
+			if ( number < from ) {
+				continue;
+			}
+
+			RandomAccessFile file = new RandomAccessFile( segmentFile( directory, number ), "r" );
+
+			try {
+
+				MappedByteBuffer map = file.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, file.length() );
+				int offset = ( number == from ) ? offsetOf( position ) : 0;
+
+				for ( ; offset + RECORD_SIZE <= map.capacity(); offset += RECORD_SIZE ) {
+
+					int kind = map.getInt( offset );
+					int bits = map.getInt( offset + 4 );
+					int port = map.getInt( offset + 8 );
+					int x = map.getInt( offset + 12 );
+					int y = map.getInt( offset + 16 );
+					int heading = map.getInt( offset + 20 );
+
+					if ( kind == 0 || map.getInt( offset + 24 ) != check( kind, bits, port, x, y, heading ) ) {
+						continue;
+					}
+
+					count++;
+
+					if ( kind == OBSTACLE ) {
+						model.addObstacle( x, y );
+					}
+					else if ( kind == TICK ) {
+						tick = Math.max( tick, (int) ( ( (long) x << 32 | ( y & 0xFFFFFFFFL ) ) - base ) );
+					}
+					else if ( kind == TORPEDO || kind == REMOVE_TORPEDO ) {
+						set( torpedoes, EntityTable.keyOf( bits, port ), kind, x, y,
+								heading & 0xFF, heading >>> 8, tick );
+					}
+					else {
+						set( ships, EntityTable.keyOf( bits, port ), kind, x, y, heading, 0, tick );
+					}
+				}
+			}
+			finally {
+				file.close();
+			}
+		}
+
+		// A snapshot copied after the last tick journaled, as when the end
+		// of the journal was lost, has torpedoes ahead of it
+		tick = latestTick( torpedoes, tick );
+
+		addLast( model, ships, tick );
+		addLast( model, torpedoes, tick );
+		model.setTick( base + tick );
+
+		return count;
+
+	} // end recover
+
+
+	/**
+	 * @param segment number of a segment
+	 * @param offset offset of a record in the segment
+	 * @return position of the record
+	 */
+	public static long position( long segment, int offset ) {
+
+		return ( segment << 32 ) | ( offset & 0xFFFFFFFFL );
+
+	} // end position
+
+
+	/*
+	 * Sets the last state of a ship or torpedo.
+	 */
+	static void set( EntityTable<int[]> table, long key, int kind, int x, int y, int heading,
+					 int travelled, int tick ) {
+
+		int[] last = table.get( key );
+
+		if ( last == null ) {
+
+			last = new int[ 6 ];
+			table.put( key, last );
+		}
+
+		last[0] = kind;
+		last[1] = x;
+		last[2] = y;
+		last[3] = heading;
+		last[4] = travelled;
+		last[5] = tick;
+
+	} // end set
+
+
+	/*
+	 * Returns the latest tick of a state in a table, or a given tick if
+	 * that is later.
+	 */
+	static int latestTick( EntityTable<int[]> table, int tick ) {
+
+		for ( int slot = 0; slot < table.getCapacity(); slot++ ) {
+
+			int[] last = table.valueAt( slot );
+
+			if ( last != null ) {
+				tick = Math.max( tick, last[5] );
+			}
+		}
+
+		return tick;
+
+	} // end latestTick
+
+
+	/*
+	 * Adds every ship or torpedo in a table whose last event was not a
+	 * remove to a sector. Torpedoes are moved on from the tick of their
+	 * last state to a given tick, and left out if that ends them.
+	 */
+	static void addLast( SectorModel model, EntityTable<int[]> table, int tick ) throws IOException {
+
+		for ( int slot = 0; slot < table.getCapacity(); slot++ ) {
+
+			int[] last = table.valueAt( slot );
+
+			if ( last == null || ( last[0] != SHIP && last[0] != TORPEDO ) ) {
+				continue;
+			}
+
+			InetSocketAddress id = EntityTable.addressOf( table.keyAt( slot ) );
+
+			if ( last[0] == SHIP ) {
+				model.addSpaceCraft( new SpaceCraft( id, last[1], last[2], last[3] ) );
+			}
+			else {
+
+				Torpedo torp = new Torpedo( id, last[1], last[2], last[3] );
+				torp.lifeCounter = last[4];
+
+				if ( tick > last[5] && !torp.update( tick - last[5] ) ) {
+					continue;
+				}
+
+				model.addTorpedo( torp );
+			}
+		}
+
+	} // end addLast
+
+
+	/*
+	 * Moves appends on to the next segment. Only called by the append that
+	 * found the segment full.
+	 */
+	protected void roll( Segment full ) {
+
+		Segment next = spare;
+		spare = null;
+
+		if ( next == null || next.number != full.number + 1 ) {
+
+			try {
+				next = new Segment( directory, full.number + 1, segmentSize );
+			} catch ( IOException e ) {
+
+				System.err.println( "Could not create journal segment. Journal closed." );
+				open = false;
+				return;
+			}
+		}
+
+		rolledOver.add( full );
+		current = next;
+
+	} // end roll
+
+
+	/*
+	 * Forces the records to disk every force period and prepares the next
+	 * segment ahead of time.
+	 */
+	protected void forceLoop() {
+
+		while ( open ) {
+
+			synchronized ( forcerLock ) {
+
+				try {
+					forcerLock.wait( forcePeriod );
+				} catch ( InterruptedException e ) {
+					return;
+				}
+			}
+
+			if ( !open ) {
+				return;
+			}
+
+			force();
+
+			if ( spare == null ) {
+
+				try {
+					spare = new Segment( directory, current.number + 1, segmentSize );
+				} catch ( IOException e ) {
+					System.err.println( "Could not prepare journal segment." );
+				}
+			}
+		}
+
+	} // end forceLoop
+
+
+	/*
+	 * Forces the current segment and every one rolled over from since the
+	 * last force. A segment is only taken off the queue to be forced.
+	 */
+	protected void force() {
+
+		Segment last;
+
+		while ( ( last = rolledOver.poll() ) != null ) {
+			last.map.force();
+		}
+
+		current.map.force();
+
+	} // end force
+
+
+	/*
+	 * Returns the check stored with a record.
+	 */
+	static int check( int kind, int address, int port, int x, int y, int heading ) {
+
+		int h = 0x5EC7;
+
+		h = h * 31 + kind;
+		h = h * 31 + address;
+		h = h * 31 + port;
+		h = h * 31 + x;
+		h = h * 31 + y;
+		h = h * 31 + heading;
+
+		return h;
+
+	} // end check
+
+
+	/*
+	 * Returns the numbers of the segments in a directory in order.
+	 */
+	static long[] segmentNumbers( File directory ) {
+
+		String[] names = directory.list();
+
+		if ( names == null ) {
+			return new long[ 0 ];
+		}
+
+		long[] numbers = new long[ names.length ];
+		int count = 0;
+
+		for ( String name : names ) {
+
+			if ( name.startsWith( "journal-" ) && name.endsWith( ".seg" ) ) {
+
+				try {
+					numbers[ count++ ] = Long.parseLong( name.substring( 8, name.length() - 4 ) );
+				} catch ( NumberFormatException e ) {
+					count--;
+				}
+			}
+		}
+
+		numbers = Arrays.copyOf( numbers, count );
+		Arrays.sort( numbers );
+
+		return numbers;
+
+	} // end segmentNumbers
+
+
+	/*
+	 * Returns the file of a segment.
+	 */
+	static File segmentFile( File directory, long number ) {
+
+		return new File( directory, String.format( "journal-%010d.seg", number ) );
+
+	} // end segmentFile
+
+
+	static long segmentOf( long position ) {
+
+		return position >>> 32;
+
+	} // end segmentOf
+
+
+	static int offsetOf( long position ) {
+
+		return (int) position;
+
+	} // end offsetOf
+
+
+	/**
+	 * One segment file and its mapping.
+	 */
+	protected static class Segment {
+
+		// Number of the segment, giving the order of the segments
+		final long number;
+
+		// Mapping of the whole file
+		final MappedByteBuffer map;
+
+		// Bytes reserved by appends, which can go past the end
+		final AtomicLong reserved = new AtomicLong();
+
+		Segment( File directory, long number, int size ) throws IOException {
+
+			this.number = number;
+
+			RandomAccessFile file = new RandomAccessFile( segmentFile( directory, number ), "rw" );
+
+			try {
+
+				file.setLength( size );
+				map = file.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, size );
+			}
+			finally {
+				file.close();
+			}
+
+		} // end Segment constructor
+
+		/*
+		 * Writes a record into a reserved slot, the kind last.
+		 */
+		void write( int offset, int kind, int address, int port, int x, int y, int heading ) {
+
+			map.putInt( offset + 4, address );
+			map.putInt( offset + 8, port );
+			map.putInt( offset + 12, x );
+			map.putInt( offset + 16, y );
+			map.putInt( offset + 20, heading );
+			map.putInt( offset + 24, check( kind, address, port, x, y, heading ) );
+			map.putInt( offset, kind );
+
+		} // end write
+
+	} // end Segment inner class
+
+} // end EventJournal class
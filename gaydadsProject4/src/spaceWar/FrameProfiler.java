@@ -0,0 +1,251 @@
+package spaceWar;
+import java.util.Arrays;
+
+/**
+ * Keeps the time spent in each phase of the most recent frames. A frame is
+ * started with beginFrame, each phase is closed with mark as it finishes,
+ * and endFrame closes the frame, counting the time since the last mark as
+ * presenting it. Averages, percentiles and the frame rate are worked out
+ * over the last WINDOW frames.
+ *
+ * The phases are marked from the thread that renders the frames, which is
+ * also the one that normally reads the results.
+ */
+public class FrameProfiler {
+
+	/**
+	 * Phases of a frame, in the order they are drawn.
+	 */
+	public static final int BACKGROUND = 0;
+	public static final int TORPEDOES = 1;
+	public static final int SHIPS = 2;
+	public static final int MINIMAP = 3;
+	public static final int PRESENT = 4;
+
+	/**
+	 * Number of phases.
+	 */
+	public static final int PHASES = 5;
+
+	/**
+	 * Number of frames the results are worked out over.
+	 */
+	public static final int WINDOW = 120;
+
+	// Names of the phases for reports
+	protected static final String[] PHASE_NAMES
+		= { "background", "torpedoes", "ships", "minimap", "present" };
+
+	// Time in nanoseconds of each phase of the last WINDOW frames
+	protected long[][] phaseTimes = new long[ PHASES ][ WINDOW ];
+
+	// Total time and start time in nanoseconds of the last WINDOW frames
+	protected long[] frameTimes = new long[ WINDOW ];
+	protected long[] frameStarts = new long[ WINDOW ];
+
+	// Slot for the next frame and number of frames held
+	protected int next = 0;
+	protected int count = 0;
+
+	// Start of the current frame and end of its last phase
+	protected long frameStart, lastMark;
+
+	// Phase times of the current frame
+	protected long[] current = new long[ PHASES ];
+
+	// Number of frames that were not finished before the next was due
+	protected volatile long missedFrames = 0;
+
+	// Reused when working out percentiles
+	protected long[] sorted = new long[ WINDOW ];
+
+
+	/**
+	 * Starts timing a frame.
+	 */
+	public void beginFrame() {
+
+		frameStart = System.nanoTime();
+		lastMark = frameStart;
+		Arrays.fill( current, 0 );
+
+	} // end beginFrame
+
+
+	/**
+	 * Adds the time since the frame began or the last phase ended to a
+	 * phase.
+	 *
+	 * @param phase phase that has just finished
+	 */
+	public void mark( int phase ) {
+
+		long now = System.nanoTime();
+
+		current[ phase ] += now - lastMark;
+		lastMark = now;
+
+	} // end mark
+
+
+	/**
+	 * Finishes timing a frame. The time since the last phase is counted as
+	 * presenting the frame.
+	 */
+	public synchronized void endFrame() {
+
+		mark( PRESENT );
+
+		for ( int phase = 0; phase < PHASES; phase++ ) {
+			phaseTimes[ phase ][ next ] = current[ phase ];
+		}
+
+		frameTimes[ next ] = lastMark - frameStart;
+		frameStarts[ next ] = frameStart;
+
+		next = ( next + 1 ) % WINDOW;
+		count = Math.min( count + 1, WINDOW );
+
+	} // end endFrame
+
+
+	/**
+	 * Counts a frame that was not finished before the next one was due.
+	 */
+	public void missedFrame() {
+
+		missedFrames++;
+
+	} // end missedFrame
+
+
+	/**
+	 * @return number of frames missed since the profiler was created or
+	 * reset
+	 */
+	public long getMissedFrames() {
+
+		return missedFrames;
+
+	} // end getMissedFrames
+
+
+	/**
+	 * @return number of frames the results are worked out over
+	 */
+	public synchronized int getFrameCount() {
+
+		return count;
+
+	} // end getFrameCount
+
+
+	/**
+	 * Frames started per second over the frames held. Frames are only
+	 * rendered when something changes, so this can be lower than the
+	 * frame rate asked for.
+	 *
+	 * @return frames per second, or 0 if fewer than two frames are held
+	 */
+	public synchronized double getFramesPerSecond() {
+
+		if ( count < 2 ) {
+			return 0;
+		}
+
+		int newest = ( next + WINDOW - 1 ) % WINDOW;
+		int oldest = ( next + WINDOW - count ) % WINDOW;
+		long span = frameStarts[ newest ] - frameStarts[ oldest ];
+
+		return span <= 0 ? 0 : ( count - 1 ) * 1e9 / span;
+
+	} // end getFramesPerSecond
+
+
+	/**
+	 * @param phase phase of a frame
+	 * @return average time of the phase in milliseconds
+	 */
+	public synchronized double getAverage( int phase ) {
+
+		return average( phaseTimes[ phase ] );
+
+	} // end getAverage
+
+
+	/**
+	 * @return average time of a whole frame in milliseconds
+	 */
+	public synchronized double getAverageFrame() {
+
+		return average( frameTimes );
+
+	} // end getAverageFrame
+
+
+	/**
+	 * Time within which a share of the frames were finished.
+	 *
+	 * @param percentile share of the frames from 0 to 100
+	 * @return frame time in milliseconds
+	 */
+	public synchronized double getPercentile( double percentile ) {
+
+		if ( count == 0 ) {
+			return 0;
+		}
+
+		System.arraycopy( frameTimes, 0, sorted, 0, count );
+		Arrays.sort( sorted, 0, count );
+
+		int index = (int) Math.ceil( percentile / 100 * count ) - 1;
+
+		return sorted[ Math.max( 0, Math.min( count - 1, index ) ) ] / 1e6;
+
+	} // end getPercentile
+
+
+	/**
+	 * @param phase phase of a frame
+	 * @return name of the phase
+	 */
+	public static String getPhaseName( int phase ) {
+
+		return PHASE_NAMES[ phase ];
+
+	} // end getPhaseName
+
+
+	/**
+	 * Forgets all frames and missed frames.
+	 */
+	public synchronized void reset() {
+
+		next = 0;
+		count = 0;
+		missedFrames = 0;
+
+	} // end reset
+
+
+	/*
+	 * Average of the times held for the frames in milliseconds.
+	 */
+	protected double average( long[] times ) {
+
+		if ( count == 0 ) {
+			return 0;
+		}
+
+		long sum = 0;
+
+		// Slots past count have not been written yet
+		for ( int i = 0; i < count; i++ ) {
+			sum += times[ i ];
+		}
+
+		return sum / 1e6 / count;
+
+	} // end average
+
+} // end FrameProfiler class
@@ -0,0 +1,51 @@
+package spaceWar;
+
+/**
+ * Management interface of a StripedHistogram, through which its count,
+ * mean, percentiles and largest value are read over JMX. Percentiles
+ * are the lower bound of the bucket holding them, so are within an
+ * eighth of the true value.
+ */
+public interface HistogramMXBean {
+
+	/**
+	 * @return unit of the values recorded, such as ns
+	 */
+	String getUnit();
+
+	/**
+	 * @return number of values recorded
+	 */
+	long getCount();
+
+	/**
+	 * @return mean of the values recorded, 0 if there are none
+	 */
+	double getMean();
+
+	/**
+	 * @return median of the values recorded
+	 */
+	long getP50();
+
+	/**
+	 * @return 90th percentile of the values recorded
+	 */
+	long getP90();
+
+	/**
+	 * @return 99th percentile of the values recorded
+	 */
+	long getP99();
+
+	/**
+	 * @return 99.9th percentile of the values recorded
+	 */
+	long getP999();
+
+	/**
+	 * @return largest value recorded
+	 */
+	long getMax();
+
+} // end HistogramMXBean interface
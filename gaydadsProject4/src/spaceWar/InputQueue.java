@@ -0,0 +1,114 @@
+package spaceWar;
+
+/**
+ * Inputs made by the player, waiting to be handled away from the event
+ * thread. The GUI offers inputs, which never blocks, and the thread that
+ * talks to the server drains them once per tick. When the queue is full,
+ * as when a key is held down and repeats faster than the inputs are
+ * drained, further inputs are dropped.
+ *
+ * Inputs are the ClientPredictor inputs, FIRE and JOIN.
+ */
+public class InputQueue {
+
+	/**
+	 * Input to fire a torpedo.
+	 */
+	public static final int FIRE = 5;
+
+	/**
+	 * Input to join the game with a new ship.
+	 */
+	public static final int JOIN = 6;
+
+	/**
+	 * Default number of inputs held.
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	// Inputs in a ring, oldest first
+	protected int[] inputs;
+	protected int start = 0;
+	protected int count = 0;
+
+	// Number of inputs dropped because the queue was full
+	protected long dropped = 0;
+
+
+	/**
+	 * Creates a queue that holds DEFAULT_CAPACITY inputs.
+	 */
+	public InputQueue() {
+
+		this( DEFAULT_CAPACITY );
+
+	} // end InputQueue constructor
+
+
+	/**
+	 * Creates a queue.
+	 *
+	 * @param capacity largest number of inputs held
+	 */
+	public InputQueue( int capacity ) {
+
+		inputs = new int[ Math.max( 1, capacity ) ];
+
+	} // end InputQueue constructor
+
+
+	/**
+	 * Adds an input to the end of the queue unless it is full.
+	 *
+	 * @param input input made by the player
+	 * @return false if the input was dropped
+	 */
+	public synchronized boolean offer( int input ) {
+
+		if ( count == inputs.length ) {
+
+			dropped++;
+			return false;
+		}
+
+		inputs[ ( start + count ) % inputs.length ] = input;
+		count++;
+
+		return true;
+
+	} // end offer
+
+
+	/**
+	 * Removes inputs from the front of the queue, oldest first.
+	 *
+	 * @param out array the inputs are copied into
+	 * @return number of inputs copied, at most the length of out
+	 */
+	public synchronized int drain( int[] out ) {
+
+		int n = Math.min( count, out.length );
+
+		for ( int i = 0; i < n; i++ ) {
+
+			out[ i ] = inputs[ start ];
+			start = ( start + 1 ) % inputs.length;
+		}
+
+		count -= n;
+
+		return n;
+
+	} // end drain
+
+
+	/**
+	 * @return number of inputs dropped because the queue was full
+	 */
+	public synchronized long getDropped() {
+
+		return dropped;
+
+	} // end getDropped
+
+} // end InputQueue class
@@ -27,8 +27,8 @@ public class Obstacle
 	 */
 	public Obstacle(  )
 	{
-		this(rand.nextInt(Constants.MAX_SECTOR_X), 
-			  rand.nextInt(Constants.MAX_SECTOR_Y) );
+		this(rand.nextInt(Constants.getWorldWidth()), 
+			  rand.nextInt(Constants.getWorldHeight()) );
 
 	} // end Obstacle
 	
@@ -81,7 +81,7 @@ public class Obstacle
 	public void setX(int x)
 	{
 		this.xPosition = 
-			( x > 0 && x < Constants.MAX_SECTOR_X ) ? x : this.xPosition;
+			( x > 0 && x < Constants.getWorldWidth() ) ? x : this.xPosition;
 		
 	} // end setX
 	
@@ -95,7 +95,7 @@ public class Obstacle
 	public void setY(int y)
 	{
 		this.yPosition = 
-			( y > 0 && y < Constants.MAX_SECTOR_Y ) ? y : this.yPosition;
+			( y > 0 && y < Constants.getWorldHeight() ) ? y : this.yPosition;
 		
 	} // end setY	
 	
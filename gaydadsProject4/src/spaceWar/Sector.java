@@ -2,29 +2,22 @@ package spaceWar;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.image.BufferStrategy;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
-import java.util.ListIterator;
-import java.util.Random;
 import java.util.Vector;
 
 /**
  *
- * Double buffered drawing canvas for displaying and storing space game state. Maintains
- * and renders all ships in the sector based on type. Maintains and renders all obstacles 
- * and all torpedoes. Provides method for updating all torpedos. Provides accessor and mutator
- * methods for adding and removing spacecraft and torpedoes. 
+ * Double buffered drawing canvas for displaying space game state. Renders 
+ * all ships in the sector based on type, all obstacles and all torpedoes.
+ * The game state itself is kept by a SectorModel. The accessor and mutator 
+ * methods of the sector pass through to the model.
  * 
  *  @author bachmaer
  */
 public class Sector extends Canvas implements Runnable {
 
-	/** Reference to the users own ship. Typically used by client.
-	 * 	Server does not have an OwnSpaceCraft
-	 */
-	public OwnSpaceCraft ownShip = null;
-		
 	private static final long serialVersionUID = 1L;
 	
 	// Frames per second for animation
@@ -33,18 +26,18 @@ public class Sector extends Canvas implements Runnable {
 	// delay between frames in milliseconds
 	protected int delay;
 
-	// Holds non own ship SpaceCraft in the sector
-	protected Vector<SpaceCraft> inSector = new Vector<SpaceCraft>();
-
-	// Holds torpedoes currently in the sector
-	protected Vector<Torpedo> torpedoes = new Vector<Torpedo>();	
+	// Game state being displayed
+	protected SectorModel model;
 	
-	// Holds obstacles in the sector
-	protected ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+	// Version of the model and position of own ship in the last frame
+	// rendered. A new frame is only rendered when one of them changes.
+	protected long renderedVersion = -1;
+	protected boolean renderedOwnShip = false;
+	protected int renderedOwnX, renderedOwnY, renderedOwnHeading;
 	
-	// IP address and port number that uniquely identifies 
-	// a client to the server and other clients
-	protected  InetSocketAddress ownShipID;
+	// Set when a new frame is needed for a reason other than the game
+	// state, such as a change in size
+	protected volatile boolean viewChanged = true;
 
 	// Back buffer for rendering
 	protected Image offImage = null;
@@ -54,11 +47,25 @@ public class Sector extends Canvas implements Runnable {
 	// Rendering thread
 	protected Thread animatorThread;
 
-	// Random number generator for making star positions
-	protected static Random rand = new Random();
-
-	// Array of 2D points to use for displaying stars
-	protected Point[] starPositions = new Point[250];
+	// Draws the sector into the back buffer
+	protected SectorRenderer renderer;
+	
+	// True to render from the animation thread into a BufferStrategy
+	// instead of going through repaint(). Turned off if the strategy 
+	// cannot be created.
+	protected boolean activeRendering 
+		= Boolean.parseBoolean( System.getProperty( "spaceWar.activeRendering", "true" ) );
+	
+	// Buffers used for active rendering. Created once the canvas is shown.
+	protected BufferStrategy strategy = null;
+	
+	// Moves ships and torpedoes of others smoothly between updates. null
+	// if positions are shown as received.
+	protected volatile EntityInterpolator interpolator = null;
+	
+	// Moves the torpedo fired by own ship between server updates. null 
+	// if there is none.
+	protected volatile ClientPredictor predictor = null;
 
 	/**
 	 * Initializes the drawing canvas. Sets the size, frame rate,
@@ -69,11 +76,8 @@ public class Sector extends Canvas implements Runnable {
 	 */
 	public Sector( InetSocketAddress owner ) {
 		
-		this();
+		this( new SectorModel( owner ) );
 		
-		this.ownShipID 
-			= new InetSocketAddress( owner.getAddress(),
-									 owner.getPort());
 	} // end Sector constructor
 	
 	/**
@@ -84,6 +88,22 @@ public class Sector extends Canvas implements Runnable {
 	 */
 	public Sector() {
 		
+		this( new SectorModel() );
+		
+	} // end Sector constructor
+	
+	
+	/**
+	 * Initializes the drawing canvas for displaying an existing model. 
+	 * Sets the size, frame rate, and background color. Creates event 
+	 * handlers and starts the animation thread.
+	 * 
+	 * @param model game state to be displayed
+	 */
+	public Sector( SectorModel model ) {
+		
+		this.model = model;
+		
 		this.setSize(Constants.MAX_SECTOR_X, Constants.MAX_SECTOR_Y);
 
 		this.addComponentListener(new sizeChangeListener());
@@ -91,11 +111,12 @@ public class Sector extends Canvas implements Runnable {
 		// Set the background color for the screen.
 		this.setBackground(Color.black);
 		
-		// Create stars in random positions
-		createStars();
+		// Create the renderer, which places the stars
+		renderer = new SectorRenderer( model );
 		
-		// Set the delay between frames
-		delay = 1000 / DEFAULT_FPS;
+		// Set the delay between frames. The frame rate is an upper
+		// limit, since frames are only rendered when something changed.
+		setFrameRate( Integer.getInteger( "spaceWar.fps", DEFAULT_FPS ) );
 		
 		// Start the animation thread
 		animatorThread = new Thread(this);
@@ -104,15 +125,98 @@ public class Sector extends Canvas implements Runnable {
 	} // end Sector constructor
 	
 	
+	/**
+	 * Sets the highest number of frames rendered per second.
+	 * 
+	 * @param fps frames per second, at least one
+	 */
+	public void setFrameRate( int fps ) {
+		
+		delay = 1000 / Math.max( 1, fps );
+		
+	} // end setFrameRate
+	
+	
+	/**
+	 * Sets the interpolator that positions the ships and torpedoes of 
+	 * others before each frame.
+	 * 
+	 * @param interpolator interpolator to use, or null to show positions
+	 * as they are received
+	 */
+	public void setInterpolator( EntityInterpolator interpolator ) {
+		
+		this.interpolator = interpolator;
+		
+	} // end setInterpolator
+	
+	
+	/**
+	 * Sets the predictor that moves the torpedo of own ship before each
+	 * frame.
+	 * 
+	 * @param predictor predictor to use, or null for none
+	 */
+	public void setPredictor( ClientPredictor predictor ) {
+		
+		this.predictor = predictor;
+		
+	} // end setPredictor
+	
+	
+	/**
+	 * Shows a smaller part of the sector, larger.
+	 */
+	public void zoomIn( ) {
+		
+		renderer.getCamera().zoomIn();
+		viewChanged = true;
+		
+	} // end zoomIn
+	
+	
+	/**
+	 * Shows a larger part of the sector, smaller.
+	 */
+	public void zoomOut( ) {
+		
+		renderer.getCamera().zoomOut();
+		viewChanged = true;
+		
+	} // end zoomOut
+	
+	
+	/**
+	 * Shows or hides the frame times drawn over the sector.
+	 */
+	public void toggleProfiler( ) {
+		
+		renderer.setProfilerVisible( !renderer.isProfilerVisible() );
+		viewChanged = true;
+		
+	} // end toggleProfiler
+	
+	
+	/**
+	 * Accessor method for the game state displayed by the sector.
+	 * 
+	 * @return model of the sector
+	 */
+	public SectorModel getModel( ) {
+		
+		return model;
+		
+	} // end getModel
+	
+	
 	/**
 	 * Accessor method for the obstacles contained in the sector.
 	 * 
 	 * @return list of the obstacles
 	 */
-	@SuppressWarnings("unchecked")
 	public ArrayList<Obstacle> getObstacles( ) {
 		
-		return  (ArrayList<Obstacle>)obstacles.clone();
+		return model.getObstacles();
 		
 	} // end getObstacles
 	
@@ -121,141 +225,54 @@ public class Sector extends Canvas implements Runnable {
 	 * 
 	 * @return list of the obstacles
 	 */
-	@SuppressWarnings("unchecked")
 	public Vector<Torpedo> getTorpedoes( ) {
 		
-		return  (Vector<Torpedo>) torpedoes.clone();
+		return model.getTorpedoes();
 		
 	} // end getTorpedoes
 	
 	/**
 	 * Checks for a collision between the mover spacecraft and 
-	 * all other ships in the sector. It returns a list of ships 
-	 * destroyed in a collision if one occurred. If the collision 
-	 * between two ships was head-on both the mover and 
-	 * the ship it hit are destroyed. Destroyed ships are 
-	 * removed from the display. 
+	 * all other ships in the sector. See SectorModel.collisionCheck.
 	 * 
 	 * @param mover ship to check against all other ships
 	 * 
 	 * @return ships destroyed if a collision occurred. 
 	 * null otherwise.
 	 */
-	public synchronized ArrayList<SpaceCraft> collisionCheck( SpaceCraft mover ) {
+	public ArrayList<SpaceCraft> collisionCheck( SpaceCraft mover ) {
 		
-		// List of ships in collision
-		ArrayList<SpaceCraft>  destroyedShips = null;
+		return model.collisionCheck( mover );
 		
-		// Go through all the ships in the sector and compare
-		// each against mover
-		for( SpaceCraft target: inSector ) {
-
-			// Have mover and the target ship collided
-			if ( !target.equals(mover) && inCollision( target, mover)) {
-
-				// A collision has occurred. Create a list to hold the destroyed ships
-				destroyedShips = new ArrayList<SpaceCraft>();
-				
-				// Check for head-on collision.
-				if ( opposingHeading( mover , target) ) {
-
-					// Remove move and add to destroyed ship list
-					removeSpaceCraft( mover );
-					destroyedShips.add( mover );
-				}
-				
-				// Add the ship that was hit to the destroyed ship list
-				removeSpaceCraft( target );
-				destroyedShips.add( target );
-				
-				// Return the ship collided with 
-				return destroyedShips;	
-			}
-			
-		} // end for
-
-		// no  collision occurred
-		return null;
-
 	} // end collisionCheck
-
 	
 	/**
-	 * Updates the positions of all the torpedoes. If a torpedo
-	 * hits an obstacle, it is destroyed. If a torpedo hits a
-	 * spacecraft, both the ship and the torpedo are destroyed. 
-	 * Destroyed ships and torpedoes are removed from the display. 
+	 * Updates the positions of all the torpedoes by a single increment.
+	 * See SectorModel.updateTorpedoes.
 	 * 
 	 * @return destroyed ships and torpedoes. 
 	 * null otherwise.
 	 */
-	public synchronized ArrayList<SpaceCraft> updateTorpedoes(  ) {
+	public ArrayList<SpaceCraft> updateTorpedoes(  ) {
 		
-		// List of ships and torpedoes in collision
-		ArrayList<SpaceCraft>  destroyedObjects = null;
+		return model.updateTorpedoes( 1 );
 		
-		try {
-				
-			// Update each torpedo and check for collision with an obstacle
-			for ( Torpedo mover: this.torpedoes ){
-				
-				// Update torpedo position. Check for end of life
-				boolean endOfLife = mover.update();
-
-				// Remove torpedo if it hit an obstacle or its life is over
-				if ( !obstacleClear( mover, true ) || false ==  endOfLife) {
-					
-					// Create destroyed list if it has not been created yet
-					if ( destroyedObjects== null ) {
-						destroyedObjects = new ArrayList<SpaceCraft>();
-					}
-	
-					// Remove torpedo from display add to destroyed
-					removeTorpedo( mover );	
-					destroyedObjects.add( mover );
-				}
-			} // end for
-			
-			// Check each remaining torpedo against all ships in the sector.
-			for ( Torpedo mover: this.torpedoes ){
-			
-				// Go through all the ships in the sector
-				for( SpaceCraft target: inSector ) {
+	} // end updateTorpedoes
+	
+	/**
+	 * Updates the positions of all the torpedoes by a number of increments.
+	 * See SectorModel.updateTorpedoes.
+	 * 
+	 * @param steps number of increments each torpedo moves
+	 * @return destroyed ships and torpedoes. 
+	 * null otherwise.
+	 */
+	public ArrayList<SpaceCraft> updateTorpedoes( int steps ) {
 		
-					// Topedoes cannot kill the shipd that fires them
-					if( !mover.ID.equals(target.ID)) {
-					
-						// Have mover and the target ship collided
-						if ( inCollision( target, mover) ) {
-							
-								if ( destroyedObjects== null ) {
-									destroyedObjects = new ArrayList<SpaceCraft>();
-								}
-		
-								// Remove torpedo and ship from display
-								removeTorpedo( mover );
-								removeSpaceCraft( target );
-								
-								// Add ship and torpedo  to destroyed
-								destroyedObjects.add( mover );
-								destroyedObjects.add( target );
-							}
-						}
-				} // end for
-			} // end for
-
-		} 
-		catch( ConcurrentModificationException e ){
-			//System.out.println("ConcurrentModificationException my");
-		}
+		return model.updateTorpedoes( steps );
 		
-		return destroyedObjects;
-
 	} // end updateTorpedoes
 	
-
-	
-	
 	/**
 	 * Adds a new torpedo to the sector display. If the
 	 * torpedo is already in the display, it is updated
@@ -265,12 +282,11 @@ public class Sector extends Canvas implements Runnable {
 	 * @param y torpedo y position
 	 * @param heading torpedo heading
 	 */
-	public synchronized void updateOrAddTorpedo( InetSocketAddress id, int x, int y, int heading ) {
+	public void updateOrAddTorpedo( InetSocketAddress id, int x, int y, int heading ) {
 		
-		updateOrAddTorpedo( new Torpedo( id, x, y, heading ) );
+		model.updateOrAddTorpedo( id, x, y, heading );
 	 
 	} // end updateOrAddTorpedo
-
 	
 	/**
 	 * Adds a new torpedo to the sector display. If the
@@ -278,36 +294,12 @@ public class Sector extends Canvas implements Runnable {
 	 * 
 	 * @param torp torpedo to be added or updated
 	 */
-	public synchronized void updateOrAddTorpedo(Torpedo torp) {
+	public void updateOrAddTorpedo(Torpedo torp) {
 		
-		Torpedo target;
+		model.updateOrAddTorpedo( torp );
 		
-		ListIterator<Torpedo> iter = torpedoes.listIterator();
-
-		// See if the torpedo is already in the display
-		while (iter.hasNext()) {
-
-			target = (Torpedo) iter.next();
-
-			if (torp.equals(target)) {
-
-				// Update an existing torpedo
-				target.setHeading(torp.heading);
-				target.setX(torp.xPosition);
-				target.setY(torp.yPosition);
-
-				return;
-			}
-		}
-
-		// Add the torpedo. It was not already in the sector
-		torpedoes.add( torp );
-
-		return;
-
 	} // end updateOrAddTorpedo
 	
-	
 	/**
 	 * If the IDed SpaceCraft is already in the sector 
 	 * its heading and/or position are updated. If the SpaceCraft 
@@ -318,9 +310,9 @@ public class Sector extends Canvas implements Runnable {
 	 * @param y spacecraft y position
 	 * @param heading spacecraft heading
 	 */
-	public synchronized void updateOrAddSpaceCraft( InetSocketAddress id, int x, int y, int heading ) {
+	public void updateOrAddSpaceCraft( InetSocketAddress id, int x, int y, int heading ) {
 	
-		updateOrAddSpaceCraft( new SpaceCraft( id, x, y, heading ) );
+		model.updateOrAddSpaceCraft( id, x, y, heading );
 	
 	} // end updateOrAddSpaceCraft
 	
@@ -331,32 +323,11 @@ public class Sector extends Canvas implements Runnable {
 	 * 
 	 * @param craft to be updated or added
 	 */
-	public synchronized void updateOrAddSpaceCraft(SpaceCraft craft) {
-		SpaceCraft target;
-	
-		ListIterator<SpaceCraft> iter = inSector.listIterator();
-
-		while (iter.hasNext()) {
-
-			target = (SpaceCraft) iter.next();
-
-			if (craft.equals(target)) {
-
-				target.setHeading(craft.heading);
-				target.setX(craft.xPosition);
-				target.setY(craft.yPosition);
-
-				return;
-			}
-		}
-
-		// Add the ship. It was not already in the sector
-		inSector.add(craft);
-
-		return;
-
+	public void updateOrAddSpaceCraft(SpaceCraft craft) {
+		
+		model.updateOrAddSpaceCraft( craft );
+		
 	} // end updateOrAddSpaceCraft
-
 	
 	/**
 	 * Remove a SpaceCraft from the sector. The SpaceCraft to 
@@ -367,12 +338,11 @@ public class Sector extends Canvas implements Runnable {
 	 * @param y spacecraft y position
 	 * @param heading spacecraft heading
 	 */
-	public synchronized void removeSpaceCraft( InetSocketAddress id, int x, int y, int heading ) {
+	public void removeSpaceCraft( InetSocketAddress id, int x, int y, int heading ) {
 	
-		removeSpaceCraft( new SpaceCraft( id, x, y, heading ) );
+		model.removeSpaceCraft( id, x, y, heading );
 	
 	} // end removeSpaceCraft
-
 	
 	/**
 	 * Remove a SpaceCraft from the sector. The SpaceCraft to 
@@ -380,34 +350,11 @@ public class Sector extends Canvas implements Runnable {
 	 * 
 	 * @param craft SpaceCraft to be removed.
 	 */
-	public synchronized void removeSpaceCraft(SpaceCraft craft) {
+	public void removeSpaceCraft(SpaceCraft craft) {
+		
+		model.removeSpaceCraft( craft );
 		
-		SpaceCraft target;
-		ListIterator<SpaceCraft> iter = inSector.listIterator();
-
-		// Check if ownship is being removed
-		if (ownShip != null && craft.equals(ownShip)) {
-
-			ownShip = null;
-		} else {
-
-			// Check for shipd in list of ships
-			while (iter.hasNext()) {
-
-				target = (SpaceCraft) iter.next();
-
-				if (craft.equals(target)) {
-					
-					// Remove the ship from the display
-					inSector.remove(iter.previousIndex());
-
-					return;
-				}
-			} // end while
-		}
-
 	} // end removeSpaceCraft
-
 	
 	/**
 	 * Remove a torpedo from the sector.
@@ -417,38 +364,22 @@ public class Sector extends Canvas implements Runnable {
 	 * @param y torpedo y position
 	 * @param heading torpedo heading
 	 */
-	public synchronized void removeTorpedo( InetSocketAddress id, int x, int y, int heading ) {
-	
-		removeTorpedo( new Torpedo( id, x, y, heading ) );
+	public void removeTorpedo( InetSocketAddress id, int x, int y, int heading ) {
 	
+		model.removeTorpedo( id, x, y, heading );
 	
 	} // end removeTorpedo
 	
-	
 	/**
 	 * Remove a torpedo from the sector.
 	 * 
 	 * @param torp Torpedo to be removed.
 	 */
-	public synchronized void removeTorpedo(Torpedo torp) {
+	public void removeTorpedo(Torpedo torp) {
 		
-		Torpedo target;
-		ListIterator<Torpedo> iter = torpedoes.listIterator();
-
-		// Look for the torpedo
-		while (iter.hasNext()) {
-
-			target = (Torpedo) iter.next();
-
-			if (torp.equals(target)) {
-
-				torpedoes.remove(iter.previousIndex());
-
-				return;
-			}
-		}
-
-	} // end remove
+		model.removeTorpedo( torp );
+		
+	} // end removeTorpedo
 	
 	/**
 	 * Creates a space craft for the user in a random position with a random 
@@ -458,57 +389,33 @@ public class Sector extends Canvas implements Runnable {
 	 */
 	public OwnSpaceCraft createOwnSpaceCraft() {
 	
-		if (ownShip == null) {
-			ownShip = new OwnSpaceCraft( ownShipID );
-		}
-
-		return ownShip;
+		return model.createOwnSpaceCraft();
+		
 	} // end createOwnSpaceCraft
 	
-	
 	/**
-	 * Creates stars in random positions for the display.
-	 *
-	 */
-	protected void createStars() {
-		
-		for (int i = 0; i < starPositions.length; i++) {
-
-			starPositions[i] = new Point();
-
-			starPositions[i].x = rand.nextInt(Constants.MAX_SECTOR_X);
-			starPositions[i].y = rand.nextInt(Constants.MAX_SECTOR_Y);
-		}
-
-	} // end createStars
-
-	/**
-	 * Add a single obstacle to those in the sector. Assumes that is will only be
-	 * called once per obstacle. Does not check for duplicates.
+	 * Add a single obstacle to those in the sector.
 	 * 
 	 * @param obs obstacle to be added to the scene
 	 */
 	public void addObstacle(Obstacle obs) {
 		
-		obstacles.add(obs);
+		model.addObstacle( obs );
 
 	} // end addObstacle
 	
-	
 	/**
-	 * Add a single obstacle to those in the sector. Assumes that is will only be
-	 * called once per obstacle. Does not check for duplicates.
+	 * Add a single obstacle to those in the sector.
 	 * 
 	 * @param x x position of the obstacle
 	 * @param y y position of the obstacle
 	 */
 	public void addObstacle(int x, int y) {
 		
-		addObstacle( new Obstacle(x, y));
+		model.addObstacle( x, y );
 
 	} // end addObstacle
 	
-	
 	/**
 	 * Check to see if an obstacle is in front of ownShip.
 	 * 
@@ -516,120 +423,27 @@ public class Sector extends Canvas implements Runnable {
 	 */
 	public boolean clearInfront() {
 		
-		return obstacleClear( ownShip, true );
+		return model.clearInfront();
 		
 	}
 	
 	/**
-	 * Check to see if an obstacle is in front of ownShip.
+	 * Check to see if an obstacle is behind ownShip.
 	 * 
 	 * @return true if the position is clear, false otherwise
 	 */
 	public boolean clearBehind() {
 		
-		return obstacleClear( ownShip, false );
+		return model.clearBehind();
 		
 	}
 	
-	/**
-	 * Check to see if an obstacle is in front of an object of the SpaceCraft class.
-	 * 
-	 * @param craft SpaceCraft or sub-class to check against the obstacles
-	 * @param forward true if checking for obstacles in front of craft. false if
-	 * checking for obstacles behind.
-	 * @return true if the position is clear, false otherwise
-	 */
-	public boolean obstacleClear(SpaceCraft craft, boolean forward) {
-		
-		// Temps to hold hypothetical position
-		int xObs = craft.getXPosition();
-		int yObs = craft.getYPosition();
-		
-		int direction = (forward)? OwnSpaceCraft.INCREMENT : -OwnSpaceCraft.INCREMENT;
-
-		// Create hypothetical position
-		switch (craft.getHeading()) {
-
-		case Constants.NORTH:
-
-			yObs -= direction;
-
-			break;
-
-		case Constants.NORTH_EAST:
-
-			xObs += direction;
-			yObs -= direction;
-
-			break;			
-			
-		case Constants.EAST:
-
-			xObs += direction;
-
-			break;
-	
-		case Constants.SOUTH_EAST:
-
-			xObs += direction;
-			yObs += direction;
-			break;			
-
-		case Constants.SOUTH:
-
-			yObs += direction;
-
-			break;
-		case Constants.SOUTH_WEST:
-
-			xObs -= direction;
-			yObs += direction;
-
-			break;
-
-		case Constants.WEST:
-
-			xObs -= direction;
-
-			break;
-
-		case Constants.NORTH_WEST:
-
-			xObs -= direction;
-			yObs -= direction;
-			
-			break;			
-			
-		default:
-
-			System.err.println("Case error in obstacleClear");
-
-		}
-
-		// Check hypothetical position against all obstacles
-		ListIterator<Obstacle> iter = obstacles.listIterator();
-
-		while (iter.hasNext()) {
-
-			Obstacle obs = (Obstacle) iter.next();
-
-			if (Math.abs(obs.getXPosition() - xObs) < 10
-					&& Math.abs(obs.getYPosition() - yObs) < 10) {
-
-				// "Obstacle in path";
-				return false;
-			}
-		}
-
-		// "Path clear of obstacles"
-		return true;
-
-	} // end obstacleClear
-
 	
 	/** 
 	 * Animation thread. Sleeps in between frames according 
-	 * to the frame rate.
+	 * to the frame rate. A frame is only rendered if the sector
+	 * has changed since the last one. Frames are drawn directly 
+	 * with active rendering, otherwise through repaint().
 	 */
 	public void run() {
 
@@ -638,7 +452,7 @@ public class Sector extends Canvas implements Runnable {
 		Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
 
 		//Remember the starting time.
-		long startTime = System.currentTimeMillis();
+		long nextFrame = System.nanoTime();
 
 		//Remember which thread we are.
 		Thread currentThread = Thread.currentThread();
@@ -646,24 +460,173 @@ public class Sector extends Canvas implements Runnable {
 		//This is the animation loop.
 		while (currentThread == animatorThread) {
 
-			// Indirectly call paint
-			repaint();
+			// Move ships and torpedoes of others to where they are
+			// shown in this frame
+			EntityInterpolator currentInterpolator = interpolator;
+			
+			if ( currentInterpolator != null ) {
+				currentInterpolator.apply( model );
+			}
+			
+			ClientPredictor currentPredictor = predictor;
+			
+			if ( currentPredictor != null ) {
+				currentPredictor.update( model );
+			}
+
+			// Render if there is anything new to show
+			if ( frameNeeded() && !renderActive() ) {
+				repaint();
+			}
 
-			//Delay depending on how far we are behind.
+			//Delay until the next frame is due.
 			try {
-				startTime += delay;
-				Thread.sleep(Math
-						.max(0, startTime - System.currentTimeMillis()));
+				nextFrame += delay * 1000000L;
+				long wait = nextFrame - System.nanoTime();
+				
+				if (wait > 0) {
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+				}
+				else {
+					renderer.getProfiler().missedFrame();
+					
+					// Too far behind to catch up. Start pacing again 
+					// from now instead of rendering frames back to back.
+					nextFrame = System.nanoTime();
+				}
 			} catch (InterruptedException e) {
 				break;
 			}
 		}
 	} // end run
+	
+	
+	/*
+	 * Renders a frame into the BufferStrategy and shows it. Creates the 
+	 * strategy the first time. Returns false if active rendering is off 
+	 * or not possible, in which case the caller falls back to repaint().
+	 */
+	protected boolean renderActive() {
+		
+		if ( !activeRendering || !isDisplayable() ) {
+			return false;
+		}
+		
+		if ( strategy == null ) {
+			
+			try {
+				// Uses page flipping if available, blitting otherwise
+				createBufferStrategy( 2 );
+				strategy = getBufferStrategy();
+				
+			} catch ( RuntimeException e ) {
+				
+				System.err.println( "Active rendering is not supported. Using repaint." );
+				activeRendering = false;
+				return false;
+			}
+		}
+		
+		int width = getWidth();
+		int height = getHeight();
+		
+		if ( width <= 0 || height <= 0 ) {
+			return true;
+		}
+		
+		FrameProfiler profiler = renderer.getProfiler();
+		profiler.beginFrame();
+		
+		// Buffers can be lost or restored at any time, in which case 
+		// the frame is drawn again
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				
+				try {
+					recordFrame();
+					renderer.setGraphicsConfiguration( getGraphicsConfiguration() );
+					renderer.render( g, width, height );
+				} finally {
+					g.dispose();
+				}
+				
+			} while ( strategy.contentsRestored() );
+			
+			strategy.show();
+			
+		} while ( strategy.contentsLost() );
+		
+		// Make sure the frame reaches the screen now
+		Toolkit.getDefaultToolkit().sync();
+		
+		profiler.endFrame();
+		
+		return true;
+		
+	} // end renderActive
 
+	/**
+	 * Checks if the sector looks different than in the last frame rendered.
+	 * Own ship is checked separately since it is moved without going 
+	 * through the model.
+	 * 
+	 * @return true if a new frame should be rendered
+	 */
+	protected boolean frameNeeded() {
+		
+		// The frame times are only up to date if every frame is drawn
+		if ( viewChanged || model.getVersion() != renderedVersion 
+				|| renderer.isProfilerVisible() ) {
+			return true;
+		}
+		
+		OwnSpaceCraft own = model.ownShip;
+		
+		if ( own == null ) {
+			return renderedOwnShip;
+		}
+		
+		return !renderedOwnShip || own.getXPosition() != renderedOwnX
+				|| own.getYPosition() != renderedOwnY 
+				|| own.getHeading() != renderedOwnHeading;
+		
+	} // end frameNeeded
+	
+	
+	/*
+	 * Remembers what the frame about to be rendered shows. Called before
+	 * drawing, so a change made while drawing causes another frame.
+	 */
+	protected void recordFrame() {
+		
+		viewChanged = false;
+		renderedVersion = model.getVersion();
+		
+		OwnSpaceCraft own = model.ownShip;
+		
+		renderedOwnShip = ( own != null );
+		
+		if ( own != null ) {
+			renderedOwnX = own.getXPosition();
+			renderedOwnY = own.getYPosition();
+			renderedOwnHeading = own.getHeading();
+		}
+		
+	} // end recordFrame
+	
+	
 	/** 
-	 * Override of the paint method for double buffering.
+	 * Override of the paint method for double buffering. With active
+	 * rendering the animation thread is asked for a new frame instead.
 	 */
 	public void paint(Graphics g) {
+		
+		if ( strategy != null ) {
+			viewChanged = true;
+			return;
+		}
+		
 		update(g);
 
 	} // end paint
@@ -688,135 +651,20 @@ public class Sector extends Canvas implements Runnable {
 			offGraphics.setColor(getBackground());
 		}
 		
-		offGraphics.fillRect(0, 0, offDimension.width, offDimension.height);
+		recordFrame();
+		renderer.getProfiler().beginFrame();
 
-		// Call the draw methods for all objects in the sector
-		drawStars(offGraphics);
-		drawObstacles(offGraphics);
-		drawTorpedoes(offGraphics);
-		drawAllSpaceCraft(offGraphics);
+		// Draw all objects in the sector. Stars and obstacles come
+		// from a background layer that is only drawn when it changes.
+		renderer.setGraphicsConfiguration(getGraphicsConfiguration());
+		renderer.render(offGraphics, offDimension.width, offDimension.height);
 
 		// Swap buffers
 		g.drawImage(offImage, 0, 0, this);
-
-	} // end update
-	
-	
-	/*
-	 * Checks for collision between two SpaceCraft or sub-types.
-	 * 
-	 * @param first ship for collision check
-	 * @param seconds ship for collision check
-	 * @return true if the ships are in collision
-	 */
-	protected boolean inCollision(SpaceCraft sp1, SpaceCraft sp2)
-	{
-		double diffX = sp1.getXPosition() - sp2.getXPosition();
-		double diffY = sp1.getYPosition() - sp2.getYPosition();
 		
-		if (Math.sqrt( diffX * diffX + diffY * diffY) <= Constants.OBJECT_WIDTH) {
-
-			return true;
-		}
-		else {
-			return false;
-		}
-		
-	} // end inCollision
-	
-	
-	/*
-	 * Checks if two SpaceCraft or sub-types have opposing headings
-	 * 
-	 * @param first ship 
-	 * @param seconds ship 
-	 * @returns true if the ships face each other
-	 */
-	protected boolean opposingHeading( SpaceCraft sp1, SpaceCraft sp2)
-	{	
-		if (Math.abs(sp1.getHeading() - sp2.getHeading()) == 4) {
-
-
-			return true;
-		}
-		else {
-			return false;
-		}
-		
-	} // end opposingHeading
-
-	/**
-	 * Draws all alien space craft in the sector. Draws own ship if it is present.
-	 * 
-	 * @param g Graphics context for rendering
-	 */
-	protected synchronized void drawAllSpaceCraft(Graphics g) {
-	
-		ListIterator<SpaceCraft> iter = inSector.listIterator();
-
-		while (iter.hasNext()) {
-
-			((SpaceCraft) (iter.next())).draw(offGraphics);
-
-		}
-
-		if (this.ownShip != null) {
-
-			ownShip.draw(g);
-
-		}
-
-	} // end drawAllSpaceCraft
+		renderer.getProfiler().endFrame();
 
-	
-	/** 
-	 * Renders all the stars in the sector.
-	 * 
-	 * @param g Graphics context for rendering
-	 */
-	protected void drawStars(Graphics g) {
-	
-		g.setColor(Color.WHITE);
-
-		for (int i = 0; i < starPositions.length; i++) {
-
-			g.fillOval(starPositions[i].x, starPositions[i].y, 2, 2);
-		}
-	} // end drawStars
-	
-	
-	/**
-	 * Draws all obstacles in the sector. 
-	 * 
-	 * @param g Graphics context for rendering
-	 */
-	protected void drawObstacles(Graphics g) {
-	
-		ListIterator<Obstacle> iter = obstacles.listIterator();
-
-		while (iter.hasNext()) {
-
-			((Obstacle) (iter.next())).draw(offGraphics);
-		}
-
-	} // end drawObstacles
-	
-	
-	/**
-	 * Draws all torpedoes in the sector. 
-	 * 
-	 * @param g Graphics context for rendering
-	 */
-	protected synchronized void drawTorpedoes(Graphics g) {
-	
-		ListIterator<Torpedo> iter = torpedoes.listIterator();
-
-		while (iter.hasNext()) {
-
-			((Torpedo) (iter.next())).draw(offGraphics);
-		}
-
-	} // end drawTorpedoes
+	} // end update
 
 	
 	/**
@@ -842,6 +690,8 @@ public class Sector extends Canvas implements Runnable {
 				offGraphics.setColor(getBackground());
 				offDimension = newSize;
 			}
+			
+			viewChanged = true;
 		}
 	} // end sizeChangeListener inner class
 
@@ -0,0 +1,148 @@
+package spaceWar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Records removals of torpedoes and spacecraft that are requested while
+ * the Sector is iterating over its entity lists. The recorded removals
+ * are applied in a single compaction pass once the iteration is over, so
+ * a tick never modifies a list it is walking. The pass keeps the slot
+ * index of the sector up to date for the entities it moves.
+ * The buffer is cleared after each pass and reused for the next tick.
+ */
+class SectorCommandBuffer {
+
+	// Entities scheduled for removal. Identity based so that two torpedoes
+	// fired by the same ship are not confused with each other.
+	private Set<SpaceCraft> removals
+		= Collections.newSetFromMap( new IdentityHashMap<SpaceCraft, Boolean>() );
+
+
+	/**
+	 * Schedules a torpedo or ship for removal.
+	 *
+	 * @param sc entity to be removed
+	 * @return true if the entity was not already scheduled for removal
+	 */
+	public boolean remove( SpaceCraft sc ) {
+
+		return removals.add( sc );
+
+	} // end remove
+
+
+	/**
+	 * Checks whether an entity has already been scheduled for removal
+	 * during the current tick.
+	 *
+	 * @param sc entity to check
+	 * @return true if the entity will be removed at the end of the tick
+	 */
+	public boolean isRemoved( SpaceCraft sc ) {
+
+		return removals.contains( sc );
+
+	} // end isRemoved
+
+
+	/**
+	 * Applies all recorded removals to the lists of the sector and clears
+	 * the buffer. Each list is compacted in one pass from the first slot
+	 * removed, and only the entities moved down have their slot changed.
+	 *
+	 * @param torpedoes torpedoes in the sector
+	 * @param ships non own ship SpaceCraft in the sector
+	 * @param torpedoSlots index of each torpedo in torpedoes
+	 * @param shipSlots index of each ship in ships
+	 * @param shipChunks spatial index of the ships in the sector
+	 * @param torpedoChunks spatial index of the torpedoes in the sector
+	 */
+	public void apply( Vector<Torpedo> torpedoes, Vector<SpaceCraft> ships,
+					   EntityTable<int[]> torpedoSlots, EntityTable<int[]> shipSlots,
+					   ChunkGrid<SpaceCraft> shipChunks, ChunkGrid<Torpedo> torpedoChunks ) {
+
+		if ( removals.isEmpty() ) {
+			return;
+		}
+
+		// Lowest slot removed from each list, where compaction starts
+		int firstTorpedo = torpedoes.size();
+		int firstShip = ships.size();
+
+		for ( SpaceCraft sc : removals ) {
+
+			if ( sc instanceof Torpedo ) {
+
+				firstTorpedo = Math.min( firstTorpedo, release( torpedoSlots, sc, firstTorpedo ) );
+				torpedoChunks.remove( (Torpedo) sc );
+			}
+			else {
+
+				firstShip = Math.min( firstShip, release( shipSlots, sc, firstShip ) );
+				shipChunks.remove( sc );
+			}
+		}
+
+		compact( torpedoes, torpedoSlots, firstTorpedo );
+		compact( ships, shipSlots, firstShip );
+
+		clear();
+
+	} // end apply
+
+
+	/**
+	 * Discards everything that has been recorded.
+	 */
+	public void clear() {
+
+		removals.clear();
+
+	} // end clear
+
+
+	/*
+	 * Removes the slot of an entity from the index. Returns the slot it
+	 * had, or none if it was not indexed.
+	 */
+	private int release( EntityTable<int[]> slots, SpaceCraft sc, int none ) {
+
+		int[] slot = slots.remove( SectorModel.keyOf( sc.ID ) );
+
+		return ( slot == null ) ? none : slot[0];
+
+	} // end release
+
+
+	/*
+	 * Removes all scheduled entities from a list in a single pass from
+	 * the first slot removed, moving the slot of each entity kept after
+	 * it down with it.
+	 */
+	private <T extends SpaceCraft> void compact( Vector<T> list, EntityTable<int[]> slots, int first ) {
+
+		int kept = first;
+
+		for ( int i = first; i < list.size(); i++ ) {
+
+			T element = list.get( i );
+
+			if ( !removals.contains( element ) ) {
+
+				if ( kept != i ) {
+
+					list.set( kept, element );
+					slots.get( SectorModel.keyOf( element.ID ) )[0] = kept;
+				}
+
+				kept++;
+			}
+		}
+
+		list.setSize( kept );
+
+	} // end compact
+
+} // end SectorCommandBuffer class
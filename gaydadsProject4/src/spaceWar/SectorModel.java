@@ -0,0 +1,1290 @@
+package spaceWar;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Vector;
+
+/**
+ * Game state of a sector without any display. Maintains all ships, 
+ * obstacles and torpedoes in the sector, checks them for collisions and
+ * updates the torpedoes. Provides accessor and mutator methods for adding 
+ * and removing spacecraft and torpedoes. 
+ * 
+ * Uses no AWT classes, so a server can run on a machine without a 
+ * display. A Sector can be created on top of a model to render it.
+ */
+public class SectorModel {
+
+	/** Reference to the users own ship. Typically used by client.
+	 * 	Server does not have an OwnSpaceCraft
+	 */
+	public OwnSpaceCraft ownShip = null;
+	
+	// Holds non own ship SpaceCraft in the sector
+	protected Vector<SpaceCraft> inSector = new Vector<SpaceCraft>();
+
+	// Holds torpedoes currently in the sector
+	protected Vector<Torpedo> torpedoes = new Vector<Torpedo>();	
+	
+	// Index of each ship and torpedo in its list, keyed by the 
+	// EntityTable key of its ID, so one is found without a search
+	protected EntityTable<int[]> shipSlots = new EntityTable<int[]>();
+	protected EntityTable<int[]> torpedoSlots = new EntityTable<int[]>();
+	
+	// Holds obstacles in the sector
+	protected ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+	
+	// Removals requested while the entity lists are being iterated.
+	// Applied at the end of each torpedo update.
+	protected SectorCommandBuffer pendingChanges = new SectorCommandBuffer();
+	
+	// Sparse spatial indexes of the ships and obstacles. Only the parts
+	// of the world that contain something use any memory.
+	protected ChunkGrid<SpaceCraft> shipChunks = new ChunkGrid<SpaceCraft>();
+	protected ChunkGrid<Obstacle> obstacleChunks = new ChunkGrid<Obstacle>();
+	protected ChunkGrid<Torpedo> torpedoChunks = new ChunkGrid<Torpedo>();
+	
+	// Coarse counts of the ships and torpedoes in each part of the world,
+	// kept up to date by the chunk grids for drawing a minimap
+	protected DensityGrid shipDensity = new DensityGrid();
+	protected DensityGrid torpedoDensity = new DensityGrid();
+	
+	// Reused lists of the ships and obstacles near a position
+	protected ArrayList<SpaceCraft> nearbyShips = new ArrayList<SpaceCraft>();
+	protected ArrayList<Obstacle> nearbyObstacles = new ArrayList<Obstacle>();
+	
+	// Reused lists of the ships reached by torpedoes during a torpedo 
+	// update, and of the torpedoes stopped by obstacles or range
+	protected ArrayList<ShipHit> shipHits = new ArrayList<ShipHit>();
+	protected ArrayList<Torpedo> spentTorpedoes = new ArrayList<Torpedo>();
+	
+	// Packed positions of nearby ships for batch collision tests
+	protected CollisionKernel shipKernel = CollisionKernel.create();
+	
+	// IP address and port number that uniquely identifies 
+	// a client to the server and other clients
+	protected  InetSocketAddress ownShipID;
+	
+	// Incremented by every change to the ships, torpedoes and obstacles.
+	// A display only needs to render a new frame when it has changed.
+	protected volatile long version = 0;
+	
+	// Incremented only when the obstacles change, which is much less often
+	protected volatile long obstacleVersion = 0;
+	
+	// Number of increments torpedoes have been moved since the sector 
+	// was created, carried over when it is restored from a snapshot
+	protected volatile long tick = 0;
+	
+	// Ships and torpedoes the game has added, updated or removed while the 
+	// sector is restored in the background. Their state is newer than the 
+	// copies being restored. null when no restore is going on.
+	protected EntityTable<Boolean> touchedShips = null;
+	protected EntityTable<Boolean> touchedTorpedoes = null;
+
+	
+	/**
+	 * Creates an empty sector with an owner for "own ship".
+	 * 
+	 * @param owner IP address and port number that identifies for "own ship"
+	 */
+	public SectorModel( InetSocketAddress owner ) {
+		
+		this();
+		
+		this.ownShipID 
+			= new InetSocketAddress( owner.getAddress(),
+									 owner.getPort());
+	} // end SectorModel constructor
+	
+	
+	/**
+	 * Creates an empty sector without an own ship, as used by the server.
+	 */
+	public SectorModel() {
+		
+		shipChunks.setDensity( shipDensity );
+		torpedoChunks.setDensity( torpedoDensity );
+		
+	} // end SectorModel constructor
+	
+	
+	/**
+	 * Accessor method for the version of the sector. The version changes 
+	 * whenever a ship, torpedo or obstacle is added, moved or removed, 
+	 * except for movements of ownShip made directly on it.
+	 * 
+	 * @return number of changes made to the sector
+	 */
+	public long getVersion( ) {
+		
+		return version;
+		
+	} // end getVersion
+	
+	
+	/**
+	 * Accessor method for the version of the obstacles in the sector.
+	 * Changes only when an obstacle is added.
+	 * 
+	 * @return number of changes made to the obstacles
+	 */
+	public long getObstacleVersion( ) {
+		
+		return obstacleVersion;
+		
+	} // end getObstacleVersion
+	
+	
+	/**
+	 * Accessor method for the tick of the sector, the number of increments
+	 * torpedoes have been moved.
+	 * 
+	 * @return number of torpedo increments so far
+	 */
+	public long getTick( ) {
+		
+		return tick;
+		
+	} // end getTick
+	
+	
+	/**
+	 * Sets the tick of the sector, as when it is restored.
+	 * 
+	 * @param tick number of torpedo increments so far
+	 */
+	public synchronized void setTick( long tick ) {
+		
+		this.tick = tick;
+		
+	} // end setTick
+	
+	
+	/**
+	 * Accessor method for the counts of ships in each part of the world.
+	 * The counts change as ships move, so they should only be read while
+	 * holding the lock on this sector.
+	 * 
+	 * @return density of the ships
+	 */
+	public DensityGrid getShipDensity( ) {
+		
+		return shipDensity;
+		
+	} // end getShipDensity
+	
+	
+	/**
+	 * Accessor method for the counts of torpedoes in each part of the 
+	 * world. The counts change as torpedoes move, so they should only be 
+	 * read while holding the lock on this sector.
+	 * 
+	 * @return density of the torpedoes
+	 */
+	public DensityGrid getTorpedoDensity( ) {
+		
+		return torpedoDensity;
+		
+	} // end getTorpedoDensity
+	
+	
+	/**
+	 * Accessor method for the obstacles contained in the sector.
+	 * 
+	 * @return list of the obstacles
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<Obstacle> getObstacles( ) {
+		
+		return  (ArrayList<Obstacle>)obstacles.clone();
+		
+	} // end getObstacles
+	
+	/**
+	 * Accessor method for the torpedoes contained in the sector.
+	 * 
+	 * @return list of the obstacles
+	 */
+	@SuppressWarnings("unchecked")
+	public Vector<Torpedo> getTorpedoes( ) {
+		
+		return  (Vector<Torpedo>) torpedoes.clone();
+		
+	} // end getTorpedoes
+	
+	
+	/**
+	 * @return number of ships in the sector other than ownShip, counted
+	 * without copying them
+	 */
+	public int getSpaceCraftCount( ) {
+		
+		return inSector.size();
+		
+	} // end getSpaceCraftCount
+	
+	
+	/**
+	 * @return number of torpedoes in the sector, counted without copying
+	 * them
+	 */
+	public int getTorpedoCount( ) {
+		
+		return torpedoes.size();
+		
+	} // end getTorpedoCount
+	
+	/**
+	 * Accessor method for the ships contained in the sector other than 
+	 * ownShip.
+	 * 
+	 * @return list of the ships
+	 */
+	@SuppressWarnings("unchecked")
+	public Vector<SpaceCraft> getSpaceCrafts( ) {
+		
+		return  (Vector<SpaceCraft>) inSector.clone();
+		
+	} // end getSpaceCrafts
+	
+	/**
+	 * Checks for a collision between the mover spacecraft and 
+	 * all other ships in the sector. It returns a list of ships 
+	 * destroyed in a collision if one occurred. If the collision 
+	 * between two ships was head-on both the mover and 
+	 * the ship it hit are destroyed. Destroyed ships are 
+	 * removed from the display. 
+	 * 
+	 * @param mover ship to check against all other ships
+	 * 
+	 * @return ships destroyed if a collision occurred. 
+	 * null otherwise.
+	 */
+	public synchronized ArrayList<SpaceCraft> collisionCheck( SpaceCraft mover ) {
+		
+		// List of ships in collision
+		ArrayList<SpaceCraft>  destroyedShips = null;
+		
+		int x = mover.getXPosition();
+		int y = mover.getYPosition();
+		
+		// Pack the positions of the ships near mover and compare each
+		// against mover
+		nearbyShips.clear();
+		shipChunks.query( x - Constants.OBJECT_WIDTH, y - Constants.OBJECT_WIDTH, 
+				x + Constants.OBJECT_WIDTH, y + Constants.OBJECT_WIDTH, nearbyShips );
+		shipKernel.load( nearbyShips );
+		
+		int index = shipKernel.nextWithin( x, y, Constants.OBJECT_WIDTH, 0 );
+		
+		while ( index >= 0 ) {
+			
+			SpaceCraft target = nearbyShips.get( index );
+
+			// Have mover and the target ship collided
+			if ( !target.equals(mover) ) {
+
+				// A collision has occurred. Create a list to hold the destroyed ships
+				destroyedShips = new ArrayList<SpaceCraft>();
+				
+				// Check for head-on collision.
+				if ( opposingHeading( mover , target) ) {
+
+					// Remove move and add to destroyed ship list
+					removeSpaceCraft( mover );
+					destroyedShips.add( mover );
+				}
+				
+				// Add the ship that was hit to the destroyed ship list
+				removeSpaceCraft( target );
+				destroyedShips.add( target );
+				
+				// Return the ship collided with 
+				return destroyedShips;	
+			}
+			
+			index = shipKernel.nextWithin( x, y, Constants.OBJECT_WIDTH, index + 1 );
+			
+		} // end while
+
+		// no  collision occurred
+		return null;
+
+	} // end collisionCheck
+
+	
+	/**
+	 * Updates the positions of all the torpedoes by a single increment.
+	 * If a torpedo hits an obstacle, it is destroyed. If a torpedo hits a
+	 * spacecraft, both the ship and the torpedo are destroyed. 
+	 * Destroyed ships and torpedoes are removed from the display
+	 * once every torpedo has been checked, so each update is
+	 * always carried out for the whole sector. 
+	 * 
+	 * @return destroyed ships and torpedoes. 
+	 * null otherwise.
+	 */
+	public synchronized ArrayList<SpaceCraft> updateTorpedoes(  ) {
+		
+		return updateTorpedoes( 1 );
+		
+	} // end updateTorpedoes
+	
+	
+	/**
+	 * Updates the positions of all the torpedoes by a number of increments.
+	 * The whole path each torpedo travels is checked against obstacles
+	 * and ships, so moving several increments in one update finds the 
+	 * same hits as moving one increment at a time. A torpedo is stopped
+	 * by whichever obstacle or ship it reaches first, and the increment
+	 * that ends its life cannot hit anything. Hits on ships are settled
+	 * in the order the torpedoes reach them, so a ship goes to the 
+	 * torpedo that reaches it first. Destroyed ships and torpedoes are 
+	 * removed from the display once every torpedo has been checked.
+	 * 
+	 * @param steps number of increments each torpedo moves
+	 * @return destroyed ships and torpedoes. 
+	 * null otherwise.
+	 */
+	public synchronized ArrayList<SpaceCraft> updateTorpedoes( int steps ) {
+		
+		// List of ships and torpedoes in collision
+		ArrayList<SpaceCraft>  destroyedObjects = null;
+		
+		tick += steps;
+		
+		// Every torpedo moves, so the sector changes if there are any
+		if ( !torpedoes.isEmpty() ) {
+			version++;
+		}
+		
+		shipHits.clear();
+		spentTorpedoes.clear();
+		
+		for ( Torpedo mover: this.torpedoes ){
+			
+			// Update torpedo position. Check for end of life
+			boolean endOfLife = mover.update( steps );
+			torpedoChunks.move( mover, mover.xPosition, mover.yPosition );
+			
+			// Find the first obstacle in the live path of the torpedo
+			double obstacleHit = sweepObstacles( mover );
+			
+			if ( obstacleHit != Collision.NO_HIT || false == endOfLife ) {
+				spentTorpedoes.add( mover );
+			}
+			
+			// A torpedo that did not survive a single increment 
+			// cannot hit a ship
+			if ( mover.getPathSteps() == 0 ) {
+				continue;
+			}
+			
+			// Find every ship reached before an obstacle. Only ships
+			// near the path are given the exact swept test.
+			int midX = ( mover.getPreviousXPosition() + mover.getPathEndXPosition() ) / 2;
+			int midY = ( mover.getPreviousYPosition() + mover.getPathEndYPosition() ) / 2;
+			int reach = Constants.OBJECT_WIDTH + pathHalfLength( mover );
+			
+			nearbyShips.clear();
+			shipChunks.query( midX - reach, midY - reach, midX + reach, midY + reach, nearbyShips );
+			shipKernel.load( nearbyShips );
+			
+			int index = shipKernel.nextWithin( midX, midY, reach, 0 );
+			
+			while ( index >= 0 ) {
+				
+				SpaceCraft target = nearbyShips.get( index );
+				
+				// Topedoes cannot kill the ship that fires them
+				if( !mover.ID.equals(target.ID) ) {
+				
+					double t = sweepCollision( target, mover );
+					
+					if ( t != Collision.NO_HIT 
+							&& ( obstacleHit == Collision.NO_HIT || t < obstacleHit ) ) {
+						
+						// Time of the hit in increments since the update began
+						shipHits.add( new ShipHit( t * mover.getPathSteps(), mover, target ) );
+					}
+				}
+				
+				index = shipKernel.nextWithin( midX, midY, reach, index + 1 );
+				
+			} // end while
+		} // end for
+		
+		// Settle the hits in the order they happen. A torpedo or ship
+		// already destroyed by an earlier hit takes no part in later ones.
+		Collections.sort( shipHits );
+		
+		for ( ShipHit hit : shipHits ) {
+			
+			if ( pendingChanges.isRemoved( hit.torpedo ) 
+					|| pendingChanges.isRemoved( hit.ship ) ) {
+				continue;
+			}
+			
+			if ( destroyedObjects== null ) {
+				destroyedObjects = new ArrayList<SpaceCraft>();
+			}
+
+			// Schedule torpedo and ship for removal from display
+			pendingChanges.remove( hit.torpedo );
+			pendingChanges.remove( hit.ship );
+			
+			// Add ship and torpedo  to destroyed
+			destroyedObjects.add( hit.torpedo );
+			destroyedObjects.add( hit.ship );
+		}
+		
+		// Torpedoes stopped by an obstacle or at the end of their life
+		for ( Torpedo mover : spentTorpedoes ) {
+			
+			if ( pendingChanges.remove( mover ) ) {
+				
+				// Create destroyed list if it has not been created yet
+				if ( destroyedObjects== null ) {
+					destroyedObjects = new ArrayList<SpaceCraft>();
+				}
+
+				destroyedObjects.add( mover );
+			}
+		}
+
+		// Remove everything destroyed during the tick in one pass
+		if ( destroyedObjects != null ) {
+			pendingChanges.apply( torpedoes, inSector, torpedoSlots, shipSlots, shipChunks, torpedoChunks );
+		}
+		
+		return destroyedObjects;
+
+	} // end updateTorpedoes
+	
+
+	
+	
+	/**
+	 * Adds a new torpedo to the sector display. If the
+	 * torpedo is already in the display, it is updated
+	 * 
+	 * @param id Socket address of the torpedo
+	 * @param x torpedo x position
+	 * @param y torpedo y position
+	 * @param heading torpedo heading
+	 */
+	public synchronized void updateOrAddTorpedo( InetSocketAddress id, int x, int y, int heading ) {
+		
+		updateOrAddTorpedo( new Torpedo( id, x, y, heading ) );
+	 
+	} // end updateOrAddTorpedo
+
+	
+	/**
+	 * Adds a new torpedo to the sector display. If the
+	 * torpedo is already in the display, it is updated
+	 * 
+	 * @param torp torpedo to be added or updated
+	 */
+	public synchronized void updateOrAddTorpedo(Torpedo torp) {
+		
+		touch( touchedTorpedoes, torp );
+		
+		// See if the torpedo is already in the display
+		Torpedo target = find( torpedoes, torpedoSlots, keyOf( torp.ID ) );
+
+		if ( target != null ) {
+
+			// Update an existing torpedo
+			target.setHeading(torp.heading);
+			target.setX(torp.xPosition);
+			target.setY(torp.yPosition);
+			torpedoChunks.move( target, target.xPosition, target.yPosition );
+			version++;
+
+			return;
+		}
+
+		// Add the torpedo. It was not already in the sector
+		append( torpedoes, torpedoSlots, torp );
+		torpedoChunks.add( torp, torp.xPosition, torp.yPosition );
+		version++;
+
+		return;
+
+	} // end updateOrAddTorpedo
+	
+	
+	/**
+	 * Adds a torpedo known not to be in the sector yet, as when a sector 
+	 * is rebuilt. A torpedo with the same ID is replaced.
+	 * 
+	 * @param torp torpedo to be added
+	 */
+	public synchronized void addTorpedo(Torpedo torp) {
+		
+		append( torpedoes, torpedoSlots, torp );
+		torpedoChunks.add( torp, torp.xPosition, torp.yPosition );
+		version++;
+		
+	} // end addTorpedo
+	
+	
+	/**
+	 * Adds a ship known not to be in the sector yet, as when a sector is 
+	 * rebuilt. A ship with the same ID is replaced.
+	 * 
+	 * @param craft ship to be added
+	 */
+	public synchronized void addSpaceCraft(SpaceCraft craft) {
+		
+		append( inSector, shipSlots, craft );
+		shipChunks.add( craft, craft.xPosition, craft.yPosition );
+		version++;
+		
+	} // end addSpaceCraft
+	
+	
+	/**
+	 * Removes every ship and torpedo other than ownShip, keeping the 
+	 * obstacles, as when they have been handed to the zones of a 
+	 * ZonedWorld.
+	 */
+	public synchronized void clearCrafts() {
+		
+		inSector.clear();
+		torpedoes.clear();
+		shipSlots.clear();
+		torpedoSlots.clear();
+		shipChunks.clear();
+		torpedoChunks.clear();
+		version++;
+		
+	} // end clearCrafts
+	
+	
+	/**
+	 * Starts restoring ships and torpedoes in the background while the 
+	 * game goes on. Until finishRestore is called the sector remembers 
+	 * which ships and torpedoes the game changes, so that their restored 
+	 * copies are not added over them. Room is made for the ships and 
+	 * torpedoes up front, so adding them never has to grow a large table.
+	 * 
+	 * @param ships number of ships to be restored
+	 * @param torps number of torpedoes to be restored
+	 */
+	public synchronized void startRestore( int ships, int torps ) {
+		
+		touchedShips = new EntityTable<Boolean>();
+		touchedTorpedoes = new EntityTable<Boolean>();
+		
+		inSector.ensureCapacity( inSector.size() + ships );
+		shipSlots.ensureCapacity( shipSlots.size() + ships );
+		shipChunks.ensureCapacity( shipChunks.size() + ships );
+		torpedoes.ensureCapacity( torpedoes.size() + torps );
+		torpedoSlots.ensureCapacity( torpedoSlots.size() + torps );
+		torpedoChunks.ensureCapacity( torpedoChunks.size() + torps );
+		
+	} // end startRestore
+	
+	
+	/**
+	 * Adds restored ships and torpedoes the game has not changed since 
+	 * the restore was started. The ones given must not be in the sector 
+	 * already other than through the game.
+	 * 
+	 * @param crafts restored ships or torpedoes
+	 * @param count number of them to add
+	 * @return number added
+	 */
+	public synchronized int restore( SpaceCraft[] crafts, int count ) {
+		
+		int added = 0;
+		
+		for ( int i = 0; i < count; i++ ) {
+			
+			SpaceCraft sc = crafts[i];
+			boolean torpedo = ( sc instanceof Torpedo );
+			EntityTable<Boolean> touched = torpedo ? touchedTorpedoes : touchedShips;
+			
+			if ( touched != null && touched.get( EntityTable.keyOf( sc.ID.getAddress(), sc.ID.getPort() ) ) != null ) {
+				continue;
+			}
+			
+			if ( torpedo ) {
+				addTorpedo( (Torpedo) sc );
+			}
+			else {
+				addSpaceCraft( sc );
+			}
+			
+			added++;
+		}
+		
+		return added;
+		
+	} // end restore
+	
+	
+	/**
+	 * Ends a restore started by startRestore.
+	 */
+	public synchronized void finishRestore() {
+		
+		touchedShips = null;
+		touchedTorpedoes = null;
+		
+	} // end finishRestore
+	
+	
+	/**
+	 * If the IDed SpaceCraft is already in the sector 
+	 * its heading and/or position are updated. If the SpaceCraft 
+	 * is not found in the sector, it is added.
+	 * 
+	 * @param id Socket address of the spacecraft
+	 * @param x spacecraft x position
+	 * @param y spacecraft y position
+	 * @param heading spacecraft heading
+	 */
+	public synchronized void updateOrAddSpaceCraft( InetSocketAddress id, int x, int y, int heading ) {
+	
+		updateOrAddSpaceCraft( new SpaceCraft( id, x, y, heading ) );
+	
+	} // end updateOrAddSpaceCraft
+	
+	/**
+	 * If the input parameter SpaceCraft is already in the sector 
+	 * its heading and/or position are updated. If the SpaceCraft 
+	 * is not found in the sector, it is added.
+	 * 
+	 * @param craft to be updated or added
+	 */
+	public synchronized void updateOrAddSpaceCraft(SpaceCraft craft) {
+		touch( touchedShips, craft );
+	
+		SpaceCraft target = find( inSector, shipSlots, keyOf( craft.ID ) );
+
+		if ( target != null ) {
+
+			target.setHeading(craft.heading);
+			target.setX(craft.xPosition);
+			target.setY(craft.yPosition);
+			shipChunks.move( target, target.xPosition, target.yPosition );
+			version++;
+
+			return;
+		}
+
+		// Add the ship. It was not already in the sector
+		append( inSector, shipSlots, craft );
+		shipChunks.add( craft, craft.xPosition, craft.yPosition );
+		version++;
+
+		return;
+
+	} // end updateOrAddSpaceCraft
+
+	
+	/**
+	 * Looks up a SpaceCraft in the sector other than ownShip.
+	 * 
+	 * @param id Socket address of the spacecraft
+	 * @return copy of the spacecraft's current state, or null if it is
+	 * not in the sector
+	 */
+	public synchronized SpaceCraft getSpaceCraft( InetSocketAddress id ) {
+		
+		SpaceCraft target = find( inSector, shipSlots, keyOf( id ) );
+		
+		if ( target == null ) {
+			return null;
+		}
+		
+		return new SpaceCraft( target.ID, target.xPosition, 
+				target.yPosition, target.heading );
+		
+	} // end getSpaceCraft
+	
+	
+	/**
+	 * Moves a SpaceCraft that is already in the sector. Unlike 
+	 * updateOrAddSpaceCraft, a SpaceCraft that is not found is not added.
+	 * 
+	 * @param id Socket address of the spacecraft
+	 * @param x new x position
+	 * @param y new y position
+	 * @param heading new heading
+	 * @return true if the spacecraft was found
+	 */
+	public synchronized boolean moveSpaceCraft( InetSocketAddress id, int x, int y, int heading ) {
+		
+		SpaceCraft target = find( inSector, shipSlots, keyOf( id ) );
+		
+		if ( target == null ) {
+			return false;
+		}
+		
+		if ( target.xPosition != x || target.yPosition != y || target.heading != heading ) {
+			
+			target.setHeading( heading );
+			target.setX( x );
+			target.setY( y );
+			shipChunks.move( target, target.xPosition, target.yPosition );
+			version++;
+		}
+		
+		return true;
+		
+	} // end moveSpaceCraft
+	
+	
+	/**
+	 * Moves a torpedo that is already in the sector. A torpedo that is 
+	 * not found is not added.
+	 * 
+	 * @param id Socket address of the torpedo
+	 * @param x new x position
+	 * @param y new y position
+	 * @param heading new heading
+	 * @return true if the torpedo was found
+	 */
+	public synchronized boolean moveTorpedo( InetSocketAddress id, int x, int y, int heading ) {
+		
+		Torpedo target = find( torpedoes, torpedoSlots, keyOf( id ) );
+		
+		if ( target == null ) {
+			return false;
+		}
+		
+		if ( target.xPosition != x || target.yPosition != y || target.heading != heading ) {
+			
+			target.setHeading( heading );
+			target.setX( x );
+			target.setY( y );
+			torpedoChunks.move( target, target.xPosition, target.yPosition );
+			version++;
+		}
+		
+		return true;
+		
+	} // end moveTorpedo
+
+	
+	/**
+	 * Remove a SpaceCraft from the sector. The SpaceCraft to 
+	 * be removed could be either alien or ownShip.
+	 * 
+	 * @param id Socket address of the spacecraft
+	 * @param x spacecraft x position
+	 * @param y spacecraft y position
+	 * @param heading spacecraft heading
+	 */
+	public synchronized void removeSpaceCraft( InetSocketAddress id, int x, int y, int heading ) {
+	
+		removeSpaceCraft( new SpaceCraft( id, x, y, heading ) );
+	
+	} // end removeSpaceCraft
+
+	
+	/**
+	 * Remove a SpaceCraft from the sector. The SpaceCraft to 
+	 * be removed could be either alien or ownShip.
+	 * 
+	 * @param craft SpaceCraft to be removed.
+	 */
+	public synchronized void removeSpaceCraft(SpaceCraft craft) {
+		
+		removeSpaceCraft( keyOf( craft.ID ) );
+
+	} // end removeSpaceCraft
+
+	
+	/**
+	 * Remove a SpaceCraft, alien or ownShip, identified by its key, 
+	 * without making an ID for it.
+	 * 
+	 * @param key key of the spacecraft made with EntityTable.keyOf
+	 */
+	public synchronized void removeSpaceCraft( long key ) {
+		
+		touch( touchedShips, key );
+
+		// Check if ownship is being removed
+		if (ownShip != null && keyOf( ownShip.ID ) == key) {
+
+			ownShip = null;
+			version++;
+		} else {
+
+			// Remove the ship from the display if it is in the sector
+			SpaceCraft target = detach( inSector, shipSlots, key );
+
+			if ( target != null ) {
+				
+				shipChunks.remove( target );
+				version++;
+			}
+		}
+
+	} // end removeSpaceCraft
+
+	
+	/**
+	 * Remove a torpedo from the sector.
+	 * 
+	 * @param id Socket address of the torpedo
+	 * @param x torpedo x position
+	 * @param y torpedo y position
+	 * @param heading torpedo heading
+	 */
+	public synchronized void removeTorpedo( InetSocketAddress id, int x, int y, int heading ) {
+	
+		removeTorpedo( new Torpedo( id, x, y, heading ) );
+	
+	
+	} // end removeTorpedo
+	
+	
+	/**
+	 * Remove a torpedo from the sector.
+	 * 
+	 * @param torp Torpedo to be removed.
+	 */
+	public synchronized void removeTorpedo(Torpedo torp) {
+		
+		removeTorpedo( keyOf( torp.ID ) );
+
+	} // end removeTorpedo
+	
+	
+	/**
+	 * Remove a torpedo identified by its key, without making an ID for it.
+	 * 
+	 * @param key key of the torpedo made with EntityTable.keyOf
+	 */
+	public synchronized void removeTorpedo( long key ) {
+		
+		touch( touchedTorpedoes, key );
+
+		Torpedo target = detach( torpedoes, torpedoSlots, key );
+
+		if ( target != null ) {
+
+			torpedoChunks.remove( target );
+			version++;
+		}
+
+	} // end remove
+	
+	/**
+	 * Creates a space craft for the user in a random position with a random 
+	 * heading.
+	 * 
+	 * @return reference to the users space craft for updating
+	 */
+	public OwnSpaceCraft createOwnSpaceCraft() {
+	
+		if (ownShip == null) {
+			ownShip = new OwnSpaceCraft( ownShipID );
+		}
+
+		return ownShip;
+	} // end createOwnSpaceCraft
+
+
+	/**
+	 * Add a single obstacle to those in the sector. Assumes that is will only be
+	 * called once per obstacle. Does not check for duplicates.
+	 * 
+	 * @param obs obstacle to be added to the scene
+	 */
+	public synchronized void addObstacle(Obstacle obs) {
+		
+		obstacles.add(obs);
+		obstacleChunks.add( obs, obs.getXPosition(), obs.getYPosition() );
+		version++;
+		obstacleVersion++;
+
+	} // end addObstacle
+	
+	
+	/**
+	 * Add a single obstacle to those in the sector. Assumes that is will only be
+	 * called once per obstacle. Does not check for duplicates.
+	 * 
+	 * @param x x position of the obstacle
+	 * @param y y position of the obstacle
+	 */
+	public void addObstacle(int x, int y) {
+		
+		addObstacle( new Obstacle(x, y));
+
+	} // end addObstacle
+	
+	
+	/**
+	 * Check to see if an obstacle is in front of ownShip.
+	 * 
+	 * @return true if the position is clear, false otherwise
+	 */
+	public boolean clearInfront() {
+		
+		return obstacleClear( ownShip, true );
+		
+	}
+	
+	/**
+	 * Check to see if an obstacle is in front of ownShip.
+	 * 
+	 * @return true if the position is clear, false otherwise
+	 */
+	public boolean clearBehind() {
+		
+		return obstacleClear( ownShip, false );
+		
+	}
+	
+	/**
+	 * Check to see if an obstacle is in front of an object of the SpaceCraft class.
+	 * 
+	 * @param craft SpaceCraft or sub-class to check against the obstacles
+	 * @param forward true if checking for obstacles in front of craft. false if
+	 * checking for obstacles behind.
+	 * @return true if the position is clear, false otherwise
+	 */
+	public boolean obstacleClear(SpaceCraft craft, boolean forward) {
+		
+		// Temps to hold hypothetical position
+		int xObs = craft.getXPosition();
+		int yObs = craft.getYPosition();
+		
+		int direction = (forward)? OwnSpaceCraft.INCREMENT : -OwnSpaceCraft.INCREMENT;
+
+		// Create hypothetical position
+		switch (craft.getHeading()) {
+
+		case Constants.NORTH:
+
+			yObs -= direction;
+
+			break;
+
+		case Constants.NORTH_EAST:
+
+			xObs += direction;
+			yObs -= direction;
+
+			break;			
+			
+		case Constants.EAST:
+
+			xObs += direction;
+
+			break;
+	
+		case Constants.SOUTH_EAST:
+
+			xObs += direction;
+			yObs += direction;
+			break;			
+
+		case Constants.SOUTH:
+
+			yObs += direction;
+
+			break;
+		case Constants.SOUTH_WEST:
+
+			xObs -= direction;
+			yObs += direction;
+
+			break;
+
+		case Constants.WEST:
+
+			xObs -= direction;
+
+			break;
+
+		case Constants.NORTH_WEST:
+
+			xObs -= direction;
+			yObs -= direction;
+			
+			break;			
+			
+		default:
+
+			System.err.println("Case error in obstacleClear");
+
+		}
+
+		// Check hypothetical position against the obstacles near it
+		synchronized ( this ) {
+			
+			nearbyObstacles.clear();
+			obstacleChunks.query( xObs - 10, yObs - 10, xObs + 10, yObs + 10, nearbyObstacles );
+	
+			for ( int i = 0; i < nearbyObstacles.size(); i++ ) {
+	
+				Obstacle obs = nearbyObstacles.get( i );
+	
+				if (Math.abs(obs.getXPosition() - xObs) < 10
+						&& Math.abs(obs.getYPosition() - yObs) < 10) {
+	
+					// "Obstacle in path";
+					return false;
+				}
+			}
+		}
+
+		// "Path clear of obstacles"
+		return true;
+
+	} // end obstacleClear
+
+
+	/*
+	 * Remembers that the game changed a ship or torpedo while the sector is
+	 * being restored.
+	 */
+	protected void touch( EntityTable<Boolean> touched, SpaceCraft sc )
+	{
+		touch( touched, keyOf( sc.ID ) );
+		
+	} // end touch
+	
+	
+	protected void touch( EntityTable<Boolean> touched, long key )
+	{
+		if ( touched != null ) {
+			touched.put( key, Boolean.TRUE );
+		}
+		
+	} // end touch
+	
+	
+	/*
+	 * Returns the EntityTable key of the ID of a ship or torpedo.
+	 */
+	protected static long keyOf( InetSocketAddress id )
+	{
+		return EntityTable.keyOf( id.getAddress(), id.getPort() );
+		
+	} // end keyOf
+	
+	
+	/*
+	 * Returns the ship or torpedo of a list with a key, null if there 
+	 * is none.
+	 */
+	protected <T extends SpaceCraft> T find( Vector<T> list, EntityTable<int[]> slots, long key )
+	{
+		int[] slot = slots.get( key );
+		
+		return ( slot == null ) ? null : list.get( slot[0] );
+		
+	} // end find
+	
+	
+	/*
+	 * Adds a ship or torpedo to the end of a list. One already in the 
+	 * list with the same key is replaced where it is.
+	 */
+	protected <T extends SpaceCraft> void append( Vector<T> list, EntityTable<int[]> slots, T sc )
+	{
+		long key = keyOf( sc.ID );
+		int[] slot = slots.get( key );
+		
+		if ( slot != null ) {
+			
+			list.set( slot[0], sc );
+			return;
+		}
+		
+		slots.put( key, new int[] { list.size() } );
+		list.add( sc );
+		
+	} // end append
+	
+	
+	/*
+	 * Removes the ship or torpedo with a key from a list by moving the 
+	 * last one of the list into its place.
+	 * 
+	 * @return the one removed, null if there was none
+	 */
+	protected <T extends SpaceCraft> T detach( Vector<T> list, EntityTable<int[]> slots, long key )
+	{
+		int[] slot = slots.remove( key );
+		
+		if ( slot == null ) {
+			return null;
+		}
+		
+		T removed = list.get( slot[0] );
+		T last = list.remove( list.size() - 1 );
+		
+		if ( last != removed ) {
+			
+			list.set( slot[0], last );
+			slots.get( keyOf( last.ID ) )[0] = slot[0];
+		}
+		
+		return removed;
+		
+	} // end detach
+	
+	
+	/*
+	 * Checks for collision between two SpaceCraft or sub-types.
+	 * 
+	 * @param first ship for collision check
+	 * @param seconds ship for collision check
+	 * @return true if the ships are in collision
+	 */
+	protected boolean inCollision(SpaceCraft sp1, SpaceCraft sp2)
+	{
+		long diffX = sp1.getXPosition() - sp2.getXPosition();
+		long diffY = sp1.getYPosition() - sp2.getYPosition();
+		
+		// Compare squared distances to avoid taking a square root
+		if ( diffX * diffX + diffY * diffY 
+				<= Constants.OBJECT_WIDTH * Constants.OBJECT_WIDTH) {
+
+			return true;
+		}
+		else {
+			return false;
+		}
+		
+	} // end inCollision
+	
+	
+	/*
+	 * Checks the live path a torpedo covered during its last update 
+	 * against a ship.
+	 * 
+	 * @param target ship for collision check
+	 * @param torp torpedo that moved
+	 * @return fraction of the path at which the torpedo reaches the ship.
+	 * Collision.NO_HIT if it does not. 
+	 */
+	protected double sweepCollision( SpaceCraft target, Torpedo torp )
+	{
+		return Collision.sweepCircle( torp.getPreviousXPosition(), 
+				torp.getPreviousYPosition(), torp.getPathEndXPosition(), 
+				torp.getPathEndYPosition(), target.getXPosition(), 
+				target.getYPosition(), Constants.OBJECT_WIDTH );
+		
+	} // end sweepCollision
+	
+	
+	/*
+	 * Checks the live path a torpedo covered during its last update against
+	 * all obstacles. Like obstacleClear, the point one increment in front of
+	 * the torpedo is what is tested.
+	 * 
+	 * @param torp torpedo that moved
+	 * @return fraction of the path at which the first obstacle is reached.
+	 * Collision.NO_HIT if the path is clear. 
+	 */
+	protected double sweepObstacles( Torpedo torp )
+	{
+		int aheadX = SpaceCraft.headingDX( torp.getHeading() ) * OwnSpaceCraft.INCREMENT;
+		int aheadY = SpaceCraft.headingDY( torp.getHeading() ) * OwnSpaceCraft.INCREMENT;
+		
+		int x0 = torp.getPreviousXPosition() + aheadX;
+		int y0 = torp.getPreviousYPosition() + aheadY;
+		int x1 = torp.getPathEndXPosition() + aheadX;
+		int y1 = torp.getPathEndYPosition() + aheadY;
+		
+		double first = Collision.NO_HIT;
+		
+		// Only obstacles in chunks near the path can be reached
+		nearbyObstacles.clear();
+		obstacleChunks.query( Math.min( x0, x1 ) - 10, Math.min( y0, y1 ) - 10, 
+				Math.max( x0, x1 ) + 10, Math.max( y0, y1 ) + 10, nearbyObstacles );
+		
+		for ( int i = 0; i < nearbyObstacles.size(); i++ ) {
+			
+			Obstacle obs = nearbyObstacles.get( i );
+			
+			double t = Collision.sweepBox( x0, y0, x1, y1, 
+					obs.getXPosition(), obs.getYPosition(), 10 );
+			
+			if ( t != Collision.NO_HIT && ( first == Collision.NO_HIT || t < first ) ) {
+				
+				first = t;
+			}
+		}
+		
+		return first;
+		
+	} // end sweepObstacles
+	
+	
+	/*
+	 * Half the length of the live path a torpedo covered during its last update,
+	 * rounded up, plus one to allow for rounding of the path midpoint.
+	 */
+	protected int pathHalfLength( Torpedo torp )
+	{
+		int dx = Math.abs( torp.getPathEndXPosition() - torp.getPreviousXPosition() );
+		int dy = Math.abs( torp.getPathEndYPosition() - torp.getPreviousYPosition() );
+		
+		return (int) Math.ceil( Math.sqrt( (double) dx * dx + (double) dy * dy ) / 2 ) + 1;
+		
+	} // end pathHalfLength
+	
+	
+	/*
+	 * Checks if two SpaceCraft or sub-types have opposing headings
+	 * 
+	 * @param first ship 
+	 * @param seconds ship 
+	 * @returns true if the ships face each other
+	 */
+	protected boolean opposingHeading( SpaceCraft sp1, SpaceCraft sp2)
+	{	
+		if (Math.abs(sp1.getHeading() - sp2.getHeading()) == 4) {
+
+
+			return true;
+		}
+		else {
+			return false;
+		}
+		
+	} // end opposingHeading
+	
+	
+	/*
+	 * A torpedo reaching a ship during a torpedo update. Ordered by the
+	 * time, in increments, at which the ship is reached.
+	 */
+	protected static class ShipHit implements Comparable<ShipHit> {
+		
+		final double time;
+		final Torpedo torpedo;
+		final SpaceCraft ship;
+		
+		ShipHit( double time, Torpedo torpedo, SpaceCraft ship ) {
+			
+			this.time = time;
+			this.torpedo = torpedo;
+			this.ship = ship;
+			
+		} // end ShipHit constructor
+		
+		public int compareTo( ShipHit other ) {
+			
+			return Double.compare( time, other.time );
+			
+		} // end compareTo
+		
+	} // end ShipHit class
+
+} // end SectorModel class
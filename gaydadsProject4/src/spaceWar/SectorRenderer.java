@@ -0,0 +1,835 @@
+package spaceWar;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws the contents of a SectorModel. The stars and obstacles never move,
+ * so they are drawn once into a background layer that is copied into each
+ * frame. Only torpedoes and ships are drawn every frame. The background is
+ * drawn again when the size of the frame, the obstacles or the view change.
+ *
+ * The part of the world shown is set by a Camera, which follows the own
+ * ship and can be zoomed. Only the obstacles, ships and torpedoes in
+ * chunks of the world that overlap the view are looked at, so the cost of
+ * a frame depends on what is on screen rather than on the size of the
+ * world.
+ *
+ * When the world is larger than the view a minimap is drawn in the corner
+ * of the frame. It shows how many ships and torpedoes are in each cell of
+ * a coarse DensityGrid, so drawing it takes the same time however many
+ * of them there are.
+ *
+ * The time taken by each part of a frame is kept by a FrameProfiler,
+ * whose results can be shown over the frame.
+ *
+ * Ships and torpedoes are copied from a SpriteAtlas. Their positions are
+ * gathered in one pass while holding the model lock and then drawn
+ * without it, so drawing thousands of them does not hold up the game.
+ *
+ * When a GraphicsConfiguration is given the background is kept in a
+ * VolatileImage, which can live in video memory. Without one, as when
+ * running headless, a BufferedImage is used.
+ */
+public class SectorRenderer {
+
+	// Number of stars in the background
+	protected static final int STAR_COUNT = 250;
+
+	// Largest width or height of the minimap in pixels
+	protected static final int MINIMAP_SIZE = 128;
+
+	// Gap between the minimap and the edges of the frame
+	protected static final int MINIMAP_MARGIN = 8;
+
+	// Number of brightness levels used to show the density of a cell
+	protected static final int DENSITY_LEVELS = 8;
+
+	// Minimap cell colors, indexed by ship level and then torpedo level.
+	// Ships add green and torpedoes add red.
+	protected static final Color[][] DENSITY_COLORS = createDensityColors();
+
+	// Random number generator for making star positions
+	protected static Random rand = new Random();
+
+	// Game state being drawn
+	protected SectorModel model;
+
+	// Array of 2D points to use for displaying stars
+	protected Point[] starPositions = new Point[ STAR_COUNT ];
+
+	// Configuration of the screen the frames are shown on. null if none.
+	protected GraphicsConfiguration graphicsConfig;
+
+	// Stars and obstacles drawn at the size of the frame
+	protected Image background = null;
+	protected int backgroundWidth, backgroundHeight;
+
+	// Obstacle version of the model when the background was drawn
+	protected long backgroundObstacleVersion = -1;
+
+	// Camera version when the background was drawn
+	protected long backgroundCameraVersion = -1;
+
+	// Part of the world shown in the frame
+	protected Camera camera = new Camera();
+
+	// Visible part of the world and zoom for the frame being drawn, copied
+	// from the camera once so that every layer of the frame agrees
+	protected int viewLeft, viewTop, viewWidth, viewHeight;
+	protected double viewZoom = 1.0;
+
+	// Objects found in the visible chunks. Reused from frame to frame.
+	protected ArrayList<Obstacle> visibleObstacles = new ArrayList<Obstacle>();
+	protected ArrayList<SpaceCraft> visibleShips = new ArrayList<SpaceCraft>();
+	protected ArrayList<Torpedo> visibleTorpedoes = new ArrayList<Torpedo>();
+
+	// False to draw the stars and obstacles into every frame
+	protected boolean backgroundCached = true;
+
+	// True to draw the minimap when the world does not fit in the view
+	protected boolean minimapEnabled
+		= Boolean.parseBoolean( System.getProperty( "spaceWar.minimap", "true" ) );
+
+	// Ship and torpedo counts of the density grids, copied while holding
+	// the model lock so that they can be drawn without it
+	protected int[] minimapShips = new int[ 0 ];
+	protected int[] minimapTorpedoes = new int[ 0 ];
+
+	// Times the phases of each frame
+	protected FrameProfiler profiler = new FrameProfiler();
+
+	// True to show the frame times over the frame
+	protected boolean profilerVisible = false;
+
+	// Pre-rendered ships and torpedoes. null to use their draw methods.
+	protected SpriteAtlas sprites = SpriteAtlas.getShared();
+
+	// Positions, headings and atlas rows of the craft to be drawn in a
+	// frame, copied while holding the model lock so that they can be drawn
+	// without it
+	protected int[] batchX = new int[ 64 ];
+	protected int[] batchY = new int[ 64 ];
+	protected int[] batchHeading = new int[ 64 ];
+	protected int[] batchStyle = new int[ 64 ];
+	protected int batchSize = 0;
+
+
+	/**
+	 * Creates a renderer for a model and places the stars.
+	 *
+	 * @param model game state to be drawn
+	 */
+	public SectorRenderer( SectorModel model ) {
+
+		this.model = model;
+
+		createStars();
+
+	} // end SectorRenderer constructor
+
+
+	/**
+	 * Sets the screen configuration used to create an accelerated background.
+	 *
+	 * @param graphicsConfig configuration of the screen, or null to use
+	 * an image in main memory
+	 */
+	public void setGraphicsConfiguration( GraphicsConfiguration graphicsConfig ) {
+
+		if ( graphicsConfig != this.graphicsConfig ) {
+
+			this.graphicsConfig = graphicsConfig;
+			invalidateBackground();
+		}
+
+	} // end setGraphicsConfiguration
+
+
+	/**
+	 * Turns the cached background on or off. With it off the stars and every
+	 * obstacle are drawn into each frame.
+	 *
+	 * @param cached true to draw the background once and copy it
+	 */
+	public void setBackgroundCached( boolean cached ) {
+
+		backgroundCached = cached;
+		invalidateBackground();
+
+	} // end setBackgroundCached
+
+
+	/**
+	 * Turns drawing from the sprite atlas on or off. With it off every
+	 * craft is drawn by its own draw method.
+	 *
+	 * @param enabled true to copy craft from the sprite atlas
+	 */
+	public void setSpritesEnabled( boolean enabled ) {
+
+		sprites = enabled ? SpriteAtlas.getShared() : null;
+
+	} // end setSpritesEnabled
+
+
+	/**
+	 * Turns the minimap on or off.
+	 *
+	 * @param enabled true to draw the minimap when the world does not fit
+	 * in the view
+	 */
+	public void setMinimapEnabled( boolean enabled ) {
+
+		minimapEnabled = enabled;
+
+	} // end setMinimapEnabled
+
+
+	/**
+	 * Accessor method for the profiler that times the phases of each
+	 * frame. Whoever draws the frames begins and ends each one.
+	 *
+	 * @return frame profiler of this renderer
+	 */
+	public FrameProfiler getProfiler() {
+
+		return profiler;
+
+	} // end getProfiler
+
+
+	/**
+	 * Shows or hides the frame times drawn over the frame.
+	 *
+	 * @param visible true to show the frame times
+	 */
+	public void setProfilerVisible( boolean visible ) {
+
+		profilerVisible = visible;
+
+	} // end setProfilerVisible
+
+
+	/**
+	 * @return true if the frame times are shown over the frame
+	 */
+	public boolean isProfilerVisible() {
+
+		return profilerVisible;
+
+	} // end isProfilerVisible
+
+
+	/**
+	 * Accessor method for the camera that sets the part of the world shown.
+	 *
+	 * @return camera used by this renderer
+	 */
+	public Camera getCamera() {
+
+		return camera;
+
+	} // end getCamera
+
+
+	/**
+	 * Replaces the camera, for instance to share one between views.
+	 *
+	 * @param camera camera to use
+	 */
+	public void setCamera( Camera camera ) {
+
+		this.camera = camera;
+		invalidateBackground();
+
+	} // end setCamera
+
+
+	/**
+	 * Causes the background to be drawn again before the next frame.
+	 */
+	public void invalidateBackground() {
+
+		if ( background != null ) {
+			background.flush();
+		}
+
+		background = null;
+
+	} // end invalidateBackground
+
+
+	/**
+	 * Draws one frame of the sector.
+	 *
+	 * @param g Graphics context to draw into
+	 * @param width width of the frame
+	 * @param height height of the frame
+	 */
+	public void render( Graphics g, int width, int height ) {
+
+		long cameraVersion = updateView( width, height );
+
+		if ( backgroundCached ) {
+
+			drawBackgroundLayer( g, width, height, cameraVersion );
+		}
+		else {
+
+			g.setColor( Color.black );
+			g.fillRect( 0, 0, width, height );
+
+			drawStars( g );
+
+			Graphics world = toWorld( g );
+			drawObstacles( world );
+			world.dispose();
+		}
+
+		profiler.mark( FrameProfiler.BACKGROUND );
+
+		Graphics world = toWorld( g );
+
+		drawTorpedoes( world );
+		profiler.mark( FrameProfiler.TORPEDOES );
+
+		drawAllSpaceCraft( world );
+		profiler.mark( FrameProfiler.SHIPS );
+
+		world.dispose();
+
+		drawMinimap( g, width );
+		profiler.mark( FrameProfiler.MINIMAP );
+
+		if ( profilerVisible ) {
+			drawProfile( g );
+		}
+
+	} // end render
+
+
+	/**
+	 * Draws the frame rate, frame time percentiles and the average time of
+	 * each phase over the last frames in the top left corner of the frame.
+	 *
+	 * @param g Graphics context for rendering, in screen coordinates
+	 */
+	protected void drawProfile( Graphics g ) {
+
+		int lineHeight = 14;
+		int lines = 3 + FrameProfiler.PHASES;
+
+		g.setColor( new Color( 0, 0, 0, 160 ) );
+		g.fillRect( 4, 4, 200, lines * lineHeight + 6 );
+
+		g.setColor( Color.white );
+
+		int y = 4 + lineHeight;
+
+		g.drawString( String.format( "%.1f fps  %d missed", profiler.getFramesPerSecond(),
+				profiler.getMissedFrames() ), 8, y );
+		y += lineHeight;
+
+		g.drawString( String.format( "frame %.2f ms avg", profiler.getAverageFrame() ), 8, y );
+		y += lineHeight;
+
+		g.drawString( String.format( "p50 %.2f  p95 %.2f  p99 %.2f", profiler.getPercentile( 50 ),
+				profiler.getPercentile( 95 ), profiler.getPercentile( 99 ) ), 8, y );
+		y += lineHeight;
+
+		for ( int phase = 0; phase < FrameProfiler.PHASES; phase++ ) {
+
+			g.drawString( String.format( "  %-10s %6.2f ms", FrameProfiler.getPhaseName( phase ),
+					profiler.getAverage( phase ) ), 8, y );
+			y += lineHeight;
+		}
+
+	} // end drawProfile
+
+
+	/*
+	 * Fits the camera to the frame, centers it on the own ship if there is
+	 * one, and copies the visible part of the world. Returns the camera
+	 * version the copy was taken at.
+	 */
+	protected long updateView( int width, int height ) {
+
+		camera.setViewSize( width, height );
+
+		OwnSpaceCraft own = model.ownShip;
+
+		if ( own != null ) {
+			camera.centerOn( own.xPosition, own.yPosition );
+		}
+
+		synchronized ( camera ) {
+
+			viewLeft = camera.getLeft();
+			viewTop = camera.getTop();
+			viewWidth = camera.getVisibleWidth();
+			viewHeight = camera.getVisibleHeight();
+			viewZoom = camera.getZoom();
+
+			return camera.getVersion();
+		}
+
+	} // end updateView
+
+
+	/*
+	 * Creates a Graphics context that draws in world coordinates, scaled
+	 * and shifted so that the visible part of the world fills the frame.
+	 */
+	protected Graphics toWorld( Graphics g ) {
+
+		Graphics2D world = (Graphics2D) g.create();
+
+		if ( viewZoom != 1.0 ) {
+			world.scale( viewZoom, viewZoom );
+		}
+
+		world.translate( -viewLeft, -viewTop );
+
+		return world;
+
+	} // end toWorld
+
+
+	/*
+	 * Copies the background layer into the frame, drawing it first if it
+	 * is missing, out of date, or was lost by the graphics hardware.
+	 */
+	protected void drawBackgroundLayer( Graphics g, int width, int height, long cameraVersion ) {
+
+		long obstacleVersion = model.getObstacleVersion();
+
+		if ( background == null || width != backgroundWidth || height != backgroundHeight
+				|| obstacleVersion != backgroundObstacleVersion
+				|| cameraVersion != backgroundCameraVersion ) {
+
+			invalidateBackground();
+			background = createLayer( width, height );
+			backgroundWidth = width;
+			backgroundHeight = height;
+
+			drawLayer( background, obstacleVersion );
+			backgroundCameraVersion = cameraVersion;
+		}
+
+		if ( background instanceof VolatileImage ) {
+
+			VolatileImage volatileBackground = (VolatileImage) background;
+
+			do {
+
+				int status = volatileBackground.validate( graphicsConfig );
+
+				if ( status == VolatileImage.IMAGE_INCOMPATIBLE ) {
+
+					volatileBackground.flush();
+					volatileBackground = graphicsConfig.createCompatibleVolatileImage( width, height );
+					background = volatileBackground;
+					drawLayer( background, obstacleVersion );
+				}
+				else if ( status == VolatileImage.IMAGE_RESTORED ) {
+
+					drawLayer( background, obstacleVersion );
+				}
+
+				g.drawImage( volatileBackground, 0, 0, null );
+
+			} while ( volatileBackground.contentsLost() );
+		}
+		else {
+
+			g.drawImage( background, 0, 0, null );
+		}
+
+	} // end drawBackgroundLayer
+
+
+	/*
+	 * Creates an empty image for the background layer.
+	 */
+	protected Image createLayer( int width, int height ) {
+
+		if ( graphicsConfig != null ) {
+			return graphicsConfig.createCompatibleVolatileImage( width, height );
+		}
+
+		return new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+
+	} // end createLayer
+
+
+	/*
+	 * Draws the stars and obstacles into the background layer.
+	 */
+	protected void drawLayer( Image layer, long obstacleVersion ) {
+
+		Graphics lg = layer.getGraphics();
+
+		lg.setColor( Color.black );
+		lg.fillRect( 0, 0, backgroundWidth, backgroundHeight );
+
+		drawStars( lg );
+
+		Graphics world = toWorld( lg );
+		drawObstacles( world );
+		world.dispose();
+
+		lg.dispose();
+
+		backgroundObstacleVersion = obstacleVersion;
+
+	} // end drawLayer
+
+
+	/**
+	 * Draws the minimap in the top right corner of the frame if it is
+	 * enabled and the whole world is not already in view. Each cell of the
+	 * density grids is shaded by how many ships and torpedoes are in it
+	 * compared to the busiest cell, and the part of the world in view is
+	 * outlined.
+	 *
+	 * @param g Graphics context for rendering, in screen coordinates
+	 * @param width width of the frame
+	 */
+	protected void drawMinimap( Graphics g, int width ) {
+
+		int worldWidth = Constants.getWorldWidth();
+		int worldHeight = Constants.getWorldHeight();
+
+		if ( !minimapEnabled || ( viewLeft <= 0 && viewTop <= 0
+				&& viewLeft + viewWidth >= worldWidth && viewTop + viewHeight >= worldHeight ) ) {
+			return;
+		}
+
+		int columns, rows, cellSize;
+
+		synchronized ( model ) {
+
+			DensityGrid ships = model.getShipDensity();
+			DensityGrid torps = model.getTorpedoDensity();
+
+			columns = ships.getColumns();
+			rows = ships.getRows();
+			cellSize = ships.getCellSize();
+
+			if ( minimapShips.length < columns * rows ) {
+
+				minimapShips = new int[ columns * rows ];
+				minimapTorpedoes = new int[ columns * rows ];
+			}
+
+			ships.copyCounts( minimapShips );
+			torps.copyCounts( minimapTorpedoes );
+		}
+
+		int cells = columns * rows;
+		int maxShips = 1;
+		int maxTorpedoes = 1;
+
+		for ( int i = 0; i < cells; i++ ) {
+
+			maxShips = Math.max( maxShips, minimapShips[ i ] );
+			maxTorpedoes = Math.max( maxTorpedoes, minimapTorpedoes[ i ] );
+		}
+
+		// Screen pixels per world pixel on the minimap
+		double scale = (double) MINIMAP_SIZE / Math.max( worldWidth, worldHeight );
+
+		int mapWidth = (int) Math.ceil( worldWidth * scale );
+		int mapHeight = (int) Math.ceil( worldHeight * scale );
+		int mapX = width - mapWidth - MINIMAP_MARGIN;
+		int mapY = MINIMAP_MARGIN;
+
+		g.setColor( Color.black );
+		g.fillRect( mapX, mapY, mapWidth, mapHeight );
+
+		for ( int row = 0; row < rows; row++ ) {
+
+			int top = mapY + (int) ( (long) row * cellSize * scale );
+			int bottom = mapY + (int) Math.min( mapHeight, (long) ( row + 1 ) * cellSize * scale );
+
+			for ( int column = 0; column < columns; column++ ) {
+
+				int shipCount = minimapShips[ row * columns + column ];
+				int torpedoCount = minimapTorpedoes[ row * columns + column ];
+
+				if ( shipCount == 0 && torpedoCount == 0 ) {
+					continue;
+				}
+
+				int left = mapX + (int) ( (long) column * cellSize * scale );
+				int right = mapX + (int) Math.min( mapWidth, (long) ( column + 1 ) * cellSize * scale );
+
+				g.setColor( DENSITY_COLORS[ level( shipCount, maxShips ) ][ level( torpedoCount, maxTorpedoes ) ] );
+				g.fillRect( left, top, Math.max( 1, right - left ), Math.max( 1, bottom - top ) );
+			}
+		}
+
+		g.setColor( Color.gray );
+		g.drawRect( mapX, mapY, mapWidth, mapHeight );
+
+		g.setColor( Color.white );
+		g.drawRect( mapX + (int) ( viewLeft * scale ), mapY + (int) ( viewTop * scale ),
+				(int) Math.max( 1, viewWidth * scale ), (int) Math.max( 1, viewHeight * scale ) );
+
+	} // end drawMinimap
+
+
+	/*
+	 * Brightness level for a count, 0 for none and DENSITY_LEVELS - 1 for
+	 * the busiest cell.
+	 */
+	protected static int level( int count, int max ) {
+
+		if ( count <= 0 ) {
+			return 0;
+		}
+
+		return (int) ( ( (long) count * ( DENSITY_LEVELS - 1 ) + max - 1 ) / max );
+
+	} // end level
+
+
+	/*
+	 * Creates the minimap cell colors.
+	 */
+	protected static Color[][] createDensityColors() {
+
+		Color[][] colors = new Color[ DENSITY_LEVELS ][ DENSITY_LEVELS ];
+
+		for ( int ships = 0; ships < DENSITY_LEVELS; ships++ ) {
+
+			for ( int torpedoes = 0; torpedoes < DENSITY_LEVELS; torpedoes++ ) {
+
+				int green = ships == 0 ? 0 : 64 + ships * 191 / ( DENSITY_LEVELS - 1 );
+				int red = torpedoes == 0 ? 0 : 64 + torpedoes * 191 / ( DENSITY_LEVELS - 1 );
+
+				colors[ ships ][ torpedoes ] = new Color( red, green, 0 );
+			}
+		}
+
+		return colors;
+
+	} // end createDensityColors
+
+
+	/**
+	 * Creates stars in random positions for the display.
+	 *
+	 */
+	protected void createStars() {
+
+		for (int i = 0; i < starPositions.length; i++) {
+
+			starPositions[i] = new Point();
+
+			starPositions[i].x = rand.nextInt(Constants.MAX_SECTOR_X);
+			starPositions[i].y = rand.nextInt(Constants.MAX_SECTOR_Y);
+		}
+
+	} // end createStars
+
+
+	/**
+	 * Draws the alien space craft in view. Draws own ship if it is present.
+	 *
+	 * @param g Graphics context for rendering, in world coordinates
+	 */
+	protected void drawAllSpaceCraft( Graphics g ) {
+
+		if ( sprites == null ) {
+
+			synchronized ( model ) {
+
+				findVisible( model.shipChunks, visibleShips );
+
+				for ( int i = 0; i < visibleShips.size(); i++ ) {
+
+					visibleShips.get( i ).draw( g );
+				}
+
+				if ( model.ownShip != null ) {
+
+					model.ownShip.draw( g );
+				}
+			}
+			return;
+		}
+
+		synchronized ( model ) {
+
+			batchSize = 0;
+
+			findVisible( model.shipChunks, visibleShips );
+
+			for ( int i = 0; i < visibleShips.size(); i++ ) {
+
+				addToBatch( visibleShips.get( i ) );
+			}
+
+			// Own ship goes last so it is drawn on top
+			if ( model.ownShip != null ) {
+
+				addToBatch( model.ownShip );
+			}
+		}
+
+		visibleShips.clear();
+
+		drawBatch( g );
+
+	} // end drawAllSpaceCraft
+
+
+	/*
+	 * Fills a list with the objects in the chunks that overlap the view,
+	 * widened by the size of a craft so that those partly in view are
+	 * drawn. Called while holding the model lock.
+	 */
+	protected <T> void findVisible( ChunkGrid<T> grid, ArrayList<T> out ) {
+
+		int margin = SpriteAtlas.CELL;
+
+		out.clear();
+		grid.query( viewLeft - margin, viewTop - margin,
+				viewLeft + viewWidth + margin, viewTop + viewHeight + margin, out );
+
+	} // end findVisible
+
+
+	/*
+	 * Adds the position, heading and atlas row of a craft to the batch.
+	 */
+	protected void addToBatch( SpaceCraft craft ) {
+
+		if ( batchSize == batchX.length ) {
+
+			int capacity = batchSize * 2;
+
+			batchX = Arrays.copyOf( batchX, capacity );
+			batchY = Arrays.copyOf( batchY, capacity );
+			batchHeading = Arrays.copyOf( batchHeading, capacity );
+			batchStyle = Arrays.copyOf( batchStyle, capacity );
+		}
+
+		batchX[ batchSize ] = craft.xPosition;
+		batchY[ batchSize ] = craft.yPosition;
+		batchHeading[ batchSize ] = craft.heading;
+		batchStyle[ batchSize ] = SpriteAtlas.styleOf( craft );
+		batchSize++;
+
+	} // end addToBatch
+
+
+	/*
+	 * Copies every craft in the batch from the sprite atlas.
+	 */
+	protected void drawBatch( Graphics g ) {
+
+		for ( int i = 0; i < batchSize; i++ ) {
+
+			int heading = batchHeading[ i ];
+
+			if ( heading >= Constants.NORTH && heading <= Constants.NORTH_WEST ) {
+
+				sprites.draw( g, batchStyle[ i ], heading, batchX[ i ], batchY[ i ] );
+			}
+		}
+
+	} // end drawBatch
+
+
+	/**
+	 * Renders all the stars in the sector.
+	 *
+	 * @param g Graphics context for rendering
+	 */
+	protected void drawStars( Graphics g ) {
+
+		g.setColor( Color.WHITE );
+
+		for (int i = 0; i < starPositions.length; i++) {
+
+			g.fillOval(starPositions[i].x, starPositions[i].y, 2, 2);
+		}
+
+	} // end drawStars
+
+
+	/**
+	 * Draws the obstacles in view.
+	 *
+	 * @param g Graphics context for rendering, in world coordinates
+	 */
+	protected void drawObstacles( Graphics g ) {
+
+		synchronized ( model ) {
+
+			findVisible( model.obstacleChunks, visibleObstacles );
+
+			for ( int i = 0; i < visibleObstacles.size(); i++ ) {
+
+				visibleObstacles.get( i ).draw( g );
+			}
+		}
+
+		visibleObstacles.clear();
+
+	} // end drawObstacles
+
+
+	/**
+	 * Draws the torpedoes in view.
+	 *
+	 * @param g Graphics context for rendering, in world coordinates
+	 */
+	protected void drawTorpedoes( Graphics g ) {
+
+		if ( sprites == null ) {
+
+			synchronized ( model ) {
+
+				findVisible( model.torpedoChunks, visibleTorpedoes );
+
+				for ( int i = 0; i < visibleTorpedoes.size(); i++ ) {
+
+					visibleTorpedoes.get( i ).draw( g );
+				}
+			}
+
+			visibleTorpedoes.clear();
+			return;
+		}
+
+		synchronized ( model ) {
+
+			batchSize = 0;
+
+			findVisible( model.torpedoChunks, visibleTorpedoes );
+
+			for ( int i = 0; i < visibleTorpedoes.size(); i++ ) {
+
+				addToBatch( visibleTorpedoes.get( i ) );
+			}
+		}
+
+		visibleTorpedoes.clear();
+
+		drawBatch( g );
+
+	} // end drawTorpedoes
+
+} // end SectorRenderer class
@@ -0,0 +1,514 @@
+package spaceWar;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Vector;
+
+/**
+ * Binary snapshot of the whole state of a sector: its obstacles, ships,
+ * torpedoes and tick, together with the position of the EventJournal
+ * when it was taken. A snapshot is loaded by mapping the file into
+ * memory and reading the records in place, so restoring a sector costs
+ * little more than creating its objects. The obstacles and tick can be
+ * restored on their own, and the ships and torpedoes restored later a
+ * slice at a time while the game goes on.
+ *
+ * The file starts with a header and is followed by fixed size records,
+ * first the obstacles, then the ships, then the torpedoes:
+ *
+ *   header    magic, format, tick, journal position, the three counts
+ *             and a check of the other fields, 40 bytes
+ *   obstacle  x and y, 8 bytes
+ *   ship      address, port, heading, x and y, 15 bytes
+ *   torpedo   a ship record followed by how far it has travelled and
+ *             the tick it was copied at, less the tick in the header,
+ *             21 bytes
+ *
+ * A snapshot is written incrementally. The sector is copied a slice of
+ * SLICE_SIZE records at a time, and its lock is only held while a slice
+ * is copied, so a snapshot of a very large sector can be written in the
+ * background without holding up the game. Ships and torpedoes are copied
+ * from the end of their lists back to the start. Removing one only moves
+ * the last one of the list into its place, or those after it towards the
+ * start, so every ship or torpedo that is in the sector for the whole
+ * write is copied at least once. One moved out of a slice already copied
+ * may be copied twice, and the copy written last is the newer one. Events
+ * during the write are in the journal after the position stored with the
+ * snapshot. Torpedoes move on between slices, so each torpedo record
+ * keeps the tick it was copied at, and recovery moves it on from there by
+ * the ticks journaled after it.
+ *
+ * The file is written under a temporary name, forced to disk and renamed,
+ * so a snapshot the server died while writing never replaces the last
+ * whole one.
+ */
+public class SectorSnapshot {
+
+	/**
+	 * Name of the snapshot file in its directory.
+	 */
+	public static final String FILE_NAME = "sector.snapshot";
+
+	/**
+	 * Number of records copied each time the lock on the sector is held.
+	 */
+	public static final int SLICE_SIZE = 4096;
+
+	// First int of the file and version of the layout after it
+	protected static final int MAGIC = 0x5357534E;
+	protected static final int FORMAT = 2;
+
+	// Sizes in bytes of the header and the records
+	protected static final int HEADER_SIZE = 40;
+	protected static final int OBSTACLE_SIZE = 8;
+	protected static final int SHIP_SIZE = 15;
+	protected static final int TORPEDO_SIZE = 21;
+
+	// Mapping of the file
+	protected MappedByteBuffer map;
+
+	// Fields of the header
+	protected long tick;
+	protected long position;
+	protected int obstacleCount;
+	protected int shipCount;
+	protected int torpedoCount;
+
+
+	/*
+	 * Reads the header of a mapped snapshot.
+	 */
+	protected SectorSnapshot( MappedByteBuffer map, File file ) throws IOException {
+
+		this.map = map;
+
+		if ( map.capacity() < HEADER_SIZE || map.getInt( 0 ) != MAGIC || map.getInt( 4 ) != FORMAT ) {
+			throw new IOException( "Not a sector snapshot: " + file );
+		}
+
+		tick = map.getLong( 8 );
+		position = map.getLong( 16 );
+		obstacleCount = map.getInt( 24 );
+		shipCount = map.getInt( 28 );
+		torpedoCount = map.getInt( 32 );
+
+		long size = HEADER_SIZE + (long) obstacleCount * OBSTACLE_SIZE
+				+ (long) shipCount * SHIP_SIZE + (long) torpedoCount * TORPEDO_SIZE;
+
+		if ( map.getInt( 36 ) != check( tick, position, obstacleCount, shipCount, torpedoCount )
+				|| size != map.capacity() ) {
+
+			throw new IOException( "Damaged sector snapshot: " + file );
+		}
+
+	} // end SectorSnapshot constructor
+
+
+	/**
+	 * Writes a snapshot of a sector into a directory, replacing the last one.
+	 * The sector is only locked while each slice is copied.
+	 *
+	 * @param model sector to write
+	 * @param position position of the journal, taken before the write, or 0
+	 * @param directory directory holding the snapshot
+	 * @return size of the snapshot in bytes
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static long write( SectorModel model, long position, File directory ) throws IOException {
+
+		File temporary = new File( directory, FILE_NAME + ".tmp" );
+		long tick = model.getTick();
+		long size;
+
+		FileChannel channel = FileChannel.open( temporary.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+
+		try {
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect( SLICE_SIZE * TORPEDO_SIZE );
+
+			channel.position( HEADER_SIZE );
+
+			int obstacles = writeObstacles( model, channel, buffer );
+			int ships = writeCrafts( model, model.inSector, false, tick, channel, buffer );
+			int torpedoes = writeCrafts( model, model.torpedoes, true, tick, channel, buffer );
+
+			buffer.clear();
+			buffer.putInt( MAGIC ).putInt( FORMAT ).putLong( tick ).putLong( position );
+			buffer.putInt( obstacles ).putInt( ships ).putInt( torpedoes );
+			buffer.putInt( check( tick, position, obstacles, ships, torpedoes ) );
+			buffer.flip();
+
+			while ( buffer.hasRemaining() ) {
+				channel.write( buffer, buffer.position() );
+			}
+
+			channel.force( true );
+			size = channel.size();
+		}
+		finally {
+			channel.close();
+		}
+
+		Files.move( temporary.toPath(), new File( directory, FILE_NAME ).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+		return size;
+
+	} // end write
+
+
+	/**
+	 * Maps the snapshot in a directory into memory.
+	 *
+	 * @param directory directory holding the snapshot
+	 * @return the snapshot, or null if there is none
+	 * @throws IOException if the snapshot cannot be read or is damaged
+	 */
+	public static SectorSnapshot map( File directory ) throws IOException {
+
+		File file = new File( directory, FILE_NAME );
+
+		if ( !file.exists() ) {
+			return null;
+		}
+
+		// The mapping stays valid once the channel is closed
+		FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+
+		try {
+			return new SectorSnapshot( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ), file );
+		}
+		finally {
+			channel.close();
+		}
+
+	} // end map
+
+
+	/**
+	 * Restores the obstacles, ships, torpedoes and tick of the snapshot
+	 * into an empty sector.
+	 *
+	 * @param model sector to restore into
+	 * @throws IOException if an address in the snapshot cannot be made
+	 */
+	public void restore( SectorModel model ) throws IOException {
+
+		restoreObstacles( model );
+		model.setTick( tick );
+		restoreCrafts( model );
+
+	} // end restore
+
+
+	/**
+	 * Restores the ships and torpedoes of the snapshot into a sector a
+	 * slice at a time. The objects of a slice are made without holding the
+	 * lock on the sector, so this can be done in the background while the
+	 * game goes on, between startRestore and finishRestore on the sector.
+	 *
+	 * @param model sector to restore into
+	 * @return number of ships and torpedoes added
+	 * @throws IOException if an address in the snapshot cannot be made
+	 */
+	public int restoreCrafts( SectorModel model ) throws IOException {
+
+		SpaceCraft[] slice = new SpaceCraft[ SLICE_SIZE ];
+
+		return restoreCrafts( model, shipOffset(), shipCount, SHIP_SIZE, slice )
+				+ restoreCrafts( model, torpedoOffset(), torpedoCount, TORPEDO_SIZE, slice );
+
+	} // end restoreCrafts
+
+
+	/**
+	 * Adds the obstacles of the snapshot to a sector.
+	 *
+	 * @param model sector to add to
+	 */
+	public void restoreObstacles( SectorModel model ) {
+
+		int offset = HEADER_SIZE;
+
+		for ( int i = 0; i < obstacleCount; i++, offset += OBSTACLE_SIZE ) {
+			model.addObstacle( map.getInt( offset ), map.getInt( offset + 4 ) );
+		}
+
+	} // end restoreObstacles
+
+
+	/**
+	 * Sets the state of each ship and torpedo in the snapshot in tables
+	 * of the last state of each, as kind, x, y, heading, distance
+	 * travelled and the tick of that state less the tick of the snapshot,
+	 * so that events journaled after it can be folded in.
+	 *
+	 * @param ships table of ships
+	 * @param torpedoes table of torpedoes
+	 */
+	public void fold( EntityTable<int[]> ships, EntityTable<int[]> torpedoes ) {
+
+		int offset = shipOffset() + ( shipCount - 1 ) * SHIP_SIZE;
+
+		for ( int i = 0; i < shipCount; i++, offset -= SHIP_SIZE ) {
+			fold( ships, offset, EventJournal.SHIP, 0, 0 );
+		}
+
+		offset = torpedoOffset() + ( torpedoCount - 1 ) * TORPEDO_SIZE;
+
+		for ( int i = 0; i < torpedoCount; i++, offset -= TORPEDO_SIZE ) {
+			fold( torpedoes, offset, EventJournal.TORPEDO, map.getShort( offset + 15 ), map.getInt( offset + 17 ) );
+		}
+
+	} // end fold
+
+
+	/**
+	 * @return tick of the sector when the snapshot was taken
+	 */
+	public long getTick() {
+
+		return tick;
+
+	} // end getTick
+
+
+	/**
+	 * @return position of the journal the snapshot was taken at
+	 */
+	public long getPosition() {
+
+		return position;
+
+	} // end getPosition
+
+
+	/**
+	 * @return number of obstacles in the snapshot
+	 */
+	public int getObstacleCount() {
+
+		return obstacleCount;
+
+	} // end getObstacleCount
+
+
+	/**
+	 * @return number of ship records in the snapshot
+	 */
+	public int getShipCount() {
+
+		return shipCount;
+
+	} // end getShipCount
+
+
+	/**
+	 * @return number of torpedo records in the snapshot
+	 */
+	public int getTorpedoCount() {
+
+		return torpedoCount;
+
+	} // end getTorpedoCount
+
+
+	/*
+	 * Restores the ship or torpedo records in one part of the file. They
+	 * are read from the end so the newest copy of each is found first,
+	 * which also puts them back in their old order.
+	 */
+	protected int restoreCrafts( SectorModel model, int start, int count, int size,
+								 SpaceCraft[] slice ) throws IOException {
+
+		EntityTable<Boolean> seen = new EntityTable<Boolean>();
+		int offset = start + ( count - 1 ) * size;
+		int added = 0;
+
+		for ( int i = 0; i < count; ) {
+
+			int made = 0;
+
+			for ( ; i < count && made < SLICE_SIZE; i++, offset -= size ) {
+
+				long key = keyAt( offset );
+
+				if ( seen.get( key ) != null ) {
+					continue;
+				}
+
+				seen.put( key, Boolean.TRUE );
+
+				InetSocketAddress id = EntityTable.addressOf( key );
+				int x = map.getInt( offset + 7 );
+				int y = map.getInt( offset + 11 );
+
+				if ( size == TORPEDO_SIZE ) {
+
+					Torpedo torp = new Torpedo( id, x, y, map.get( offset + 6 ) );
+					torp.lifeCounter = map.getShort( offset + 15 );
+					slice[ made++ ] = torp;
+				}
+				else {
+					slice[ made++ ] = new SpaceCraft( id, x, y, map.get( offset + 6 ) );
+				}
+			}
+
+			added += model.restore( slice, made );
+		}
+
+		return added;
+
+	} // end restoreCrafts
+
+
+	/*
+	 * Sets the state of the ship or torpedo at an offset unless a newer
+	 * copy has already been set.
+	 */
+	protected void fold( EntityTable<int[]> table, int offset, int kind, int travelled, int tick ) {
+
+		long key = keyAt( offset );
+
+		if ( table.get( key ) == null ) {
+
+			table.put( key, new int[] { kind, map.getInt( offset + 7 ), map.getInt( offset + 11 ),
+					map.get( offset + 6 ), travelled, tick } );
+		}
+
+	} // end fold
+
+
+	protected long keyAt( int offset ) {
+
+		return EntityTable.keyOf( map.getInt( offset ), map.getChar( offset + 4 ) );
+
+	} // end keyAt
+
+
+	protected int shipOffset() {
+
+		return HEADER_SIZE + obstacleCount * OBSTACLE_SIZE;
+
+	} // end shipOffset
+
+
+	protected int torpedoOffset() {
+
+		return shipOffset() + shipCount * SHIP_SIZE;
+
+	} // end torpedoOffset
+
+
+	/*
+	 * Copies the obstacles a slice at a time. Obstacles are only ever
+	 * added, so those there when the write started are copied.
+	 */
+	static int writeObstacles( SectorModel model, FileChannel channel, ByteBuffer buffer ) throws IOException {
+
+		ArrayList<Obstacle> obstacles = model.obstacles;
+		int count;
+
+		synchronized ( model ) {
+			count = obstacles.size();
+		}
+
+		for ( int next = 0; next < count; ) {
+
+			buffer.clear();
+
+			synchronized ( model ) {
+
+				for ( int end = Math.min( count, next + SLICE_SIZE ); next < end; next++ ) {
+
+					Obstacle obs = obstacles.get( next );
+					buffer.putInt( obs.getXPosition() ).putInt( obs.getYPosition() );
+				}
+			}
+
+			drain( channel, buffer );
+		}
+
+		return count;
+
+	} // end writeObstacles
+
+
+	/*
+	 * Copies ships or torpedoes a slice at a time from the end of the list
+	 * to the start. Torpedoes are written with the tick of their slice
+	 * less the tick of the snapshot. Returns the number of records written.
+	 */
+	static int writeCrafts( SectorModel model, Vector<? extends SpaceCraft> crafts, boolean torpedoes,
+							long tick, FileChannel channel, ByteBuffer buffer ) throws IOException {
+
+		int count = 0;
+		int next;
+
+		synchronized ( model ) {
+			next = crafts.size();
+		}
+
+		while ( next > 0 ) {
+
+			buffer.clear();
+
+			synchronized ( model ) {
+
+				next = Math.min( next, crafts.size() );
+				int copiedAt = (int) ( model.getTick() - tick );
+
+				for ( int end = Math.max( 0, next - SLICE_SIZE ); next > end; count++ ) {
+
+					SpaceCraft sc = crafts.get( --next );
+
+					buffer.putInt( EntityTable.addressBits( sc.ID.getAddress() ) );
+					buffer.putChar( (char) sc.ID.getPort() );
+					buffer.put( (byte) sc.getHeading() );
+					buffer.putInt( sc.getXPosition() ).putInt( sc.getYPosition() );
+
+					if ( torpedoes ) {
+						buffer.putShort( (short) ( (Torpedo) sc ).lifeCounter ).putInt( copiedAt );
+					}
+				}
+			}
+
+			drain( channel, buffer );
+		}
+
+		return count;
+
+	} // end writeCrafts
+
+
+	static void drain( FileChannel channel, ByteBuffer buffer ) throws IOException {
+
+		buffer.flip();
+
+		while ( buffer.hasRemaining() ) {
+			channel.write( buffer );
+		}
+
+	} // end drain
+
+
+	static int check( long tick, long position, int obstacles, int ships, int torpedoes ) {
+
+		long h = tick * 31 + position;
+		h = h * 31 + obstacles;
+		h = h * 31 + ships;
+		h = h * 31 + torpedoes;
+
+		return (int) ( h ^ ( h >>> 32 ) ) ^ MAGIC;
+
+	} // end check
+
+} // end SectorSnapshot class
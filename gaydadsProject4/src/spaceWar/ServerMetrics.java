@@ -0,0 +1,583 @@
+package spaceWar;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts and times what a server does: the UDP datagrams it receives and
+ * sends by message type, its TCP messages, its torpedo update ticks, the
+ * time taken to forward an update to every client, the datagrams sent to
+ * each client, collisions, and datagrams it dropped or could not read.
+ * The numbers of ships and torpedoes are read from the sector, or from
+ * the zones when the world is split into them, when asked for.
+ *
+ * Recording never takes a lock, so it can be done from every thread of
+ * the server: counters are LongAdders and timings go into
+ * StripedHistograms, in nanoseconds. Rates are worked out at each tick.
+ *
+ * The metrics are read over JMX once registered. The counters are the
+ * MBean spaceWar:type=ServerMetrics,server=port and each histogram is
+ * spaceWar:type=Histogram,server=port,name=histogram.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+	/**
+	 * Index of UDP datagrams of a type other than those in Constants.
+	 */
+	public static final int OTHER = 8;
+
+	// Names of the UDP message types, by their value in Constants
+	protected static final String[] UDP_TYPES = { "JOIN", "UPDATE_SHIP", "REMOVE_SHIP",
+		"FIRED_TORPEDO", "UPDATE_TORPEDO", "REMOVE_TORPEDO", "REDIRECT", "ACK", "OTHER" };
+
+	/**
+	 * TCP messages. A client registers, fires torpedoes and exits. The
+	 * server sends the world and its obstacles, removes and redirects.
+	 */
+	public static final int TCP_REGISTER = 0;
+	public static final int TCP_WORLD = 1;
+	public static final int TCP_FIRED_TORPEDO = 2;
+	public static final int TCP_EXIT = 3;
+	public static final int TCP_REMOVE_SHIP = 4;
+	public static final int TCP_REMOVE_TORPEDO = 5;
+	public static final int TCP_REDIRECT = 6;
+
+	protected static final String[] TCP_MESSAGES = { "REGISTER", "WORLD", "FIRED_TORPEDO",
+		"EXIT", "REMOVE_SHIP", "REMOVE_TORPEDO", "REDIRECT" };
+
+	/**
+	 * Least time in milliseconds rates are worked out over.
+	 */
+	public static final int RATE_PERIOD = 1000;
+
+	// Offset of the message type in a datagram
+	protected static final int TYPE_OFFSET = 8;
+
+	// Domain of the MBeans
+	protected static final String DOMAIN = "spaceWar";
+
+	// Sector the numbers of ships and torpedoes are read from
+	protected SectorModel sector;
+	
+	// Zones they are read from instead, or null
+	protected volatile ZonedWorld zones = null;
+
+	// Datagrams received and sent by type, and the time taken to handle
+	// each one received and to send each one sent
+	protected final LongAdder[] udpIn = adders( UDP_TYPES.length );
+	protected final LongAdder[] udpOut = adders( UDP_TYPES.length );
+	protected final StripedHistogram[] udpInTime = histograms( UDP_TYPES.length );
+	protected final StripedHistogram[] udpOutTime = histograms( UDP_TYPES.length );
+
+	protected final LongAdder[] tcpMessages = adders( TCP_MESSAGES.length );
+
+	// Datagrams sent to each client
+	protected final ConcurrentHashMap<InetSocketAddress, LongAdder> clientSends
+		= new ConcurrentHashMap<InetSocketAddress, LongAdder>();
+
+	// Time taken by each torpedo update tick and the ticks that overran
+	protected final StripedHistogram tickTime = new StripedHistogram( "ns" );
+	protected final LongAdder tickOverruns = new LongAdder();
+
+	// Time taken to forward an update to every client
+	protected final StripedHistogram fanOutTime = new StripedHistogram( "ns" );
+
+	protected final LongAdder collisions = new LongAdder();
+	protected final LongAdder droppedPackets = new LongAdder();
+	protected final LongAdder malformedPackets = new LongAdder();
+	protected final LongAdder sendFailures = new LongAdder();
+
+	// Totals when the rates were last worked out. Only the tick thread
+	// works them out.
+	protected long rateTime = 0;
+	protected long lastCollisions, lastUdpIn, lastUdpOut;
+
+	protected volatile double collisionsPerSecond = 0;
+	protected volatile double udpInPerSecond = 0;
+	protected volatile double udpOutPerSecond = 0;
+
+	// Names the MBeans are registered under, so they can be unregistered
+	protected ArrayList<ObjectName> registered = new ArrayList<ObjectName>();
+
+
+	/**
+	 * Creates metrics for a server.
+	 *
+	 * @param sector sector the numbers of ships and torpedoes are read from
+	 */
+	public ServerMetrics( SectorModel sector ) {
+
+		this.sector = sector;
+
+	} // end ServerMetrics constructor
+
+
+	/**
+	 * Reads the numbers of ships and torpedoes from the zones of a world
+	 * split into them rather than from the sector.
+	 *
+	 * @param zones zones holding the ships and torpedoes, or null
+	 */
+	public void setZones( ZonedWorld zones ) {
+
+		this.zones = zones;
+
+	} // end setZones
+
+
+	/**
+	 * Registers the metrics with the platform MBean server. A server that
+	 * cannot be registered still records its metrics.
+	 *
+	 * @param server name the server's MBeans are told apart by, such as
+	 * its port
+	 */
+	public void register( String server ) {
+
+		MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+		String prefix = DOMAIN + ":server=" + server;
+
+		try {
+			register( mbeans, this, prefix + ",type=ServerMetrics" );
+			register( mbeans, tickTime, prefix + ",type=Histogram,name=tickTime" );
+			register( mbeans, fanOutTime, prefix + ",type=Histogram,name=fanOutTime" );
+
+			for ( int i = 0; i < UDP_TYPES.length; i++ ) {
+
+				register( mbeans, udpInTime[i], prefix + ",type=Histogram,name=udpIn." + UDP_TYPES[i] );
+				register( mbeans, udpOutTime[i], prefix + ",type=Histogram,name=udpOut." + UDP_TYPES[i] );
+			}
+		}
+		catch ( JMException e ) {
+			System.err.println( "Could not register server metrics: " + e.getMessage() );
+		}
+
+	} // end register
+
+
+	/**
+	 * Unregisters the MBeans registered by register.
+	 */
+	public void unregister() {
+
+		MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+
+		for ( ObjectName name : registered ) {
+
+			try {
+				mbeans.unregisterMBean( name );
+			}
+			catch ( JMException e ) {
+				System.err.println( "Could not unregister " + name + ": " + e.getMessage() );
+			}
+		}
+
+		registered.clear();
+
+	} // end unregister
+
+
+	/**
+	 * Records a datagram received and handled.
+	 *
+	 * @param type message type of the datagram
+	 * @param nanos time taken to handle it
+	 */
+	public void packetIn( int type, long nanos ) {
+
+		int index = typeIndex( type );
+
+		udpIn[ index ].increment();
+		udpInTime[ index ].record( nanos );
+
+	} // end packetIn
+
+
+	/**
+	 * Records a datagram sent to a client.
+	 *
+	 * @param type message type of the datagram
+	 * @param client address of the client's DatagramSocket
+	 * @param nanos time taken to send it
+	 */
+	public void packetOut( int type, InetSocketAddress client, long nanos ) {
+
+		int index = typeIndex( type );
+
+		udpOut[ index ].increment();
+		udpOutTime[ index ].record( nanos );
+
+		LongAdder sends = clientSends.get( client );
+
+		if ( sends == null ) {
+
+			LongAdder added = new LongAdder();
+			sends = clientSends.putIfAbsent( client, added );
+
+			if ( sends == null ) {
+				sends = added;
+			}
+		}
+
+		sends.increment();
+
+	} // end packetOut
+
+
+	/**
+	 * Records a datagram that could not be sent.
+	 */
+	public void sendFailed() {
+
+		sendFailures.increment();
+
+	} // end sendFailed
+
+
+	/**
+	 * Records the time taken to forward an update to every client.
+	 */
+	public void fanOut( long nanos ) {
+
+		fanOutTime.record( nanos );
+
+	} // end fanOut
+
+
+	/**
+	 * Forgets the datagrams sent to a client that has left.
+	 *
+	 * @param client address of the client's DatagramSocket
+	 */
+	public void forgetClient( InetSocketAddress client ) {
+
+		clientSends.remove( client );
+
+	} // end forgetClient
+
+
+	/**
+	 * Records a TCP message received or sent.
+	 *
+	 * @param message one of the TCP_ messages
+	 */
+	public void tcpMessage( int message ) {
+
+		tcpMessages[ message ].increment();
+
+	} // end tcpMessage
+
+
+	/**
+	 * Records a torpedo update tick and works out the rates when at least
+	 * RATE_PERIOD has passed since they were last worked out. Only called
+	 * by the thread that runs the ticks.
+	 *
+	 * @param nanos time taken by the tick
+	 * @param overran true if the tick finished after the next was due
+	 */
+	public void tick( long nanos, boolean overran ) {
+
+		tickTime.record( nanos );
+
+		if ( overran ) {
+			tickOverruns.increment();
+		}
+
+		long now = System.currentTimeMillis();
+		long elapsed = now - rateTime;
+
+		if ( elapsed < RATE_PERIOD ) {
+			return;
+		}
+
+		long collided = collisions.sum();
+		long in = sum( udpIn );
+		long out = sum( udpOut );
+
+		// The first tick only starts the counting
+		if ( rateTime != 0 ) {
+
+			collisionsPerSecond = ( collided - lastCollisions ) * 1000.0 / elapsed;
+			udpInPerSecond = ( in - lastUdpIn ) * 1000.0 / elapsed;
+			udpOutPerSecond = ( out - lastUdpOut ) * 1000.0 / elapsed;
+		}
+
+		rateTime = now;
+		lastCollisions = collided;
+		lastUdpIn = in;
+		lastUdpOut = out;
+
+	} // end tick
+
+
+	/**
+	 * Records collisions.
+	 *
+	 * @param count number of collisions
+	 */
+	public void collisions( int count ) {
+
+		collisions.add( count );
+
+	} // end collisions
+
+
+	/**
+	 * Records a ship update that was not applied.
+	 */
+	public void droppedPacket() {
+
+		droppedPackets.increment();
+
+	} // end droppedPacket
+
+
+	/**
+	 * Records a datagram too short to hold a message or of an unknown type.
+	 */
+	public void malformedPacket() {
+
+		malformedPackets.increment();
+
+	} // end malformedPacket
+
+
+	public Map<String, Long> getUdpPacketsIn() {
+
+		return byName( UDP_TYPES, udpIn );
+
+	} // end getUdpPacketsIn
+
+
+	public Map<String, Long> getUdpPacketsOut() {
+
+		return byName( UDP_TYPES, udpOut );
+
+	} // end getUdpPacketsOut
+
+
+	public double getUdpPacketsInPerSecond() {
+
+		return udpInPerSecond;
+
+	} // end getUdpPacketsInPerSecond
+
+
+	public double getUdpPacketsOutPerSecond() {
+
+		return udpOutPerSecond;
+
+	} // end getUdpPacketsOutPerSecond
+
+
+	public Map<String, Long> getTcpMessages() {
+
+		return byName( TCP_MESSAGES, tcpMessages );
+
+	} // end getTcpMessages
+
+
+	public Map<String, Long> getClientSends() {
+
+		TreeMap<String, Long> sends = new TreeMap<String, Long>();
+
+		for ( Map.Entry<InetSocketAddress, LongAdder> e : clientSends.entrySet() ) {
+			sends.put( e.getKey().getAddress().getHostAddress() + ":" + e.getKey().getPort(), e.getValue().sum() );
+		}
+
+		return sends;
+
+	} // end getClientSends
+
+
+	public long getTicks() {
+
+		return tickTime.getCount();
+
+	} // end getTicks
+
+
+	public long getTickOverruns() {
+
+		return tickOverruns.sum();
+
+	} // end getTickOverruns
+
+
+	public int getActiveShips() {
+
+		ZonedWorld z = zones;
+
+		return ( z == null ) ? sector.getSpaceCraftCount() : z.getSpaceCraftCount();
+
+	} // end getActiveShips
+
+
+	public int getActiveTorpedoes() {
+
+		ZonedWorld z = zones;
+
+		return ( z == null ) ? sector.getTorpedoCount() : z.getTorpedoCount();
+
+	} // end getActiveTorpedoes
+
+
+	public long getCollisions() {
+
+		return collisions.sum();
+
+	} // end getCollisions
+
+
+	public double getCollisionsPerSecond() {
+
+		return collisionsPerSecond;
+
+	} // end getCollisionsPerSecond
+
+
+	public long getDroppedPackets() {
+
+		return droppedPackets.sum();
+
+	} // end getDroppedPackets
+
+
+	public long getMalformedPackets() {
+
+		return malformedPackets.sum();
+
+	} // end getMalformedPackets
+
+
+	public long getSendFailures() {
+
+		return sendFailures.sum();
+
+	} // end getSendFailures
+
+
+	/**
+	 * @return histogram of the time taken by the torpedo update ticks
+	 */
+	public StripedHistogram getTickTime() {
+
+		return tickTime;
+
+	} // end getTickTime
+
+
+	/**
+	 * @return histogram of the time taken to forward an update to every
+	 * client
+	 */
+	public StripedHistogram getFanOutTime() {
+
+		return fanOutTime;
+
+	} // end getFanOutTime
+
+
+	/**
+	 * Reads the message type of a datagram in the layout of an update.
+	 *
+	 * @return the type, or OTHER if the datagram is too short to hold one
+	 */
+	public static int typeOf( DatagramPacket packet ) {
+
+		if ( packet.getLength() < TYPE_OFFSET + 4 ) {
+			return OTHER;
+		}
+
+		byte[] data = packet.getData();
+		int at = packet.getOffset() + TYPE_OFFSET;
+
+		// Big-endian, as written by DataOutputStream.writeInt
+		return ( data[ at ] << 24 ) | ( ( data[ at + 1 ] & 0xFF ) << 16 )
+			| ( ( data[ at + 2 ] & 0xFF ) << 8 ) | ( data[ at + 3 ] & 0xFF );
+
+	} // end typeOf
+
+
+	/*
+	 * Returns the index of the counters of a message type.
+	 */
+	protected static int typeIndex( int type ) {
+
+		return type >= 0 && type < OTHER ? type : OTHER;
+
+	} // end typeIndex
+
+
+	protected void register( MBeanServer mbeans, Object mbean, String name ) throws JMException {
+
+		ObjectName objectName = new ObjectName( name );
+
+		mbeans.registerMBean( mbean, objectName );
+		registered.add( objectName );
+
+	} // end register
+
+
+	protected static Map<String, Long> byName( String[] names, LongAdder[] counters ) {
+
+		TreeMap<String, Long> counts = new TreeMap<String, Long>();
+
+		for ( int i = 0; i < names.length; i++ ) {
+			counts.put( names[i], counters[i].sum() );
+		}
+
+		return counts;
+
+	} // end byName
+
+
+	protected static long sum( LongAdder[] counters ) {
+
+		long total = 0;
+
+		for ( LongAdder counter : counters ) {
+			total += counter.sum();
+		}
+
+		return total;
+
+	} // end sum
+
+
+	protected static LongAdder[] adders( int count ) {
+
+		LongAdder[] counters = new LongAdder[ count ];
+
+		for ( int i = 0; i < count; i++ ) {
+			counters[i] = new LongAdder();
+		}
+
+		return counters;
+
+	} // end adders
+
+
+	protected static StripedHistogram[] histograms( int count ) {
+
+		StripedHistogram[] timings = new StripedHistogram[ count ];
+
+		for ( int i = 0; i < count; i++ ) {
+			timings[i] = new StripedHistogram( "ns" );
+		}
+
+		return timings;
+
+	} // end histograms
+
+} // end ServerMetrics class
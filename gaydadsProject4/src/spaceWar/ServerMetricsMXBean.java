@@ -0,0 +1,88 @@
+package spaceWar;
+import java.util.Map;
+
+/**
+ * Management interface of ServerMetrics, through which the counters and
+ * gauges of a running server are read over JMX. Timings are kept in
+ * StripedHistograms registered as MBeans of their own.
+ */
+public interface ServerMetricsMXBean {
+
+	/**
+	 * @return UDP datagrams received, by message type
+	 */
+	Map<String, Long> getUdpPacketsIn();
+
+	/**
+	 * @return UDP datagrams sent, by message type
+	 */
+	Map<String, Long> getUdpPacketsOut();
+
+	/**
+	 * @return UDP datagrams received per second over the last second
+	 */
+	double getUdpPacketsInPerSecond();
+
+	/**
+	 * @return UDP datagrams sent per second over the last second
+	 */
+	double getUdpPacketsOutPerSecond();
+
+	/**
+	 * @return TCP messages received and sent, by message
+	 */
+	Map<String, Long> getTcpMessages();
+
+	/**
+	 * @return UDP datagrams sent to each client, by the address of its
+	 * DatagramSocket
+	 */
+	Map<String, Long> getClientSends();
+
+	/**
+	 * @return torpedo update ticks run
+	 */
+	long getTicks();
+
+	/**
+	 * @return ticks that finished after the next tick was due
+	 */
+	long getTickOverruns();
+
+	/**
+	 * @return ships in the game
+	 */
+	int getActiveShips();
+
+	/**
+	 * @return torpedoes in the game
+	 */
+	int getActiveTorpedoes();
+
+	/**
+	 * @return collisions between ships and ships hit by torpedoes
+	 */
+	long getCollisions();
+
+	/**
+	 * @return collisions per second over the last second
+	 */
+	double getCollisionsPerSecond();
+
+	/**
+	 * @return ship updates not applied because they were out of date or
+	 * moved the ship further than it could have moved
+	 */
+	long getDroppedPackets();
+
+	/**
+	 * @return datagrams too short to hold a message or of an unknown type
+	 */
+	long getMalformedPackets();
+
+	/**
+	 * @return datagrams that could not be sent
+	 */
+	long getSendFailures();
+
+} // end ServerMetricsMXBean interface
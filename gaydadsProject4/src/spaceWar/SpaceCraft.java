@@ -1,6 +1,10 @@
 package spaceWar;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Random;
 
@@ -43,9 +47,9 @@ public class SpaceCraft
 		
 		this.heading = rand.nextInt(8) + 1;
 		
-		this.xPosition = rand.nextInt( Constants.MAX_SECTOR_X );
+		this.xPosition = rand.nextInt( Constants.getWorldWidth() );
 		
-		this.yPosition = rand.nextInt( Constants.MAX_SECTOR_Y );
+		this.yPosition = rand.nextInt( Constants.getWorldHeight() );
 		
 	} // end SpaceCraft constructor
 	
@@ -85,6 +89,60 @@ public class SpaceCraft
 	} // end getHeading
 
 
+	/**
+	 * Horizontal direction of travel for a heading.
+	 * 
+	 * @param heading heading of 1 through 8
+	 * @return 1 for eastward headings, -1 for westward headings, 0 otherwise
+	 */
+	static int headingDX( int heading )
+	{
+		switch ( heading ) {
+		
+		case Constants.NORTH_EAST:
+		case Constants.EAST:
+		case Constants.SOUTH_EAST:
+			return 1;
+			
+		case Constants.SOUTH_WEST:
+		case Constants.WEST:
+		case Constants.NORTH_WEST:
+			return -1;
+			
+		default:
+			return 0;
+		}
+		
+	} // end headingDX
+	
+	
+	/**
+	 * Vertical direction of travel for a heading.
+	 * 
+	 * @param heading heading of 1 through 8
+	 * @return 1 for southward headings, -1 for northward headings, 0 otherwise
+	 */
+	static int headingDY( int heading )
+	{
+		switch ( heading ) {
+		
+		case Constants.SOUTH_EAST:
+		case Constants.SOUTH:
+		case Constants.SOUTH_WEST:
+			return 1;
+			
+		case Constants.NORTH_WEST:
+		case Constants.NORTH:
+		case Constants.NORTH_EAST:
+			return -1;
+			
+		default:
+			return 0;
+		}
+		
+	} // end headingDY
+
+
 	/**
 	 * Checks to see if this SpaceCraft has the same ID and port number
 	 * as the input parameter.
@@ -194,40 +252,40 @@ public class SpaceCraft
 		
 		case Constants.NORTH_EAST:
 			
-			possibleX = ( possibleX + inc < Constants.MAX_SECTOR_X ) 
-						  ? possibleX + inc :  Constants.MAX_SECTOR_X;
+			possibleX = ( possibleX + inc < Constants.getWorldWidth() ) 
+						  ? possibleX + inc :  Constants.getWorldWidth();
 			possibleY = ( possibleY - inc > 0 ) ? possibleY - inc : 0; 
 		
 		break;
 		
 		case Constants.EAST:
 		
-			possibleX = ( possibleX + inc < Constants.MAX_SECTOR_X ) 
-				? possibleX + inc :  Constants.MAX_SECTOR_X;
+			possibleX = ( possibleX + inc < Constants.getWorldWidth() ) 
+				? possibleX + inc :  Constants.getWorldWidth();
 		
 		break;	
 		
 		case Constants.SOUTH_EAST:
 			
-			possibleX = ( possibleX + inc < Constants.MAX_SECTOR_X ) 
-				? possibleX + inc :  Constants.MAX_SECTOR_X;
-			possibleY = ( possibleY + inc < Constants.MAX_SECTOR_Y  ) 
-				? possibleY + inc : Constants.MAX_SECTOR_Y; 
+			possibleX = ( possibleX + inc < Constants.getWorldWidth() ) 
+				? possibleX + inc :  Constants.getWorldWidth();
+			possibleY = ( possibleY + inc < Constants.getWorldHeight()  ) 
+				? possibleY + inc : Constants.getWorldHeight(); 
 		
 		break;		
 		
 		case Constants.SOUTH:
 		
-			possibleY = ( possibleY + inc < Constants.MAX_SECTOR_Y  ) 
-				? possibleY + inc : Constants.MAX_SECTOR_Y; 
+			possibleY = ( possibleY + inc < Constants.getWorldHeight()  ) 
+				? possibleY + inc : Constants.getWorldHeight(); 
 		
 		break;	
 		
 		case Constants.SOUTH_WEST:
 			
 			possibleX = ( possibleX - inc > 0) ? possibleX - inc : 0;
-			possibleY = ( possibleY + inc < Constants.MAX_SECTOR_Y  ) 
-				? possibleY + inc : Constants.MAX_SECTOR_Y; 
+			possibleY = ( possibleY + inc < Constants.getWorldHeight()  ) 
+				? possibleY + inc : Constants.getWorldHeight(); 
 		
 		break;	
 		
@@ -275,16 +333,16 @@ public class SpaceCraft
 		
 		case Constants.NORTH:
 		
-			possibleY = ( possibleY + inc < Constants.MAX_SECTOR_Y  ) 
-				? possibleY + inc : Constants.MAX_SECTOR_Y; 
+			possibleY = ( possibleY + inc < Constants.getWorldHeight()  ) 
+				? possibleY + inc : Constants.getWorldHeight(); 
 		
 		break;
 		
 		case Constants.NORTH_EAST:
 			
 			possibleX = ( possibleX - inc > 0) ? possibleX - inc : 0;
-			possibleY = ( possibleY + inc < Constants.MAX_SECTOR_Y  ) 
-				? possibleY + inc : Constants.MAX_SECTOR_Y; 
+			possibleY = ( possibleY + inc < Constants.getWorldHeight()  ) 
+				? possibleY + inc : Constants.getWorldHeight(); 
 		
 		break;
 		
@@ -309,25 +367,25 @@ public class SpaceCraft
 		
 		case Constants.SOUTH_WEST:
 			
-			possibleX = ( possibleX + inc < Constants.MAX_SECTOR_X ) 
-			  ? possibleX + inc :  Constants.MAX_SECTOR_X;
+			possibleX = ( possibleX + inc < Constants.getWorldWidth() ) 
+			  ? possibleX + inc :  Constants.getWorldWidth();
 			possibleY = ( possibleY - inc > 0 ) ? possibleY - inc : 0; 
 		
 		break;	
 		
 		case Constants.WEST:
 		
-			possibleX = ( possibleX + inc < Constants.MAX_SECTOR_X ) 
-				? possibleX + inc :  Constants.MAX_SECTOR_X;
+			possibleX = ( possibleX + inc < Constants.getWorldWidth() ) 
+				? possibleX + inc :  Constants.getWorldWidth();
 			
 		break;
 		
 		case Constants.NORTH_WEST:
 			
-			possibleX = ( possibleX + inc < Constants.MAX_SECTOR_X ) 
-				? possibleX + inc :  Constants.MAX_SECTOR_X;
-			possibleY = ( possibleY + inc < Constants.MAX_SECTOR_Y  ) 
-				? possibleY + inc : Constants.MAX_SECTOR_Y; 
+			possibleX = ( possibleX + inc < Constants.getWorldWidth() ) 
+				? possibleX + inc :  Constants.getWorldWidth();
+			possibleY = ( possibleY + inc < Constants.getWorldHeight()  ) 
+				? possibleY + inc : Constants.getWorldHeight(); 
 			
 		break;
 		
@@ -372,7 +430,7 @@ public class SpaceCraft
 	public void setX(int x)
 	{
 		this.xPosition = 
-			( x > 0 && x < Constants.MAX_SECTOR_X ) ? x : this.xPosition;
+			( x > 0 && x < Constants.getWorldWidth() ) ? x : this.xPosition;
 		
 	} // end setX
 	
@@ -386,7 +444,7 @@ public class SpaceCraft
 	public void setY(int y)
 	{
 		this.yPosition = 
-			( y > 0 && y < Constants.MAX_SECTOR_Y ) ? y : this.yPosition;
+			( y > 0 && y < Constants.getWorldHeight() ) ? y : this.yPosition;
 		
 	} // end setY	
 	
@@ -478,6 +536,43 @@ public class SpaceCraft
 
 
 	
+	/**
+	 * Writes the identity, position, and heading of the craft to a stream
+	 * in the same order used by the game play messages.
+	 * 
+	 * @param dos stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeTo( DataOutputStream dos ) throws IOException
+	{
+		dos.write( ID.getAddress().getAddress() );
+		dos.writeInt( ID.getPort() );
+		dos.writeInt( xPosition );
+		dos.writeInt( yPosition );
+		dos.writeInt( heading );
+		
+	} // end writeTo
+	
+	
+	/**
+	 * Reads a craft written by writeTo.
+	 * 
+	 * @param dis stream to read from
+	 * @return craft with the identity, position, and heading read
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static SpaceCraft readFrom( DataInputStream dis ) throws IOException
+	{
+		byte[] ip = new byte[4];
+		dis.readFully( ip );
+		
+		InetSocketAddress id = new InetSocketAddress( InetAddress.getByAddress( ip ), dis.readInt() );
+		
+		return new SpaceCraft( id, dis.readInt(), dis.readInt(), dis.readInt() );
+		
+	} // end readFrom
+	
+	
 	/**
 	 * Constructs a string representation of the the craft.
 	 * 
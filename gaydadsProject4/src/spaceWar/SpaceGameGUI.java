@@ -32,11 +32,15 @@ public class SpaceGameGUI extends Frame {
 
 	SpaceGUIInterface game = null;
 
+	// Game display, zoomed from the keyboard
+	Sector sector = null;
+
 	public SpaceGameGUI(SpaceGUIInterface g, Sector sector) {
 
 		super("Space War Client");
 
 		this.game = g;
+		this.sector = sector;
 
 		// Create panels for holding the fields. To make it look nice,
 		// create an extra panel for holding all the child panels.
@@ -214,6 +218,23 @@ public class SpaceGameGUI extends Frame {
 				}
 				break;				
 
+			case KeyEvent.VK_EQUALS:
+			case KeyEvent.VK_ADD:
+
+				sector.zoomIn();
+				break;
+
+			case KeyEvent.VK_MINUS:
+			case KeyEvent.VK_SUBTRACT:
+
+				sector.zoomOut();
+				break;
+
+			case KeyEvent.VK_F3:
+
+				sector.toggleProfiler();
+				break;
+
 			default:
 
 				System.out.println("pressed key = " + e.getKeyChar());
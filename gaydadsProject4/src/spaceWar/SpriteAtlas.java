@@ -0,0 +1,154 @@
+package spaceWar;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Pre-rendered images of ships and torpedoes. Each kind of craft is drawn
+ * once for each of the 8 headings into a single image, one row per kind
+ * and one column per heading. Drawing a craft is then a single copy from
+ * that image instead of the shape and trigonometry work done by the draw
+ * methods. The image is never changed after it is built, so Java2D can
+ * keep a copy of it in video memory.
+ */
+public class SpriteAtlas {
+
+	/**
+	 * Row of the atlas for each kind of craft.
+	 */
+	public static final int PLAIN = 0;
+	public static final int ALIEN = 1;
+	public static final int OWN = 2;
+	public static final int TORPEDO = 3;
+
+	// Number of rows in the atlas
+	protected static final int STYLES = 4;
+
+	// Number of headings, one column each
+	protected static final int HEADINGS = 8;
+
+	/**
+	 * Width and height of each image in the atlas. Large enough for a
+	 * heading line that reaches OBJECT_WIDTH from the center.
+	 */
+	public static final int CELL = 2 * Constants.OBJECT_WIDTH + 4;
+
+	// Position of the craft's center within a cell
+	protected static final int CENTER = CELL / 2;
+
+	// Shared atlas, built the first time it is needed
+	private static SpriteAtlas shared = null;
+
+	// All of the pre-rendered images
+	protected BufferedImage atlas;
+
+
+	/**
+	 * Builds the atlas by drawing a craft of each kind with each heading
+	 * using its own draw method.
+	 */
+	public SpriteAtlas() {
+
+		atlas = new BufferedImage( HEADINGS * CELL, STYLES * CELL, BufferedImage.TYPE_INT_ARGB_PRE );
+
+		Graphics g = atlas.getGraphics();
+		InetSocketAddress id = new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 );
+
+		for ( int style = 0; style < STYLES; style++ ) {
+
+			for ( int heading = 1; heading <= HEADINGS; heading++ ) {
+
+				SpaceCraft craft = prototype( style, id );
+
+				// Position the craft at the center of its cell
+				craft.xPosition = ( heading - 1 ) * CELL + CENTER;
+				craft.yPosition = style * CELL + CENTER;
+				craft.heading = heading;
+
+				craft.draw( g );
+			}
+		}
+
+		g.dispose();
+
+	} // end SpriteAtlas constructor
+
+
+	/**
+	 * @return atlas shared by all renderers
+	 */
+	public static synchronized SpriteAtlas getShared() {
+
+		if ( shared == null ) {
+			shared = new SpriteAtlas();
+		}
+
+		return shared;
+
+	} // end getShared
+
+
+	/**
+	 * Finds the row of the atlas used to draw a craft.
+	 *
+	 * @param craft ship or torpedo
+	 * @return PLAIN, ALIEN, OWN or TORPEDO
+	 */
+	public static int styleOf( SpaceCraft craft ) {
+
+		if ( craft instanceof Torpedo ) {
+			return TORPEDO;
+		}
+		if ( craft instanceof OwnSpaceCraft ) {
+			return OWN;
+		}
+		if ( craft instanceof AlienSpaceCraft ) {
+			return ALIEN;
+		}
+		return PLAIN;
+
+	} // end styleOf
+
+
+	/**
+	 * Draws a craft centered on a position.
+	 *
+	 * @param g Graphics context for rendering
+	 * @param style row of the atlas
+	 * @param heading heading of the craft, 1 to 8
+	 * @param x x position of the center of the craft
+	 * @param y y position of the center of the craft
+	 */
+	public void draw( Graphics g, int style, int heading, int x, int y ) {
+
+		int sx = ( heading - 1 ) * CELL;
+		int sy = style * CELL;
+		int dx = x - CENTER;
+		int dy = y - CENTER;
+
+		g.drawImage( atlas, dx, dy, dx + CELL, dy + CELL, sx, sy, sx + CELL, sy + CELL, null );
+
+	} // end draw
+
+
+	/*
+	 * Creates a craft of a kind to draw into the atlas.
+	 */
+	protected static SpaceCraft prototype( int style, InetSocketAddress id ) {
+
+		switch ( style ) {
+
+		case ALIEN:
+			return new AlienSpaceCraft( id, 0, 0, Constants.NORTH );
+		case OWN:
+			return new OwnSpaceCraft( id );
+		case TORPEDO:
+			return new Torpedo( id, 0, 0, Constants.NORTH );
+		default:
+			return new SpaceCraft( id, 0, 0, Constants.NORTH );
+		}
+
+	} // end prototype
+
+} // end SpriteAtlas class
@@ -0,0 +1,224 @@
+package spaceWar;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram that any number of threads can record values into without
+ * taking a lock. Buckets are a power of two wide split into eight, so a
+ * percentile is within an eighth of the true value. Each thread records
+ * into one of a number of stripes of buckets picked by its id, so threads
+ * seldom update the same counters. The stripes are added up when the
+ * histogram is read.
+ */
+public class StripedHistogram implements HistogramMXBean {
+
+	// Buckets for values from 0 to Long.MAX_VALUE
+	protected static final int BUCKETS = 8 * 62;
+
+	// Most stripes used however many processors there are
+	protected static final int MAX_STRIPES = 16;
+
+	// Stripes of bucket counts, a power of two of them
+	protected final AtomicLongArray[] stripes;
+
+	// Picks a thread's stripe from its id
+	protected final int stripeMask;
+
+	// Sum and largest of the values recorded
+	protected final LongAdder sum = new LongAdder();
+	protected final AtomicLong max = new AtomicLong();
+
+	// Unit of the values, for reports
+	protected final String unit;
+
+
+	/**
+	 * Creates an empty histogram with two stripes per processor, up to
+	 * MAX_STRIPES.
+	 *
+	 * @param unit unit of the values recorded, such as ns
+	 */
+	public StripedHistogram( String unit ) {
+
+		int wanted = Math.min( MAX_STRIPES, 2 * Runtime.getRuntime().availableProcessors() );
+		int count = Integer.highestOneBit( wanted );
+
+		this.unit = unit;
+		stripes = new AtomicLongArray[ count ];
+		stripeMask = count - 1;
+
+		for ( int i = 0; i < count; i++ ) {
+			stripes[i] = new AtomicLongArray( BUCKETS );
+		}
+
+	} // end StripedHistogram constructor
+
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 *
+	 * @param value value to record
+	 */
+	public void record( long value ) {
+
+		if ( value < 0 ) {
+			value = 0;
+		}
+
+		stripes[ (int) Thread.currentThread().getId() & stripeMask ].incrementAndGet( bucketOf( value ) );
+		sum.add( value );
+
+		long largest = max.get();
+
+		while ( value > largest && !max.compareAndSet( largest, value ) ) {
+			largest = max.get();
+		}
+
+	} // end record
+
+
+	public String getUnit() {
+
+		return unit;
+
+	} // end getUnit
+
+
+	public long getCount() {
+
+		long count = 0;
+
+		for ( long c : counts() ) {
+			count += c;
+		}
+
+		return count;
+
+	} // end getCount
+
+
+	public double getMean() {
+
+		long count = getCount();
+
+		return count == 0 ? 0 : (double) sum.sum() / count;
+
+	} // end getMean
+
+
+	public long getP50() {
+
+		return percentile( 0.5 );
+
+	} // end getP50
+
+
+	public long getP90() {
+
+		return percentile( 0.9 );
+
+	} // end getP90
+
+
+	public long getP99() {
+
+		return percentile( 0.99 );
+
+	} // end getP99
+
+
+	public long getP999() {
+
+		return percentile( 0.999 );
+
+	} // end getP999
+
+
+	public long getMax() {
+
+		return max.get();
+
+	} // end getMax
+
+
+	/**
+	 * @param fraction fraction of the values, such as 0.99
+	 * @return lower bound of the bucket holding that percentile, 0 if empty
+	 */
+	public long percentile( double fraction ) {
+
+		long[] counts = counts();
+		long total = 0;
+
+		for ( long c : counts ) {
+			total += c;
+		}
+
+		long rank = (long) Math.ceil( fraction * total );
+		long seen = 0;
+
+		for ( int i = 0; i < BUCKETS; i++ ) {
+
+			seen += counts[i];
+
+			if ( seen >= rank && seen > 0 ) {
+				return lowerBound( i );
+			}
+		}
+
+		return 0;
+
+	} // end percentile
+
+
+	/*
+	 * Adds up the stripes. Values recorded while they are added up may or
+	 * may not be counted.
+	 */
+	protected long[] counts() {
+
+		long[] counts = new long[ BUCKETS ];
+
+		for ( AtomicLongArray stripe : stripes ) {
+
+			for ( int i = 0; i < BUCKETS; i++ ) {
+				counts[i] += stripe.get( i );
+			}
+		}
+
+		return counts;
+
+	} // end counts
+
+
+	/**
+	 * @return bucket a value that is not negative falls in
+	 */
+	public static int bucketOf( long value ) {
+
+		if ( value < 8 ) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros( value );
+
+		return ( exponent - 2 ) * 8 + (int) ( ( value >>> ( exponent - 3 ) ) & 7 );
+
+	} // end bucketOf
+
+
+	/**
+	 * @return least value that falls in a bucket
+	 */
+	public static long lowerBound( int bucket ) {
+
+		if ( bucket < 8 ) {
+			return bucket;
+		}
+
+		return ( 8L + bucket % 8 ) << ( bucket / 8 - 1 );
+
+	} // end lowerBound
+
+} // end StripedHistogram class
@@ -2,6 +2,9 @@ package spaceWar;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 
 /**
@@ -18,6 +21,15 @@ public class Torpedo extends SpaceCraft {
 	// Tracks number of times Torpedo is updated.
 	int lifeCounter = 0;
 	
+	// Position of the torpedo before the most recent update. Together
+	// with the current position it describes the path that was covered.
+	int previousX, previousY;
+	
+	// End of the part of that path the torpedo covered while still alive,
+	// and the number of increments in it. Only that part can hit anything.
+	int pathEndX, pathEndY;
+	int pathSteps = 0;
+	
 	
 	/**
 	 * Creates an Torpedo with the values of the input parameters
@@ -31,6 +43,9 @@ public class Torpedo extends SpaceCraft {
 	{
 		super( ID, x, y, heading);
 		
+		previousX = pathEndX = xPosition;
+		previousY = pathEndY = yPosition;
+		
 	} // end AlienCraft constructor
 	
 	
@@ -42,6 +57,9 @@ public class Torpedo extends SpaceCraft {
 	{
 		super( owner );
 		
+		previousX = pathEndX = xPosition;
+		previousY = pathEndY = yPosition;
+		
 	} // end OwnSpaceCraft constructor
 
 	
@@ -53,17 +71,44 @@ public class Torpedo extends SpaceCraft {
 	 */
 	public boolean update(  )
 	{
-		lifeCounter += ( Constants.INCREMENT);
+		return update( 1 );
+		
+	} // end update
+	
+	
+	/**
+	 * Updates a torpedo by moving it forward a number of increments. The
+	 * position before the update is remembered so that the whole path
+	 * can be checked for collisions. The path ends at the position after
+	 * the last increment the torpedo survived, so the increment that 
+	 * ends its life cannot hit anything, as when it moves one at a time.
+	 * 
+	 * @param steps number of increments to move
+	 * @return false if the torpedo has reached maximum range or the 
+	 * edge of the sector. true otherwise. 
+	 */
+	public boolean update( int steps )
+	{
+		previousX = pathEndX = xPosition;
+		previousY = pathEndY = yPosition;
+		pathSteps = 0;
 		
-		if ( lifeCounter < MAX_RANGE) {
+		for ( int i = 0; i < steps; i++ ) {
 			
-			return moveAhead( Constants.INCREMENT );
-
-		}
-		else 
-		{
-			return false;
+			lifeCounter += ( Constants.INCREMENT);
+			
+			if ( lifeCounter >= MAX_RANGE || !moveAhead( Constants.INCREMENT ) ) {
+				
+				return false;
+			}
+			
+			pathEndX = xPosition;
+			pathEndY = yPosition;
+			pathSteps++;
 		}
+		
+		return true;
+		
 	} // end update 
 	
 	
@@ -83,6 +128,103 @@ public class Torpedo extends SpaceCraft {
 				  Constants.OBJECT_WIDTH / 2, Constants.OBJECT_WIDTH  / 2);
 
 	} // end draw
+	
+	
+	/**
+	 * Writes the state of the torpedo, including how far it has 
+	 * travelled, to a stream.
+	 * 
+	 * @param dos stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeTo( DataOutputStream dos ) throws IOException
+	{
+		super.writeTo( dos );
+		dos.writeInt( lifeCounter );
+		
+	} // end writeTo
+	
+	
+	/**
+	 * Reads a torpedo written by writeTo.
+	 * 
+	 * @param dis stream to read from
+	 * @return torpedo with the state read
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static Torpedo readTorpedo( DataInputStream dis ) throws IOException
+	{
+		SpaceCraft sc = SpaceCraft.readFrom( dis );
+		
+		Torpedo torp = new Torpedo( sc.ID, sc.xPosition, sc.yPosition, sc.heading );
+		torp.lifeCounter = dis.readInt();
+		
+		return torp;
+		
+	} // end readTorpedo
+	
+	
+	/**
+	 * Accessor method for the x position before the last update.
+	 * 
+	 * @return previous x position
+	 */
+	public int getPreviousXPosition()
+	{
+		return previousX;
+		
+	} // end getPreviousXPosition
+	
+	
+	/**
+	 * Accessor method for the y position before the last update.
+	 * 
+	 * @return previous y position
+	 */
+	public int getPreviousYPosition()
+	{
+		return previousY;
+		
+	} // end getPreviousYPosition
+	
+	
+	/**
+	 * Accessor method for the x position at the end of the part of the
+	 * last update the torpedo survived.
+	 * 
+	 * @return x position at the end of the live path
+	 */
+	public int getPathEndXPosition()
+	{
+		return pathEndX;
+		
+	} // end getPathEndXPosition
+	
+	
+	/**
+	 * Accessor method for the y position at the end of the part of the
+	 * last update the torpedo survived.
+	 * 
+	 * @return y position at the end of the live path
+	 */
+	public int getPathEndYPosition()
+	{
+		return pathEndY;
+		
+	} // end getPathEndYPosition
+	
+	
+	/**
+	 * Accessor method for the number of increments of the last update
+	 * the torpedo survived.
+	 * 
+	 * @return number of increments in the live path
+	 */
+	public int getPathSteps()
+	{
+		return pathSteps;
+		
+	} // end getPathSteps
 
 
 } // end Torpedo class
@@ -0,0 +1,172 @@
+package spaceWar;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the update datagrams a client receives from the server and
+ * applies them to the sector. Fields are read in place from the buffer
+ * the datagram was received into, and updates for ships and torpedoes already
+ * known are applied by a primitive key, so once every entity has been
+ * seen handling an update allocates nothing. Objects are only created
+ * when a new ship or torpedo appears.
+ *
+ * Ships and torpedoes are identified by the address of the server that
+ * forwarded their updates and the port of the client that owns them.
+ */
+public class UpdateDecoder {
+
+	// Offsets of the fields of an update, after the address and port
+	protected static final int TYPE_OFFSET = 8;
+	protected static final int X_OFFSET = 12;
+	protected static final int Y_OFFSET = 16;
+	protected static final int HEADING_OFFSET = 20;
+	protected static final int TIME_OFFSET = 24;
+
+	// Sector the updates are applied to
+	protected SectorModel model;
+
+	// Records the updates of ships and torpedoes of others
+	protected EntityInterpolator interpolator;
+
+	// Handles updates for own ship and its torpedo
+	protected ClientPredictor predictor;
+
+	// Port identifying own ship and its torpedo
+	protected int ownPort;
+
+	// Buffer of the packet last decoded and a view of it
+	protected byte[] data;
+	protected ByteBuffer buffer;
+
+	// Server last received from and its address as an int
+	protected InetAddress sender;
+	protected int senderBits;
+
+	// Identity of own torpedo as sent by that server
+	protected InetSocketAddress ownTorpedoID;
+
+
+	/**
+	 * Creates a decoder.
+	 *
+	 * @param model sector the updates are applied to
+	 * @param interpolator records updates for the ships and torpedoes of others
+	 * @param predictor handles updates for own ship and its torpedo
+	 * @param ownPort port identifying own ship and its torpedo
+	 */
+	public UpdateDecoder( SectorModel model, EntityInterpolator interpolator,
+						  ClientPredictor predictor, int ownPort ) {
+
+		this.model = model;
+		this.interpolator = interpolator;
+		this.predictor = predictor;
+		this.ownPort = ownPort;
+
+	} // end UpdateDecoder constructor
+
+
+	/**
+	 * Applies an update received from the server.
+	 *
+	 * @param packet datagram holding the update
+	 */
+	public void handle( DatagramPacket packet ) {
+
+		if ( packet.getLength() < Constants.PACKET_SIZE ) {
+			return;
+		}
+
+		if ( packet.getData() != data ) {
+
+			data = packet.getData();
+			buffer = ByteBuffer.wrap( data );
+		}
+
+		decode( buffer, packet.getOffset(), packet.getAddress() );
+
+	} // end handle
+
+
+	/**
+	 * Applies an update received from the server into a buffer.
+	 *
+	 * @param update buffer holding the update from its position to its limit
+	 * @param from address of the server that sent the update
+	 */
+	public void handle( ByteBuffer update, InetAddress from ) {
+
+		if ( update.remaining() < Constants.PACKET_SIZE ) {
+			return;
+		}
+
+		decode( update, update.position(), from );
+
+	} // end handle
+
+
+	/*
+	 * Applies an update starting at an index of a buffer.
+	 */
+	protected void decode( ByteBuffer buffer, int base, InetAddress from ) {
+
+		int port = buffer.getInt( base + 4 );
+		int type = buffer.getInt( base + TYPE_OFFSET );
+		int x = buffer.getInt( base + X_OFFSET );
+		int y = buffer.getInt( base + Y_OFFSET );
+		int heading = buffer.getInt( base + HEADING_OFFSET );
+		long serverTime = buffer.getLong( base + TIME_OFFSET );
+		int sequence = buffer.getInt( base + Constants.SEQUENCE_OFFSET );
+
+		// The server's state for own ship after one of its updates
+		if ( type == Constants.ACK ) {
+
+			predictor.acknowledge( model, sequence, x, y, heading );
+			return;
+		}
+
+		if ( !from.equals( sender ) ) {
+
+			sender = from;
+			senderBits = EntityTable.addressBits( from );
+			ownTorpedoID = new InetSocketAddress( from, ownPort );
+		}
+
+		// Own torpedo is moved by the predictor, which only needs to know
+		// the server has it. Torpedoes are identified by the ship's port.
+		if ( type == Constants.UPDATE_TORPEDO && port == ownPort ) {
+
+			predictor.confirmTorpedo( model, ownTorpedoID, x, y, heading );
+			return;
+		}
+
+		boolean torpedo = ( type == Constants.UPDATE_TORPEDO );
+
+		if ( !torpedo && type != Constants.JOIN && type != Constants.UPDATE_SHIP ) {
+			return;
+		}
+
+		// Positions are recorded and shown by the interpolator. Ships and
+		// torpedoes only need to be added when first seen.
+		long key = EntityTable.keyOf( senderBits, port );
+
+		if ( interpolator.update( key, torpedo, serverTime, x, y, heading ) ) {
+			return;
+		}
+
+		InetSocketAddress id = new InetSocketAddress( from, port );
+
+		if ( interpolator.record( id, torpedo, serverTime, x, y, heading ) ) {
+
+			if ( torpedo ) {
+				model.updateOrAddTorpedo( id, x, y, heading );
+			}
+			else {
+				model.updateOrAddSpaceCraft( new AlienSpaceCraft( id, x, y, heading ) );
+			}
+		}
+
+	} // end decode
+
+} // end UpdateDecoder class
@@ -0,0 +1,537 @@
+package spaceWar;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Splits the world into vertical strips, or zones, that are simulated
+ * independently. Each zone keeps its own SectorModel with its own lock and
+ * updates its torpedoes on its own thread, so the torpedo update uses
+ * as many cores as there are zones.
+ *
+ * A ship belongs to the zone that contains its position and is handed to
+ * the next zone when it crosses a boundary. Ships within ghostMargin of a
+ * neighbouring zone are copied into it as ghosts, and so are obstacles,
+ * so collisions and torpedo hits across a boundary are still found. A hit
+ * on a ghost removes the ship from every zone.
+ */
+public class ZonedWorld {
+
+	// Zones ordered from left to right
+	protected Zone[] zones;
+
+	// Distance from a zone boundary within which neighbours get ghosts
+	protected int ghostMargin;
+
+	// Last known x position of each ship, used to find the zones that
+	// hold a copy of it
+	protected ConcurrentHashMap<InetSocketAddress, Integer> lastX
+		= new ConcurrentHashMap<InetSocketAddress, Integer>();
+
+	// Threads that update the zones
+	protected ExecutorService tickThreads;
+
+
+	/**
+	 * Creates the zones and the threads that update them.
+	 *
+	 * @param zoneCount number of zones to split the world into
+	 * @param ghostMargin distance from a boundary within which ships and
+	 * obstacles are copied into the neighbouring zone. Should be at least
+	 * the distance a torpedo moves in one update plus the object width.
+	 */
+	public ZonedWorld( int zoneCount, int ghostMargin ) {
+
+		this.ghostMargin = ghostMargin;
+
+		zones = new Zone[ zoneCount ];
+
+		long width = Constants.getWorldWidth();
+
+		for ( int i = 0; i < zoneCount; i++ ) {
+
+			int minX = (int) ( width * i / zoneCount );
+			int maxX = ( i == zoneCount - 1 ) ? Integer.MAX_VALUE
+						: (int) ( width * ( i + 1 ) / zoneCount );
+
+			zones[i] = new Zone( minX, maxX );
+		}
+
+		tickThreads = Executors.newFixedThreadPool( zoneCount, new ThreadFactory() {
+
+			int count = 0;
+
+			public synchronized Thread newThread( Runnable r ) {
+
+				Thread t = new Thread( r, "zone-" + count++ );
+				t.setDaemon( true );
+				return t;
+			}
+		});
+
+	} // end ZonedWorld constructor
+
+
+	/**
+	 * @return number of zones
+	 */
+	public int getZoneCount() {
+
+		return zones.length;
+
+	} // end getZoneCount
+
+
+	/**
+	 * @return number of ships in the zones, not counting ghosts
+	 */
+	public int getSpaceCraftCount() {
+
+		return lastX.size();
+
+	} // end getSpaceCraftCount
+
+
+	/**
+	 * @return number of torpedoes in the zones
+	 */
+	public int getTorpedoCount() {
+
+		int count = 0;
+
+		for ( Zone zone : zones ) {
+			count += zone.sector.getTorpedoCount();
+		}
+
+		return count;
+
+	} // end getTorpedoCount
+
+
+	/**
+	 * @return number of increments torpedoes have been moved, which is
+	 * the same in every zone
+	 */
+	public long getTick() {
+
+		return zones[0].sector.getTick();
+
+	} // end getTick
+
+
+	/**
+	 * Sets the tick of every zone, as when the world is restored.
+	 *
+	 * @param tick number of torpedo increments so far
+	 */
+	public void setTick( long tick ) {
+
+		for ( Zone zone : zones ) {
+			zone.sector.setTick( tick );
+		}
+
+	} // end setTick
+
+
+	/**
+	 * Adds the obstacles, ships and torpedoes of a sector to the zones
+	 * and takes on its tick, as when the world has been restored into
+	 * the sector. The zones are given their own copies of the torpedoes,
+	 * which keep how far they have travelled.
+	 *
+	 * @param model sector to fill the zones from
+	 */
+	public void fillFrom( SectorModel model ) {
+
+		for ( Obstacle obs : model.getObstacles() ) {
+			addObstacle( obs );
+		}
+
+		for ( SpaceCraft sc : model.getSpaceCrafts() ) {
+			updateOrAddSpaceCraft( sc );
+		}
+
+		for ( Torpedo t : model.getTorpedoes() ) {
+
+			Torpedo copy = new Torpedo( t.ID, t.getXPosition(), t.getYPosition(), t.getHeading() );
+			copy.lifeCounter = t.lifeCounter;
+			updateOrAddTorpedo( copy );
+		}
+
+		setTick( model.getTick() );
+
+	} // end fillFrom
+
+
+	/**
+	 * Adds a copy of every ship and torpedo in the zones to a sector, 
+	 * together with the tick, as for writing a snapshot. Ghosts are left 
+	 * out and torpedoes keep how far they have travelled. Each zone is 
+	 * locked only while it is copied.
+	 *
+	 * @param model sector to add the copies to
+	 */
+	public void copyInto( SectorModel model ) {
+
+		ArrayList<SpaceCraft> copies = new ArrayList<SpaceCraft>();
+
+		model.setTick( getTick() );
+
+		for ( Zone zone : zones ) {
+
+			copies.clear();
+
+			synchronized ( zone.sector ) {
+
+				for ( SpaceCraft sc : zone.sector.inSector ) {
+
+					if ( zone.contains( sc.getXPosition() ) ) {
+						copies.add( new SpaceCraft( sc.ID, sc.getXPosition(), sc.getYPosition(), sc.getHeading() ) );
+					}
+				}
+
+				for ( Torpedo t : zone.sector.torpedoes ) {
+
+					Torpedo copy = new Torpedo( t.ID, t.getXPosition(), t.getYPosition(), t.getHeading() );
+					copy.lifeCounter = t.lifeCounter;
+					copies.add( copy );
+				}
+			}
+
+			for ( SpaceCraft sc : copies ) {
+
+				if ( sc instanceof Torpedo ) {
+					model.addTorpedo( (Torpedo) sc );
+				}
+				else {
+					model.addSpaceCraft( sc );
+				}
+			}
+		}
+
+	} // end copyInto
+
+
+	/**
+	 * Adds an obstacle to the zone containing it and to every neighbour
+	 * within the ghost margin.
+	 *
+	 * @param obs obstacle to be added
+	 */
+	public void addObstacle( Obstacle obs ) {
+
+		for ( Zone zone : zones ) {
+
+			if ( zone.nearby( obs.getXPosition() ) ) {
+				zone.sector.addObstacle( obs );
+			}
+		}
+
+	} // end addObstacle
+
+
+	/**
+	 * Checks for a collision between a ship and the ships around it,
+	 * including ships owned by a neighbouring zone. Destroyed ships are
+	 * removed from every zone.
+	 *
+	 * @param mover ship to check
+	 * @return ships destroyed if a collision occurred. null otherwise.
+	 */
+	public ArrayList<SpaceCraft> collisionCheck( SpaceCraft mover ) {
+
+		Zone zone = zoneFor( mover.getXPosition() );
+
+		ArrayList<SpaceCraft> destroyed = zone.sector.collisionCheck( mover );
+
+		if ( destroyed != null ) {
+
+			for ( SpaceCraft sc : destroyed ) {
+				removeSpaceCraft( sc );
+			}
+		}
+
+		return destroyed;
+
+	} // end collisionCheck
+
+
+	/**
+	 * Updates or adds a ship. The ship is handed to another zone if it has
+	 * crossed a boundary, and its ghosts in neighbouring zones are added,
+	 * moved, or removed.
+	 *
+	 * @param craft ship to be updated or added
+	 */
+	public void updateOrAddSpaceCraft( SpaceCraft craft ) {
+
+		int x = craft.getXPosition();
+		Integer previousX = lastX.put( craft.ID, x );
+
+		for ( Zone zone : zones ) {
+
+			if ( zone.nearby( x ) ) {
+
+				// Each zone keeps its own copy so that no two zones
+				// share a ship object
+				zone.sector.updateOrAddSpaceCraft( craft.ID, x,
+						craft.getYPosition(), craft.getHeading() );
+			}
+			else if ( previousX != null && zone.nearby( previousX ) ) {
+
+				// The ship has moved out of this zone and its margin
+				zone.sector.removeSpaceCraft( craft );
+			}
+		}
+
+	} // end updateOrAddSpaceCraft
+
+
+	/**
+	 * Removes a ship and all of its ghosts.
+	 *
+	 * @param craft ship to be removed
+	 */
+	public void removeSpaceCraft( SpaceCraft craft ) {
+
+		Integer previousX = lastX.remove( craft.ID );
+
+		for ( Zone zone : zones ) {
+
+			if ( previousX == null || zone.nearby( previousX ) ) {
+				zone.sector.removeSpaceCraft( craft );
+			}
+		}
+
+	} // end removeSpaceCraft
+
+
+	/**
+	 * Adds a new torpedo to the zone containing it, or updates it if it
+	 * is already there.
+	 *
+	 * @param torp torpedo to be added or updated
+	 */
+	public void updateOrAddTorpedo( Torpedo torp ) {
+
+		zoneFor( torp.getXPosition() ).sector.updateOrAddTorpedo( torp );
+
+	} // end updateOrAddTorpedo
+
+
+	/**
+	 * Removes a torpedo from whichever zone has it.
+	 *
+	 * @param torp torpedo to be removed
+	 */
+	public void removeTorpedo( Torpedo torp ) {
+
+		for ( Zone zone : zones ) {
+			zone.sector.removeTorpedo( torp );
+		}
+
+	} // end removeTorpedo
+
+
+	/**
+	 * @return torpedoes in all of the zones
+	 */
+	public Vector<Torpedo> getTorpedoes() {
+
+		Vector<Torpedo> all = new Vector<Torpedo>();
+
+		for ( Zone zone : zones ) {
+			all.addAll( zone.sector.getTorpedoes() );
+		}
+
+		return all;
+
+	} // end getTorpedoes
+
+
+	/**
+	 * Updates the torpedoes of every zone at the same time, each on its
+	 * own thread. Ships destroyed in any zone are then removed from all
+	 * of them, and torpedoes that have left their zone are handed to the
+	 * zone they are now in.
+	 *
+	 * @param steps number of increments each torpedo moves
+	 * @return destroyed ships and torpedoes. null if nothing was destroyed.
+	 */
+	public ArrayList<SpaceCraft> updateTorpedoes( final int steps ) {
+
+		ArrayList<Callable<ArrayList<SpaceCraft>>> tasks
+			= new ArrayList<Callable<ArrayList<SpaceCraft>>>( zones.length );
+
+		for ( final Zone zone : zones ) {
+
+			tasks.add( new Callable<ArrayList<SpaceCraft>>() {
+
+				public ArrayList<SpaceCraft> call() {
+
+					return zone.sector.updateTorpedoes( steps );
+				}
+			});
+		}
+
+		ArrayList<SpaceCraft> destroyed = null;
+
+		// Ships may be hit in more than one zone when they are ghosted
+		HashSet<InetSocketAddress> destroyedShips = new HashSet<InetSocketAddress>();
+
+		try {
+
+			List<Future<ArrayList<SpaceCraft>>> results = tickThreads.invokeAll( tasks );
+
+			for ( Future<ArrayList<SpaceCraft>> result : results ) {
+
+				ArrayList<SpaceCraft> zoneDestroyed = result.get();
+
+				if ( zoneDestroyed == null ) {
+					continue;
+				}
+
+				for ( SpaceCraft sc : zoneDestroyed ) {
+
+					if ( !( sc instanceof Torpedo ) ) {
+
+						if ( !destroyedShips.add( sc.ID ) ) {
+							continue;
+						}
+
+						removeSpaceCraft( sc );
+					}
+
+					if ( destroyed == null ) {
+						destroyed = new ArrayList<SpaceCraft>();
+					}
+					destroyed.add( sc );
+				}
+			}
+
+		} catch ( InterruptedException e ) {
+
+			Thread.currentThread().interrupt();
+
+		} catch ( ExecutionException e ) {
+
+			System.err.println( "Error updating torpedoes of a zone." );
+			e.printStackTrace();
+		}
+
+		handOffTorpedoes();
+
+		return destroyed;
+
+	} // end updateTorpedoes
+
+
+	/**
+	 * Stops the zone update threads.
+	 */
+	public void close() {
+
+		tickThreads.shutdownNow();
+
+	} // end close
+
+
+	/*
+	 * Moves torpedoes that have left their zone into the zone they are in.
+	 */
+	protected void handOffTorpedoes() {
+
+		ArrayList<Torpedo> leaving = new ArrayList<Torpedo>();
+
+		for ( Zone zone : zones ) {
+
+			leaving.clear();
+
+			// Only the few torpedoes that left are copied out of the zone
+			synchronized ( zone.sector ) {
+
+				for ( Torpedo torp : zone.sector.torpedoes ) {
+
+					if ( !zone.contains( torp.getXPosition() ) ) {
+						leaving.add( torp );
+					}
+				}
+			}
+
+			for ( Torpedo torp : leaving ) {
+
+				zone.sector.removeTorpedo( torp );
+				zoneFor( torp.getXPosition() ).sector.updateOrAddTorpedo( torp );
+			}
+		}
+
+	} // end handOffTorpedoes
+
+
+	/*
+	 * Finds the zone that contains an x position.
+	 */
+	protected Zone zoneFor( int x ) {
+
+		for ( Zone zone : zones ) {
+
+			if ( zone.contains( x ) ) {
+				return zone;
+			}
+		}
+
+		return zones[0];
+
+	} // end zoneFor
+
+
+	/**
+	 * A vertical strip of the world with its own SectorModel.
+	 */
+	protected class Zone {
+
+		// Left edge, inclusive, and right edge, exclusive
+		final int minX, maxX;
+
+		// State of the zone, including ghosts from its neighbours
+		final SectorModel sector = new SectorModel();
+
+		Zone( int minX, int maxX ) {
+
+			this.minX = minX;
+			this.maxX = maxX;
+
+		} // end Zone constructor
+
+		/*
+		 * True if the x position belongs to this zone.
+		 */
+		boolean contains( int x ) {
+
+			return x >= minX && x < maxX;
+
+		} // end contains
+
+		/*
+		 * True if the x position is in this zone or within the ghost margin
+		 * of it.
+		 */
+		boolean nearby( int x ) {
+
+			return (long) x >= (long) minX - ghostMargin
+					&& (long) x < (long) maxX + ghostMargin;
+
+		} // end nearby
+
+	} // end Zone inner class
+
+} // end ZonedWorld class